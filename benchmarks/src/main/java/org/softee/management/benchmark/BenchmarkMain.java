@@ -0,0 +1,54 @@
+package org.softee.management.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks, as {@code org.openjdk.jmh.Main} does, with the gc profiler, so that the allocation rate
+ * ({@code gc.alloc.rate.norm}, in bytes per operation) of every hot path is reported along with its time. Results are
+ * written to {@code jmh-result.json}, unless another result file or format is given, so that the figures of two
+ * versions of pojo-mbean can be compared, e.g.
+ * <pre>
+ * java -jar target/benchmarks.jar -rff before.json
+ * java -jar target/benchmarks.jar IntrospectedDynamicMBean -wi 3 -i 3
+ * </pre>
+ * All the options of {@code org.openjdk.jmh.Main} are accepted ({@code -h} lists them).
+ */
+public class BenchmarkMain {
+
+    /**
+     * Non instantiable
+     */
+    private BenchmarkMain() {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine;
+        try {
+            commandLine = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.err.println("Error parsing command line: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result("jmh-result.json");
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,81 @@
+package org.softee.management.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.softee.management.MessagingMBean;
+import org.softee.time.Clock;
+import org.softee.time.CoarseClock;
+
+/**
+ * Cost of reading the {@link Clock#PRECISE} and a {@link CoarseClock}, and of a message notified to a
+ * {@link MessagingMBean} that uses either.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClockBenchmark {
+    private CoarseClock coarse;
+    private MessagingMBean preciseMBean;
+    private MessagingMBean coarseMBean;
+
+    @Setup
+    public void setup() throws Exception {
+        coarse = new CoarseClock(1);
+        preciseMBean = new MessagingMBean("PreciseClock");
+        preciseMBean.setClock(Clock.PRECISE);
+        coarseMBean = new MessagingMBean("CoarseClock");
+        coarseMBean.setClock(coarse);
+        coarseMBean.resetMBean();
+    }
+
+    @TearDown
+    public void tearDown() {
+        coarse.stop();
+    }
+
+    @Benchmark
+    public long preciseMillis() {
+        return Clock.PRECISE.currentTimeMillis();
+    }
+
+    @Benchmark
+    public long preciseNanoTime() {
+        return Clock.PRECISE.nanoTime();
+    }
+
+    @Benchmark
+    public long coarseMillis() {
+        return coarse.currentTimeMillis();
+    }
+
+    @Benchmark
+    public long coarseNanoTime() {
+        return coarse.nanoTime();
+    }
+
+    @Benchmark
+    public void preciseMessage() {
+        preciseMBean.notifyInput();
+        preciseMBean.notifyOutput();
+    }
+
+    @Benchmark
+    public void coarseMessage() {
+        coarseMBean.notifyInput();
+        coarseMBean.notifyOutput();
+    }
+}
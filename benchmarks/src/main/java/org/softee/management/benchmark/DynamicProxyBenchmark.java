@@ -0,0 +1,115 @@
+package org.softee.management.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.management.DynamicMBean;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.softee.management.annotation.MBean;
+import org.softee.management.annotation.ManagedAttribute;
+import org.softee.management.annotation.ManagedOperation;
+import org.softee.management.helper.DynamicMBeanAdapter;
+import org.softee.management.helper.DynamicProxyFactory;
+import org.softee.management.helper.IntrospectedDynamicMBean;
+
+/**
+ * Cost of creating a proxy with {@link DynamicProxyFactory}, and of calls through a proxy of an
+ * {@link IntrospectedDynamicMBean}, which are dispatched directly to the bound invokers, and of a generated adapter,
+ * which are dispatched by attribute and operation name.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DynamicProxyBenchmark {
+
+    public interface Counter {
+        long getCounter();
+
+        void setCounter(long counter);
+
+        long add(long delta);
+    }
+
+    @MBean(objectName = "org.softee:type=Benchmark,name=ProxiedCounter")
+    public static class CounterMBean implements Counter {
+        private long counter;
+
+        @ManagedAttribute
+        public long getCounter() {
+            return counter;
+        }
+
+        @ManagedAttribute
+        public void setCounter(long counter) {
+            this.counter = counter;
+        }
+
+        @ManagedOperation
+        public long add(long delta) {
+            return counter += delta;
+        }
+    }
+
+    private IntrospectedDynamicMBean introspectedMBean;
+    private Counter direct;
+    private Counter byName;
+
+    @Setup
+    public void setup() throws Exception {
+        CounterMBean bean = new CounterMBean();
+        introspectedMBean = new IntrospectedDynamicMBean(bean);
+        direct = DynamicProxyFactory.createDynamicProxy(introspectedMBean, Counter.class);
+        DynamicMBean generatedMBean = DynamicMBeanAdapter.forObject(bean);
+        if (generatedMBean instanceof IntrospectedDynamicMBean) {
+            throw new IllegalStateException("No generated adapter for " + CounterMBean.class);
+        }
+        byName = DynamicProxyFactory.createDynamicProxy(generatedMBean, Counter.class);
+    }
+
+    @Benchmark
+    public Counter createProxy() throws Exception {
+        return DynamicProxyFactory.createDynamicProxy(introspectedMBean, Counter.class);
+    }
+
+    @Benchmark
+    public long directGet() {
+        return direct.getCounter();
+    }
+
+    @Benchmark
+    public void directSet() {
+        direct.setCounter(42);
+    }
+
+    @Benchmark
+    public long directInvoke() {
+        return direct.add(1);
+    }
+
+    @Benchmark
+    public long byNameGet() {
+        return byName.getCounter();
+    }
+
+    @Benchmark
+    public void byNameSet() {
+        byName.setCounter(42);
+    }
+
+    @Benchmark
+    public long byNameInvoke() {
+        return byName.add(1);
+    }
+}
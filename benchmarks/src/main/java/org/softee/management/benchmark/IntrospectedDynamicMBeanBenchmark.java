@@ -0,0 +1,164 @@
+package org.softee.management.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.DynamicMBean;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.softee.management.annotation.MBean;
+import org.softee.management.annotation.ManagedAttribute;
+import org.softee.management.annotation.ManagedOperation;
+import org.softee.management.helper.DynamicMBeanAdapter;
+import org.softee.management.helper.IntrospectedDynamicMBean;
+
+/**
+ * Per-call cost of {@link IntrospectedDynamicMBean} attribute access and operation invocation.<p>
+ *
+ * The {@code reflective*} benchmarks replay the per-call work of the original implementation
+ * ({@code isAccessible()}/{@code setAccessible()} followed by {@code Method.invoke()}), and serve as the "before"
+ * figures. The {@code generated*} benchmarks go through the adapter generated by the annotation processor when this
+ * module is compiled. The remaining benchmarks go through the bound invokers. {@code add} is overloaded, so invoking
+ * it selects an overload by signature. Run with
+ * {@code -jvmArgsAppend -Dorg.softee.management.reflectiveInvokers=true} to measure the reflective fallback.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IntrospectedDynamicMBeanBenchmark {
+
+    @MBean(objectName = "org.softee:type=Benchmark,name=Counter")
+    public static class CounterMBean {
+        private long counter;
+
+        @ManagedAttribute
+        public long getCounter() {
+            return counter;
+        }
+
+        @ManagedAttribute
+        public void setCounter(long counter) {
+            this.counter = counter;
+        }
+
+        @ManagedOperation
+        public long add(long delta) {
+            return counter += delta;
+        }
+
+        @ManagedOperation
+        public long add(long delta, long times) {
+            return counter += delta * times;
+        }
+
+        @ManagedAttribute
+        public String getName() {
+            return "Counter";
+        }
+    }
+
+    private CounterMBean bean;
+    private IntrospectedDynamicMBean dynamicMBean;
+    private DynamicMBean generatedMBean;
+    private Attribute attribute;
+    private Object[] params;
+    private String[] signature;
+    private String[] attributeNames;
+    private Method getter;
+    private Method setter;
+    private Method operation;
+
+    @Setup
+    public void setup() throws Exception {
+        bean = new CounterMBean();
+        dynamicMBean = new IntrospectedDynamicMBean(bean);
+        generatedMBean = DynamicMBeanAdapter.forObject(bean);
+        if (!(generatedMBean instanceof DynamicMBeanAdapter) || generatedMBean instanceof IntrospectedDynamicMBean) {
+            throw new IllegalStateException("No generated adapter for " + CounterMBean.class);
+        }
+        attribute = new Attribute("counter", Long.valueOf(42));
+        params = new Object[] {Long.valueOf(1)};
+        signature = new String[] {long.class.getName()};
+        attributeNames = new String[] {"counter", "name"};
+        getter = CounterMBean.class.getMethod("getCounter");
+        setter = CounterMBean.class.getMethod("setCounter", long.class);
+        operation = CounterMBean.class.getMethod("add", long.class);
+    }
+
+    @Benchmark
+    public Object getAttribute() throws Exception {
+        return dynamicMBean.getAttribute("counter");
+    }
+
+    @Benchmark
+    public void setAttribute() throws Exception {
+        dynamicMBean.setAttribute(attribute);
+    }
+
+    @Benchmark
+    public Object invoke() throws Exception {
+        return dynamicMBean.invoke("add", params, signature);
+    }
+
+    @Benchmark
+    public Object getAttributes() throws Exception {
+        return dynamicMBean.getAttributes(attributeNames);
+    }
+
+    @Benchmark
+    public Object generatedGetAttribute() throws Exception {
+        return generatedMBean.getAttribute("counter");
+    }
+
+    @Benchmark
+    public void generatedSetAttribute() throws Exception {
+        generatedMBean.setAttribute(attribute);
+    }
+
+    @Benchmark
+    public Object generatedInvoke() throws Exception {
+        return generatedMBean.invoke("add", params, signature);
+    }
+
+    @Benchmark
+    public Object generatedGetAttributes() throws Exception {
+        return generatedMBean.getAttributes(attributeNames);
+    }
+
+    @Benchmark
+    public Object reflectiveGetAttribute() throws Exception {
+        if (!getter.isAccessible()) {
+            getter.setAccessible(true);
+        }
+        return getter.invoke(bean);
+    }
+
+    @Benchmark
+    public void reflectiveSetAttribute() throws Exception {
+        if (!setter.isAccessible()) {
+            setter.setAccessible(true);
+        }
+        setter.invoke(bean, attribute.getValue());
+    }
+
+    @Benchmark
+    public Object reflectiveInvoke() throws Exception {
+        if (!operation.isAccessible()) {
+            operation.setAccessible(true);
+        }
+        return operation.invoke(bean, params);
+    }
+}
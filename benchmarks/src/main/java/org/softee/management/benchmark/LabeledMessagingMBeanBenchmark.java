@@ -0,0 +1,71 @@
+package org.softee.management.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.softee.management.LabeledMessagingMBean;
+
+/**
+ * Cost of notifying a {@link LabeledMessagingMBean} through a series held by the caller, through a lookup of the
+ * label values per message, and with a label explosion of {@code labelSets} distinct label sets against a cap of
+ * 1000, which evicts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LabeledMessagingMBeanBenchmark {
+    @Param("100000")
+    private int labelSets;
+
+    private LabeledMessagingMBean mbean;
+    private LabeledMessagingMBean.Series series;
+    private String[] tenants;
+
+    @Setup
+    public void setup() throws Exception {
+        mbean = new LabeledMessagingMBean(ObjectName.getInstance("org.softee:type=Benchmark,name=Labeled"), 1000,
+                "tenant", "queue");
+        series = mbean.labels("acme", "orders");
+        tenants = new String[labelSets];
+        for (int i = 0; i < labelSets; i++) {
+            tenants[i] = "tenant" + i;
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void heldSeries() {
+        series.notifyOutputSince(series.notifyInput());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void lookup() {
+        LabeledMessagingMBean.Series s = mbean.labels("acme", "orders");
+        s.notifyOutputSince(s.notifyInput());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void explosion() {
+        LabeledMessagingMBean.Series s = mbean.labels(tenants[ThreadLocalRandom.current().nextInt(labelSets)], "q");
+        s.notifyOutputSince(s.notifyInput());
+    }
+}
@@ -0,0 +1,165 @@
+package org.softee.management.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.softee.management.MessagingMBean;
+
+/**
+ * Throughput of the {@link MessagingMBean} notify path at 1, 8 and 64 threads, all reporting into one shared bean.<p>
+ *
+ * The {@code synchronized*} benchmarks run the same sequence against {@link SynchronizedCounters}, a replica of the
+ * original monitor based implementation, for comparison.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessagingMBeanBenchmark {
+    private MessagingMBean mbean;
+    private SynchronizedCounters synchronizedCounters;
+    private Exception failure;
+
+    @Setup
+    public void setup() throws Exception {
+        mbean = new MessagingMBean(ObjectName.getInstance("org.softee:type=Benchmark,name=Messaging"));
+        synchronizedCounters = new SynchronizedCounters();
+        failure = new IllegalStateException("benchmark");
+        mbean.notifyFailed(failure);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void striped1() {
+        notify(mbean);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void striped8() {
+        notify(mbean);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void striped64() {
+        notify(mbean);
+    }
+
+    /**
+     * Duration measured from the calling thread's own {@code notifyInput()}
+     */
+    @Benchmark
+    @Threads(8)
+    public void threadConfined8() {
+        mbean.notifyInput();
+        mbean.notifyOutput();
+    }
+
+    /**
+     * Duration measured from a primitive start token
+     */
+    @Benchmark
+    @Threads(8)
+    public void startToken8() {
+        mbean.notifyOutputSince(mbean.notifyInputStart());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void synchronized1() {
+        notify(synchronizedCounters);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void synchronized8() {
+        notify(synchronizedCounters);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void synchronized64() {
+        notify(synchronizedCounters);
+    }
+
+    /**
+     * A failure with a fingerprint already seen: the stack trace is hashed, but not rendered
+     */
+    @Benchmark
+    @Threads(8)
+    public void failed8() {
+        mbean.notifyFailed(failure);
+    }
+
+    /**
+     * The stack trace of the latest failure, rendered once per fingerprint
+     */
+    @Benchmark
+    public String[] failedLatestStacktrace() {
+        return mbean.getFailedLatestStacktrace();
+    }
+
+    private static void notify(MessagingMBean mbean) {
+        mbean.notifyInput();
+        mbean.notifyOutput(10, TimeUnit.MICROSECONDS);
+    }
+
+    private static void notify(SynchronizedCounters counters) {
+        counters.notifyInput();
+        counters.notifyOutput(10, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * The notify path of the original, monitor based, MessagingMBean. The original {@code notifyOutput(long, TimeUnit)}
+     * was reached through the synchronized {@code notifyOutput()} and {@code notifyOutput(long)}, so it is
+     * synchronized here.
+     */
+    static class SynchronizedCounters {
+        private final AtomicLong inputCount = new AtomicLong();
+        private final AtomicLong inputLatest = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLong outputCount = new AtomicLong();
+        private final AtomicLong outputLatest = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLong durationLatest = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLong durationTotal = new AtomicLong();
+        private final AtomicLong durationMin = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLong durationMax = new AtomicLong(Long.MIN_VALUE);
+
+        synchronized void notifyInput() {
+            inputCount.incrementAndGet();
+            inputLatest.set(System.currentTimeMillis());
+        }
+
+        synchronized void notifyOutput(long inDuration, TimeUnit inUnit) {
+            long workDuration = TimeUnit.MILLISECONDS.convert(inDuration, inUnit);
+            outputLatest.set(System.currentTimeMillis());
+            outputCount.incrementAndGet();
+            if (workDuration >= 0) {
+                durationLatest.set(workDuration);
+                durationTotal.addAndGet(workDuration);
+                long min = durationMin.get();
+                if (min == Long.MIN_VALUE || workDuration < min) {
+                    durationMin.set(workDuration);
+                }
+                if (workDuration > durationMax.get()) {
+                    durationMax.set(workDuration);
+                }
+            }
+        }
+    }
+}
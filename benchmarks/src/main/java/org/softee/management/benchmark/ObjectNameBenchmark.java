@@ -0,0 +1,70 @@
+package org.softee.management.benchmark;
+
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.softee.management.helper.ObjectNameBuilder;
+import org.softee.management.helper.ObjectNameTemplate;
+
+/**
+ * Cost of creating the ObjectName of a per-tenant MBean: parsed by {@link ObjectName#getInstance(String, Hashtable)}
+ * on every call, by {@link ObjectNameBuilder}, and by an {@link ObjectNameTemplate}. Run with {@code -prof gc} for
+ * the allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ObjectNameBenchmark {
+    private static final int TENANTS = 64;
+
+    private final String[] tenants = new String[TENANTS];
+    private ObjectNameTemplate template;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        for (int i = 0; i < TENANTS; i++) {
+            tenants[i] = "tenant" + i;
+        }
+        template = ObjectNameTemplate.compile("org.softee:type=Queue,tenant={},name={}");
+    }
+
+    private String tenant() {
+        return tenants[next++ & (TENANTS - 1)];
+    }
+
+    @Benchmark
+    public ObjectName parse() throws Exception {
+        Hashtable<String, String> properties = new Hashtable<String, String>();
+        properties.put("type", "Queue");
+        properties.put("tenant", tenant());
+        properties.put("name", "orders");
+        return ObjectName.getInstance("org.softee", properties);
+    }
+
+    @Benchmark
+    public ObjectName builder() throws Exception {
+        return new ObjectNameBuilder().withDomain("org.softee").withType("Queue").withProperty("tenant", tenant())
+                .withName("orders").build();
+    }
+
+    @Benchmark
+    public ObjectName template() throws Exception {
+        return template.getInstance(tenant(), "orders");
+    }
+}
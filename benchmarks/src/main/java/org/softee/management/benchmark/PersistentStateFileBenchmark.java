@@ -0,0 +1,96 @@
+package org.softee.management.benchmark;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.softee.management.MessagingMBean;
+import org.softee.management.helper.MBeanRegistration;
+import org.softee.management.helper.PersistentStateFile;
+
+/**
+ * Cost of one periodic {@link PersistentStateFile#save()} of {@code beans} registered {@link MessagingMBean}s, when
+ * none has changed, and when {@code changed} of them have. Every save that writes also forces the file to the disk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistentStateFileBenchmark {
+    @Param({"1000", "10000"})
+    private int beans;
+
+    @Param("10")
+    private int changed;
+
+    private final List<MBeanRegistration> registrations = new ArrayList<MBeanRegistration>();
+    private final List<MessagingMBean> mbeans = new ArrayList<MessagingMBean>();
+    private File file;
+    private PersistentStateFile stateFile;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        for (int i = 0; i < beans; i++) {
+            ObjectName objectName = ObjectName.getInstance("org.softee:type=Benchmark,name=Messaging" + i);
+            MessagingMBean mbean = new MessagingMBean(objectName);
+            mbean.notifyInput();
+            mbean.notifyOutput(i % 100, MILLISECONDS);
+            MBeanRegistration registration = new MBeanRegistration(mbean, objectName, mBeanServer);
+            registration.register();
+            registrations.add(registration);
+            mbeans.add(mbean);
+        }
+        file = File.createTempFile("state", ".dat");
+        stateFile = new PersistentStateFile(file);
+        stateFile.save();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        stateFile.close();
+        file.delete();
+        for (MBeanRegistration registration : registrations) {
+            registration.unregister();
+        }
+        registrations.clear();
+        mbeans.clear();
+    }
+
+    @Benchmark
+    public void saveUnchanged() throws IOException {
+        stateFile.save();
+    }
+
+    @Benchmark
+    public void saveChanged() throws IOException {
+        for (int i = 0; i < changed; i++) {
+            mbeans.get(next).notifyInput();
+            next = (next + 1) % beans;
+        }
+        stateFile.save();
+    }
+}
@@ -0,0 +1,98 @@
+package org.softee.management.benchmark;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.softee.management.MessagingMBean;
+import org.softee.management.exporter.PrometheusExporter;
+import org.softee.management.helper.MBeanRegistration;
+
+/**
+ * Cost of rendering a complete scrape of {@code beans} registered {@link MessagingMBean}s with
+ * {@link PrometheusExporter}, once the layout has been built by the first scrape.<p>
+ *
+ * The target of a few milliseconds per scrape isn't met: on a single CPU, {@link #writeTo()} takes 35 - 45 ms and
+ * allocates about 2 MB, almost all of it reading and boxing the 32 attribute values of each MBean. Rendering reuses
+ * its buffer, and the duration percentiles of an idle MBean reuse their histogram snapshot. {@link #render()}
+ * allocates another 9 MB for the String it returns.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrometheusExporterBenchmark {
+    @Param("5000")
+    private int beans;
+
+    private final List<MBeanRegistration> registrations = new ArrayList<MBeanRegistration>();
+    private PrometheusExporter exporter;
+    private final OutputStream discard = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup
+    public void setup() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        for (int i = 0; i < beans; i++) {
+            ObjectName objectName = ObjectName.getInstance("org.softee:type=Benchmark,name=Messaging" + i);
+            MessagingMBean mbean = new MessagingMBean(objectName);
+            mbean.notifyInput();
+            mbean.notifyOutput(i % 100, MILLISECONDS);
+            MBeanRegistration registration = new MBeanRegistration(mbean, objectName, mBeanServer);
+            registration.register();
+            registrations.add(registration);
+        }
+        exporter = new PrometheusExporter();
+        exporter.render();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        for (MBeanRegistration registration : registrations) {
+            registration.unregister();
+        }
+        registrations.clear();
+    }
+
+    @Benchmark
+    public String render() {
+        return exporter.render();
+    }
+
+    /**
+     * The cost of serving a scrape, without the String that {@link #render()} returns
+     */
+    @Benchmark
+    public void writeTo() throws IOException {
+        exporter.writeTo(discard);
+    }
+}
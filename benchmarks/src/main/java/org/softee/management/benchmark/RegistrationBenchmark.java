@@ -0,0 +1,77 @@
+package org.softee.management.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.softee.management.MessagingMBean;
+import org.softee.management.helper.MBeanRegistration;
+import org.softee.management.helper.RegistrationResult;
+
+/**
+ * Time to register {@code beans} {@link MessagingMBean}s in a new MBeanServer, one at a time with
+ * {@link MBeanRegistration#register()}, and as a batch with {@link MBeanRegistration#registerAll(java.util.Collection)}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegistrationBenchmark {
+    @Param({"1000", "20000"})
+    private int beans;
+
+    private MBeanServer mBeanServer;
+    private List<MBeanRegistration> registrations;
+
+    @Setup(Level.Invocation)
+    public void setup() throws Exception {
+        mBeanServer = MBeanServerFactory.newMBeanServer();
+        registrations = new ArrayList<MBeanRegistration>(beans);
+        for (int i = 0; i < beans; i++) {
+            ObjectName objectName = ObjectName.getInstance("org.softee:type=Benchmark,tenant=" + (i / 100)
+                    + ",name=Queue" + (i % 100));
+            registrations.add(new MBeanRegistration(new MessagingMBean(objectName), objectName, mBeanServer));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws Exception {
+        for (MBeanRegistration registration : registrations) {
+            if (mBeanServer.isRegistered(registration.getObjectName())) {
+                registration.unregister();
+            }
+        }
+    }
+
+    @Benchmark
+    public List<MBeanRegistration> registerOneByOne() throws Exception {
+        for (MBeanRegistration registration : registrations) {
+            registration.register();
+        }
+        return registrations;
+    }
+
+    @Benchmark
+    public RegistrationResult registerAll() {
+        return MBeanRegistration.registerAll(registrations);
+    }
+}
@@ -0,0 +1,71 @@
+package org.softee.management.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.softee.management.MessagingMBean;
+import org.softee.time.StopWatch;
+
+/**
+ * Cost of timing a message with a new {@link StopWatch}, and with the {@link StopWatch#forThread()} instance, which
+ * shouldn't allocate (run with {@code -prof gc}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StopWatchBenchmark {
+    private MessagingMBean mbean;
+    private final long[] laps = new long[4];
+
+    @Setup
+    public void setup() throws Exception {
+        mbean = new MessagingMBean(ObjectName.getInstance("org.softee:type=Benchmark,name=StopWatch"));
+    }
+
+    @Benchmark
+    public long newStopWatch() {
+        StopWatch stopWatch = new StopWatch();
+        stopWatch.stop();
+        return stopWatch.elapsedNanos();
+    }
+
+    @Benchmark
+    public long threadStopWatch() {
+        StopWatch stopWatch = StopWatch.forThread();
+        stopWatch.start();
+        stopWatch.stop();
+        return stopWatch.elapsedNanos();
+    }
+
+    @Benchmark
+    public int laps() {
+        StopWatch stopWatch = StopWatch.forThread();
+        stopWatch.start();
+        int lap = 0;
+        while (lap < laps.length) {
+            lap = stopWatch.lap(laps, lap);
+        }
+        return lap;
+    }
+
+    @Benchmark
+    public void notifyOutput() {
+        StopWatch stopWatch = StopWatch.forThread();
+        stopWatch.start();
+        mbean.notifyOutput(stopWatch);
+    }
+}
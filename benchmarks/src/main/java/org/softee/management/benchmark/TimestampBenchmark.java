@@ -0,0 +1,85 @@
+package org.softee.management.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+import javax.xml.datatype.DatatypeFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.softee.management.MessagingMBean;
+import org.softee.management.TimestampFormat;
+
+/**
+ * Cost of creating an MBean, and of reading the timestamp attribute of each {@link TimestampFormat}. Run with
+ * {@code -prof gc} to see the allocation per read.<p>
+ *
+ * {@code newDatatypeFactory} is the lookup that each MBean used to do when it was created, and serves as the "before"
+ * figure of {@code newMBean}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimestampBenchmark {
+    private ObjectName objectName;
+
+    /**
+     * An MBean with an input timestamp, read in each format
+     */
+    @State(Scope.Thread)
+    public static class Timestamped {
+        @Param({"XML_CALENDAR", "ISO_8601", "EPOCH_MILLIS"})
+        private TimestampFormat format;
+
+        private MessagingMBean mbean;
+
+        @Setup
+        public void setup() throws Exception {
+            mbean = new MessagingMBean(ObjectName.getInstance("org.softee:type=Benchmark,name=Timestamped"));
+            mbean.notifyInput();
+        }
+
+        Object read() {
+            switch (format) {
+            case XML_CALENDAR:
+                return mbean.getInputLatest();
+            case ISO_8601:
+                return mbean.getInputLatestIso();
+            default:
+                return mbean.getInputLatestMillis();
+            }
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        objectName = ObjectName.getInstance("org.softee:type=Benchmark,name=Timestamp");
+    }
+
+    @Benchmark
+    public Object getInputLatest(Timestamped timestamped) {
+        return timestamped.read();
+    }
+
+    @Benchmark
+    public Object newMBean() {
+        return new MessagingMBean(objectName);
+    }
+
+    @Benchmark
+    public Object newDatatypeFactory() throws Exception {
+        return DatatypeFactory.newInstance();
+    }
+}
@@ -2,14 +2,12 @@ package org.softee.management;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
-import java.util.GregorianCalendar;
+import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
-import javax.xml.datatype.DatatypeConfigurationException;
-import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
 
 import org.softee.management.annotation.Description;
@@ -19,6 +17,9 @@ import org.softee.management.annotation.ManagedOperation.Impact;
 import org.softee.management.exception.ManagementException;
 import org.softee.management.helper.MBeanRegistration;
 import org.softee.management.helper.ObjectNameBuilder;
+import org.softee.management.helper.PersistentState;
+import org.softee.management.helper.PersistentStateFile;
+import org.softee.time.Clock;
 
 /**
  * An abstract base-class for generating Pojo MBeans that are capable of registering and unregistering themselves.
@@ -30,8 +31,8 @@ import org.softee.management.helper.ObjectNameBuilder;
  */
 public abstract class AbstractMBean {
     protected static final long NONE = Long.MIN_VALUE;
-    private DatatypeFactory dtf;
-    private AtomicLong started;
+    private final AtomicLong started = none();
+    private volatile Clock clock = Clock.getDefault();
     protected final MBeanRegistration registration;
 
     /**
@@ -65,14 +66,16 @@ public abstract class AbstractMBean {
         initialize();
     }
 
+    /**
+     * Reset the metrics, and restore the state saved by an MBean of the same object name, if this MBean implements
+     * {@link PersistentState} and a {@link PersistentStateFile} is installed
+     */
     protected void initialize() {
-        try {
-            dtf = DatatypeFactory.newInstance();
-        } catch (DatatypeConfigurationException e) {
-            throw new RuntimeException(e);
-        }
-
         resetMBean(); // Reset all stats
+        PersistentStateFile stateFile = PersistentStateFile.getInstalled();
+        if (stateFile != null && this instanceof PersistentState) {
+            stateFile.restore(registration.getObjectName(), (PersistentState) this);
+        }
     }
 
 
@@ -87,16 +90,26 @@ public abstract class AbstractMBean {
      * @throws ManagementException
      */
     public void start() throws ManagementException {
-        started = new AtomicLong(now());
+        started.set(now());
         registration.register();
     }
 
     /**
-     * Stop monitoring and unregister the MBean with the MBean server
-     * @throws ManagementException
+     * Stop monitoring and unregister the MBean with the MBean server. If this MBean implements
+     * {@link PersistentState}, its state is saved to the installed {@link PersistentStateFile}, if any.
+     * @throws ManagementException if the MBean can't be unregistered, or its state can't be saved
      */
     public void stop() throws ManagementException {
-        registration.unregister();
+        try {
+            PersistentStateFile stateFile = PersistentStateFile.getInstalled();
+            if (stateFile != null && this instanceof PersistentState) {
+                stateFile.save(registration.getObjectName(), (PersistentState) this);
+            }
+        } catch (IOException e) {
+            throw new ManagementException(e);
+        } finally {
+            registration.unregister();
+        }
     }
 
 
@@ -105,8 +118,37 @@ public abstract class AbstractMBean {
         return date(noneAsNull(started));
     }
 
+    @ManagedAttribute @Description("The time at which the MBean was started, as an ISO 8601 string in UTC")
+    public String getStartedIso() {
+        return iso(noneAsNull(started));
+    }
+
+    @ManagedAttribute @Description("The time at which the MBean was started, in milliseconds since the epoch")
+    public Long getStartedMillis() {
+        return noneAsNull(started);
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * @param clock the source of the time recorded by this MBean. Defaults to {@link Clock#getDefault()}.
+     * Values recorded with the previous clock are kept; call {@link #resetMBean()} if the clocks don't agree, e.g.
+     * when a test replaces the clock with a {@link org.softee.time.ManualClock}.
+     */
+    public void setClock(Clock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("clock must not be null");
+        }
+        this.clock = clock;
+    }
+
     protected Long noneAsNull(AtomicLong a) {
-        long n = a.get();
+        return noneAsNull(a.get());
+    }
+
+    protected Long noneAsNull(long n) {
         return n == NONE ? null : n;
     }
 
@@ -129,16 +171,59 @@ public abstract class AbstractMBean {
      * TODO consider forcing TimeZone to UTC
      */
     protected XMLGregorianCalendar date(Long millis) {
-        if (millis == null) {
-            return null;
-        }
-        GregorianCalendar gCal = new GregorianCalendar();
-        gCal.setTimeInMillis(millis);
-        return dtf.newXMLGregorianCalendar(gCal);
+        return (millis != null) ? (XMLGregorianCalendar) TimestampFormat.XML_CALENDAR.format(millis) : null;
+    }
+
+    /**
+     * @param millis
+     * @return millis formatted as an ISO 8601 string in UTC, with second precision (see
+     * {@link TimestampFormat#ISO_8601})
+     */
+    protected String iso(Long millis) {
+        return (millis != null) ? (String) TimestampFormat.ISO_8601.format(millis) : null;
     }
 
+    /**
+     * @return the current time of the clock of this MBean, in milliseconds since the epoch
+     */
     protected long now() {
-        return System.currentTimeMillis();
+        return clock.currentTimeMillis();
+    }
+
+    /**
+     * @return the current nanoTime of the clock of this MBean, for measuring durations
+     */
+    protected long nanoTime() {
+        return clock.nanoTime();
+    }
+
+    /**
+     * Atomically raise {@code a} to {@code value}, unless it already holds a larger value
+     * @return true if {@code a} was updated
+     */
+    protected static boolean max(AtomicLong a, long value) {
+        long current;
+        while (value > (current = a.get())) {
+            if (a.compareAndSet(current, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Atomically lower {@code a} to {@code value}, unless it already holds a smaller value. An {@code a} holding
+     * {@link #NONE} is always updated.
+     * @return true if {@code a} was updated
+     */
+    protected static boolean min(AtomicLong a, long value) {
+        long current;
+        while ((current = a.get()) == NONE || value < current) {
+            if (a.compareAndSet(current, value)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     protected AtomicLong zero() {
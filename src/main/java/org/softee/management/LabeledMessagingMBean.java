@@ -0,0 +1,441 @@
+package org.softee.management;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.softee.management.annotation.Description;
+import org.softee.management.annotation.MBean;
+import org.softee.management.annotation.ManagedAttribute;
+import org.softee.management.annotation.ManagedOperation;
+import org.softee.management.annotation.ManagedOperation.Impact;
+
+/**
+ * Counts messages and measures their processing durations per set of label values, e.g. per tenant and queue, in one
+ * MBean, rather than one {@link MessagingMBean} per label set.<p>
+ *
+ * Each label set has one series: an array of primitive counters, in a concurrent map keyed by the label values. The
+ * series are reported as {@link TabularData}, one row per label set, indexed by the labels. The number of label sets
+ * is capped: when a new label set exceeds the cap, the least recently used tenth of the label sets is evicted, so a
+ * label explosion can't exhaust the heap, and the cost of eviction is spread over the label sets that caused it.<p>
+ *
+ * Look up the {@link Series} of a label set once, with {@link #labels(String...)}, and notify it, so that notifying
+ * doesn't allocate. A series that has been evicted, or reset, is replaced by a new one when it's next notified, and
+ * forwards to its replacement from then on, so holding it stays cheap; notifications that race with its eviction may
+ * be lost.
+ */
+@MBean(objectName = "org.softee:type=org.softee.LabeledMessagingMBean,name=Default")
+@Description("MBean for monitoring input/output processing per set of labels")
+public class LabeledMessagingMBean extends AbstractMBean {
+    private static final int INPUT_COUNT = 0;
+    private static final int OUTPUT_COUNT = 1;
+    private static final int FAILED_COUNT = 2;
+    private static final int DURATION_TOTAL = 3;
+    private static final int DURATION_MIN = 4;
+    private static final int DURATION_MAX = 5;
+    private static final int DURATION_LATEST = 6;
+    private static final int FIELDS = 7;
+
+    private static final String[] COLUMNS = {
+        "inputCount", "outputCount", "failedCount", "durationTotal", "durationMin", "durationMax", "durationLatest",
+        "durationAverage"};
+    private static final String[] COLUMN_DESCRIPTIONS = {
+        "Number of messages received", "Number of processed messages", "Number of processes that failed",
+        "Total processing time of all messages (ms)", "Min processing time (ms)", "Max processing time (ms)",
+        "Processing time of the latest message (ms)", "Average processing time (ms)"};
+
+    private static final Comparator<Series> LEAST_RECENTLY_USED = new Comparator<Series>() {
+        @Override
+        public int compare(Series s1, Series s2) {
+            return (s1.lastAccess < s2.lastAccess) ? -1 : ((s1.lastAccess == s2.lastAccess) ? 0 : 1);
+        }
+    };
+
+    private final String[] labelNames;
+    private final int maxLabelSets;
+    private final TabularType tabularType;
+    /** the label names, followed by the columns */
+    private final String[] items;
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /** replaced as a whole when the MBean is reset */
+    private volatile ConcurrentMap<LabelKey, Series> series;
+    private volatile AtomicLong evictedCount;
+
+    /**
+     * @param objectName the name of the MBean
+     * @param maxLabelSets the maximum number of label sets. Positive.
+     * @param labelNames the names of the labels. Not empty, and not the name of a column of the reported
+     * {@link #getSeries() series}.
+     */
+    public LabeledMessagingMBean(ObjectName objectName, int maxLabelSets, String... labelNames) {
+        super(objectName);
+        this.labelNames = labelNames.clone();
+        this.maxLabelSets = maxLabelSets;
+        this.tabularType = tabularType(maxLabelSets, this.labelNames);
+        this.items = items(this.labelNames);
+    }
+
+    /**
+     * @param name the name property of the ObjectName, overriding the name property of the @MBean annotation
+     * @param maxLabelSets the maximum number of label sets. Positive.
+     * @param labelNames the names of the labels. Not empty.
+     * @throws MalformedObjectNameException if the ObjectName is invalid
+     */
+    public LabeledMessagingMBean(String name, int maxLabelSets, String... labelNames)
+            throws MalformedObjectNameException {
+        super(name);
+        this.labelNames = labelNames.clone();
+        this.maxLabelSets = maxLabelSets;
+        this.tabularType = tabularType(maxLabelSets, this.labelNames);
+        this.items = items(this.labelNames);
+    }
+
+    private static String[] items(String[] labelNames) {
+        String[] items = Arrays.copyOf(labelNames, labelNames.length + COLUMNS.length);
+        System.arraycopy(COLUMNS, 0, items, labelNames.length, COLUMNS.length);
+        return items;
+    }
+
+    private static TabularType tabularType(int maxLabelSets, String[] labelNames) {
+        if (maxLabelSets < 1) {
+            throw new IllegalArgumentException("maxLabelSets must be positive: " + maxLabelSets);
+        }
+        if (labelNames.length == 0) {
+            throw new IllegalArgumentException("labelNames must not be empty");
+        }
+        String[] items = items(labelNames);
+        String[] descriptions = new String[items.length];
+        OpenType<?>[] types = new OpenType<?>[items.length];
+        for (int i = 0; i < labelNames.length; i++) {
+            if (labelNames[i] == null || Arrays.asList(COLUMNS).contains(labelNames[i])) {
+                throw new IllegalArgumentException("Invalid label name: " + labelNames[i]);
+            }
+            descriptions[i] = "Label " + labelNames[i];
+            types[i] = SimpleType.STRING;
+        }
+        for (int i = 0; i < COLUMNS.length; i++) {
+            descriptions[labelNames.length + i] = COLUMN_DESCRIPTIONS[i];
+            types[labelNames.length + i] = SimpleType.LONG;
+        }
+        try {
+            CompositeType rowType = new CompositeType("LabeledMessagingSeries", "Messaging metrics of a label set",
+                    items, descriptions, types);
+            return new TabularType("LabeledMessagingSeriesTable", "Messaging metrics per label set", rowType,
+                    labelNames);
+        } catch (OpenDataException e) {
+            throw new IllegalArgumentException("Invalid label names: " + Arrays.toString(labelNames), e);
+        }
+    }
+
+    /**
+     * @param labelValues the value of each label, in the order of the label names. Not null.
+     * @return the series of the label set, which is created if it doesn't exist
+     * @throws IllegalArgumentException if the number of values differs from the number of labels, or a value is null
+     */
+    public Series labels(String... labelValues) {
+        if (labelValues.length != labelNames.length) {
+            throw new IllegalArgumentException(String.format("Expected %d label values %s, got %s",
+                    labelNames.length, Arrays.toString(labelNames), Arrays.toString(labelValues)));
+        }
+        for (String value : labelValues) {
+            if (value == null) {
+                throw new IllegalArgumentException("Label values must not be null: " + Arrays.toString(labelValues));
+            }
+        }
+        return series(new LabelKey(labelValues.clone()));
+    }
+
+    private Series series(LabelKey key) {
+        ConcurrentMap<LabelKey, Series> map = series;
+        long now = now();
+        Series s = map.get(key);
+        if (s == null) {
+            Series created = new Series(this, key, now);
+            s = map.putIfAbsent(key, created);
+            if (s == null) {
+                if (map.size() > maxLabelSets) {
+                    evict(map);
+                }
+                return created;
+            }
+        }
+        s.lastAccess = now;
+        return s;
+    }
+
+    /**
+     * Evict the least recently used label sets, down to 90% of the cap, unless another thread is evicting
+     */
+    private void evict(ConcurrentMap<LabelKey, Series> map) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Series> all = new ArrayList<Series>(map.values());
+            int excess = all.size() - (maxLabelSets - maxLabelSets / 10);
+            if (excess <= 0) {
+                return;
+            }
+            Collections.sort(all, LEAST_RECENTLY_USED);
+            for (int i = 0; i < excess; i++) {
+                Series evicted = all.get(i);
+                if (map.remove(evicted.key, evicted)) {
+                    evicted.evicted = true;
+                    evictedCount.incrementAndGet();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    @Override
+    @ManagedOperation(Impact.ACTION)
+    @Description("Reset this MBean's metrics")
+    public void resetMBean() {
+        super.resetMBean();
+        ConcurrentMap<LabelKey, Series> previous = series;
+        evictedCount = new AtomicLong();
+        series = new ConcurrentHashMap<LabelKey, Series>();
+        if (previous != null) {
+            // the series held by callers are replaced when next notified
+            for (Series s : previous.values()) {
+                s.evicted = true;
+            }
+        }
+    }
+
+    @ManagedAttribute @Description("The metrics of each label set, in milliseconds")
+    public TabularData getSeries() {
+        TabularDataSupport table = new TabularDataSupport(tabularType);
+        Object[] values = new Object[items.length];
+        for (Series s : series.values()) {
+            System.arraycopy(s.key.values, 0, values, 0, labelNames.length);
+            AtomicLongArray counters = s.counters;
+            long durationTotal = counters.get(DURATION_TOTAL);
+            long outputCount = counters.get(OUTPUT_COUNT);
+            int i = labelNames.length;
+            values[i++] = counters.get(INPUT_COUNT);
+            values[i++] = outputCount;
+            values[i++] = counters.get(FAILED_COUNT);
+            values[i++] = millis(durationTotal);
+            values[i++] = millis(counters.get(DURATION_MIN));
+            values[i++] = millis(counters.get(DURATION_MAX));
+            values[i++] = millis(counters.get(DURATION_LATEST));
+            values[i++] = (outputCount != 0) ? millis(durationTotal / outputCount) : null;
+            try {
+                table.put(new CompositeDataSupport(tabularType.getRowType(), items, values));
+            } catch (OpenDataException e) {
+                // impossible: the values match the row type
+                throw new IllegalStateException(e);
+            }
+        }
+        return table;
+    }
+
+    private static Long millis(long nanos) {
+        return (nanos == NONE) ? null : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @ManagedAttribute @Description("The names of the labels")
+    public String[] getLabelNames() {
+        return labelNames.clone();
+    }
+
+    @ManagedAttribute @Description("The number of label sets")
+    public int getLabelSetCount() {
+        return series.size();
+    }
+
+    @ManagedAttribute @Description("The maximum number of label sets; the least recently used are evicted beyond it")
+    public int getMaxLabelSets() {
+        return maxLabelSets;
+    }
+
+    @ManagedAttribute @Description("The number of label sets evicted since the MBean was reset")
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    /**
+     * The counters of one label set. The notify methods are lock-free, and don't allocate. The getters and
+     * {@link #toString()} don't count as a use of the label set: they don't delay its eviction, and don't recreate it
+     * if it has been evicted.
+     */
+    public static final class Series {
+        private final LabeledMessagingMBean mbean;
+        private final LabelKey key;
+        /** the counters, indexed by field */
+        private final AtomicLongArray counters = new AtomicLongArray(FIELDS);
+        private volatile long lastAccess;
+        private volatile boolean evicted;
+        /** the series that replaced this one when it was evicted, or null */
+        private volatile Series replacement;
+
+        Series(LabeledMessagingMBean mbean, LabelKey key, long now) {
+            this.mbean = mbean;
+            this.key = key;
+            this.lastAccess = now;
+            counters.set(DURATION_MIN, NONE);
+            counters.set(DURATION_MAX, NONE);
+            counters.set(DURATION_LATEST, NONE);
+        }
+
+        /**
+         * @return the values of the labels of this series
+         */
+        public List<String> getLabelValues() {
+            return Collections.unmodifiableList(Arrays.asList(key.values));
+        }
+
+        /**
+         * Notify that a message has been input
+         * @return a token that identifies the start of processing, to be passed to {@link #notifyOutputSince(long)}
+         */
+        public long notifyInput() {
+            current().counters.incrementAndGet(INPUT_COUNT);
+            return mbean.nanoTime();
+        }
+
+        /**
+         * Notify that a message has been processed, and set the processing duration to the duration since it was
+         * input
+         * @param startToken the token returned by {@link #notifyInput()} when the message was input
+         */
+        public void notifyOutputSince(long startToken) {
+            notifyOutput(mbean.nanoTime() - startToken, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Notify that a message has been processed
+         * @param duration the processing duration, or a negative value if unknown
+         * @param unit the unit of {@code duration}
+         */
+        public void notifyOutput(long duration, TimeUnit unit) {
+            AtomicLongArray s = current().counters;
+            s.incrementAndGet(OUTPUT_COUNT);
+            if (duration >= 0) {
+                long nanos = unit.toNanos(duration);
+                s.addAndGet(DURATION_TOTAL, nanos);
+                s.set(DURATION_LATEST, nanos);
+                long current;
+                while (((current = s.get(DURATION_MIN)) == NONE || nanos < current)
+                        && !s.compareAndSet(DURATION_MIN, current, nanos)) {
+                    // retry
+                }
+                while (nanos > (current = s.get(DURATION_MAX)) && !s.compareAndSet(DURATION_MAX, current, nanos)) {
+                    // retry
+                }
+            }
+        }
+
+        /**
+         * Notify that the processing of a message has failed
+         */
+        public void notifyFailed() {
+            current().counters.incrementAndGet(FAILED_COUNT);
+        }
+
+        public long getInputCount() {
+            return get(INPUT_COUNT);
+        }
+
+        public long getOutputCount() {
+            return get(OUTPUT_COUNT);
+        }
+
+        public long getFailedCount() {
+            return get(FAILED_COUNT);
+        }
+
+        /**
+         * @return a counter of this series, or of the replacement it has been notified through since it was evicted,
+         * or 0 if it has none
+         */
+        private long get(int index) {
+            AtomicLongArray c = readable();
+            return (c != null) ? c.get(index) : 0;
+        }
+
+        /**
+         * @return the counters of this series, or of its live replacement, or null if it has none. Neither looks up
+         * the series, nor touches it.
+         */
+        private AtomicLongArray readable() {
+            Series s = this;
+            while (s != null && s.evicted) {
+                s = s.replacement;
+            }
+            return (s != null) ? s.counters : null;
+        }
+
+        /**
+         * @return this series, or the series that replaces it if it has been evicted, or the MBean has been reset. The
+         * replacement is looked up once, and again only if it has been evicted too.
+         */
+        private Series current() {
+            if (!evicted) {
+                lastAccess = mbean.now();
+                return this;
+            }
+            Series s = replacement;
+            if (s == null || s.evicted) {
+                s = mbean.series(key);
+                replacement = s;
+                return s;
+            }
+            s.lastAccess = mbean.now();
+            return s;
+        }
+
+        @Override
+        public String toString() {
+            AtomicLongArray c = readable();
+            return "Series " + Arrays.toString(key.values) + " " + ((c != null) ? c : "evicted");
+        }
+    }
+
+    /**
+     * The values of the labels of a series, with their hash code computed once
+     */
+    private static final class LabelKey {
+        final String[] values;
+        private final int hash;
+
+        LabelKey(String[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof LabelKey && ((LabelKey) obj).hash == hash
+                    && Arrays.equals(((LabelKey) obj).values, values);
+        }
+    }
+}
@@ -2,17 +2,21 @@ package org.softee.management;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringReader;
-import java.io.StringWriter;
-import java.util.ArrayList;
+import java.util.Date;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
 import javax.xml.datatype.XMLGregorianCalendar;
 
 import org.softee.management.annotation.Description;
@@ -20,33 +24,90 @@ import org.softee.management.annotation.MBean;
 import org.softee.management.annotation.ManagedAttribute;
 import org.softee.management.annotation.ManagedOperation;
 import org.softee.management.annotation.ManagedOperation.Impact;
+import org.softee.management.annotation.Parameter;
 import org.softee.management.exception.ManagementException;
+import org.softee.management.helper.PersistentState;
+import org.softee.management.helper.PersistentStateFile;
+import org.softee.management.helper.SnapshotSupport;
+import org.softee.metrics.FailureRing;
+import org.softee.metrics.FailureRing.Failure;
+import org.softee.metrics.FailureRing.Fingerprint;
+import org.softee.metrics.Histogram;
+import org.softee.metrics.Meter;
+import org.softee.time.StopWatch;
 
 /**
  * Sample class for implementing commonly monitored metrics in a message processing system.<p>
- * This class may be extended, and new metrics (attributes and operations) may be added by applying annotations to the subclass
+ * This class may be extended, and new metrics (attributes and operations) may be added by applying annotations to the subclass.<p>
+ * When attributes are read together, the counts, totals, min, max, latest values and percentiles are reported from a
+ * single snapshot (see {@link SnapshotSupport}), so e.g. the average agrees with the count. Rates are read live.<p>
+ * The latest failures are kept in a {@link FailureRing}, which holds their reasons and stack traces, but not the
+ * Throwables. Failures are grouped by the fingerprint of their stack traces, whose counts are reported by
+ * {@link #getFailedFingerprints()}.<p>
+ * The counts, totals, min, max and latest values are saved and restored by a {@link PersistentStateFile}, if one is
+ * installed. The rates, percentiles and failures start afresh.
  *
  * @author morten.hattesen@gmail.com
  */
 @MBean(objectName = "org.softee:type=org.softee.MessagingMBean,name=Default")
 @Description("Generic MBean for monitoring input/output processing")
-public class MessagingMBean extends AbstractMBean {
+public class MessagingMBean extends AbstractMBean implements SnapshotSupport, PersistentState {
+    /** Durations above one hour are counted as one hour by the duration histogram */
+    private static final long HISTOGRAM_HIGHEST_NANOS = TimeUnit.HOURS.toNanos(1);
+    /** 16 buckets per power of two: reported percentiles are within 3.125% of the true value, see {@link Histogram} */
+    private static final int HISTOGRAM_SUB_BUCKET_BITS = 4;
+
+    /** The sliding window of the XxxCountLastMinute attributes */
+    private static final int RATE_WINDOW_SECONDS = 60;
+
+    /** The version of the layout of {@link #saveState()} */
+    private static final long STATE_VERSION = 1;
+    private static final int STATE_LENGTH = 12;
+
+    /** The number of failures reported by {@link #getFailedRecent()} */
+    private static final int FAILURE_RING_SIZE = 64;
+    /** The number of distinct stack traces counted and kept */
+    private static final int MAX_FINGERPRINTS = 128;
+
+    private static final String[] RECENT_ITEMS = {"sequence", "time", "fingerprint", "reason"};
+    private static final TabularType RECENT_TYPE = tabularType("FailedRecent", "Recent failures", RECENT_ITEMS,
+            RECENT_ITEMS,
+            new OpenType<?>[] {SimpleType.LONG, SimpleType.DATE, SimpleType.STRING, SimpleType.STRING}, "sequence");
+    private static final String[] FINGERPRINT_ITEMS = {"fingerprint", "count", "latest", "reason"};
+    private static final TabularType FINGERPRINT_TYPE = tabularType("FailedFingerprints",
+            "Failures by stack trace fingerprint", FINGERPRINT_ITEMS,
+            new String[] {"fingerprint", "count", "time of the latest failure", "reason of the first failure"},
+            new OpenType<?>[] {SimpleType.STRING, SimpleType.LONG, SimpleType.DATE, SimpleType.STRING}, "fingerprint");
+
+    private static final int P50 = 1;
+    private static final int P90 = 1 << 1;
+    private static final int P99 = 1 << 2;
+    private static final int P999 = 1 << 3;
 
-    private AtomicLong inputCount;
-    private AtomicLong inputLatest;
+    /**
+     * The start times ({@link #nanoTime()}) of the messages being processed by each thread, by MBean. Shared by all
+     * instances, so the number of MBeans doesn't grow the ThreadLocalMap of each thread.
+     */
+    private static final ThreadLocal<InputStarts> INPUT_STARTS = new ThreadLocal<InputStarts>() {
+        @Override
+        protected InputStarts initialValue() {
+            return new InputStarts();
+        }
+    };
 
-    private AtomicLong outputCount;
-    private AtomicLong outputLatest;
+    /**
+     * The values pinned by {@link #beginSnapshot()} for the calling thread, the latest first, or null. Shared by all
+     * instances, like {@link #INPUT_STARTS}.
+     */
+    private static final ThreadLocal<PinnedValues> PINNED = new ThreadLocal<PinnedValues>();
 
-    private TimeUnit durationUnit;
-    private AtomicLong durationLatest;
-    private AtomicLong durationTotal;
-    private AtomicLong durationMax;
-    private AtomicLong durationMin;
+    private volatile TimeUnit durationUnit;
+    private volatile boolean percentilesResetOnRead;
 
-    private AtomicLong failedCount;
-    private AtomicLong failedLatest;
-    private Throwable failedLatestCause;
+    /**
+     * Replaced as a whole when the MBean is reset, so a reset never leaves a mix of old and new values
+     */
+    private volatile Counters counters;
 
     public MessagingMBean() throws MalformedObjectNameException {
         super();
@@ -61,20 +122,39 @@ public class MessagingMBean extends AbstractMBean {
     }
 
     /**
-     * Notify that a message has been input, and processing will begin
+     * Notify that a message has been input, and processing will begin.<p>
+     * The start time is recorded for the calling thread, so that a subsequent call to {@link #notifyOutput()} from the
+     * same thread measures the processing duration of this message, even when other threads process messages
+     * concurrently. A thread keeps the start times of the messages of a few MBeans at a time; use
+     * {@link #notifyInputStart()} when a thread interleaves the messages of many MBeans.
      */
-    public synchronized void notifyInput() {
-        inputCount.incrementAndGet();
-        inputLatest.set(now());
+    public void notifyInput() {
+        INPUT_STARTS.get().put(this, input());
+    }
+
+    /**
+     * Notify that a message has been input, and processing will begin.<p>
+     * Use this method, rather than {@link #notifyInput()}, when a message is not processed by the thread that receives
+     * it. The returned token is a primitive, so this method doesn't allocate.
+     * @return a token that identifies the start of processing, to be passed to {@link #notifyOutputSince(long)}
+     */
+    public long notifyInputStart() {
+        return input();
     }
 
     /**
      * Notify that a message has been successfully processed (output), and automatically set the processing duration
-     * to the duration since the most recent call to {@link #notifyInput()}.
-     * The duration will be invalid this MBean is notified from multiple threads.
+     * to the duration since the most recent call to {@link #notifyInput()} by the calling thread.<p>
+     * If the calling thread hasn't called {@link #notifyInput()}, the duration is measured from the most recent call
+     * by any thread, which is only valid if messages are processed one at a time.
      */
-    public synchronized void notifyOutput() {
-        long latest = inputLatest.get();
+    public void notifyOutput() {
+        long startNanos = INPUT_STARTS.get().remove(this);
+        if (startNanos != NONE) {
+            notifyOutput(nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+        long latest = counters.inputLatest.get();
         if (latest == NONE) {
             /* This can only be caused by...
              * 1. notifyStop() without preceding notifyStart()
@@ -86,6 +166,35 @@ public class MessagingMBean extends AbstractMBean {
         }
     }
 
+    /**
+     * Notify that a message has been successfully processed (output), and set the processing duration to the
+     * duration since the message was input
+     * @param startToken the token returned by {@link #notifyInputStart()} when the message was input
+     */
+    public void notifyOutputSince(long startToken) {
+        notifyOutput(nanoTime() - startToken, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Notify that a message has been successfully processed (output), and set the processing duration to the time
+     * elapsed on {@code stopWatch}, which is stopped
+     * @param stopWatch a watch started when processing of the message began, e.g. {@link StopWatch#forThread()}
+     */
+    public void notifyOutput(StopWatch stopWatch) {
+        stopWatch.stop();
+        notifyOutput(stopWatch.elapsedNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the start token of the input message
+     */
+    private long input() {
+        Counters c = counters;
+        long now = now();
+        c.input.mark(now);
+        max(c.inputLatest, now);
+        return nanoTime();
+    }
 
     /**
      * Notify that a message has been successfully processed (output)
@@ -93,7 +202,7 @@ public class MessagingMBean extends AbstractMBean {
      * @Deprecated Use notifyOutput(long, TimeUnit)
      */
     @Deprecated
-    public synchronized void notifyOutput(long durationMillis) {
+    public void notifyOutput(long durationMillis) {
         notifyOutput(durationMillis, TimeUnit.MILLISECONDS);
     }
 
@@ -106,29 +215,24 @@ public class MessagingMBean extends AbstractMBean {
     public void notifyOutput(long inDuration, TimeUnit inUnit) {
         // convert incoming duration to the unit we work with
         long workDuration = durationUnit.convert(inDuration, inUnit);
-        outputLatest.set(now());
-        outputCount.incrementAndGet();
+        Counters c = counters;
+        long now = now();
+        max(c.outputLatest, now);
+        c.output.mark(now);
 
         if (workDuration >= 0) {
-            durationLatest.set(workDuration);
-            durationTotal.addAndGet(workDuration);
-
-            Long minMillis = getDurationMin();
-            if ((minMillis == null) || (minMillis != null && workDuration < minMillis)) {
-                durationMin.set(workDuration);
-            }
-
-            Long maxMillis = getDurationMax();
-            if ((maxMillis == null) || (workDuration > maxMillis)) {
-                durationMax.set(workDuration);
-            }
+            c.durationLatest.set(workDuration);
+            c.durationTotal.add(workDuration);
+            c.durationHistogram.record(inUnit.toNanos(inDuration));
+            min(c.durationMin, workDuration);
+            max(c.durationMax, workDuration);
         }
     }
 
     /**
      * Notify that the processing of a message has failed - no cause
      */
-    public synchronized void notifyFailed() {
+    public void notifyFailed() {
         notifyFailed(null);
     }
 
@@ -136,10 +240,14 @@ public class MessagingMBean extends AbstractMBean {
      * Notify that the processing of a message has failed
      * @param cause The cause of the failure, or null if no cause is available
      */
-    public synchronized void notifyFailed(Throwable cause) {
-        failedCount.incrementAndGet();
-        failedLatest.set(now());
-        failedLatestCause = cause;
+    public void notifyFailed(Throwable cause) {
+        Counters c = counters;
+        long now = now();
+        c.failed.mark(now);
+        max(c.failedLatest, now);
+        c.failures.record(now, cause);
+        // processing of the calling thread's message has ended
+        INPUT_STARTS.get().remove(this);
     }
 
     /**
@@ -155,51 +263,162 @@ public class MessagingMBean extends AbstractMBean {
     @Override
     @ManagedOperation(Impact.ACTION)
     @Description("Reset this MBean's metrics")
-    public synchronized void resetMBean() {
+    public void resetMBean() {
         super.resetMBean();
-        inputLatest = none();
-        outputLatest = none();
-        failedLatest = none();
-        failedLatestCause = null;
-        inputCount = zero();
-        outputCount = zero();
-        failedCount = zero();
         durationUnit = TimeUnit.MILLISECONDS;
-        durationLatest = none();
-        durationMin = none();
-        durationMax = none();
-        durationTotal = zero();
+        counters = new Counters(now());
     }
 
 
+    /**
+     * Pin the current values for the calling thread, until {@link #endSnapshot()}
+     */
+    @Override
+    public void beginSnapshot() {
+        PINNED.set(new PinnedValues(this, counters, PINNED.get()));
+    }
+
+    @Override
+    public void endSnapshot() {
+        PinnedValues head = PINNED.get();
+        if (head == null) {
+            return;
+        }
+        if (head.owner == this) {
+            // set rather than removed, so the next snapshot doesn't allocate a ThreadLocalMap entry
+            PINNED.set(head.previous);
+            return;
+        }
+        for (PinnedValues values = head; values.previous != null; values = values.previous) {
+            if (values.previous.owner == this) {
+                values.previous = values.previous.previous;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public long[] saveState() {
+        Counters c = counters;
+        return new long[] {STATE_VERSION, durationUnit.ordinal(),
+                c.inputCount(), c.inputLatest(), c.outputCount(), c.outputLatest(),
+                c.durationLatest(), c.durationTotal(), c.durationMin(), c.durationMax(),
+                c.failedCount(), c.failedLatest()};
+    }
+
+    /**
+     * Restore a state saved by {@link #saveState()}. A state of another version is ignored.
+     */
+    @Override
+    public void restoreState(long[] state) {
+        if (state.length != STATE_LENGTH || state[0] != STATE_VERSION
+                || state[1] < 0 || state[1] >= TimeUnit.values().length) {
+            return;
+        }
+        durationUnit = TimeUnit.values()[(int) state[1]];
+        counters = new Counters(now(), state);
+    }
+
+    /**
+     * @return the values pinned for the calling thread, or the current values
+     */
+    private Values values() {
+        for (PinnedValues values = PINNED.get(); values != null; values = values.previous) {
+            if (values.owner == this) {
+                return values;
+            }
+        }
+        return counters;
+    }
+
     @ManagedAttribute @Description("Number of messages received")
     public long getInputCount() {
-        return inputCount.get();
+        return values().inputCount();
+    }
+
+    @ManagedAttribute @Description("Messages received per second, one minute moving average")
+    public double getInputRate1m() {
+        return counters.input.getRate1m(now());
+    }
+
+    @ManagedAttribute @Description("Messages received per second, five minute moving average")
+    public double getInputRate5m() {
+        return counters.input.getRate5m(now());
+    }
+
+    @ManagedAttribute @Description("Messages received per second, fifteen minute moving average")
+    public double getInputRate15m() {
+        return counters.input.getRate15m(now());
+    }
+
+    @ManagedAttribute @Description("Messages received within the last 60 seconds")
+    public long getInputCountLastMinute() {
+        return counters.input.getWindowCount(now());
     }
 
     @ManagedAttribute @Description("Time of last received message")
     public XMLGregorianCalendar getInputLatest() {
-        return date(noneAsNull(inputLatest));
+        return date(noneAsNull(values().inputLatest()));
+    }
+
+    @ManagedAttribute @Description("Time of the last received message, as an ISO 8601 string in UTC")
+    public String getInputLatestIso() {
+        return iso(noneAsNull(values().inputLatest()));
+    }
+
+    @ManagedAttribute @Description("Time of the last received message, in milliseconds since the epoch")
+    public Long getInputLatestMillis() {
+        return noneAsNull(values().inputLatest());
     }
 
     @ManagedAttribute @Description("Time since latest received message (seconds)")
     public Long getInputLatestAgeSeconds() {
-        return age(noneAsNull(inputLatest), SECONDS);
+        return age(noneAsNull(values().inputLatest()), SECONDS);
     }
 
     @ManagedAttribute @Description("Number of processed messages")
     public long getOutputCount() {
-        return outputCount.get();
+        return values().outputCount();
+    }
+
+    @ManagedAttribute @Description("Messages processed per second, one minute moving average")
+    public double getOutputRate1m() {
+        return counters.output.getRate1m(now());
+    }
+
+    @ManagedAttribute @Description("Messages processed per second, five minute moving average")
+    public double getOutputRate5m() {
+        return counters.output.getRate5m(now());
+    }
+
+    @ManagedAttribute @Description("Messages processed per second, fifteen minute moving average")
+    public double getOutputRate15m() {
+        return counters.output.getRate15m(now());
+    }
+
+    @ManagedAttribute @Description("Messages processed within the last 60 seconds")
+    public long getOutputCountLastMinute() {
+        return counters.output.getWindowCount(now());
     }
 
     @ManagedAttribute @Description("Time of the latest processed message")
     public XMLGregorianCalendar getOutputLatest() {
-        return date(noneAsNull(outputLatest));
-   }
+        return date(noneAsNull(values().outputLatest()));
+    }
+
+    @ManagedAttribute @Description("Time of the latest processed message, as an ISO 8601 string in UTC")
+    public String getOutputLatestIso() {
+        return iso(noneAsNull(values().outputLatest()));
+    }
+
+    @ManagedAttribute @Description("Time of the latest processed message, in milliseconds since the epoch")
+    public Long getOutputLatestMillis() {
+        return noneAsNull(values().outputLatest());
+    }
 
     @ManagedAttribute @Description("Time since latest processed message (seconds)")
     public Long getOutputLatestAgeSeconds() {
-        return age(noneAsNull(outputLatest), SECONDS);
+        return age(noneAsNull(values().outputLatest()), SECONDS);
     }
 
     /**
@@ -242,12 +461,12 @@ public class MessagingMBean extends AbstractMBean {
 
      @ManagedAttribute @Description("Processing time of the latest message (ms)")
     public Long getDurationLatest() {
-        return noneAsNull(durationLatest);
+        return noneAsNull(values().durationLatest());
     }
 
     @ManagedAttribute @Description("Total processing time of all messages (ms)")
     public long getDurationTotal() {
-        return durationTotal.get();
+        return values().durationTotal();
     }
 
     @ManagedAttribute @Description("Average processing time (ms)")
@@ -259,59 +478,443 @@ public class MessagingMBean extends AbstractMBean {
 
     @ManagedAttribute @Description("Min processing time (ms)")
     public Long getDurationMin() {
-        return noneAsNull(durationMin);
+        return noneAsNull(values().durationMin());
     }
 
     @ManagedAttribute @Description("Max processing time (ms)")
     public Long getDurationMax() {
-        return noneAsNull(durationMax);
+        return noneAsNull(values().durationMax());
+    }
+
+    @ManagedAttribute @Description("Median processing time (ms)")
+    public Long getDurationP50() {
+        return durationPercentile(P50, 0.5);
+    }
+
+    @ManagedAttribute @Description("90th percentile processing time (ms)")
+    public Long getDurationP90() {
+        return durationPercentile(P90, 0.9);
+    }
+
+    @ManagedAttribute @Description("99th percentile processing time (ms)")
+    public Long getDurationP99() {
+        return durationPercentile(P99, 0.99);
+    }
+
+    @ManagedAttribute @Description("99.9th percentile processing time (ms)")
+    public Long getDurationP999() {
+        return durationPercentile(P999, 0.999);
+    }
+
+    public boolean isPercentilesResetOnRead() {
+        return percentilesResetOnRead;
+    }
+
+    /**
+     * @param percentilesResetOnRead true if the percentiles should only cover the messages processed since the
+     * percentiles were previously read. Each percentile attribute may be read once per interval; reading a
+     * percentile that has already been read starts a new interval. Note that the counts of the current interval are
+     * lost when switching back to false.
+     */
+    @ManagedAttribute @Description("If true, the percentiles cover the interval since they were last read (reset-on-read), "
+            + "otherwise all messages since the MBean was reset")
+    public void setPercentilesResetOnRead(boolean percentilesResetOnRead) {
+        this.percentilesResetOnRead = percentilesResetOnRead;
+    }
+
+    /**
+     * @param percentile the bit identifying the percentile in the interval read mask
+     */
+    private Long durationPercentile(int percentile, double quantile) {
+        Histogram.Snapshot snapshot = percentilesResetOnRead ? counters.intervalSnapshot(percentile)
+                : values().durationSnapshot();
+        if (snapshot.getTotalCount() == 0) {
+            return null;
+        }
+        return durationUnit.convert(snapshot.getValueAtQuantile(quantile), TimeUnit.NANOSECONDS);
     }
 
     @ManagedAttribute @Description("Number of processes that failed")
     public long getFailedCount() {
-        return failedCount.get();
+        return values().failedCount();
+    }
+
+    @ManagedAttribute @Description("Failed messages per second, one minute moving average")
+    public double getFailedRate1m() {
+        return counters.failed.getRate1m(now());
+    }
+
+    @ManagedAttribute @Description("Failed messages per second, five minute moving average")
+    public double getFailedRate5m() {
+        return counters.failed.getRate5m(now());
+    }
+
+    @ManagedAttribute @Description("Failed messages per second, fifteen minute moving average")
+    public double getFailedRate15m() {
+        return counters.failed.getRate15m(now());
+    }
+
+    @ManagedAttribute @Description("Failed messages within the last 60 seconds")
+    public long getFailedCountLastMinute() {
+        return counters.failed.getWindowCount(now());
     }
 
     @ManagedAttribute @Description("Time of the latest failed message processing")
     public XMLGregorianCalendar getFailedLatest() {
-        return date(noneAsNull(failedLatest));
+        return date(noneAsNull(values().failedLatest()));
+    }
+
+    @ManagedAttribute @Description("Time of the latest failed message processing, as an ISO 8601 string in UTC")
+    public String getFailedLatestIso() {
+        return iso(noneAsNull(values().failedLatest()));
+    }
+
+    @ManagedAttribute @Description("Time of the latest failed message processing, in milliseconds since the epoch")
+    public Long getFailedLatestMillis() {
+        return noneAsNull(values().failedLatest());
     }
 
     @ManagedAttribute @Description("Time since latest failed message processing (seconds)")
     public Long getFailedLatestAgeSeconds() {
-        return age(noneAsNull(failedLatest), SECONDS);
+        return age(noneAsNull(values().failedLatest()), SECONDS);
     }
 
     @ManagedAttribute @Description("The failure reason of the latest failed message processing")
     public String getFailedLatestReason() {
-        if (failedLatestCause == null) {
-            return null;
-        }
-        return failedLatestCause.toString();
+        Failure failure = values().failedLatestFailure();
+        return (failure != null) ? failure.getReason() : null;
     }
 
     /**
      * TODO Presentation of multi-line content isn't elegant. But in the JConsole, by double-clocking on a String array,
      * the elements will be presented one-per-line.<p>
-     * If required, look into presenting in a composite or tabular form (see {@link javax.management.MXBean}
+     * The stack trace is rendered once per fingerprint, see {@link Failure#getStacktrace()}
      */
     @ManagedAttribute @Description("The failure stacktrace of the latest failed message processing (one line per element)")
     public String[] getFailedLatestStacktrace() {
-        if (failedLatestCause == null) {
-            return null;
+        Failure failure = values().failedLatestFailure();
+        return (failure != null) ? failure.getStacktrace() : null;
+    }
+
+    @ManagedAttribute @Description("The latest failures, with the fingerprints of their stack traces")
+    public TabularData getFailedRecent() {
+        TabularDataSupport table = new TabularDataSupport(RECENT_TYPE);
+        for (Failure failure : counters.failures.failures()) {
+            Fingerprint fingerprint = failure.getFingerprint();
+            put(table, RECENT_ITEMS, failure.getSequence(), new Date(failure.getTimeMillis()),
+                    (fingerprint != null) ? fingerprint.getId() : null, failure.getReason());
+        }
+        return table;
+    }
+
+    @ManagedAttribute @Description("Per stack trace fingerprint: the failure count, latest time and first reason")
+    public TabularData getFailedFingerprints() {
+        TabularDataSupport table = new TabularDataSupport(FINGERPRINT_TYPE);
+        for (Fingerprint fingerprint : counters.failures.fingerprints()) {
+            put(table, FINGERPRINT_ITEMS, fingerprint.getId(), fingerprint.getCount(),
+                    new Date(fingerprint.getLatestMillis()), fingerprint.getReason());
         }
-        StringWriter sw = new StringWriter();
-        failedLatestCause.printStackTrace(new PrintWriter(sw));
-        ArrayList<String> lines = new ArrayList<String>(1000);
-        BufferedReader reader = new BufferedReader(new StringReader(sw.toString()));
-        String line;
+        return table;
+    }
+
+    @ManagedAttribute @Description("Number of failures whose stack traces were not kept, since too many distinct ones occurred")
+    public long getFailedUntrackedCount() {
+        return counters.failures.getUntrackedCount();
+    }
+
+    @ManagedOperation(Impact.INFO)
+    @Description("The stacktrace of the first failure with a fingerprint (one line per element)")
+    public String[] getFailedStacktrace(@Parameter("fingerprint") String fingerprint) {
+        Fingerprint found = counters.failures.fingerprint(fingerprint);
+        return (found != null) ? found.getStacktrace() : null;
+    }
+
+    private static void put(TabularDataSupport table, String[] items, Object... values) {
         try {
-            while ((line = reader.readLine()) != null) {
-                lines.add(line);
+            table.put(new CompositeDataSupport(table.getTabularType().getRowType(), items, values));
+        } catch (OpenDataException e) {
+            // impossible: the values match the row type
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static TabularType tabularType(String name, String description, String[] items, String[] descriptions,
+            OpenType<?>[] types, String index) {
+        try {
+            CompositeType rowType = new CompositeType(name + "Row", description, items, descriptions, types);
+            return new TabularType(name, description, rowType, new String[] {index});
+        } catch (OpenDataException e) {
+            // impossible: the types are constant
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The metrics of this MBean. Counts ({@link Meter}) and totals are striped ({@link LongAdder}), so that
+     * notifications from many threads don't contend. Min, max and latest timestamps are updated by compare-and-set. Durations are also
+     * recorded, in nanoseconds, in a fixed-size histogram from which the percentiles are computed.
+     */
+    private static final class Counters implements Values {
+        final Meter input;
+        final AtomicLong inputLatest = new AtomicLong(NONE);
+
+        final Meter output;
+        final AtomicLong outputLatest = new AtomicLong(NONE);
+
+        final AtomicLong durationLatest = new AtomicLong(NONE);
+        final LongAdder durationTotal = new LongAdder();
+        final AtomicLong durationMax = new AtomicLong(NONE);
+        final AtomicLong durationMin = new AtomicLong(NONE);
+
+        final Histogram durationHistogram = new Histogram(HISTOGRAM_HIGHEST_NANOS, HISTOGRAM_SUB_BUCKET_BITS);
+
+        final Meter failed;
+        final AtomicLong failedLatest = new AtomicLong(NONE);
+        final FailureRing failures = new FailureRing(FAILURE_RING_SIZE, MAX_FINGERPRINTS);
+
+        Counters(long now) {
+            input = new Meter(RATE_WINDOW_SECONDS, now);
+            output = new Meter(RATE_WINDOW_SECONDS, now);
+            failed = new Meter(RATE_WINDOW_SECONDS, now);
+        }
+
+        /**
+         * @param state a state saved by {@link MessagingMBean#saveState()}
+         */
+        Counters(long now, long[] state) {
+            int i = 2;
+            input = new Meter(RATE_WINDOW_SECONDS, now, state[i++]);
+            inputLatest.set(state[i++]);
+            output = new Meter(RATE_WINDOW_SECONDS, now, state[i++]);
+            outputLatest.set(state[i++]);
+            durationLatest.set(state[i++]);
+            durationTotal.add(state[i++]);
+            durationMin.set(state[i++]);
+            durationMax.set(state[i++]);
+            failed = new Meter(RATE_WINDOW_SECONDS, now, state[i++]);
+            failedLatest.set(state[i++]);
+        }
+
+        public long inputCount() {
+            return input.getCount();
+        }
+
+        public long inputLatest() {
+            return inputLatest.get();
+        }
+
+        public long outputCount() {
+            return output.getCount();
+        }
+
+        public long outputLatest() {
+            return outputLatest.get();
+        }
+
+        public long durationLatest() {
+            return durationLatest.get();
+        }
+
+        public long durationTotal() {
+            return durationTotal.sum();
+        }
+
+        public long durationMin() {
+            return durationMin.get();
+        }
+
+        public long durationMax() {
+            return durationMax.get();
+        }
+
+        public Histogram.Snapshot durationSnapshot() {
+            return durationHistogram.snapshot();
+        }
+
+        public long failedCount() {
+            return failed.getCount();
+        }
+
+        public long failedLatest() {
+            return failedLatest.get();
+        }
+
+        public Failure failedLatestFailure() {
+            return failures.latest();
+        }
+
+        /** the current percentile interval, guarded by this */
+        private Histogram.Snapshot interval;
+        /** the percentiles that have been read from the current interval, guarded by this */
+        private int intervalRead;
+
+        /**
+         * @return the snapshot of the current percentile interval, or of a new interval if {@code percentile} has
+         * already been read from the current one
+         */
+        synchronized Histogram.Snapshot intervalSnapshot(int percentile) {
+            if (interval == null || (intervalRead & percentile) != 0) {
+                interval = durationHistogram.intervalSnapshot();
+                intervalRead = 0;
             }
-        } catch (IOException ignore) {
-            // Impossible
+            intervalRead |= percentile;
+            return interval;
+        }
+    }
+
+    /**
+     * The values reported by the attribute getters
+     */
+    private interface Values {
+        long inputCount();
+        long inputLatest();
+        long outputCount();
+        long outputLatest();
+        long durationLatest();
+        long durationTotal();
+        long durationMin();
+        long durationMax();
+        Histogram.Snapshot durationSnapshot();
+        long failedCount();
+        long failedLatest();
+        Failure failedLatestFailure();
+    }
+
+    /**
+     * The start times of the messages being processed by one thread, of the few MBeans it has most recently notified
+     * of input. Beyond those, the start times are replaced in turn, and the output of a message whose start time was
+     * replaced is measured as if {@link MessagingMBean#notifyInput()} hadn't been called. Confined to one thread.
+     */
+    private static final class InputStarts {
+        private static final int SIZE = 8;
+
+        private final MessagingMBean[] owners = new MessagingMBean[SIZE];
+        private final long[] starts = new long[SIZE];
+        /** the slot to replace when all are taken */
+        private int next;
+
+        void put(MessagingMBean owner, long start) {
+            int free = -1;
+            for (int i = 0; i < SIZE; i++) {
+                if (owners[i] == owner) {
+                    starts[i] = start;
+                    return;
+                }
+                if (free < 0 && owners[i] == null) {
+                    free = i;
+                }
+            }
+            if (free < 0) {
+                free = next;
+                next = (next + 1) % SIZE;
+            }
+            owners[free] = owner;
+            starts[free] = start;
+        }
+
+        /**
+         * @return the start time of the message of {@code owner}, which is removed, or NONE if there is none
+         */
+        long remove(MessagingMBean owner) {
+            for (int i = 0; i < SIZE; i++) {
+                if (owners[i] == owner) {
+                    owners[i] = null;
+                    return starts[i];
+                }
+            }
+            return NONE;
+        }
+    }
+
+    /**
+     * A copy of the values, read in one pass and confined to one thread. Totals are read before the counts they are
+     * averaged over, so a message being notified concurrently can only lower, never inflate, the average.
+     * The histogram is copied when a percentile is first read.
+     */
+    private static final class PinnedValues implements Values {
+        final MessagingMBean owner;
+        /** the values pinned before these by the same thread, of another MBean, or null */
+        PinnedValues previous;
+        private final Values source;
+        private final long durationTotal;
+        private final long durationLatest;
+        private final long durationMin;
+        private final long durationMax;
+        private final long outputLatest;
+        private final long outputCount;
+        private final long inputLatest;
+        private final long inputCount;
+        private final long failedLatest;
+        private final long failedCount;
+        private final Failure failedLatestFailure;
+        private Histogram.Snapshot durationSnapshot;
+
+        PinnedValues(MessagingMBean owner, Values source, PinnedValues previous) {
+            this.owner = owner;
+            this.previous = previous;
+            this.source = source;
+            durationTotal = source.durationTotal();
+            durationLatest = source.durationLatest();
+            durationMin = source.durationMin();
+            durationMax = source.durationMax();
+            outputLatest = source.outputLatest();
+            outputCount = source.outputCount();
+            inputLatest = source.inputLatest();
+            inputCount = source.inputCount();
+            failedLatest = source.failedLatest();
+            failedCount = source.failedCount();
+            failedLatestFailure = source.failedLatestFailure();
+        }
+
+        public long inputCount() {
+            return inputCount;
+        }
+
+        public long inputLatest() {
+            return inputLatest;
+        }
+
+        public long outputCount() {
+            return outputCount;
+        }
+
+        public long outputLatest() {
+            return outputLatest;
+        }
+
+        public long durationLatest() {
+            return durationLatest;
+        }
+
+        public long durationTotal() {
+            return durationTotal;
+        }
+
+        public long durationMin() {
+            return durationMin;
+        }
+
+        public long durationMax() {
+            return durationMax;
+        }
+
+        public Histogram.Snapshot durationSnapshot() {
+            if (durationSnapshot == null) {
+                durationSnapshot = source.durationSnapshot();
+            }
+            return durationSnapshot;
+        }
+
+        public long failedCount() {
+            return failedCount;
+        }
+
+        public long failedLatest() {
+            return failedLatest;
+        }
+
+        public Failure failedLatestFailure() {
+            return failedLatestFailure;
         }
-        return lines.toArray(new String[lines.size()]);
     }
 }
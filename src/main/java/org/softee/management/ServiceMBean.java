@@ -1,68 +1,129 @@
 package org.softee.management;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.softee.management.ServiceMBean.State.FAILED;
 import static org.softee.management.ServiceMBean.State.NEW;
 import static org.softee.management.ServiceMBean.State.PAUSED;
 import static org.softee.management.ServiceMBean.State.RUNNING;
 import static org.softee.management.ServiceMBean.State.STARTING;
 import static org.softee.management.ServiceMBean.State.STOPPED;
+import static org.softee.management.ServiceMBean.State.STOPPING;
+import static org.softee.management.ServiceMBean.State.TERMINATED;
 
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.softee.management.annotation.Description;
 import org.softee.management.annotation.ManagedAttribute;
 import org.softee.management.annotation.ManagedOperation;
+import org.softee.time.Clock;
 
-
+/**
+ * A service with a managed lifecycle.<p>
+ *
+ * The state changes as allowed by {@link State#getAllowed()}. Every change is a single compare-and-set, so concurrent
+ * operations on a service never leave it in a state that isn't allowed, and never block each other: of two
+ * conflicting operations, one succeeds, and the other throws an {@link IllegalStateException}.<p>
+ *
+ * {@link #start()} and {@link #stop()} call {@link #doStart()} and {@link #doStop()}, which may complete
+ * asynchronously, by calling {@link #notifyStarted()}, {@link #notifyStopped()} or {@link #notifyFailed(Throwable)}
+ * later, from any thread.<p>
+ *
+ * The time spent in each state is available as attributes, and registered {@link Listener}s are told about every
+ * state change.
+ *
+ * @author morten.hattesen@gmail.com
+ */
 public class ServiceMBean {
     public static enum State {
         NEW {
             @Override
-            protected Set<State> getAllowed() {
+            Set<State> allowed() {
                 return EnumSet.of(STARTING, RUNNING, STOPPED, FAILED, TERMINATED);
             }
         },
         STARTING {
             @Override
-            protected Set<State> getAllowed() {
-                return EnumSet.of(RUNNING, STOPPED, FAILED, TERMINATED);
+            Set<State> allowed() {
+                return EnumSet.of(RUNNING, STOPPING, STOPPED, FAILED, TERMINATED);
             }
         },
         RUNNING {
             @Override
-            protected Set<State> getAllowed() {
-                return EnumSet.of(PAUSED, STOPPED, FAILED, TERMINATED);
+            Set<State> allowed() {
+                return EnumSet.of(PAUSED, STOPPING, STOPPED, FAILED, TERMINATED);
             }
         },
         PAUSED {
             @Override
-            protected Set<State> getAllowed() {
-                return EnumSet.of(RUNNING, STOPPED, FAILED, TERMINATED);
+            Set<State> allowed() {
+                return EnumSet.of(RUNNING, STOPPING, STOPPED, FAILED, TERMINATED);
+            }
+        },
+        STOPPING {
+            @Override
+            Set<State> allowed() {
+                return EnumSet.of(STOPPED, FAILED, TERMINATED);
             }
         },
         STOPPED {
             @Override
-            protected Set<State> getAllowed() {
+            Set<State> allowed() {
                 return EnumSet.of(RUNNING, FAILED, TERMINATED);
             }
         },
         FAILED {
             @Override
-            protected Set<State> getAllowed() {
+            Set<State> allowed() {
                 return EnumSet.of(TERMINATED);
             }
         }, TERMINATED {
             @Override
-            protected Set<State> getAllowed() {
+            Set<State> allowed() {
                 return EnumSet.noneOf(State.class);
             }
         };
 
-        protected abstract Set<State> getAllowed();
+        private static final State[] VALUES = values();
+
+        static {
+            for (State state : VALUES) {
+                Set<State> allowed = state.allowed();
+                state.allowed = Collections.unmodifiableSet(allowed);
+                for (State next : allowed) {
+                    state.allowedMask |= 1 << next.ordinal();
+                }
+            }
+        }
+
+        /** set once, when the enum is initialized */
+        private Set<State> allowed;
+        private int allowedMask;
+
+        /**
+         * @return the states this state may change to; called once per state
+         */
+        abstract Set<State> allowed();
+
+        /**
+         * @return the states this state may change to (unmodifiable)
+         */
+        public Set<State> getAllowed() {
+            return allowed;
+        }
+
+        public boolean isAllowed(State next) {
+            return (allowedMask & (1 << next.ordinal())) != 0;
+        }
 
         public State next(State next) {
-            Set<State> allowed = getAllowed();
-            if (!allowed.contains(next)) {
+            if (!isAllowed(next)) {
                 throw new IllegalArgumentException("Unable to change state from " + this
                         + " to " + next + " (allowed: " + allowed + ")");
             }
@@ -70,26 +131,133 @@ public class ServiceMBean {
         }
     }
 
-    private final AtomicReference<State> state = new AtomicReference<State>(NEW);
+    /**
+     * Told about the state changes of a service
+     */
+    public interface Listener {
+        /**
+         * Called by the thread that changed the state, after the change. Listeners of a service may be called by
+         * concurrent threads, if its state is changed by concurrent threads, so a listener may be told about a
+         * change after being told about the change that followed it. Use {@link ServiceMBean#getServiceState()} for
+         * the current state.
+         * @param service the service that changed state
+         * @param from the state before the change
+         * @param to the state after the change
+         */
+        void stateChanged(ServiceMBean service, State from, State to);
+    }
+
+    private final Clock clock;
+    private final AtomicReference<Transition> transition;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+    private volatile Throwable failureCause;
+
+    public ServiceMBean() {
+        this(Clock.getDefault());
+    }
+
+    /**
+     * @param clock the source of the time spent in each state
+     */
+    public ServiceMBean(Clock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("clock must not be null");
+        }
+        this.clock = clock;
+        transition = new AtomicReference<Transition>(new Transition(clock.nanoTime()));
+    }
 
     @ManagedAttribute
     public String getState() {
-        return state.toString();
+        return transition.get().state.toString();
+    }
+
+    public State getServiceState() {
+        return transition.get().state;
+    }
+
+    /**
+     * @return the cause passed to {@link #notifyFailed(Throwable)}, or null
+     */
+    public Throwable getFailureCause() {
+        return failureCause;
+    }
+
+    @ManagedAttribute @Description("The time spent in the current state, in milliseconds")
+    public long getStateMillis() {
+        Transition t = transition.get();
+        return MILLISECONDS.convert(clock.nanoTime() - t.enteredNanos, NANOSECONDS);
+    }
+
+    @ManagedAttribute @Description("The total time spent starting, in milliseconds")
+    public long getStartingMillis() {
+        return getTimeIn(STARTING, MILLISECONDS);
+    }
+
+    @ManagedAttribute @Description("The total time spent running, in milliseconds")
+    public long getRunningMillis() {
+        return getTimeIn(RUNNING, MILLISECONDS);
+    }
+
+    @ManagedAttribute @Description("The total time spent paused, in milliseconds")
+    public long getPausedMillis() {
+        return getTimeIn(PAUSED, MILLISECONDS);
+    }
+
+    @ManagedAttribute @Description("The total time spent stopping, in milliseconds")
+    public long getStoppingMillis() {
+        return getTimeIn(STOPPING, MILLISECONDS);
+    }
+
+    @ManagedAttribute @Description("The total time spent stopped, in milliseconds")
+    public long getStoppedMillis() {
+        return getTimeIn(STOPPED, MILLISECONDS);
     }
 
     /**
-     * Transition NEW -> STARTING
+     * @param state a state
+     * @param unit the unit of the returned time
+     * @return the total time spent in {@code state}, including the time spent so far if it's the current state
+     */
+    public long getTimeIn(State state, TimeUnit unit) {
+        Transition t = transition.get();
+        long nanos = t.totalNanos[state.ordinal()];
+        if (t.state == state) {
+            nanos += clock.nanoTime() - t.enteredNanos;
+        }
+        return unit.convert(nanos, NANOSECONDS);
+    }
+
+    public void addListener(Listener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Transition NEW -> STARTING, and call {@link #doStart()}
      */
     @ManagedOperation
     public void start() {
-        if(!state.compareAndSet(NEW, STARTING)) {
-            throw new IllegalStateException("Unable to start service with state " + state);
+        change(STARTING, NEW, "start");
+        try {
+            doStart();
+        } catch (RuntimeException e) {
+            notifyFailed(e);
+            throw e;
         }
-        doStart();
     }
 
     /**
-     * Override to implement actions to be taken to start a service.
+     * Override to implement actions to be taken to start a service. When the service has started, call
+     * {@link #notifyStarted()}, or {@link #notifyFailed(Throwable)} if it can't start. The default implementation
+     * calls {@link #notifyStarted()}.<p>
+     * A RuntimeException thrown by this method fails the service.
      */
     protected void doStart() {
         notifyStarted();
@@ -97,53 +265,128 @@ public class ServiceMBean {
 
     /**
      * Transition STARTING -> RUNNING
+     * @return true if the service was starting, false if the state was changed by another operation in the meantime
      */
-    protected void notifyStarted() {
-        //TODO
+    protected boolean notifyStarted() {
+        return change(RUNNING, STARTING) != null;
     }
 
     @ManagedOperation
     public void run() {
-        // state checking not atomic
-        switch (state.get()) {
-        case STARTING:
-        case PAUSED:
-        case STOPPED:
-        case FAILED:
-            state.set(RUNNING);
-            break;
-        default:
-            throw new IllegalStateException("Unable to run service with state " + state);
-        }
+        change(RUNNING, null, "run");
     }
 
     @ManagedOperation
     public void pause() {
-        if(!state.compareAndSet(RUNNING, PAUSED)) {
-            throw new IllegalStateException("Unable to pause service with state " + state);
-        }
+        change(PAUSED, RUNNING, "pause");
     }
 
     @ManagedOperation
     public void resume() {
-        if(!state.compareAndSet(PAUSED, RUNNING)) {
-            throw new IllegalStateException("Unable to resume service with state " + state);
-        }
+        change(RUNNING, PAUSED, "resume");
     }
 
+    /**
+     * Transition STARTING, RUNNING or PAUSED -> STOPPING, and call {@link #doStop()}
+     */
     @ManagedOperation
     public void stop() {
-        // non atomic state change
-        if(!(state.compareAndSet(PAUSED, STOPPED) || state.compareAndSet(RUNNING, STOPPED))) {
-            throw new IllegalStateException("Unable to resume service with state " + state);
+        change(STOPPING, null, "stop");
+        try {
+            doStop();
+        } catch (RuntimeException e) {
+            notifyFailed(e);
+            throw e;
         }
     }
 
+    /**
+     * Override to implement actions to be taken to stop a service. When the service has stopped, call
+     * {@link #notifyStopped()}, or {@link #notifyFailed(Throwable)} if it can't stop. The default implementation
+     * calls {@link #notifyStopped()}.<p>
+     * A RuntimeException thrown by this method fails the service.
+     */
+    protected void doStop() {
+        notifyStopped();
+    }
+
+    /**
+     * Transition STOPPING -> STOPPED
+     * @return true if the service was stopping, false if the state was changed by another operation in the meantime
+     */
+    protected boolean notifyStopped() {
+        return change(STOPPED, STOPPING) != null;
+    }
+
+    /**
+     * Transition to FAILED, from any state but TERMINATED
+     * @param cause the cause of the failure, or null
+     * @return false if the service had already failed or terminated
+     */
+    protected boolean notifyFailed(Throwable cause) {
+        if (getServiceState().isAllowed(FAILED)) {
+            failureCause = cause;
+        }
+        return change(FAILED, null) != null;
+    }
+
     @ManagedOperation
     public void terminate() {
-        if (state.get() == State.TERMINATED) {
-            throw new IllegalStateException("Unable to terminate service with state " + state);
+        change(TERMINATED, null, "terminate");
+    }
+
+    private void change(State to, State from, String operation) {
+        if (change(to, from) == null) {
+            throw new IllegalStateException("Unable to " + operation + " service with state " + getState());
+        }
+    }
+
+    /**
+     * @param to the new state
+     * @param from the state from which to change, or null for any state that allows {@code to}
+     * @return the state before the change, or null if the service wasn't in a state from which it may change to
+     * {@code to}
+     */
+    private State change(State to, State from) {
+        while (true) {
+            Transition current = transition.get();
+            if ((from != null && current.state != from) || !current.state.isAllowed(to)) {
+                return null;
+            }
+            if (transition.compareAndSet(current, new Transition(current, to, clock.nanoTime()))) {
+                for (Listener listener : listeners) {
+                    try {
+                        listener.stateChanged(this, current.state, to);
+                    } catch (RuntimeException ignore) {
+                        // a failing listener mustn't affect the service or the other listeners
+                    }
+                }
+                return current.state;
+            }
+        }
+    }
+
+    /**
+     * The current state, and the time spent in the previous states. Replaced as a whole by each state change, so
+     * readers always see consistent values.
+     */
+    private static final class Transition {
+        final State state;
+        final long enteredNanos;
+        /** the time spent in each state before entering this state, by ordinal */
+        final long[] totalNanos;
+
+        Transition(long nanoTime) {
+            state = NEW;
+            enteredNanos = nanoTime;
+            totalNanos = new long[State.VALUES.length];
+        }
+
+        Transition(Transition previous, State state, long nanoTime) {
+            this.state = state;
+            this.enteredNanos = nanoTime;
+            this.totalNanos = previous.totalNanos.clone();
+            this.totalNanos[previous.state.ordinal()] += nanoTime - previous.enteredNanos;
         }
-        state.set(State.TERMINATED);
     }
 }
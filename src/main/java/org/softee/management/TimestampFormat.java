@@ -0,0 +1,109 @@
+package org.softee.management;
+
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+/**
+ * The representations of the timestamp attributes of an {@link AbstractMBean}. Each timestamp is exposed as one
+ * attribute per representation, e.g. {@link AbstractMBean#getStarted()}, {@link AbstractMBean#getStartedIso()} and
+ * {@link AbstractMBean#getStartedMillis()}, so the type of an attribute doesn't depend on a setting.
+ */
+public enum TimestampFormat {
+    /**
+     * An {@link XMLGregorianCalendar} in the default time zone, with millisecond precision. A new calendar is created
+     * on every read.
+     */
+    XML_CALENDAR {
+        @Override
+        Object format(long millis) {
+            GregorianCalendar calendar = new GregorianCalendar();
+            calendar.setTimeInMillis(millis);
+            return DatatypeFactoryHolder.FACTORY.newXMLGregorianCalendar(calendar);
+        }
+    },
+
+    /**
+     * An ISO 8601 (XML datetime) string in UTC, with second precision, e.g. {@code 2011-05-17T10:34:56Z}. The strings
+     * of recently read seconds are cached, so repeated reads of a timestamp don't allocate.
+     */
+    ISO_8601 {
+        @Override
+        Object format(long millis) {
+            long second = Math.floorDiv(millis, 1000L);
+            int index = (int) (second & (IsoCache.SIZE - 1));
+            IsoCache entry = IsoCache.ENTRIES[index];
+            if (entry == null || entry.second != second) {
+                entry = new IsoCache(second);
+                IsoCache.ENTRIES[index] = entry;
+            }
+            return entry.text;
+        }
+    },
+
+    /**
+     * Milliseconds since the epoch, as a {@link Long}
+     */
+    EPOCH_MILLIS {
+        @Override
+        Object format(long millis) {
+            return millis;
+        }
+    };
+
+    /**
+     * @param millis milliseconds since the epoch
+     * @return {@code millis} in this format
+     */
+    abstract Object format(long millis);
+
+    /**
+     * @return the DatatypeFactory shared by all MBeans, and by the open type mapping of XMLGregorianCalendar
+     * attributes
+     */
+    public static DatatypeFactory datatypeFactory() {
+        return DatatypeFactoryHolder.FACTORY;
+    }
+
+    /**
+     * The DatatypeFactory shared by all MBeans. It is created on first use, since looking up the implementation is
+     * slow. The JDK implementation is stateless, and may be used by concurrent threads.
+     */
+    private static final class DatatypeFactoryHolder {
+        static final DatatypeFactory FACTORY;
+
+        static {
+            try {
+                FACTORY = DatatypeFactory.newInstance();
+            } catch (DatatypeConfigurationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * An ISO 8601 string of one second, in a direct mapped cache shared by all MBeans. Entries are immutable, so they
+     * may be replaced and read by concurrent threads without synchronization.
+     */
+    private static final class IsoCache {
+        static final int SIZE = 256;
+        static final IsoCache[] ENTRIES = new IsoCache[SIZE];
+        private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+        final long second;
+        final String text;
+
+        IsoCache(long second) {
+            this.second = second;
+            GregorianCalendar calendar = new GregorianCalendar(UTC);
+            calendar.setTimeInMillis(second * 1000L);
+            XMLGregorianCalendar date = DatatypeFactoryHolder.FACTORY.newXMLGregorianCalendar(calendar);
+            date.setMillisecond(DatatypeConstants.FIELD_UNDEFINED);
+            this.text = date.toXMLFormat();
+        }
+    }
+}
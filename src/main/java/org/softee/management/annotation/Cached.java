@@ -0,0 +1,34 @@
+package org.softee.management.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for an MBean attribute whose value is expensive to compute, e.g. by walking a queue or reading local
+ * storage, and may be served from a cache for a while.<p>
+ *
+ * May be applied to a getter that is also annotated with {@link ManagedAttribute}. The value is computed at most once
+ * per {@link #ttlMillis()}, however many clients poll the attribute: when the cached value has expired, one reader
+ * calls the getter, and concurrent readers are served the expired value meanwhile. Only the first read of the
+ * attribute waits for a concurrent call of the getter. An exception thrown by the getter isn't cached.<p>
+ *
+ * Such MBeans are introspected at runtime, see {@link org.softee.management.helper.IntrospectedDynamicMBean}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@Documented
+public @interface Cached {
+    /**
+     * @return the time for which a value is served from the cache, in milliseconds. Positive.
+     */
+    long ttlMillis();
+
+    /**
+     * @return true if an expired value should be refreshed by a background thread, and served until it has been, so
+     * that no reader but the first waits for the getter
+     */
+    boolean background() default false;
+}
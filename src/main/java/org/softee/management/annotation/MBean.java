@@ -29,4 +29,13 @@ public @interface MBean {
     String objectName() default "";
 
     AutomaticType[] automatic() default {};
+
+    /**
+     * @return true if the attribute values should be converted to open types, like those of an MXBean, so that they can
+     * be read by clients that don't have the classes of the MBean: enums are read as strings, collections as arrays,
+     * maps as {@link javax.management.openmbean.TabularData}, and beans as
+     * {@link javax.management.openmbean.CompositeData}. The attributes are described by
+     * {@link javax.management.openmbean.OpenMBeanAttributeInfo}. Such MBeans are always introspected at runtime.
+     */
+    boolean openTypes() default false;
 }
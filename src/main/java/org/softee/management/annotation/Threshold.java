@@ -0,0 +1,45 @@
+package org.softee.management.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for an MBean attribute that should emit a JMX notification when its value crosses a threshold.<p>
+ *
+ * May be applied to a numeric getter that is also annotated with {@link ManagedAttribute}. While the MBean is
+ * registered, the attributes that have thresholds are read periodically by a background thread, and a notification is
+ * emitted when an attribute breaches its threshold, and when it clears it again (see
+ * {@link org.softee.management.helper.ThresholdMonitor}). MBeans without thresholds aren't read by that thread.<p>
+ *
+ * Notifications about an attribute are rate limited to one per {@link #quietPeriodMillis()}. Changes in between are
+ * coalesced: when the quiet period has elapsed, a single notification reports the current state, if it differs from
+ * the state previously notified.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@Documented
+public @interface Threshold {
+    /**
+     * The side of the threshold at which the attribute is breached
+     */
+    public enum Direction {ABOVE, BELOW}
+
+    /**
+     * @return the threshold
+     */
+    double value();
+
+    /**
+     * @return {@link Direction#ABOVE} if a value greater than the threshold is a breach, {@link Direction#BELOW} if a
+     * value less than the threshold is a breach
+     */
+    Direction direction() default Direction.ABOVE;
+
+    /**
+     * @return the minimum time between two notifications about this attribute, in milliseconds
+     */
+    long quietPeriodMillis() default 60000;
+}
@@ -0,0 +1,417 @@
+package org.softee.management.exporter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.softee.management.helper.DynamicMBeanAdapter;
+import org.softee.management.helper.MBeanRegistration;
+import org.softee.management.helper.SnapshotSupport;
+import org.softee.time.Clock;
+
+/**
+ * Publishes the numeric attributes of the MBeans registered through {@link MBeanRegistration} into a memory-mapped
+ * file, in the manner of the JVM's hsperfdata files, so that a process on the same host (see
+ * {@link MappedMetricsReader}) samples them by reading memory, without a system call, RMI or serialization per
+ * sample.<p>
+ *
+ * The file describes itself. All numbers are big-endian:
+ * <pre>
+ * offset  size
+ *      0     4  magic, {@value #MAGIC} ("POJM")
+ *      4     4  format version, {@value #VERSION}
+ *      8     8  sequence: incremented before and after each publication, so it's odd while one is in progress
+ *     16     8  time of the latest publication, in milliseconds since the epoch
+ *     24     4  flags: {@value #STALE} when the file has been replaced by a file with another layout, or closed
+ *     28     4  offset of the values, a multiple of 8
+ *     32     4  number of MBeans
+ *     36     4  number of values
+ *     40        per MBean: its object name (string), the number of its attributes (4), and per attribute: its name
+ *               (string), its type (1, {@value #LONG} or {@value #DOUBLE}), and the offset of its value (4)
+ *      .     8  per value: a long, or the bits of a double (see {@link Double#doubleToRawLongBits(double)})
+ * </pre>
+ * A string is its length in bytes (2) followed by its UTF-8 bytes. Attributes of types byte, short, int, long and
+ * boolean (0 or 1) are stored as longs, float and double as doubles. A null value is stored as
+ * {@link Long#MIN_VALUE}, or as NaN.<p>
+ *
+ * Each value is an aligned 8-byte word written as a whole, and the notify paths of the MBeans are unaffected: the
+ * values are read within one snapshot (see {@link SnapshotSupport}) and copied into the file by {@link #publish()}, or
+ * periodically by a daemon thread ({@link #start(long, TimeUnit)}). When an MBean is registered or unregistered, the
+ * next publication writes a new file with the new layout, and moves it into place; the replaced file is flagged as
+ * stale, so readers know to open the file again.<p>
+ *
+ * The sequence is a seqlock: a reader that reads the same even sequence before and after reading values has read the
+ * values of one publication (see {@link MappedMetricsReader#read(int[], long[])}). The stores of the sequence are
+ * fenced from the stores of the values and the time.
+ */
+public class MappedMetricsFile implements Closeable {
+    static final int MAGIC = 0x504f4a4d;
+    static final int VERSION = 1;
+    static final int SEQUENCE_OFFSET = 8;
+    static final int PUBLISHED_OFFSET = 16;
+    static final int FLAGS_OFFSET = 24;
+    static final int VALUES_OFFSET = 28;
+    static final int HEADER_LENGTH = 40;
+    static final int STALE = 1;
+    static final byte LONG = 'J';
+    static final byte DOUBLE = 'D';
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String[] LONG_TYPES = {
+        "byte", "short", "int", "long", "boolean",
+        Byte.class.getName(), Short.class.getName(), Integer.class.getName(), Long.class.getName(),
+        Boolean.class.getName()};
+    private static final String[] DOUBLE_TYPES = {
+        "float", "double", Float.class.getName(), Double.class.getName()};
+
+    private final File file;
+    /** guards the layout and the mapping */
+    private final Object publishLock = new Object();
+    private Layout layout;
+    private MappedByteBuffer buffer;
+    private long sequence;
+    private boolean closed;
+    /** written and read by {@link #fence()} */
+    private volatile long fence;
+
+    private volatile boolean running;
+    private Thread publisher;
+
+    /**
+     * @param file the file to publish to. It's created or replaced by the first publication.
+     */
+    public MappedMetricsFile(File file) {
+        if (file == null) {
+            throw new IllegalArgumentException("file must not be null");
+        }
+        this.file = file.getAbsoluteFile();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Copy the current values of the registered MBeans into the file
+     * @throws IOException if the file can't be written
+     * @throws IllegalStateException if the file has been closed
+     */
+    public void publish() throws IOException {
+        synchronized (publishLock) {
+            if (closed) {
+                throw new IllegalStateException("Closed: " + file);
+            }
+            long version = MBeanRegistration.getRegistrationVersion();
+            if (layout == null || layout.version != version) {
+                remap(new Layout(version, layout));
+            }
+            buffer.putLong(SEQUENCE_OFFSET, ++sequence);
+            fence();
+            Object[] values = layout.values;
+            int offset = layout.valuesOffset;
+            for (Target target : layout.targets) {
+                target.mbean.getAttributeValues(target.attributes.names, values);
+                for (int i = 0; i < target.attributes.names.length; i++) {
+                    buffer.putLong(offset, bits(values[i], target.attributes.types[i]));
+                    offset += 8;
+                }
+            }
+            buffer.putLong(PUBLISHED_OFFSET, Clock.getDefault().currentTimeMillis());
+            fence();
+            buffer.putLong(SEQUENCE_OFFSET, ++sequence);
+        }
+    }
+
+    /**
+     * Keep the memory accesses before this call from being reordered with those after it. Java 8 has no fence API, so
+     * this is a volatile write followed by a volatile read, which nothing may be reordered across.
+     */
+    private long fence() {
+        fence = sequence;
+        return fence;
+    }
+
+    /**
+     * Start a daemon thread that publishes the values periodically. Failures to write the file are reported to the
+     * uncaught exception handler, and end the thread.
+     * @param period the time between publications. Positive.
+     * @param unit the unit of {@code period}
+     * @throws IllegalStateException if already started
+     */
+    public synchronized void start(long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        if (publisher != null) {
+            throw new IllegalStateException("Already started: " + file);
+        }
+        final long periodNanos = unit.toNanos(period);
+        running = true;
+        publisher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (running) {
+                        publish();
+                        LockSupport.parkNanos(periodNanos);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to publish to " + file, e);
+                }
+            }
+        }, "pojo-mbean-mapped-metrics");
+        publisher.setDaemon(true);
+        publisher.start();
+    }
+
+    /**
+     * Stop the thread started by {@link #start(long, TimeUnit)}, if any, and wait for it to end
+     */
+    public synchronized void stop() {
+        if (publisher != null) {
+            running = false;
+            LockSupport.unpark(publisher);
+            try {
+                publisher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            publisher = null;
+        }
+    }
+
+    /**
+     * Stop publishing, flag the file as stale, and delete it
+     */
+    @Override
+    public void close() throws IOException {
+        stop();
+        synchronized (publishLock) {
+            if (!closed) {
+                closed = true;
+                if (buffer != null) {
+                    buffer.putInt(FLAGS_OFFSET, STALE);
+                    buffer = null;
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a file with the layout of {@code next}, move it into place, and map it
+     */
+    private void remap(Layout next) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        File temp = File.createTempFile(file.getName(), ".tmp", parent);
+        MappedByteBuffer mapped;
+        RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, next.length);
+            next.writeHeader(mapped, sequence);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        } finally {
+            // the mapping stays valid after the channel is closed
+            raf.close();
+        }
+        if (buffer != null) {
+            buffer.putInt(FLAGS_OFFSET, STALE);
+        }
+        buffer = mapped;
+        layout = next;
+    }
+
+    /**
+     * @return {@code value} as stored in the file
+     */
+    private static long bits(Object value, byte type) {
+        if (type == DOUBLE) {
+            return Double.doubleToRawLongBits((value != null) ? ((Number) value).doubleValue() : Double.NaN);
+        }
+        if (value instanceof Boolean) {
+            return ((Boolean) value).booleanValue() ? 1 : 0;
+        }
+        return (value != null) ? ((Number) value).longValue() : Long.MIN_VALUE;
+    }
+
+    /**
+     * @return the type of the values of attributes of class {@code type}, or 0 if they aren't published
+     */
+    private static byte type(String type) {
+        for (String longType : LONG_TYPES) {
+            if (longType.equals(type)) {
+                return LONG;
+            }
+        }
+        for (String doubleType : DOUBLE_TYPES) {
+            if (doubleType.equals(type)) {
+                return DOUBLE;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The MBeans to read, in file order, and the header describing them
+     */
+    private static final class Layout {
+        final long version;
+        final Map<MBeanInfo, NumericAttributes> attributesByInfo;
+        final Target[] targets;
+        final int valuesOffset;
+        final int length;
+        /** receives the attribute values of one target at a time */
+        final Object[] values;
+        private final byte[][] objectNames;
+
+        /**
+         * @param previous the previous layout, whose per-class attributes are reused, or null
+         */
+        Layout(long version, Layout previous) {
+            this.version = version;
+            attributesByInfo = new IdentityHashMap<MBeanInfo, NumericAttributes>();
+            List<Target> targetList = new ArrayList<Target>();
+            List<byte[]> nameList = new ArrayList<byte[]>();
+            int headerLength = HEADER_LENGTH;
+            int valueCount = 0;
+            int maxAttributes = 0;
+            for (MBeanServer server : MBeanRegistration.getRegisteredServers()) {
+                for (Map.Entry<ObjectName, DynamicMBeanAdapter<?>> entry
+                        : MBeanRegistration.getRegisteredMBeans(server).entrySet()) {
+                    MBeanInfo info = entry.getValue().getMBeanInfo();
+                    NumericAttributes attributes = attributesByInfo.get(info);
+                    if (attributes == null) {
+                        attributes = (previous != null) ? previous.attributesByInfo.get(info) : null;
+                        if (attributes == null) {
+                            attributes = new NumericAttributes(info);
+                        }
+                        attributesByInfo.put(info, attributes);
+                    }
+                    if (attributes.names.length == 0) {
+                        continue;
+                    }
+                    byte[] objectName = utf8(entry.getKey().getCanonicalName());
+                    targetList.add(new Target(entry.getValue(), attributes));
+                    nameList.add(objectName);
+                    headerLength += 2 + objectName.length + 4 + attributes.headerLength;
+                    valueCount += attributes.names.length;
+                    maxAttributes = Math.max(maxAttributes, attributes.names.length);
+                }
+            }
+            targets = targetList.toArray(new Target[targetList.size()]);
+            objectNames = nameList.toArray(new byte[nameList.size()][]);
+            valuesOffset = (headerLength + 7) & ~7;
+            length = valuesOffset + valueCount * 8;
+            values = new Object[maxAttributes];
+        }
+
+        void writeHeader(ByteBuffer buffer, long sequence) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(SEQUENCE_OFFSET, sequence);
+            buffer.putInt(VALUES_OFFSET, valuesOffset);
+            buffer.putInt(32, targets.length);
+            buffer.putInt(36, (length - valuesOffset) / 8);
+            buffer.position(HEADER_LENGTH);
+            int valueOffset = valuesOffset;
+            for (int t = 0; t < targets.length; t++) {
+                NumericAttributes attributes = targets[t].attributes;
+                putString(buffer, objectNames[t]);
+                buffer.putInt(attributes.names.length);
+                for (int i = 0; i < attributes.names.length; i++) {
+                    putString(buffer, attributes.utf8Names[i]);
+                    buffer.put(attributes.types[i]);
+                    buffer.putInt(valueOffset);
+                    valueOffset += 8;
+                }
+            }
+        }
+
+        private static void putString(ByteBuffer buffer, byte[] utf8) {
+            buffer.putShort((short) utf8.length);
+            buffer.put(utf8);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the UTF-8 encoding of {@code value} is longer than a string of the file
+     * may be
+     */
+    private static byte[] utf8(String value) {
+        byte[] utf8 = value.getBytes(UTF_8);
+        if (utf8.length > 0xffff) {
+            throw new IllegalArgumentException("Too long: " + value);
+        }
+        return utf8;
+    }
+
+    /**
+     * The readable numeric attributes of an MBean class
+     */
+    private static final class NumericAttributes {
+        final String[] names;
+        final byte[][] utf8Names;
+        final byte[] types;
+        /** the length of the header entries of the attributes */
+        final int headerLength;
+
+        NumericAttributes(MBeanInfo info) {
+            List<MBeanAttributeInfo> numeric = new ArrayList<MBeanAttributeInfo>();
+            for (MBeanAttributeInfo attribute : info.getAttributes()) {
+                if (attribute.isReadable() && type(attribute.getType()) != 0) {
+                    numeric.add(attribute);
+                }
+            }
+            names = new String[numeric.size()];
+            utf8Names = new byte[names.length][];
+            types = new byte[names.length];
+            int length = 0;
+            for (int i = 0; i < names.length; i++) {
+                names[i] = numeric.get(i).getName();
+                utf8Names[i] = utf8(names[i]);
+                types[i] = type(numeric.get(i).getType());
+                length += 2 + utf8Names[i].length + 1 + 4;
+            }
+            headerLength = length;
+        }
+    }
+
+    /**
+     * An MBean, and the numeric attributes to read from it
+     */
+    private static final class Target {
+        final DynamicMBeanAdapter<?> mbean;
+        final NumericAttributes attributes;
+
+        Target(DynamicMBeanAdapter<?> mbean, NumericAttributes attributes) {
+            this.mbean = mbean;
+            this.attributes = attributes;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.softee.management.exporter;
+
+import static org.softee.management.exporter.MappedMetricsFile.DOUBLE;
+import static org.softee.management.exporter.MappedMetricsFile.FLAGS_OFFSET;
+import static org.softee.management.exporter.MappedMetricsFile.HEADER_LENGTH;
+import static org.softee.management.exporter.MappedMetricsFile.MAGIC;
+import static org.softee.management.exporter.MappedMetricsFile.PUBLISHED_OFFSET;
+import static org.softee.management.exporter.MappedMetricsFile.SEQUENCE_OFFSET;
+import static org.softee.management.exporter.MappedMetricsFile.STALE;
+import static org.softee.management.exporter.MappedMetricsFile.UTF_8;
+import static org.softee.management.exporter.MappedMetricsFile.VERSION;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the values published by a {@link MappedMetricsFile}, possibly in another process. The file is mapped when the
+ * reader is created, and reading a value is a read of the mapped memory.<p>
+ *
+ * A reader keeps reading the file it opened. When {@link #isStale()} returns true, the publisher has replaced the
+ * file with one of another layout, or has closed it, and a new reader should be created. Run with the path of a file
+ * as argument to print its values.<p>
+ *
+ * A single value is always read whole, but values read one at a time may be of different publications. To read
+ * several values of one publication, use {@link #read(int[], long[])}, which retries while a publication is in
+ * progress, or while one has completed during the read.
+ */
+public class MappedMetricsReader {
+    private final MappedByteBuffer buffer;
+    /** the offset of each value, by attribute name, by object name, in file order */
+    private final Map<String, Map<String, Integer>> offsets;
+    private final Map<Integer, Byte> types;
+    /** written and read by {@link #fence()} */
+    private volatile long fence;
+
+    /**
+     * @param file a file written by a {@link MappedMetricsFile}
+     * @throws IOException if the file can't be read, or isn't written by a {@link MappedMetricsFile}
+     */
+    public MappedMetricsReader(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+        if (buffer.capacity() < HEADER_LENGTH || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a metrics file: " + file);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported version " + buffer.getInt(4) + " of metrics file " + file);
+        }
+        Map<String, Map<String, Integer>> offsets = new LinkedHashMap<String, Map<String, Integer>>();
+        types = new LinkedHashMap<Integer, Byte>();
+        try {
+            int beans = buffer.getInt(32);
+            buffer.position(HEADER_LENGTH);
+            for (int b = 0; b < beans; b++) {
+                String objectName = getString();
+                int attributes = buffer.getInt();
+                Map<String, Integer> attributeOffsets = new LinkedHashMap<String, Integer>();
+                for (int a = 0; a < attributes; a++) {
+                    String attribute = getString();
+                    byte type = buffer.get();
+                    int offset = buffer.getInt();
+                    if ((offset & 7) != 0 || offset < 0 || offset > buffer.capacity() - 8) {
+                        throw new IOException(String.format("Invalid offset %d of %s.%s in %s", offset, objectName,
+                                attribute, file));
+                    }
+                    attributeOffsets.put(attribute, offset);
+                    types.put(offset, type);
+                }
+                offsets.put(objectName, Collections.unmodifiableMap(attributeOffsets));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated metrics file: " + file);
+        }
+        this.offsets = Collections.unmodifiableMap(offsets);
+    }
+
+    private String getString() {
+        byte[] utf8 = new byte[buffer.getShort() & 0xffff];
+        buffer.get(utf8);
+        return new String(utf8, UTF_8);
+    }
+
+    /**
+     * @return the offset of the value of each attribute, by attribute name, by canonical object name, for
+     * {@link #getLong(int)} and {@link #getDouble(int)}
+     */
+    public Map<String, Map<String, Integer>> getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * @param objectName the canonical name of an MBean
+     * @param attribute the name of an attribute
+     * @return the offset of the value of the attribute, or -1 if the file has no such value
+     */
+    public int offset(String objectName, String attribute) {
+        Map<String, Integer> attributeOffsets = offsets.get(objectName);
+        Integer offset = (attributeOffsets != null) ? attributeOffsets.get(attribute) : null;
+        return (offset != null) ? offset : -1;
+    }
+
+    /**
+     * @param offset the offset of a value stored as a long
+     * @return the value, or {@link Long#MIN_VALUE} if it's null
+     */
+    public long getLong(int offset) {
+        return buffer.getLong(offset);
+    }
+
+    /**
+     * @param offset the offset of a value stored as a double
+     * @return the value, or NaN if it's null
+     */
+    public double getDouble(int offset) {
+        return Double.longBitsToDouble(buffer.getLong(offset));
+    }
+
+    /**
+     * @param offset the offset of a value
+     * @return the value as a Long or Double, or null
+     * @throws IllegalArgumentException if no value is stored at {@code offset}
+     */
+    public Number getValue(int offset) {
+        Byte type = types.get(offset);
+        if (type == null) {
+            throw new IllegalArgumentException("No value at offset " + offset);
+        }
+        if (type == DOUBLE) {
+            double value = getDouble(offset);
+            return Double.isNaN(value) ? null : value;
+        }
+        long value = getLong(offset);
+        return (value != Long.MIN_VALUE) ? value : null;
+    }
+
+    /**
+     * Read the values of one publication. The values are read between two reads of the sequence, and read again if
+     * the sequence is odd (a publication is in progress) or has changed (one has completed) in between; a publication
+     * takes as long as reading the attributes of the MBeans, so the reading thread yields before retrying.
+     * @param offsets the offsets of the values to read
+     * @param values receives the value at each offset, stored as in the file (see {@link #getDouble(int)} for doubles)
+     * @return the sequence of the publication read
+     */
+    public long read(int[] offsets, long[] values) {
+        while (true) {
+            long sequence = getSequence();
+            if ((sequence & 1) == 0) {
+                fence();
+                for (int i = 0; i < offsets.length; i++) {
+                    values[i] = buffer.getLong(offsets[i]);
+                }
+                fence();
+                if (getSequence() == sequence) {
+                    return sequence;
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Keep the reads before this call from being reordered with those after it, see {@link MappedMetricsFile}
+     */
+    private long fence() {
+        fence = 0;
+        return fence;
+    }
+
+    /**
+     * @return the publication sequence, which is odd while a publication is in progress, and changes with every
+     * publication
+     */
+    public long getSequence() {
+        return buffer.getLong(SEQUENCE_OFFSET);
+    }
+
+    /**
+     * @return the time of the latest publication, in milliseconds since the epoch, or 0 if none
+     */
+    public long getPublishedMillis() {
+        return buffer.getLong(PUBLISHED_OFFSET);
+    }
+
+    /**
+     * @return true if the file has been replaced or closed by the publisher, and a new reader should be created
+     */
+    public boolean isStale() {
+        return (buffer.getInt(FLAGS_OFFSET) & STALE) != 0;
+    }
+
+    /**
+     * Print the values of a metrics file
+     * @param args the path of the file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java " + MappedMetricsReader.class.getName() + " <file>");
+            System.exit(1);
+        }
+        MappedMetricsReader reader = new MappedMetricsReader(new File(args[0]));
+        for (Map.Entry<String, Map<String, Integer>> bean : reader.getOffsets().entrySet()) {
+            for (Map.Entry<String, Integer> attribute : bean.getValue().entrySet()) {
+                System.out.println(bean.getKey() + " " + attribute.getKey() + " "
+                        + reader.getValue(attribute.getValue()));
+            }
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package org.softee.management.exporter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.softee.management.helper.DynamicMBeanAdapter;
+import org.softee.management.helper.MBeanRegistration;
+import org.softee.management.helper.SnapshotSupport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Exports the numeric attributes of the MBeans registered through {@link MBeanRegistration} in the Prometheus text
+ * exposition format (version 0.0.4), optionally served by an embedded HTTP server bound to the loopback interface.<p>
+ *
+ * Each readable attribute whose type is a primitive number or boolean, or its wrapper, becomes a sample named
+ * <em>domain</em>_<em>type</em>_<em>attribute</em>, where <em>type</em> is the {@code type} key property of the object
+ * name, if present. The other key properties become labels. E.g. attribute {@code outputCount} of
+ * {@code org.softee:type=Messaging,name=Orders} is exported as {@code org_softee_Messaging_outputCount{name="Orders"}}.
+ * Booleans are exported as 0 or 1, and null values are omitted.<p>
+ *
+ * The layout of the exposition (metric families, sample names and labels) is derived once per MBean class from its
+ * {@link MBeanInfo}, and cached until an MBean is registered or unregistered. The sample names are encoded as UTF-8
+ * once, with the layout. A scrape reads the attributes of each MBean in one pass, within one snapshot (see
+ * {@link SnapshotSupport}), and renders the exposition as UTF-8 into a buffer that is reused by the next scrape, so
+ * rendering doesn't allocate; only the attribute values read from the MBeans do. Scrapes are serialized.
+ */
+public class PrometheusExporter {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    public static final String PATH = "/metrics";
+
+    private static final String[] NUMERIC_TYPES = {
+        "byte", "short", "int", "long", "float", "double", "boolean",
+        Byte.class.getName(), Short.class.getName(), Integer.class.getName(), Long.class.getName(),
+        Float.class.getName(), Double.class.getName(), Boolean.class.getName()};
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** guards the layout and the output */
+    private final Object scrapeLock = new Object();
+    private Layout layout;
+    private final Output output = new Output();
+
+    private HttpServer server;
+
+    /**
+     * @return the current values, in the exposition format
+     */
+    public String render() {
+        synchronized (scrapeLock) {
+            scrape();
+            return new String(output.bytes, 0, output.length, UTF_8);
+        }
+    }
+
+    /**
+     * Write the current values, in the exposition format, encoded as UTF-8
+     * @param out the stream to write to, which isn't closed
+     * @throws IOException if the values can't be written to {@code out}
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        synchronized (scrapeLock) {
+            scrape();
+            out.write(output.bytes, 0, output.length);
+        }
+    }
+
+    /**
+     * Start serving the exposition at {@value #PATH} on the loopback interface
+     * @param port the port to listen on, or 0 to choose a free port (see {@link #getAddress()})
+     * @throws IOException if the server can't be started
+     * @throws IllegalStateException if the server has already been started
+     */
+    public synchronized void start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Already started on " + server.getAddress());
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    serve(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        // requests are handled by the server's dispatcher thread, one at a time
+        server.start();
+    }
+
+    /**
+     * Stop the server, if it has been started
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    /**
+     * @return the address the server listens on, or null if the server isn't started
+     */
+    public synchronized InetSocketAddress getAddress() {
+        return (server != null) ? server.getAddress() : null;
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        synchronized (scrapeLock) {
+            scrape();
+            if ("HEAD".equals(method)) {
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                exchange.sendResponseHeaders(200, output.length);
+                exchange.getResponseBody().write(output.bytes, 0, output.length);
+            }
+        }
+    }
+
+    /**
+     * Render the current values into {@link #output}
+     */
+    private void scrape() {
+        long version = MBeanRegistration.getRegistrationVersion();
+        if (layout == null || layout.version != version) {
+            layout = new Layout(version, layout);
+        }
+        Object[] values = layout.values;
+        for (Target target : layout.targets) {
+            target.mbean.getAttributeValues(target.attributes, values);
+            for (int i = 0; i < target.attributes.length; i++) {
+                target.families[i].store(target.slots[i], values[i]);
+            }
+        }
+        output.length = 0;
+        for (Family family : layout.families) {
+            family.writeTo(output);
+        }
+    }
+
+    /**
+     * The metric families of the registered MBeans, sorted by name, and the MBeans to read
+     */
+    private static final class Layout {
+        final long version;
+        final Map<MBeanInfo, NumericAttributes> attributesByInfo;
+        final Target[] targets;
+        final Family[] families;
+        /** receives the attribute values of one target at a time */
+        final Object[] values;
+
+        /**
+         * @param previous the previous layout, whose per-class attributes are reused, or null
+         */
+        Layout(long version, Layout previous) {
+            this.version = version;
+            attributesByInfo = new IdentityHashMap<MBeanInfo, NumericAttributes>();
+            Map<String, Family> familiesByName = new TreeMap<String, Family>();
+            List<Target> targetList = new ArrayList<Target>();
+            int maxAttributes = 0;
+            for (MBeanServer server : MBeanRegistration.getRegisteredServers()) {
+                for (Map.Entry<ObjectName, DynamicMBeanAdapter<?>> entry
+                        : MBeanRegistration.getRegisteredMBeans(server).entrySet()) {
+                    ObjectName objectName = entry.getKey();
+                    MBeanInfo info = entry.getValue().getMBeanInfo();
+                    NumericAttributes attributes = attributesByInfo.get(info);
+                    if (attributes == null) {
+                        attributes = (previous != null) ? previous.attributesByInfo.get(info) : null;
+                        if (attributes == null) {
+                            attributes = new NumericAttributes(info);
+                        }
+                        attributesByInfo.put(info, attributes);
+                    }
+                    if (attributes.names.length == 0) {
+                        continue;
+                    }
+                    Target target = new Target(entry.getValue(), attributes.names);
+                    targetList.add(target);
+                    maxAttributes = Math.max(maxAttributes, attributes.names.length);
+                    String prefix = metricPrefix(objectName);
+                    String labels = labels(objectName);
+                    for (int i = 0; i < attributes.names.length; i++) {
+                        String metricName = prefix + attributes.sanitizedNames[i];
+                        Family family = familiesByName.get(metricName);
+                        if (family == null) {
+                            family = new Family(metricName, attributes.descriptions[i]);
+                            familiesByName.put(metricName, family);
+                        }
+                        target.families[i] = family;
+                        target.slots[i] = family.add(metricName + labels + " ");
+                    }
+                }
+            }
+            targets = targetList.toArray(new Target[targetList.size()]);
+            families = familiesByName.values().toArray(new Family[familiesByName.size()]);
+            for (Family family : families) {
+                family.complete();
+            }
+            values = new Object[maxAttributes];
+        }
+
+        /**
+         * @return the sanitized domain and type key property, each followed by an underscore
+         */
+        private static String metricPrefix(ObjectName objectName) {
+            String type = objectName.getKeyProperty("type");
+            return sanitize(objectName.getDomain()) + "_" + ((type != null) ? sanitize(unquote(type)) + "_" : "");
+        }
+
+        /**
+         * @return the key properties, except type, as labels sorted by name, or an empty string if there are none
+         */
+        private static String labels(ObjectName objectName) {
+            StringBuilder labels = new StringBuilder();
+            for (Map.Entry<String, String> property
+                    : new TreeMap<String, String>(objectName.getKeyPropertyList()).entrySet()) {
+                if (property.getKey().equals("type")) {
+                    continue;
+                }
+                labels.append((labels.length() == 0) ? '{' : ',').append(sanitize(property.getKey())).append("=\"");
+                escape(unquote(property.getValue()), true, labels);
+                labels.append('"');
+            }
+            return (labels.length() == 0) ? "" : labels.append('}').toString();
+        }
+
+        private static String unquote(String value) {
+            return value.startsWith("\"") ? ObjectName.unquote(value) : value;
+        }
+    }
+
+    /**
+     * @return {@code name} with all characters that aren't legal in a metric or label name replaced by underscores
+     */
+    private static String sanitize(String name) {
+        StringBuilder sanitized = new StringBuilder(name.length() + 1);
+        if (name.isEmpty() || Character.isDigit(name.charAt(0))) {
+            sanitized.append('_');
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean legal = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+            sanitized.append(legal ? c : '_');
+        }
+        return sanitized.toString();
+    }
+
+    /**
+     * @param quotes true if double quotes should be escaped, as in label values but not in help texts
+     */
+    private static void escape(String value, boolean quotes, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                out.append("\\\\");
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else if (c == '"' && quotes) {
+                out.append("\\\"");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    /**
+     * The readable numeric attributes of an MBean class
+     */
+    private static final class NumericAttributes {
+        final String[] names;
+        final String[] sanitizedNames;
+        final String[] descriptions;
+
+        NumericAttributes(MBeanInfo info) {
+            List<MBeanAttributeInfo> numeric = new ArrayList<MBeanAttributeInfo>();
+            for (MBeanAttributeInfo attribute : info.getAttributes()) {
+                if (attribute.isReadable() && isNumeric(attribute.getType())) {
+                    numeric.add(attribute);
+                }
+            }
+            names = new String[numeric.size()];
+            sanitizedNames = new String[names.length];
+            descriptions = new String[names.length];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = numeric.get(i).getName();
+                sanitizedNames[i] = sanitize(names[i]);
+                descriptions[i] = numeric.get(i).getDescription();
+            }
+        }
+
+        private static boolean isNumeric(String type) {
+            for (String numericType : NUMERIC_TYPES) {
+                if (numericType.equals(type)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * An MBean, the numeric attributes to read from it, and the family and slot receiving the value of each
+     */
+    private static final class Target {
+        final DynamicMBeanAdapter<?> mbean;
+        final String[] attributes;
+        final Family[] families;
+        final int[] slots;
+
+        Target(DynamicMBeanAdapter<?> mbean, String[] attributes) {
+            this.mbean = mbean;
+            this.attributes = attributes;
+            families = new Family[attributes.length];
+            slots = new int[attributes.length];
+        }
+    }
+
+    /**
+     * The samples sharing a metric name, preceded by their HELP and TYPE lines.<p>
+     *
+     * The sample names (metric name and labels) and the values of the current scrape are kept in arrays indexed by
+     * slot, one slot per sample, so that rendering a family reads memory sequentially rather than visiting each MBean.
+     */
+    private static final class Family {
+        private static final byte ABSENT = 0;
+        private static final byte LONG = 1;
+        private static final byte DOUBLE = 2;
+
+        /** the HELP and TYPE lines, in UTF-8 */
+        final byte[] header;
+        private ByteArrayOutputStream sampleNameList = new ByteArrayOutputStream();
+        private List<Integer> sampleNameEndList = new ArrayList<Integer>();
+        /** the sample names, each followed by a space, concatenated, in UTF-8 */
+        private byte[] sampleNames;
+        private int[] sampleNameEnds;
+        private byte[] kinds;
+        private long[] longValues;
+        private double[] doubleValues;
+
+        Family(String metricName, String description) {
+            StringBuilder header = new StringBuilder("# HELP ").append(metricName).append(' ');
+            escape((description != null) ? description : metricName, false, header);
+            // the kind of metric (counter or gauge) isn't known
+            header.append("\n# TYPE ").append(metricName).append(" untyped\n");
+            this.header = header.toString().getBytes(UTF_8);
+        }
+
+        /**
+         * @param sampleName the metric name and labels, followed by a space
+         * @return the slot of the sample
+         */
+        int add(String sampleName) {
+            byte[] utf8 = sampleName.getBytes(UTF_8);
+            sampleNameList.write(utf8, 0, utf8.length);
+            sampleNameEndList.add(sampleNameList.size());
+            return sampleNameEndList.size() - 1;
+        }
+
+        /**
+         * Called once all samples have been added
+         */
+        void complete() {
+            int size = sampleNameEndList.size();
+            sampleNames = sampleNameList.toByteArray();
+            sampleNameEnds = new int[size];
+            for (int i = 0; i < size; i++) {
+                sampleNameEnds[i] = sampleNameEndList.get(i);
+            }
+            sampleNameList = null;
+            sampleNameEndList = null;
+            kinds = new byte[size];
+            longValues = new long[size];
+            doubleValues = new double[size];
+        }
+
+        void store(int slot, Object value) {
+            if (value == null) {
+                kinds[slot] = ABSENT;
+            } else if (value instanceof Double || value instanceof Float) {
+                kinds[slot] = DOUBLE;
+                doubleValues[slot] = ((Number) value).doubleValue();
+            } else if (value instanceof Boolean) {
+                kinds[slot] = LONG;
+                longValues[slot] = ((Boolean) value).booleanValue() ? 1 : 0;
+            } else {
+                kinds[slot] = LONG;
+                longValues[slot] = ((Number) value).longValue();
+            }
+        }
+
+        void writeTo(Output output) {
+            output.write(header, 0, header.length);
+            int start = 0;
+            for (int slot = 0; slot < kinds.length; slot++) {
+                int end = sampleNameEnds[slot];
+                if (kinds[slot] != ABSENT) {
+                    output.write(sampleNames, start, end - start);
+                    if (kinds[slot] == LONG) {
+                        output.writeLong(longValues[slot]);
+                    } else {
+                        output.writeDouble(doubleValues[slot]);
+                    }
+                    output.write((byte) '\n');
+                }
+                start = end;
+            }
+        }
+    }
+
+    /**
+     * A growable buffer of the rendered exposition, in UTF-8, reused by every scrape
+     */
+    private static final class Output {
+        private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(UTF_8);
+
+        byte[] bytes = new byte[8192];
+        int length;
+        /** formats doubles, see {@link #writeDouble(double)} */
+        private final StringBuilder digits = new StringBuilder(32);
+
+        void write(byte b) {
+            ensureCapacity(1);
+            bytes[length++] = b;
+        }
+
+        void write(byte[] b, int offset, int count) {
+            ensureCapacity(count);
+            System.arraycopy(b, offset, bytes, length, count);
+            length += count;
+        }
+
+        void writeLong(long value) {
+            if (value == Long.MIN_VALUE) {
+                write(MIN_LONG, 0, MIN_LONG.length);
+                return;
+            }
+            ensureCapacity(20);
+            if (value < 0) {
+                bytes[length++] = '-';
+                value = -value;
+            }
+            int digitCount = 1;
+            for (long v = value; v >= 10; v /= 10) {
+                digitCount++;
+            }
+            for (int i = length + digitCount - 1; i >= length; i--) {
+                bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            length += digitCount;
+        }
+
+        /**
+         * Write {@code value} as {@link Double#toString(double)} would. {@link StringBuilder#append(double)} formats
+         * without allocating a String.
+         */
+        void writeDouble(double value) {
+            if (Double.isNaN(value)) {
+                write((byte) 'N');
+                write((byte) 'a');
+                write((byte) 'N');
+                return;
+            }
+            if (Double.isInfinite(value)) {
+                write((byte) ((value > 0) ? '+' : '-'));
+                write((byte) 'I');
+                write((byte) 'n');
+                write((byte) 'f');
+                return;
+            }
+            digits.setLength(0);
+            digits.append(value);
+            int count = digits.length();
+            ensureCapacity(count);
+            for (int i = 0; i < count; i++) {
+                // ASCII
+                bytes[length++] = (byte) digits.charAt(i);
+            }
+        }
+
+        private void ensureCapacity(int count) {
+            if (bytes.length - length < count) {
+                byte[] grown = new byte[Math.max(length + count, bytes.length * 2)];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+        }
+    }
+}
@@ -0,0 +1,559 @@
+package org.softee.management.helper;
+
+import static java.lang.String.format;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InvalidAttributeValueException;
+import javax.management.ListenerNotFoundException;
+import javax.management.MBeanException;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanRegistration;
+import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.NotificationBroadcasterSupport;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import javax.management.RuntimeOperationsException;
+
+import org.softee.management.annotation.MBean;
+import org.softee.management.annotation.Threshold;
+import org.softee.management.exception.ManagementException;
+
+/**
+ * Base class of the DynamicMBeans that expose a POJO MBean annotated with {@link MBean}.<p>
+ *
+ * Subclasses dispatch attribute reads, attribute writes and operation invocations by name, through
+ * {@link #getValue(String)}, {@link #setValue(String, Object)} and {@link #invokeOperation(String, Object[], String[])}. This
+ * class maps their outcome to the exceptions of the {@link DynamicMBean} interface, reads attributes in batches (see
+ * {@link SnapshotSupport}), and delegates {@link MBeanRegistration} callbacks to the POJO, if it implements that
+ * interface.<p>
+ *
+ * While registered, an adapter of a POJO with {@link Threshold} annotated attributes emits notifications from a
+ * {@link ThresholdMonitor}. Adapters of other POJOs accept listeners, but never notify them.<p>
+ *
+ * The annotation processor {@code org.softee.management.processor.MBeanProcessor} generates a subclass named
+ * <em>MBeanClass</em>{@value #ADAPTER_SUFFIX} for each concrete {@link MBean} annotated class it compiles.
+ * {@link #forObject(Object)} uses the generated class if one exists, and otherwise falls back to runtime
+ * introspection ({@link IntrospectedDynamicMBean}).
+ *
+ * @param <T> the class of the POJO MBean
+ */
+public abstract class DynamicMBeanAdapter<T> implements DynamicMBean, MBeanRegistration, NotificationEmitter {
+    /**
+     * Appended to the binary name of an MBean class to form the name of its generated adapter class
+     */
+    public static final String ADAPTER_SUFFIX = "_DynamicMBean";
+
+    /**
+     * Returned by {@link #getValue(String)} and {@link #invokeOperation(String, Object[])} for a name that is not a
+     * readable attribute or an operation, respectively
+     */
+    protected static final Object NO_VALUE = new Object();
+
+    /** The constructor of the generated adapter of each MBean class, or null if the class has no adapter */
+    private static final ClassValue<Constructor<?>> ADAPTERS = new ClassValue<Constructor<?>>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> mbeanClass) {
+            try {
+                Class<?> adapterClass = Class.forName(mbeanClass.getName() + ADAPTER_SUFFIX, false,
+                        mbeanClass.getClassLoader());
+                if (DynamicMBeanAdapter.class.isAssignableFrom(adapterClass)) {
+                    return adapterClass.getConstructor(mbeanClass);
+                }
+            } catch (ClassNotFoundException ignore) {
+                // not compiled with the annotation processor
+            } catch (NoSuchMethodException ignore) {
+                // not an adapter for this class
+            } catch (LinkageError ignore) {
+                // fall back to introspection
+            }
+            return null;
+        }
+    };
+
+    /** Numeric primitive types, and their wrappers, in the order of widening primitive conversion */
+    private static final Class<?>[] NUMBER_PRIMITIVES = {
+        byte.class, short.class, int.class, long.class, float.class, double.class};
+    private static final Class<?>[] NUMBER_WRAPPERS = {
+        Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class};
+
+    protected final T mbean;
+    private final MBeanRegistration registrationDelegate;
+    /** created when the first listener is added */
+    private volatile NotificationBroadcasterSupport broadcaster;
+    private ObjectName objectName;
+    private MBeanServer server;
+    private ThresholdMonitor thresholdMonitor;
+
+    protected DynamicMBeanAdapter(T mbean) {
+        this.mbean = mbean;
+        registrationDelegate = (MBeanRegistration) ((mbean instanceof MBeanRegistration) ? mbean
+                : new MBeanRegistrationBase());
+    }
+
+    /**
+     * @param mbean a POJO MBean annotated with {@link MBean}
+     * @return a DynamicMBean exposing {@code mbean}: an instance of the adapter generated for the class of
+     * {@code mbean}, if one exists, otherwise an {@link IntrospectedDynamicMBean}
+     * @throws ManagementException if the adapter can't be instantiated, or the introspection of {@code mbean} fails
+     * @throws IllegalArgumentException if {@code mbean} is not annotated with {@link MBean}
+     */
+    public static DynamicMBeanAdapter<?> forObject(Object mbean) throws ManagementException {
+        Constructor<?> adapter = ADAPTERS.get(mbean.getClass());
+        if (adapter == null) {
+            return new IntrospectedDynamicMBean(mbean);
+        }
+        try {
+            return (DynamicMBeanAdapter<?>) adapter.newInstance(mbean);
+        } catch (InvocationTargetException e) {
+            throw new ManagementException(e.getCause());
+        } catch (Exception e) {
+            throw new ManagementException(e);
+        }
+    }
+
+    /**
+     * @param attribute the name of an attribute
+     * @return the value of {@code attribute}, or {@link #NO_VALUE} if {@code attribute} is not a readable attribute
+     * @throws Exception any exception thrown by the getter
+     */
+    protected abstract Object getValue(String attribute) throws Exception;
+
+    /**
+     * @param attribute the name of an attribute
+     * @param value the new value of {@code attribute}, which may be converted by {@link #argument(Object, Class)}
+     * @return false if {@code attribute} is not a writable attribute
+     * @throws Exception any exception thrown by the setter
+     */
+    protected abstract boolean setValue(String attribute, Object value) throws Exception;
+
+    /**
+     * @param operation the name of an operation
+     * @param params the arguments, which may be null if the operation takes no arguments
+     * @param signature the class names of the parameter types of the operation, which selects one of several
+     * operations of the same name (see {@link #overload(String[], Object[], Signatures)})
+     * @return the result of the operation, or {@link #NO_VALUE} if {@code operation} is not an operation with
+     * {@code signature}
+     * @throws Exception any exception thrown by the operation
+     */
+    protected abstract Object invokeOperation(String operation, Object[] params, String[] signature)
+            throws Exception;
+
+    /**
+     * @param attribute the attribute whose value is requested
+     * @return the value of attribute
+     */
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException, MBeanException,
+            ReflectionException {
+        Object value;
+        try {
+            value = getValue(attribute);
+        } catch (Exception e) {
+            throw new MBeanException(e, format("attribute %s of %s", attribute, mbean.getClass()));
+        }
+        if (value == NO_VALUE) {
+            throw new AttributeNotFoundException(format("No readable attribute %s of %s", attribute,
+                    mbean.getClass()));
+        }
+        return value;
+    }
+
+    /**
+     * Read several attributes in one pass. As allowed by the JMX specification, attributes that don't exist, can't be
+     * read, or whose getter throws an exception, are omitted from the result.<p>
+     * If the MBean implements {@link SnapshotSupport}, all getters report values from a single snapshot.
+     * @param attributeNames the attribute names whose values are requested
+     * @return an attribute list describing those of attributeNames whose values could be obtained
+     */
+    @Override
+    public AttributeList getAttributes(String[] attributeNames) {
+        AttributeList attributes = new AttributeList(attributeNames.length);
+        SnapshotSupport snapshot = beginSnapshot();
+        try {
+            for (String attributeName : attributeNames) {
+                try {
+                    Object value = getValue(attributeName);
+                    if (value != NO_VALUE) {
+                        attributes.add(new Attribute(attributeName, value));
+                    }
+                } catch (Exception ignore) {
+                    // omitted from the result
+                }
+            }
+        } finally {
+            endSnapshot(snapshot);
+        }
+        return attributes;
+    }
+
+    /**
+     * Read several attributes in one pass, like {@link #getAttributes(String[])}, into an array that may be reused by
+     * the caller
+     * @param attributeNames the attribute names whose values are requested
+     * @param values receives the value of each of attributeNames, or null if the value couldn't be obtained
+     */
+    public void getAttributeValues(String[] attributeNames, Object[] values) {
+        SnapshotSupport snapshot = beginSnapshot();
+        try {
+            for (int i = 0; i < attributeNames.length; i++) {
+                Object value;
+                try {
+                    value = getValue(attributeNames[i]);
+                } catch (Exception e) {
+                    value = null;
+                }
+                values[i] = (value != NO_VALUE) ? value : null;
+            }
+        } finally {
+            endSnapshot(snapshot);
+        }
+    }
+
+    private SnapshotSupport beginSnapshot() {
+        if (mbean instanceof SnapshotSupport) {
+            SnapshotSupport snapshot = (SnapshotSupport) mbean;
+            snapshot.beginSnapshot();
+            return snapshot;
+        }
+        return null;
+    }
+
+    private static void endSnapshot(SnapshotSupport snapshot) {
+        if (snapshot != null) {
+            snapshot.endSnapshot();
+        }
+    }
+
+    /**
+     * @param attribute the attribute for which to update the value
+     */
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException, InvalidAttributeValueException,
+            MBeanException, ReflectionException {
+        String name = attribute.getName();
+        Object value = attribute.getValue();
+        boolean found;
+        try {
+            found = setValue(name, value);
+        } catch (ArgumentException e) {
+            throw new InvalidAttributeValueException(format("attribute %s, value = (%s)%s, expected (%s)",
+                    name, (value != null) ? value.getClass().getName() : null, value, e.getMessage()));
+        } catch (Exception e) {
+            throw new MBeanException(e, format("attribute %s of %s, value = (%s)%s", name, mbean.getClass(),
+                    (value != null) ? value.getClass().getName() : null, value));
+        }
+        if (!found) {
+            throw new AttributeNotFoundException(format("No writable attribute %s of %s", name, mbean.getClass()));
+        }
+    }
+
+    /**
+     *  @param attributes a list of attributes for which to update the value
+     */
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        for (Object object : attributes) {
+            Attribute attribute = (Attribute) object;
+            try {
+                setAttribute(attribute);
+            } catch (Exception e) {
+                // Must be a mistake that the signature doesn't allow throwing exceptions
+                throw new IllegalArgumentException(e);
+            }
+        }
+        // It seems like an API mistake that we have to return the attributes
+        return attributes;
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws MBeanException,
+            ReflectionException {
+        Object result;
+        try {
+            result = invokeOperation(actionName, params, signature);
+        } catch (ArgumentException e) {
+            throw new RuntimeOperationsException(new IllegalArgumentException(format(
+                    "operation %s(%s) of %s, expected (%s)", actionName, join(signature), mbean.getClass(),
+                    e.getMessage())));
+        } catch (Exception e) {
+            throw new MBeanException(e);
+        }
+        if (result == NO_VALUE) {
+            throw new ReflectionException(new NoSuchMethodException(format("No operation %s(%s) of %s", actionName,
+                    join(signature), mbean.getClass())));
+        }
+        return result;
+    }
+
+    private static String join(String[] signature) {
+        if (signature == null) {
+            return "?";
+        }
+        StringBuilder joined = new StringBuilder();
+        for (String type : signature) {
+            joined.append((joined.length() == 0) ? "" : ", ").append(type);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Select one of the operations of the same name
+     * @param signature the signature passed to {@link #invoke(String, Object[], String[])}, or null
+     * @param params the arguments passed to {@link #invoke(String, Object[], String[])}, or null
+     * @param overloads the signatures of the operations
+     * @return the index in {@code overloads} of the signature equal to {@code signature}. If {@code signature} is
+     * null, the index of the only operation, or of the only operation taking as many parameters as there are
+     * {@code params}. -1 if no operation is selected.
+     */
+    protected static int overload(String[] signature, Object[] params, Signatures overloads) {
+        if (signature != null) {
+            return overloads.indexOf(signature);
+        }
+        if (overloads.signatures.length == 1) {
+            return 0;
+        }
+        int count = (params != null) ? params.length : 0;
+        int selected = -1;
+        for (int i = 0; i < overloads.signatures.length; i++) {
+            if (overloads.signatures[i].length == count) {
+                if (selected >= 0) {
+                    return -1; // ambiguous
+                }
+                selected = i;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @param params the arguments of an operation, or null
+     * @param count the number of parameters of the operation
+     * @return {@code params}, or an empty array if {@code params} is null
+     * @throws IllegalArgumentException if the number of arguments is not {@code count}
+     */
+    protected static Object[] arguments(Object[] params, int count) {
+        if (params == null) {
+            params = Invoker.NO_ARGS;
+        }
+        if (params.length != count) {
+            throw new ArgumentException(count + " arguments");
+        }
+        return params;
+    }
+
+    /**
+     * Convert an argument to a parameter type, as {@link java.lang.reflect.Method#invoke(Object, Object...)} would.
+     * @param value the argument
+     * @param type the declared type of the parameter
+     * @return {@code value}, unless it is a primitive wrapper that must be widened to the wrapper of {@code type}
+     * @throws IllegalArgumentException if {@code value} is not assignable to {@code type}
+     */
+    protected static Object argument(Object value, Class<?> type) {
+        if (!type.isPrimitive()) {
+            if (value != null && !type.isInstance(value)) {
+                throw new ArgumentException(type.getName());
+            }
+            return value;
+        }
+        Object widened = (value != null) ? widen(value, type) : null;
+        if (widened == null) {
+            throw new ArgumentException(type.getName());
+        }
+        return widened;
+    }
+
+    /**
+     * @param value a primitive wrapper
+     * @param type a primitive type
+     * @return {@code value} converted to the wrapper of {@code type} by an identity or widening primitive conversion,
+     * or null if no such conversion exists
+     */
+    private static Object widen(Object value, Class<?> type) {
+        if (type == boolean.class) {
+            return (value instanceof Boolean) ? value : null;
+        }
+        if (value instanceof Character) {
+            if (type == char.class) {
+                return value;
+            }
+            value = Integer.valueOf(((Character) value).charValue());
+        }
+        int from = indexOf(NUMBER_WRAPPERS, value.getClass());
+        int to = indexOf(NUMBER_PRIMITIVES, type);
+        if (from < 0 || to < from) {
+            return null;
+        }
+        Number number = (Number) value;
+        switch (to) {
+        case 0:
+            return number.byteValue();
+        case 1:
+            return number.shortValue();
+        case 2:
+            return number.intValue();
+        case 3:
+            return number.longValue();
+        case 4:
+            return number.floatValue();
+        default:
+            return number.doubleValue();
+        }
+    }
+
+    private static int indexOf(Class<?>[] types, Class<?> type) {
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void addNotificationListener(NotificationListener listener, NotificationFilter filter, Object handback) {
+        broadcaster().addNotificationListener(listener, filter, handback);
+    }
+
+    @Override
+    public void removeNotificationListener(NotificationListener listener) throws ListenerNotFoundException {
+        NotificationBroadcasterSupport broadcaster = this.broadcaster;
+        if (broadcaster == null) {
+            throw new ListenerNotFoundException("Listener not registered");
+        }
+        broadcaster.removeNotificationListener(listener);
+    }
+
+    @Override
+    public void removeNotificationListener(NotificationListener listener, NotificationFilter filter, Object handback)
+            throws ListenerNotFoundException {
+        NotificationBroadcasterSupport broadcaster = this.broadcaster;
+        if (broadcaster == null) {
+            throw new ListenerNotFoundException("Listener not registered");
+        }
+        broadcaster.removeNotificationListener(listener, filter, handback);
+    }
+
+    @Override
+    public MBeanNotificationInfo[] getNotificationInfo() {
+        return getMBeanInfo().getNotifications();
+    }
+
+    /**
+     * Send {@code notification} to the listeners, if any, on the calling thread
+     */
+    void sendNotification(Notification notification) {
+        NotificationBroadcasterSupport broadcaster = this.broadcaster;
+        if (broadcaster != null) {
+            broadcaster.sendNotification(notification);
+        }
+    }
+
+    private synchronized NotificationBroadcasterSupport broadcaster() {
+        if (broadcaster == null) {
+            broadcaster = new NotificationBroadcasterSupport();
+        }
+        return broadcaster;
+    }
+
+    public ObjectName preRegister(MBeanServer server, ObjectName name) throws Exception {
+        ObjectName registeredName = registrationDelegate.preRegister(server, name);
+        synchronized (this) {
+            objectName = (registeredName != null) ? registeredName : name;
+            this.server = server;
+        }
+        return registeredName;
+    }
+
+    public void postRegister(Boolean registrationDone) {
+        registrationDelegate.postRegister(registrationDone);
+        if (Boolean.TRUE.equals(registrationDone)) {
+            synchronized (this) {
+                thresholdMonitor = ThresholdMonitor.forAdapter(this, objectName);
+                if (thresholdMonitor != null) {
+                    thresholdMonitor.start();
+                }
+            }
+        }
+    }
+
+    public void postDeregister() {
+        synchronized (this) {
+            if (thresholdMonitor != null) {
+                thresholdMonitor.stop();
+                thresholdMonitor = null;
+            }
+            if (server != null) {
+                org.softee.management.helper.MBeanRegistration.deregistered(server, objectName, this);
+            }
+        }
+        registrationDelegate.postDeregister();
+    }
+
+    public void preDeregister() throws Exception {
+        registrationDelegate.preDeregister();
+    }
+
+    /**
+     * The signatures of the overloads of an operation, as the class names of their parameter types, in a hash table.
+     * A signature is looked up by its hash, which is computed from the cached hash codes of the class names, so the
+     * lookup doesn't allocate, and compares one signature element-wise unless hashes collide.
+     */
+    protected static final class Signatures {
+        private final String[][] signatures;
+        /** the index + 1 of each signature, at the slot of its hash, or the next free slot; 0 if free */
+        private final int[] table;
+
+        /**
+         * @param signatures the signatures of the overloads, in the order of their indexes
+         */
+        public Signatures(String[][] signatures) {
+            this.signatures = signatures;
+            int size = Integer.highestOneBit(Math.max(1, signatures.length) * 2) * 2;
+            table = new int[size];
+            for (int i = 0; i < signatures.length; i++) {
+                int slot = Arrays.hashCode(signatures[i]) & (size - 1);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & (size - 1);
+                }
+                table[slot] = i + 1;
+            }
+        }
+
+        /**
+         * @return the index of {@code signature}, or -1 if it isn't the signature of an overload
+         */
+        int indexOf(String[] signature) {
+            int mask = table.length - 1;
+            for (int slot = Arrays.hashCode(signature) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+                int index = table[slot] - 1;
+                if (Arrays.equals(signature, signatures[index])) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Thrown by the argument conversions, to tell an illegal argument apart from an IllegalArgumentException thrown by
+     * the MBean itself. The message is the expected type.
+     */
+    private static class ArgumentException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        ArgumentException(String expected) {
+            super(expected);
+        }
+    }
+}
@@ -1,22 +1,53 @@
 package org.softee.management.helper;
 
+import static java.lang.String.format;
+
 import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.MethodDescriptor;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import javax.management.Attribute;
 import javax.management.DynamicMBean;
+import javax.management.MBeanException;
 
 import org.softee.util.Preconditions;
 
+/**
+ * Creates proxies that implement an interface by calling a {@link DynamicMBean}: a getter reads an attribute, a setter
+ * writes it, and any other method invokes the operation of the same name.<p>
+ *
+ * The methods of an interface are introspected once, and each is given a slot, so a call is one lookup of the slot of
+ * the method. When the DynamicMBean is an {@link IntrospectedDynamicMBean}, the slots are also bound to its invokers,
+ * and a call to a method whose signature matches the MBean method exactly invokes it directly, without looking up the
+ * attribute or operation by name. Getters and setters of {@link org.softee.management.annotation.Cached} attributes
+ * aren't bound, so they go through the cache of the DynamicMBean. Exceptions are reported as by the DynamicMBean
+ * either way.
+ */
 public class DynamicProxyFactory {
+    private static final int GETTER = 0;
+    private static final int SETTER = 1;
+    private static final int OPERATION = 2;
+
+    /** The slots of the methods of each proxied interface */
+    private static final ClassValue<ProxyType> TYPES = new ClassValue<ProxyType>() {
+        @Override
+        protected ProxyType computeValue(Class<?> type) {
+            return new ProxyType(type);
+        }
+    };
+
     /**
      * Non instantiable
      */
@@ -26,90 +57,233 @@ public class DynamicProxyFactory {
 
     @SuppressWarnings("unchecked")
     public static <T> T createDynamicProxy(DynamicMBean dynamicMBean, Class<T> type) throws IntrospectionException {
+        Preconditions.notNull(dynamicMBean);
+        Preconditions.notNull(type);
+        ProxyType proxyType;
+        try {
+            proxyType = TYPES.get(type);
+        } catch (IntrospectionFailure e) {
+            throw e.getCause();
+        }
         return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[] {type},
-                new DynamicMBeanInvokationHandler(dynamicMBean, type));
+                new DynamicMBeanInvokationHandler(dynamicMBean, proxyType));
     }
 
-    private static class DynamicMBeanInvokationHandler implements InvocationHandler {
-        private Map<Method, String[]> operationSignatures = new HashMap<Method, String[]>();
-        private Map<Method, String> getters = new HashMap<Method, String>();
-        private Map<Method, String> setters = new HashMap<Method, String>();
-        final DynamicMBean dynamicMBean;
-
-        public DynamicMBeanInvokationHandler(DynamicMBean dynamicMBean, Class<?> type) {
-            Preconditions.notNull(dynamicMBean);
-            Preconditions.notNull(type);
-
-            this.dynamicMBean = dynamicMBean;
+    /**
+     * The attribute or operation called by a method of a proxied interface
+     */
+    private static final class Slot {
+        final int index;
+        final int kind;
+        final String name;
+        /** the signature of the operation; null for attributes */
+        final String[] signature;
+        final Method method;
 
-            initializeSignatures(type);
+        Slot(int index, int kind, String name, Method method) {
+            this.index = index;
+            this.kind = kind;
+            this.name = name;
+            this.method = method;
+            this.signature = (kind == OPERATION) ? createSignature(method.getParameterTypes()) : null;
         }
+    }
 
-        private void initializeSignatures(Class<?> type) {
+    /**
+     * The slots of the methods of a proxied interface, and the invokers of the slots for each MBean class
+     */
+    private static final class ProxyType {
+        final Map<Method, Slot> slots = new HashMap<Method, Slot>();
+        final Slot[] slotArray;
+        /** the invoker of each slot, by metadata of an MBean class; guarded by itself */
+        private final Map<MBeanMetadata, Invoker[]> invokers = new WeakHashMap<MBeanMetadata, Invoker[]>();
+
+        ProxyType(Class<?> type) {
             BeanInfo beanInfo;
             try {
                 beanInfo = Introspector.getBeanInfo(type);
             } catch (IntrospectionException e) {
-                throw new RuntimeException(e);
+                throw new IntrospectionFailure(e);
             }
+            List<Slot> slotList = new ArrayList<Slot>();
             // identify getters and setters (potential MBean attributes)
-            PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
-            for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
+            for (PropertyDescriptor propertyDescriptor : beanInfo.getPropertyDescriptors()) {
                 String property = propertyDescriptor.getName();
-                addNotNull(getters, propertyDescriptor.getReadMethod(), property);
-                addNotNull(setters, propertyDescriptor.getWriteMethod(), property);
+                add(slotList, GETTER, property, propertyDescriptor.getReadMethod());
+                add(slotList, SETTER, property, propertyDescriptor.getWriteMethod());
             }
-
             // identify potential MBean operations
             // We could exclude getter and setter methods, but theoretically, they could be operations
-            MethodDescriptor[] methodDescriptors = beanInfo.getMethodDescriptors();
-            for (MethodDescriptor methodDescriptor : methodDescriptors) {
+            for (MethodDescriptor methodDescriptor : beanInfo.getMethodDescriptors()) {
                 Method method = methodDescriptor.getMethod();
-                operationSignatures.put(method, createSignature(method.getParameterTypes()));
+                add(slotList, OPERATION, method.getName(), method);
+            }
+            slotArray = slotList.toArray(new Slot[slotList.size()]);
+        }
+
+        private void add(List<Slot> slotList, int kind, String name, Method method) {
+            if (method != null && !slots.containsKey(method)) {
+                Slot slot = new Slot(slotList.size(), kind, name, method);
+                slots.put(method, slot);
+                slotList.add(slot);
+            }
+        }
+
+        /**
+         * @return the invoker of each slot, or null for slots that must be called by name
+         */
+        Invoker[] invokers(MBeanMetadata metadata) {
+            synchronized (invokers) {
+                Invoker[] bound = invokers.get(metadata);
+                if (bound == null) {
+                    bound = bind(metadata);
+                    invokers.put(metadata, bound);
+                }
+                return bound;
+            }
+        }
+
+        private Invoker[] bind(MBeanMetadata metadata) {
+            Invoker[] bound = new Invoker[slotArray.length];
+            for (Slot slot : slotArray) {
+                Invoker invoker;
+                switch (slot.kind) {
+                case GETTER:
+                    // cached attributes are read through the cache
+                    invoker = (metadata.cachePolicy(slot.name) == null) ? metadata.getter(slot.name) : null;
+                    break;
+                case SETTER:
+                    invoker = (metadata.cachePolicy(slot.name) == null) ? metadata.setter(slot.name) : null;
+                    break;
+                default:
+                    invoker = metadata.operation(slot.name, slot.signature, null);
+                }
+                if (invoker != null && matches(slot.method, invoker.getMethod())) {
+                    bound[slot.index] = invoker;
+                }
             }
+            return bound;
         }
 
-        private <T> void addNotNull(Map<Method, String> properties, Method method, String name) {
-            if (method != null) {
-                properties.put(method, name);
+        /**
+         * @return true if {@code target} can be invoked with the arguments of {@code method} without conversion, and
+         * returns a value that {@code method} may return
+         */
+        private static boolean matches(Method method, Method target) {
+            if (!Arrays.equals(method.getParameterTypes(), target.getParameterTypes())) {
+                return false;
+            }
+            Class<?> returnType = method.getReturnType();
+            return returnType == void.class || returnType.isAssignableFrom(target.getReturnType());
+        }
+    }
+
+    private static class DynamicMBeanInvokationHandler implements InvocationHandler {
+        private final ProxyType proxyType;
+        final DynamicMBean dynamicMBean;
+        /** the MBean invoked directly by the invokers, or null */
+        private final Object mbean;
+        /** the invoker of each slot, or null if the slot must be called through {@link #dynamicMBean} */
+        private final Invoker[] invokers;
+
+        public DynamicMBeanInvokationHandler(DynamicMBean dynamicMBean, ProxyType proxyType) {
+            this.dynamicMBean = dynamicMBean;
+            this.proxyType = proxyType;
+            if (dynamicMBean instanceof IntrospectedDynamicMBean) {
+                IntrospectedDynamicMBean introspected = (IntrospectedDynamicMBean) dynamicMBean;
+                mbean = introspected.mbean;
+                invokers = proxyType.invokers(introspected.getMetadata());
+            } else {
+                mbean = null;
+                invokers = new Invoker[proxyType.slotArray.length];
             }
         }
 
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-            String getterAttribute = getters.get(method);
-            if (getterAttribute != null) {
-                return dynamicMBean.getAttribute(getterAttribute);
+            Slot slot = proxyType.slots.get(method);
+            if (slot == null) {
+                throw new IllegalArgumentException("Unknown method: " + method);
             }
-            String setterAttribute = setters.get(method);
-            if (setterAttribute != null) {
+            Invoker invoker = invokers[slot.index];
+            switch (slot.kind) {
+            case GETTER:
+                if (invoker != null) {
+                    try {
+                        return invoker.invoke(mbean);
+                    } catch (InvocationTargetException e) {
+                        throw new MBeanException(cause(e), format("attribute %s of %s", slot.name, mbean.getClass()));
+                    }
+                }
+                return dynamicMBean.getAttribute(slot.name);
+
+            case SETTER:
                 if (args == null || args.length != 1) {
                     throw new IllegalArgumentException(
                             String.format("Setter method was called with != 1 arguments: %s", method));
                 }
-                dynamicMBean.setAttribute(new Attribute(setterAttribute, args[0]));
+                if (invoker != null) {
+                    try {
+                        invoker.invoke(mbean, args[0]);
+                    } catch (InvocationTargetException e) {
+                        throw new MBeanException(cause(e), format("attribute %s of %s", slot.name, mbean.getClass()));
+                    }
+                } else {
+                    dynamicMBean.setAttribute(new Attribute(slot.name, args[0]));
+                }
                 return null; // return void
-            }
 
-            String[] operationSignature = operationSignatures.get(method);
-            if (operationSignature != null) {
-                return dynamicMBean.invoke(method.getName(), args, operationSignature);
+            default:
+                if (invoker != null) {
+                    try {
+                        return invoker.invoke(mbean, (args != null) ? args : Invoker.NO_ARGS);
+                    } catch (InvocationTargetException e) {
+                        throw new MBeanException(cause(e));
+                    }
+                }
+                return dynamicMBean.invoke(slot.name, args, slot.signature);
             }
-            throw new IllegalArgumentException("Unknown method: " + method);
         }
 
         /**
-         * Convert the parameter types of Method.invoke() into the signature of DynamicMBean.invoke()
-         * @param parameterTypes parameter types of Method.invoke()
-         * @return signature of DynamicMBean.invoke()
+         * @return the exception thrown by an invoked method
+         * @throws Error if the invoked method threw an Error
          */
-        private String[] createSignature(Class<?>[] parameterTypes) {
-            // create signature from class array and insert in cache
-            String[] signature = new String[parameterTypes.length];
-            for (int i = 0; i < parameterTypes.length; i++) {
-                signature[i] = parameterTypes[i].getName();
+        private static Exception cause(InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
             }
-            return signature;
+            return (Exception) cause;
+        }
+    }
+
+    /**
+     * Convert the parameter types of Method.invoke() into the signature of DynamicMBean.invoke()
+     * @param parameterTypes parameter types of Method.invoke()
+     * @return signature of DynamicMBean.invoke()
+     */
+    private static String[] createSignature(Class<?>[] parameterTypes) {
+        // create signature from class array and insert in cache
+        String[] signature = new String[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            signature[i] = parameterTypes[i].getName();
         }
+        return signature;
+    }
+
+    /**
+     * Carries an IntrospectionException out of {@link ClassValue#computeValue(Class)}
+     */
+    private static final class IntrospectionFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
 
+        IntrospectionFailure(IntrospectionException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IntrospectionException getCause() {
+            return (IntrospectionException) super.getCause();
+        }
     }
 }
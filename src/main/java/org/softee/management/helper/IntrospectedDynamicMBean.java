@@ -2,357 +2,276 @@ package org.softee.management.helper;
 
 import static java.lang.String.format;
 
-import java.beans.BeanInfo;
-import java.beans.Introspector;
-import java.beans.MethodDescriptor;
-import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
-import java.lang.reflect.AccessibleObject;
-import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
-import javax.management.Attribute;
-import javax.management.AttributeList;
-import javax.management.AttributeNotFoundException;
 import javax.management.DynamicMBean;
-import javax.management.IntrospectionException;
-import javax.management.InvalidAttributeValueException;
-import javax.management.MBeanAttributeInfo;
-import javax.management.MBeanConstructorInfo;
-import javax.management.MBeanException;
 import javax.management.MBeanInfo;
-import javax.management.MBeanNotificationInfo;
-import javax.management.MBeanOperationInfo;
 import javax.management.MBeanParameterInfo;
 import javax.management.MBeanRegistration;
-import javax.management.MBeanServer;
-import javax.management.ObjectName;
-import javax.management.ReflectionException;
+import javax.management.openmbean.OpenMBeanAttributeInfoSupport;
 
+import org.softee.management.AbstractMBean;
+import org.softee.management.annotation.Cached;
 import org.softee.management.annotation.Description;
 import org.softee.management.annotation.MBean;
-import org.softee.management.annotation.MBean.AutomaticType;
-import org.softee.management.annotation.ManagedAttribute;
-import org.softee.management.annotation.ManagedOperation;
-import org.softee.management.annotation.ManagedOperation.Impact;
 import org.softee.management.annotation.Parameter;
 import org.softee.management.exception.ManagementException;
-import org.softee.util.Objects;
+import org.softee.management.helper.MBeanMetadata.CachePolicy;
+import org.softee.time.Clock;
 /**
- * A DynamicMBean that can introspect an annotated POJO bean and expose it as a DynamicMBean
+ * A DynamicMBean that can introspect an annotated POJO bean and expose it as a DynamicMBean.<p>
+ *
+ * If the bean is annotated with {@link MBean#openTypes()}, attribute values are converted to and from open types, as
+ * described by {@link OpenMBeanAttributeInfoSupport} in the {@link MBeanInfo}.<p>
+ *
+ * The values of {@link Cached} attributes are cached by each instance, and expire by the clock of the bean if it's an
+ * {@link AbstractMBean}, otherwise by {@link Clock#getDefault()}. Expired values are refreshed by one reader at a time,
+ * or by a shared background thread.
  *
  * @author morten.hattesen@gmail.com
  *
  */
-public class IntrospectedDynamicMBean implements DynamicMBean, MBeanRegistration {
-    private final Object mbean;
+public class IntrospectedDynamicMBean extends DynamicMBeanAdapter<Object> {
+    /** refreshes cached attributes in the background; created on first use, and ends when idle */
+    private static ThreadPoolExecutor refresher;
+
     private final Class<?> mbeanClass;
-    private final MBeanRegistration registrationDelegate;
-    private final Map<String, PropertyDescriptor> propertyDescriptors;
-    private final Map<String, Method> operationMethods;
-    private final MBeanInfo mbeanInfo;
+    private final MBeanMetadata metadata;
+    /** the cached values of the cached attributes, by {@link CachePolicy#index} */
+    private final CachedValue[] cachedValues;
 
     /** Constructs a Dynamic MBean by introspecting a POJO MBean {@code annotatedMBean}.
-     * If {@code mbean} implements {@link MBeanRegistration}, it will receive callbacks to that interface's methods
+     * If {@code mbean} implements {@link MBeanRegistration}, it will receive callbacks to that interface's methods.<p>
+     * The introspection result of the class of {@code mbean} is cached, and shared with all other instances of the class
      * @param mbean a POJO MBean annotated with {@link MBean}, that should be exposed as a {@link DynamicMBean}
      * @throws ManagementException if an exception occurs during the introspection of {@code mbean}
      * @throws IllegalArgumentException if {@code mbean} is not annotated with {@link MBean}
      */
     public IntrospectedDynamicMBean(Object mbean) throws ManagementException {
-        this.mbean = mbean;
+        super(mbean);
         this.mbeanClass = mbean.getClass();
         if (!mbeanClass.isAnnotationPresent(MBean.class)) {
             throw new IllegalArgumentException(
                     format("MBean %s is not annotated with @%s", mbeanClass, MBean.class.getName()));
         }
-        registrationDelegate = (MBeanRegistration) ((mbean instanceof MBeanRegistration) ? mbean
-                : new MBeanRegistrationBase());
-        try {
-            BeanInfo beanInfo = Introspector.getBeanInfo(mbeanClass);
-            propertyDescriptors = createPropertyDescriptors(beanInfo);
-            operationMethods = createOperationMethods(beanInfo);
-            mbeanInfo = createMbeanInfo(mbeanClass, propertyDescriptors, operationMethods);
-        } catch (IntrospectionException e) {
-            throw new ManagementException(e);
-        } catch (java.beans.IntrospectionException e) {
-            throw new ManagementException(e);
+        metadata = MBeanMetadata.forClass(mbeanClass);
+        cachedValues = new CachedValue[metadata.getCachedAttributeCount()];
+        for (int i = 0; i < cachedValues.length; i++) {
+            cachedValues[i] = new CachedValue();
         }
     }
 
-    /**
-     * @param attribute the attribute whose value is requested
-     * @return the reflected value of attribute
-     */
-    // @Override commented out for JDK 5 compatibility
-    public Object getAttribute(String attribute) throws AttributeNotFoundException,
-            MBeanException, ReflectionException {
-        PropertyDescriptor propertyDescriptor = propertyDescriptors.get(attribute);
-        if (propertyDescriptor == null) {
-            throw new AttributeNotFoundException(attribute);
-        }
-        Method getter = propertyDescriptor.getReadMethod();
+    @Override
+    protected Object getValue(String attribute) throws Exception {
+        Invoker getter = metadata.getter(attribute);
         if (getter == null) {
-            throw new AttributeNotFoundException(
-                    format("Getter method for attribute %s of %s", attribute, mbeanClass));
+            return NO_VALUE;
         }
-        try {
-            if (!getter.isAccessible()) {
-                getter.setAccessible(true);
+        if (cachedValues.length != 0) {
+            CachePolicy policy = metadata.cachePolicy(attribute);
+            if (policy != null) {
+                return cachedValues[policy.index].get(attribute, getter, policy);
             }
-            return getter.invoke(mbean);
-        } catch (InvocationTargetException e) {
-            throw new MBeanException((Exception) e.getCause());
-        } catch (Exception e) {
-            throw new RuntimeException(
-                    format("Unable to obtain value of attribute %s of %s", attribute, mbeanClass));
         }
+        return read(attribute, getter);
     }
 
     /**
-     * @param attributeNames the attribute names whose values are requested
-     * @return an attribute list describing each of attributeNames
+     * @return the value of {@code attribute} returned by {@code getter}, converted to its open type if it's mapped
      */
-    // @Override commented out for JDK 5 compatibility
-    public AttributeList getAttributes(String[] attributeNames) {
-        AttributeList attributes = new AttributeList(attributeNames.length);
-        for (String attributeName : attributeNames) {
-            try {
-                Attribute attribute = new Attribute(attributeName, getAttribute(attributeName));
-                attributes.add(attribute);
-            } catch (Exception e) {
-                // Must be a mistake that the signature doesn't allow throwing exceptions
-                throw new IllegalArgumentException(e);
-            }
+    private Object read(String attribute, Invoker getter) throws Exception {
+        OpenTypeMapping mapping = metadata.mapping(attribute);
+        try {
+            Object value = getter.invoke(mbean);
+            return (mapping != null) ? mapping.toOpenValue(value) : value;
+        } catch (InvocationTargetException e) {
+            throw cause(e);
         }
-        return attributes;
     }
 
-    /**
-     * @param attribute the attribute for which to update the value
-     */
-    // @Override commented out for JDK 5 compatibility
-    public void setAttribute(Attribute attribute) throws AttributeNotFoundException,
-    InvalidAttributeValueException, MBeanException, ReflectionException {
-        String name = attribute.getName();
-        PropertyDescriptor propertyDescriptor = propertyDescriptors.get(name);
-        if (propertyDescriptor == null) {
-            throw new AttributeNotFoundException(name);
-        }
-        Method setter = propertyDescriptor.getWriteMethod();
-        if (setter == null) {
-            throw new AttributeNotFoundException(format("setter method for attribute %s of %s", name, mbeanClass));
-        }
-        Object value = attribute.getValue();
-        try {
-            if (!setter.isAccessible()) {
-                setter.setAccessible(true);
-            }
-            setter.invoke(mbean, value);
-        } catch (IllegalArgumentException e) {
-            throw new InvalidAttributeValueException(String.format("attribute %s, value = (%s)%s, expected (%s)",
-                    name, value.getClass().getName(), value, setter.getParameterTypes()[0].getName()));
-        } catch (IllegalAccessException e) {
-            throw new ReflectionException(e, format("attribute %s of %s, value = (%s)%s",
-                    name, mbeanClass, value.getClass().getName(), value));
-        } catch (InvocationTargetException e) {
-            throw new MBeanException((Exception) e.getCause(), format("attribute %s of %s, value = (%s)%s",
-                    name, mbeanClass, value.getClass().getName(), value));
+    private Clock clock() {
+        return (mbean instanceof AbstractMBean) ? ((AbstractMBean) mbean).getClock() : Clock.getDefault();
+    }
+
+    private static synchronized ThreadPoolExecutor refresher() {
+        if (refresher == null) {
+            refresher = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "pojo-mbean-attribute-refresh");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            refresher.allowCoreThreadTimeOut(true);
         }
+        return refresher;
     }
 
     /**
-     *  @param attributes a list of attributes for which to update the value
+     * The cached value of a {@link Cached} attribute. The value is replaced by the thread holding the lock, so the
+     * getter is called by one thread at a time.
      */
-    // @Override commented out for JDK 5 compatibility
-    public AttributeList setAttributes(AttributeList attributes) {
-        for (Object object : attributes) {
-            Attribute attribute = (Attribute) object;
-            try {
-                setAttribute(attribute);
-            } catch (Exception e) {
-                // Must be a mistake that the signature doesn't allow throwing exceptions
-                throw new IllegalArgumentException(e);
+    private final class CachedValue {
+        private final ReentrantLock lock = new ReentrantLock();
+        /** true while a background refresh is queued or running */
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile Entry entry;
+
+        Object get(final String attribute, final Invoker getter, final CachePolicy policy) throws Exception {
+            final Clock clock = clock();
+            Entry e = entry;
+            if (e != null) {
+                if (clock.nanoTime() - e.expiresNanos < 0) {
+                    return e.value;
+                }
+                if (policy.background) {
+                    if (refreshing.compareAndSet(false, true)) {
+                        refresher().execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    refresh(attribute, getter, policy, clock);
+                                } catch (Exception ignore) {
+                                    // the expired value is served, and the next read retries
+                                } finally {
+                                    refreshing.set(false);
+                                }
+                            }
+                        });
+                    }
+                    return e.value;
+                }
+                if (lock.isLocked()) {
+                    // being refreshed by another reader
+                    return e.value;
+                }
             }
+            return refresh(attribute, getter, policy, clock);
         }
-        // It seems like an API mistake that we have to return the attributes
-        return attributes;
-    }
 
-    // @Override commented out for JDK 5 compatibility
-    public MBeanInfo getMBeanInfo() {
-        return mbeanInfo;
-    }
-
-    // @Override commented out for JDK 5 compatibility
-    public Object invoke(String actionName, Object[] params, String[] signature)
-            throws MBeanException, ReflectionException {
-        Method method = operationMethods.get(actionName);
-        //TODO verify that the right signature is picked to avoid throwing an IllegalArgumentException
-        if (method == null) {
-            throw new IllegalArgumentException("No such operation: " + actionName);
-        }
-        try {
-            if (!method.isAccessible()) {
-                method.setAccessible(true);
+        /**
+         * Discard the cached value, so the next read calls the getter. Waits for a refresh in progress, which may have
+         * read the value before it was set.
+         */
+        void invalidate() {
+            lock.lock();
+            try {
+                entry = null;
+            } finally {
+                lock.unlock();
             }
-            return method.invoke(mbean, params);
-        } catch (InvocationTargetException e) {
-            throw new MBeanException((Exception) e.getCause());
-        } catch (Exception e) {
-            throw new IllegalArgumentException(e);
         }
 
+        /**
+         * @return the cached value, after calling the getter unless another thread has refreshed the value meanwhile
+         */
+        private Object refresh(String attribute, Invoker getter, CachePolicy policy, Clock clock) throws Exception {
+            lock.lock();
+            try {
+                Entry e = entry;
+                if (e != null && clock.nanoTime() - e.expiresNanos < 0) {
+                    return e.value;
+                }
+                Object value = read(attribute, getter);
+                entry = new Entry(value, clock.nanoTime() + policy.ttlNanos);
+                return value;
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 
     /**
-     * @param mbeanClass the class that declares properties and operations
-     * @param propertyDescriptors descriptors for all beans that are explicitly or implicitly annotated as attributes
-     * @param mbean the annotated POJO MBean
-     * @return an MBeanInfo created by introspecting the {@code mbean}
-     * @throws IntrospectionException
-     * @throws javax.management.IntrospectionException
-     * @throws ManagementException
+     * A cached value, and the {@link Clock#nanoTime()} at which it expires
      */
-    private static MBeanInfo createMbeanInfo(Class<?> mbeanClass, Map<String, PropertyDescriptor> propertyDescriptors,
-            Map<String, Method> operationMethods) throws IntrospectionException, ManagementException {
-        String description = description(mbeanClass);
-        final MBeanAttributeInfo[] attributeInfo = createAttributeInfo(propertyDescriptors);
-        final MBeanConstructorInfo[] constructorInfo = createConstructorInfo();
-        final MBeanOperationInfo[] operationInfo = createOperationInfo(operationMethods);
-        final MBeanNotificationInfo[] notificationInfo = createNotificationInfo();
-        return new MBeanInfo(
-                mbeanClass.getName(),
-                description,
-                attributeInfo,
-                constructorInfo,
-                operationInfo,
-                notificationInfo);
-    }
+    private static final class Entry {
+        final Object value;
+        final long expiresNanos;
 
-    /**
-     * TODO should this be implemented?
-     * @return null
-     */
-    private static MBeanNotificationInfo[] createNotificationInfo() {
-        return null;
+        Entry(Object value, long expiresNanos) {
+            this.value = value;
+            this.expiresNanos = expiresNanos;
+        }
     }
 
-    /**
-     * TODO: Consider allowing multiple matches for each (overloaded) method name
-     *
-     * @return The methods that constitute the operations
-     * @throws ManagementException if multiple Operation annotations exist on identically named (overloaded) methods
-     */
-    private static Map<String, Method> createOperationMethods(BeanInfo beanInfo) throws ManagementException {
-        Set<Method> allAccessors = allAccessors(beanInfo);
-        Map<String, Method> operationMethods = new HashMap<String, Method>();
-        for (MethodDescriptor descriptor : beanInfo.getMethodDescriptors()) {
-            Method method = descriptor.getMethod();
-            ManagedOperation operationAnnotation = method.getAnnotation(ManagedOperation.class);
-            if (operationAnnotation != null && allAccessors.contains(method)) {
-                throw new ManagementException(
-                        String.format("Accessor method %s is annotated as an @%s", method, ManagedOperation.class.getName()));
-            }
-            /* consider the Method an automatic operation if it satisfies all of:
-             * 1. its class is annotated with @MBean(automatic=OPERATION)
-             * 2. it is a public instance (non static) method
-             * 3. it is NOT considered a bean accessor (getter/setter)
-             */
-            boolean isAutomatic = isAutomatic(method.getDeclaringClass(), AutomaticType.OPERATION);
-            boolean autoOperation = (isAutomatic && isPublicInstance(method) && !allAccessors.contains(method));
-            if (operationAnnotation != null || autoOperation) {
-                // This method is an operation
-                Method old = operationMethods.put(method.getName(), method);
-                if (old != null) {
-                    //TODO support multiple identically named operation methods
-                    throw new ManagementException(format("Multiple Operation annotations for operation %s of %s",
-                            method.getName(), old.getDeclaringClass()));
-                }
+    @Override
+    protected boolean setValue(String attribute, Object value) throws Exception {
+        Invoker setter = metadata.setter(attribute);
+        if (setter == null) {
+            return false;
+        }
+        OpenTypeMapping mapping = metadata.mapping(attribute);
+        if (mapping != null) {
+            value = mapping.fromOpenValue(value);
+        }
+        try {
+            setter.invoke(mbean, argument(value, setter.getMethod().getParameterTypes()[0]));
+        } catch (InvocationTargetException e) {
+            throw cause(e);
+        }
+        if (cachedValues.length != 0) {
+            CachePolicy policy = metadata.cachePolicy(attribute);
+            if (policy != null) {
+                cachedValues[policy.index].invalidate();
             }
         }
-        return operationMethods;
+        return true;
     }
 
-    private static boolean isPublicInstance(Method method) {
-        int mod = method.getModifiers();
-        return Modifier.isPublic(mod) && !Modifier.isStatic(mod);
+    @Override
+    protected Object invokeOperation(String operation, Object[] params, String[] signature) throws Exception {
+        Invoker invoker = metadata.operation(operation, signature, params);
+        if (invoker == null) {
+            return NO_VALUE;
+        }
+        Class<?>[] parameterTypes = invoker.getMethod().getParameterTypes();
+        Object[] args = arguments(params, parameterTypes.length).clone();
+        for (int i = 0; i < args.length; i++) {
+            args[i] = argument(args[i], parameterTypes[i]);
+        }
+        try {
+            return invoker.invoke(mbean, args);
+        } catch (InvocationTargetException e) {
+            throw cause(e);
+        }
     }
 
-    private static Set<Method> allAccessors(BeanInfo beanInfo) {
-        PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
-        Set<Method> accessors = new HashSet<Method>(propertyDescriptors.length * 2);
-        for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
-            addNotNull(accessors, propertyDescriptor.getReadMethod());
-            addNotNull(accessors, propertyDescriptor.getWriteMethod());
-        }
-        return accessors;
+    // @Override commented out for JDK 5 compatibility
+    public MBeanInfo getMBeanInfo() {
+        return metadata.getMBeanInfo();
     }
 
-    public static <T> void addNotNull(Collection<T> collection, T element) {
-        if (element != null) {
-            collection.add(element);
-        }
+    MBeanMetadata getMetadata() {
+        return metadata;
     }
 
     /**
-     * @return an MBeanOPerationInfo array that describes the {@link ManagedOperation} annotated methods of the operationMethods
-     * @throws ManagementException
+     * @return the exception thrown by an invoked method
+     * @throws Error if the invoked method threw an Error
      */
-    private static MBeanOperationInfo[] createOperationInfo(Map<String, Method> operationMethods) throws ManagementException {
-        MBeanOperationInfo[] operationInfos = new MBeanOperationInfo[operationMethods.size()];
-        int operationIndex = 0;
-        // Iterate in method name order
-        for (String methodName : sortedKeys(operationMethods)) {
-            Method method = operationMethods.get(methodName);
-            ManagedOperation annotation = method.getAnnotation(ManagedOperation.class);
-            // add description and names to parameters
-            MBeanParameterInfo[] signature = createParameterInfo(method);
-            // add description and parameter info to operation method
-            Impact impact = annotation == null ? Impact.UNKNOWN : annotation.value();
-            int impactValue = impact.impactValue;
-            String description = description(method);
-            MBeanOperationInfo opInfo = new MBeanOperationInfo(
-                    method.getName(),
-                    description,
-                    signature,
-                    method.getReturnType().getName(),
-                    impactValue,
-                    null);
-            operationInfos[operationIndex++] = opInfo;
+    private static Exception cause(InvocationTargetException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Error) {
+            throw (Error) cause;
         }
-        return operationInfos;
+        return (Exception) cause;
     }
 
-    /**
-     *
-     * @param clazz a class or interface
-     * @param autoType the type of auto annotation to check for
-     * @return true if {@code method}'s declaring class is annotated with {@link MBean} that includes {@code autoType} in
-     * its {@link MBean#automatic()} attribute
-     */
-    private static boolean isAutomatic(Class<?> clazz, AutomaticType autoType) {
-        MBean annotation = clazz.getAnnotation(MBean.class);
-        if (annotation == null) {
-            return false;
-        }
-        AutomaticType[] values = annotation.automatic();
-        // believe me, this is the fastest way of doing a contains() on this array
-        for (AutomaticType value : values) {
-            if (value == autoType) {
-                return true;
-            }
+    public static <T> void addNotNull(Collection<T> collection, T element) {
+        if (element != null) {
+            collection.add(element);
         }
-        return false;
     }
 
     protected static MBeanParameterInfo[] createParameterInfo(Method method) {
@@ -369,101 +288,6 @@ public class IntrospectedDynamicMBean implements DynamicMBean, MBeanRegistration
         return parameters;
     }
 
-    /**
-     * TODO should this be implemented?
-     * @return null
-     */
-    private static MBeanConstructorInfo[] createConstructorInfo() {
-        return null;
-    }
-
-    /**
-     * @return all properties where getter or setter is annotated with {@link ManagedAttribute}
-     * @throws ManagementException
-     */
-    private static Map<String, PropertyDescriptor> createPropertyDescriptors(BeanInfo beanInfo) throws ManagementException {
-        Map<String, PropertyDescriptor> properties = new HashMap<String, PropertyDescriptor>();
-        for (PropertyDescriptor property : beanInfo.getPropertyDescriptors()) {
-            ManagedAttribute getterAnnotation = getAnnotation(property.getReadMethod(), ManagedAttribute.class);
-            ManagedAttribute setterAnnotation = getAnnotation(property.getWriteMethod(), ManagedAttribute.class);
-            if (isAutomatic(property) || getterAnnotation != null || setterAnnotation != null) {
-                properties.put(property.getName(), property);
-            }
-        }
-        return properties;
-    }
-
-    /**
-     *
-     * @param propertyDescriptors property descriptors that are known to have at least one {@link ManagedAttribute}
-     * annotation on its getter or setter method
-     * @return MBean attributeInfo instances with getter/setter methods and description according to annotations
-     * @throws ManagementException
-     * @throws IntrospectionException
-     */
-    private static MBeanAttributeInfo[] createAttributeInfo(Map<String, PropertyDescriptor> propertyDescriptors) throws ManagementException, IntrospectionException {
-        MBeanAttributeInfo[] infos = new MBeanAttributeInfo[propertyDescriptors.size()];
-        int i = 0;
-        // iterate over properties that are known to have ManagedAttribute annotations, sorted by name
-        for (String propertyName : sortedKeys(propertyDescriptors)) {
-            PropertyDescriptor property = propertyDescriptors.get(propertyName);
-            boolean isAutomatic = isAutomatic(property);
-            Method readMethod = property.getReadMethod();
-            Method writeMethod = property.getWriteMethod();
-            boolean readable = isAutomatic || (null != getAnnotation(readMethod, ManagedAttribute.class));
-            boolean writable = isAutomatic || (null != getAnnotation(writeMethod, ManagedAttribute.class));
-            Description descriptionAnnotation = getSingleAnnotation(property, Description.class, readMethod, writeMethod);
-            String description = (descriptionAnnotation != null) ? descriptionAnnotation.value() : null;
-            MBeanAttributeInfo info = new MBeanAttributeInfo(
-                    property.getName(),
-                    description,
-                    readable ? readMethod : null,
-                    writable ? writeMethod : null);
-            infos[i++] = info;
-        }
-        return infos;
-    }
-
-    /**
-     *
-     * @param property
-     * @return true if the declaring class is marked {@link MBean#automatic()} with {@link AutomaticType#OPERATION}
-     */
-    private static boolean isAutomatic(PropertyDescriptor property) {
-        Method accessor = Objects.firstNotNull(property.getReadMethod(), property.getWriteMethod());
-        boolean isAutomatic = isAutomatic(accessor.getDeclaringClass(), AutomaticType.ATTRIBUTE);
-        return isAutomatic;
-    }
-
-    /**
-     *
-     * @param <T>
-     * @param property The property to which entities belong
-     * @param annotationClass Annotation type
-     * @param entities A number of {@code Method}'s or {@code null}'s
-     * @return The one (and only) annotation of type {@code annotationClass} that appears on {@code methods},
-     * or null if none of the entities are annotated with annotationClass
-     * @throws ManagementException if more than one of the entities are annotated with annotationClass
-     */
-    private static <T extends Annotation> T getSingleAnnotation(PropertyDescriptor property, Class<T> annotationClass,
-            AccessibleObject... entities) throws ManagementException {
-        T result = null;
-        for (AccessibleObject entity : entities) {
-            if (entity != null) {
-                T annotation = entity.getAnnotation(annotationClass);
-                if (annotation != null) {
-                    if (result != null) {
-                        throw new ManagementException(
-                                String.format("Multiple %s annotations found for property %s",
-                                        annotationClass.getName(), property.getName()));
-                    }
-                    result = annotation;
-                }
-            }
-        }
-        return result;
-    }
-
     /**
      * Find an annotation for a parameter on a method.
      *
@@ -482,62 +306,4 @@ public class IntrospectedDynamicMBean implements DynamicMBean, MBeanRegistration
         }
         return null;
     }
-
-    /**
-     * Null safe annotation checker
-     * @param <A>
-     * @param element element or null
-     * @param annotationClass
-     * @return the annotation, if element is not null and the annotation is present. Otherwise null
-     */
-    private static <A extends Annotation> A getAnnotation(AnnotatedElement element, Class<A> annotationClass) {
-        return (element != null) ? element.getAnnotation(annotationClass) : null;
-    }
-
-    private static String description(AnnotatedElement element) {
-        Description annotation = element.getAnnotation(Description.class);
-        String explicitValue = (annotation != null) ? annotation.value() : null;
-        if (explicitValue != null && !explicitValue.isEmpty()) {
-            return explicitValue;
-        } else {
-            return generatedDescription(element);
-        }
-    }
-
-    private static String generatedDescription(AnnotatedElement element) {
-        if (element instanceof Method) {
-            Method method = (Method) element;
-            return method.getName() + "() of " + method.getDeclaringClass().getSimpleName();
-        } else if (element instanceof Class) {
-            return "class " + ((Class<?>)element).getName();
-
-        }
-        return element.toString();
-    }
-
-    /**
-     * @param map
-     * @return a list of the keys in map, sorted
-     */
-    private static List<String> sortedKeys(Map<String, ?> map) {
-        List<String> keys = new ArrayList<String>(map.keySet());
-        Collections.sort(keys);
-        return keys;
-    }
-
-    public ObjectName preRegister(MBeanServer server, ObjectName name) throws Exception {
-        return registrationDelegate.preRegister(server, name);
-    }
-
-    public void postRegister(Boolean registrationDone) {
-        registrationDelegate.postRegister(registrationDone);
-    }
-
-    public void postDeregister() {
-        registrationDelegate.postDeregister();
-    }
-
-    public void preDeregister() throws Exception {
-        registrationDelegate.preDeregister();
-    }
 }
@@ -0,0 +1,251 @@
+package org.softee.management.helper;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Invokes a single method (attribute getter, attribute setter or operation) on an MBean instance.<p>
+ *
+ * Invokers are bound once, when an MBean class is introspected. Instance methods taking zero or one argument are
+ * bound to a class generated by {@link LambdaMetafactory}, which calls the method directly. All other methods, and
+ * methods that can't be bound (e.g. because the declaring class isn't accessible or visible), are invoked through
+ * reflection. Setting the system property {@value #REFLECTIVE_PROPERTY} to {@code true} forces reflection for all
+ * methods.<p>
+ *
+ * Regardless of the implementation, invokers behave like {@link Method#invoke(Object, Object...)}: illegal arguments
+ * cause an {@link IllegalArgumentException}, and any exception thrown by the method itself is wrapped in an
+ * {@link InvocationTargetException}.
+ */
+abstract class Invoker {
+    /**
+     * System property that forces all invokers to use reflection
+     */
+    static final String REFLECTIVE_PROPERTY = "org.softee.management.reflectiveInvokers";
+
+    static final Object[] NO_ARGS = new Object[0];
+
+    private static final boolean REFLECTIVE = Boolean.getBoolean(REFLECTIVE_PROPERTY);
+
+    protected final Method method;
+
+    protected Invoker(Method method) {
+        this.method = method;
+    }
+
+    /**
+     * @param method the method to bind
+     * @return an invoker for {@code method}, bound to a generated class if possible
+     */
+    static Invoker forMethod(Method method) {
+        try {
+            method.setAccessible(true);
+        } catch (SecurityException ignore) {
+            // access will be checked when the method is invoked
+        }
+        if (!REFLECTIVE && !Modifier.isStatic(method.getModifiers()) && method.getParameterTypes().length <= 1
+                && isVisible(method)) {
+            try {
+                return new GeneratedInvoker(method);
+            } catch (Throwable ignore) {
+                // fall back to reflection
+            }
+        }
+        return new ReflectiveInvoker(method);
+    }
+
+    Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Invoke a method that takes no arguments, e.g. an attribute getter
+     */
+    Object invoke(Object target) throws IllegalAccessException, InvocationTargetException {
+        return invoke(target, NO_ARGS);
+    }
+
+    /**
+     * Invoke a method that takes a single argument, e.g. an attribute setter
+     */
+    Object invoke(Object target, Object arg) throws IllegalAccessException, InvocationTargetException {
+        return invoke(target, new Object[] {arg});
+    }
+
+    abstract Object invoke(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException;
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + method + "]";
+    }
+
+    /**
+     * @return true if all types of {@code method}'s signature can be resolved by this class' class loader, which is
+     * where the generated class is defined
+     */
+    private static boolean isVisible(Method method) {
+        ClassLoader loader = Invoker.class.getClassLoader();
+        if (!isVisible(method.getDeclaringClass(), loader) || !isVisible(method.getReturnType(), loader)) {
+            return false;
+        }
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            if (!isVisible(parameterType, loader)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isVisible(Class<?> type, ClassLoader loader) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        try {
+            return Class.forName(type.getName(), false, loader) == type;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Invoker using {@link Method#invoke(Object, Object...)}
+     */
+    static class ReflectiveInvoker extends Invoker {
+        ReflectiveInvoker(Method method) {
+            super(method);
+        }
+
+        @Override
+        Object invoke(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException {
+            return method.invoke(target, args);
+        }
+    }
+
+    /** Implemented by generated classes, binding an instance method with no parameters and a return value */
+    interface Function0 {
+        Object apply(Object target);
+    }
+
+    /** Implemented by generated classes, binding a void instance method with no parameters */
+    interface Procedure0 {
+        void apply(Object target);
+    }
+
+    /** Implemented by generated classes, binding an instance method with one parameter and a return value */
+    interface Function1 {
+        Object apply(Object target, Object arg);
+    }
+
+    /** Implemented by generated classes, binding a void instance method with one parameter */
+    interface Procedure1 {
+        void apply(Object target, Object arg);
+    }
+
+    /**
+     * Invoker calling an instance method with at most one parameter through a class generated by
+     * {@link LambdaMetafactory}.<p>
+     * An argument that requires a widening primitive conversion (e.g. an {@code Integer} passed to a {@code long}
+     * parameter) is passed on to {@link Method#invoke(Object, Object...)}, which performs the conversion.
+     */
+    static class GeneratedInvoker extends Invoker {
+        private final Class<?> targetType;
+        /** the wrapper type of the parameter, or null if the method has no parameter */
+        private final Class<?> argType;
+        private final boolean primitiveArg;
+        private final Function0 function0;
+        private final Procedure0 procedure0;
+        private final Function1 function1;
+        private final Procedure1 procedure1;
+
+        GeneratedInvoker(Method method) throws Throwable {
+            super(method);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle = lookup.unreflect(method);
+            // (DeclaringClass[, Parameter])Return with primitives boxed, except void
+            MethodType instantiatedType = handle.type().wrap();
+            boolean isVoid = method.getReturnType() == void.class;
+            if (isVoid) {
+                instantiatedType = instantiatedType.changeReturnType(void.class);
+            }
+            targetType = method.getDeclaringClass();
+            boolean hasArg = method.getParameterTypes().length != 0;
+            argType = hasArg ? instantiatedType.parameterType(1) : null;
+            primitiveArg = hasArg && method.getParameterTypes()[0].isPrimitive();
+            Class<?> functionType = hasArg
+                    ? (isVoid ? Procedure1.class : Function1.class)
+                    : (isVoid ? Procedure0.class : Function0.class);
+            MethodType samType = instantiatedType.erase();
+            CallSite site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(functionType),
+                    samType, handle, instantiatedType);
+            Object generated = site.getTarget().invoke();
+            function0 = (generated instanceof Function0) ? (Function0) generated : null;
+            procedure0 = (generated instanceof Procedure0) ? (Procedure0) generated : null;
+            function1 = (generated instanceof Function1) ? (Function1) generated : null;
+            procedure1 = (generated instanceof Procedure1) ? (Procedure1) generated : null;
+        }
+
+        @Override
+        Object invoke(Object target) throws IllegalAccessException, InvocationTargetException {
+            if (argType != null) {
+                return invoke(target, NO_ARGS);
+            }
+            checkTarget(target);
+            try {
+                if (function0 != null) {
+                    return function0.apply(target);
+                }
+                procedure0.apply(target);
+                return null;
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        @Override
+        Object invoke(Object target, Object arg) throws IllegalAccessException, InvocationTargetException {
+            if (argType == null) {
+                return invoke(target, new Object[] {arg});
+            }
+            checkTarget(target);
+            if (arg == null ? primitiveArg : !argType.isInstance(arg)) {
+                // let reflection perform widening conversions, or reject the argument
+                return method.invoke(target, arg);
+            }
+            try {
+                if (function1 != null) {
+                    return function1.apply(target, arg);
+                }
+                procedure1.apply(target, arg);
+                return null;
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        @Override
+        Object invoke(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException {
+            int expected = (argType == null) ? 0 : 1;
+            if (args == null) {
+                args = NO_ARGS;
+            }
+            if (args.length != expected) {
+                throw new IllegalArgumentException("wrong number of arguments");
+            }
+            return (expected == 0) ? invoke(target) : invoke(target, args[0]);
+        }
+
+        private void checkTarget(Object target) {
+            if (!targetType.isInstance(target)) {
+                throw new IllegalArgumentException("object is not an instance of declaring class");
+            }
+        }
+    }
+}
@@ -0,0 +1,632 @@
+package org.softee.management.helper;
+
+import static java.lang.String.format;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.MethodDescriptor;
+import java.beans.PropertyDescriptor;
+import java.lang.annotation.Annotation;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.IntrospectionException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanConstructorInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.openmbean.OpenMBeanAttributeInfoSupport;
+
+import org.softee.management.annotation.Cached;
+import org.softee.management.annotation.Description;
+import org.softee.management.annotation.MBean;
+import org.softee.management.annotation.MBean.AutomaticType;
+import org.softee.management.annotation.ManagedAttribute;
+import org.softee.management.annotation.ManagedOperation;
+import org.softee.management.annotation.ManagedOperation.Impact;
+import org.softee.management.exception.ManagementException;
+import org.softee.management.helper.DynamicMBeanAdapter.Signatures;
+import org.softee.util.Objects;
+
+/**
+ * The result of introspecting an {@link MBean} annotated class: the managed properties and operations, the invokers
+ * bound to their methods, and the {@link MBeanInfo}.<p>
+ *
+ * When the class is annotated with {@link MBean#openTypes()}, the attributes of types that must be converted to be
+ * open types are described by {@link OpenMBeanAttributeInfoSupport}, and {@link #mapping(String)} returns their
+ * converters.<p>
+ *
+ * Metadata is immutable, and is computed once per class and shared by all {@link IntrospectedDynamicMBean} instances
+ * of that class. The cache holds both the class and the metadata weakly, so it doesn't prevent classes (and their
+ * class loaders) from being unloaded.
+ */
+final class MBeanMetadata {
+    private static final Map<Class<?>, Reference<MBeanMetadata>> CACHE =
+            new WeakHashMap<Class<?>, Reference<MBeanMetadata>>();
+
+    private final Class<?> mbeanClass;
+    private final Map<String, PropertyDescriptor> propertyDescriptors;
+    private final Map<String, List<Method>> operationMethods;
+    private final Map<String, Invoker> getters;
+    private final Map<String, Invoker> setters;
+    private final Map<String, Overloads> operations;
+    /** the converters of the attributes whose values are converted to open types, by attribute name */
+    private final Map<String, OpenTypeMapping> mappings;
+    /** the caching of the {@link Cached} attributes, by attribute name */
+    private final Map<String, CachePolicy> cachePolicies;
+    private final MBeanInfo mbeanInfo;
+
+    private MBeanMetadata(Class<?> mbeanClass) throws ManagementException {
+        this.mbeanClass = mbeanClass;
+        try {
+            BeanInfo beanInfo = Introspector.getBeanInfo(mbeanClass);
+            propertyDescriptors = createPropertyDescriptors(beanInfo);
+            operationMethods = createOperationMethods(beanInfo);
+            getters = createAccessorInvokers(propertyDescriptors, true);
+            setters = createAccessorInvokers(propertyDescriptors, false);
+            operations = createOperationInvokers(operationMethods);
+            mappings = createMappings(mbeanClass, propertyDescriptors);
+            cachePolicies = createCachePolicies(propertyDescriptors);
+            mbeanInfo = createMbeanInfo(mbeanClass, propertyDescriptors, operationMethods, mappings);
+        } catch (IntrospectionException e) {
+            throw new ManagementException(e);
+        } catch (java.beans.IntrospectionException e) {
+            throw new ManagementException(e);
+        }
+    }
+
+    /**
+     * @param mbeanClass a class annotated with {@link MBean}
+     * @return the metadata of {@code mbeanClass}, introspecting the class if it isn't already cached
+     * @throws ManagementException if an exception occurs during the introspection of {@code mbeanClass}
+     */
+    static MBeanMetadata forClass(Class<?> mbeanClass) throws ManagementException {
+        MBeanMetadata metadata = cached(mbeanClass);
+        if (metadata != null) {
+            return metadata;
+        }
+        // introspect without holding the lock; should two threads race, the first to finish wins
+        metadata = new MBeanMetadata(mbeanClass);
+        synchronized (CACHE) {
+            MBeanMetadata existing = dereference(CACHE.get(mbeanClass));
+            if (existing != null) {
+                return existing;
+            }
+            CACHE.put(mbeanClass, new WeakReference<MBeanMetadata>(metadata));
+        }
+        return metadata;
+    }
+
+    private static MBeanMetadata cached(Class<?> mbeanClass) {
+        synchronized (CACHE) {
+            return dereference(CACHE.get(mbeanClass));
+        }
+    }
+
+    private static MBeanMetadata dereference(Reference<MBeanMetadata> reference) {
+        return (reference != null) ? reference.get() : null;
+    }
+
+    Class<?> getMBeanClass() {
+        return mbeanClass;
+    }
+
+    /**
+     * @return true if {@code name} is a managed attribute, regardless of whether it is readable or writable
+     */
+    boolean isAttribute(String name) {
+        return propertyDescriptors.containsKey(name);
+    }
+
+    /**
+     * @return the invoker of the read method of attribute {@code name}, or null if none exists
+     */
+    Invoker getter(String name) {
+        return getters.get(name);
+    }
+
+    /**
+     * @return the invoker of the write method of attribute {@code name}, or null if none exists
+     */
+    Invoker setter(String name) {
+        return setters.get(name);
+    }
+
+    /**
+     * @param name the name of an operation
+     * @param signature the class names of the parameter types of the operation, or null to select the operation by
+     * the number of {@code params}
+     * @param params the arguments, or null
+     * @return the invoker of the operation, or null if none exists, see
+     * {@link DynamicMBeanAdapter#overload(String[], Object[], DynamicMBeanAdapter.Signatures)}
+     */
+    Invoker operation(String name, String[] signature, Object[] params) {
+        Overloads overloads = operations.get(name);
+        if (overloads == null) {
+            return null;
+        }
+        int index = DynamicMBeanAdapter.overload(signature, params, overloads.signatures);
+        return (index >= 0) ? overloads.invokers[index] : null;
+    }
+
+    /**
+     * @return the converter of the values of attribute {@code name} to and from its open type, or null if its values
+     * aren't converted
+     */
+    OpenTypeMapping mapping(String name) {
+        return mappings.get(name);
+    }
+
+    /**
+     * @return the caching of attribute {@code name}, or null if it isn't cached
+     */
+    CachePolicy cachePolicy(String name) {
+        return cachePolicies.get(name);
+    }
+
+    /**
+     * @return the number of cached attributes, which are indexed from 0 by {@link CachePolicy#index}
+     */
+    int getCachedAttributeCount() {
+        return cachePolicies.size();
+    }
+
+    MBeanInfo getMBeanInfo() {
+        return mbeanInfo;
+    }
+
+    /**
+     * @param mbeanClass the class that declares properties and operations
+     * @param propertyDescriptors descriptors for all beans that are explicitly or implicitly annotated as attributes
+     * @param mappings the converters of the attributes whose values are converted to open types
+     * @return an MBeanInfo created by introspecting the {@code mbean}
+     * @throws IntrospectionException
+     * @throws javax.management.IntrospectionException
+     * @throws ManagementException
+     */
+    private static MBeanInfo createMbeanInfo(Class<?> mbeanClass, Map<String, PropertyDescriptor> propertyDescriptors,
+            Map<String, List<Method>> operationMethods, Map<String, OpenTypeMapping> mappings)
+            throws IntrospectionException, ManagementException {
+        String description = description(mbeanClass);
+        final MBeanAttributeInfo[] attributeInfo = createAttributeInfo(propertyDescriptors, mappings);
+        final MBeanConstructorInfo[] constructorInfo = createConstructorInfo();
+        final MBeanOperationInfo[] operationInfo = createOperationInfo(operationMethods);
+        final MBeanNotificationInfo[] notificationInfo = createNotificationInfo(mbeanClass);
+        return new MBeanInfo(
+                mbeanClass.getName(),
+                description,
+                attributeInfo,
+                constructorInfo,
+                operationInfo,
+                notificationInfo);
+    }
+
+    /**
+     * @return the notifications emitted by the {@link ThresholdMonitor} of {@code mbeanClass}, or null if it has no
+     * thresholds
+     * @throws ManagementException if a threshold is not on a numeric attribute getter
+     */
+    private static MBeanNotificationInfo[] createNotificationInfo(Class<?> mbeanClass) throws ManagementException {
+        try {
+            return ThresholdMonitor.notificationInfo(mbeanClass);
+        } catch (IllegalArgumentException e) {
+            throw new ManagementException(e.getMessage());
+        }
+    }
+
+    /**
+     * @return The methods that constitute the operations, by name. Overloaded operations are sorted by signature.
+     * @throws ManagementException if an accessor is annotated as an operation
+     */
+    private static Map<String, List<Method>> createOperationMethods(BeanInfo beanInfo) throws ManagementException {
+        Set<Method> allAccessors = allAccessors(beanInfo);
+        Map<String, List<Method>> operationMethods = new HashMap<String, List<Method>>();
+        for (MethodDescriptor descriptor : beanInfo.getMethodDescriptors()) {
+            Method method = descriptor.getMethod();
+            if (method.isBridge()) {
+                // the method it bridges to is the operation
+                continue;
+            }
+            ManagedOperation operationAnnotation = method.getAnnotation(ManagedOperation.class);
+            if (operationAnnotation != null && allAccessors.contains(method)) {
+                throw new ManagementException(
+                        String.format("Accessor method %s is annotated as an @%s", method, ManagedOperation.class.getName()));
+            }
+            /* consider the Method an automatic operation if it satisfies all of:
+             * 1. its class is annotated with @MBean(automatic=OPERATION)
+             * 2. it is a public instance (non static) method
+             * 3. it is NOT considered a bean accessor (getter/setter)
+             */
+            boolean isAutomatic = isAutomatic(method.getDeclaringClass(), AutomaticType.OPERATION);
+            boolean autoOperation = (isAutomatic && isPublicInstance(method) && !allAccessors.contains(method));
+            if (operationAnnotation != null || autoOperation) {
+                // This method is an operation
+                List<Method> overloads = operationMethods.get(method.getName());
+                if (overloads == null) {
+                    overloads = new ArrayList<Method>(1);
+                    operationMethods.put(method.getName(), overloads);
+                }
+                overloads.add(method);
+            }
+        }
+        for (List<Method> overloads : operationMethods.values()) {
+            Collections.sort(overloads, SIGNATURE_ORDER);
+        }
+        return operationMethods;
+    }
+
+    /** Orders overloaded methods by number of parameters, then by parameter type names */
+    private static final Comparator<Method> SIGNATURE_ORDER = new Comparator<Method>() {
+        @Override
+        public int compare(Method m1, Method m2) {
+            String[] s1 = signature(m1);
+            String[] s2 = signature(m2);
+            if (s1.length != s2.length) {
+                return s1.length - s2.length;
+            }
+            for (int i = 0; i < s1.length; i++) {
+                int c = s1[i].compareTo(s2[i]);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return 0;
+        }
+    };
+
+    /**
+     * @return the class names of the parameter types of {@code method}, as in an {@link MBeanOperationInfo}
+     */
+    static String[] signature(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        String[] signature = new String[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            signature[i] = parameterTypes[i].getName();
+        }
+        return signature;
+    }
+
+    /**
+     * @return the converters of the attributes of {@code mbeanClass} whose values must be converted to be open types,
+     * by attribute name; empty unless {@code mbeanClass} is annotated with {@link MBean#openTypes()}
+     */
+    private static Map<String, OpenTypeMapping> createMappings(Class<?> mbeanClass,
+            Map<String, PropertyDescriptor> propertyDescriptors) {
+        MBean annotation = mbeanClass.getAnnotation(MBean.class);
+        if (annotation == null || !annotation.openTypes()) {
+            return Collections.emptyMap();
+        }
+        Map<String, OpenTypeMapping> mappings = new HashMap<String, OpenTypeMapping>();
+        for (PropertyDescriptor property : propertyDescriptors.values()) {
+            Method readMethod = property.getReadMethod();
+            OpenTypeMapping mapping = OpenTypeMapping.forType((readMethod != null)
+                    ? readMethod.getGenericReturnType()
+                    : property.getWriteMethod().getGenericParameterTypes()[0]);
+            if (mapping != null && !mapping.isIdentity()) {
+                mappings.put(property.getName(), mapping);
+            }
+        }
+        return mappings;
+    }
+
+    /**
+     * @return the caching of the readable attributes whose getters are annotated with {@link Cached}, by attribute name
+     * @throws ManagementException if a {@link Cached#ttlMillis()} isn't positive
+     */
+    private static Map<String, CachePolicy> createCachePolicies(Map<String, PropertyDescriptor> propertyDescriptors)
+            throws ManagementException {
+        Map<String, CachePolicy> policies = new HashMap<String, CachePolicy>();
+        for (String propertyName : sortedKeys(propertyDescriptors)) {
+            Cached cached = getAnnotation(propertyDescriptors.get(propertyName).getReadMethod(), Cached.class);
+            if (cached != null) {
+                if (cached.ttlMillis() <= 0) {
+                    throw new ManagementException(format("@%s ttlMillis of attribute %s must be positive: %d",
+                            Cached.class.getSimpleName(), propertyName, cached.ttlMillis()));
+                }
+                policies.put(propertyName, new CachePolicy(policies.size(),
+                        TimeUnit.MILLISECONDS.toNanos(cached.ttlMillis()), cached.background()));
+            }
+        }
+        return policies;
+    }
+
+    /**
+     * @param getter true if the read methods should be bound, false if the write methods should be bound
+     * @return invokers bound to the existing read (or write) methods of {@code propertyDescriptors}, by attribute name
+     */
+    private static Map<String, Invoker> createAccessorInvokers(Map<String, PropertyDescriptor> propertyDescriptors,
+            boolean getter) {
+        Map<String, Invoker> invokers = new HashMap<String, Invoker>();
+        for (PropertyDescriptor property : propertyDescriptors.values()) {
+            Method accessor = getter ? property.getReadMethod() : property.getWriteMethod();
+            if (accessor != null) {
+                invokers.put(property.getName(), Invoker.forMethod(accessor));
+            }
+        }
+        return invokers;
+    }
+
+    /**
+     * @return invokers bound to {@code operationMethods}, by operation name
+     */
+    private static Map<String, Overloads> createOperationInvokers(Map<String, List<Method>> operationMethods) {
+        Map<String, Overloads> invokers = new HashMap<String, Overloads>();
+        for (Map.Entry<String, List<Method>> entry : operationMethods.entrySet()) {
+            invokers.put(entry.getKey(), new Overloads(entry.getValue()));
+        }
+        return invokers;
+    }
+
+    private static boolean isPublicInstance(Method method) {
+        int mod = method.getModifiers();
+        return Modifier.isPublic(mod) && !Modifier.isStatic(mod);
+    }
+
+    private static Set<Method> allAccessors(BeanInfo beanInfo) {
+        PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
+        Set<Method> accessors = new HashSet<Method>(propertyDescriptors.length * 2);
+        for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
+            IntrospectedDynamicMBean.addNotNull(accessors, propertyDescriptor.getReadMethod());
+            IntrospectedDynamicMBean.addNotNull(accessors, propertyDescriptor.getWriteMethod());
+        }
+        return accessors;
+    }
+
+    /**
+     * @return an MBeanOPerationInfo array that describes the {@link ManagedOperation} annotated methods of the operationMethods
+     * @throws ManagementException
+     */
+    private static MBeanOperationInfo[] createOperationInfo(Map<String, List<Method>> operationMethods) throws ManagementException {
+        List<Method> methods = new ArrayList<Method>();
+        // Iterate in method name order, then in signature order
+        for (String methodName : sortedKeys(operationMethods)) {
+            methods.addAll(operationMethods.get(methodName));
+        }
+        MBeanOperationInfo[] operationInfos = new MBeanOperationInfo[methods.size()];
+        int operationIndex = 0;
+        for (Method method : methods) {
+            ManagedOperation annotation = method.getAnnotation(ManagedOperation.class);
+            // add description and names to parameters
+            MBeanParameterInfo[] signature = IntrospectedDynamicMBean.createParameterInfo(method);
+            // add description and parameter info to operation method
+            Impact impact = annotation == null ? Impact.UNKNOWN : annotation.value();
+            int impactValue = impact.impactValue;
+            String description = description(method);
+            MBeanOperationInfo opInfo = new MBeanOperationInfo(
+                    method.getName(),
+                    description,
+                    signature,
+                    method.getReturnType().getName(),
+                    impactValue,
+                    null);
+            operationInfos[operationIndex++] = opInfo;
+        }
+        return operationInfos;
+    }
+
+    /**
+     *
+     * @param clazz a class or interface
+     * @param autoType the type of auto annotation to check for
+     * @return true if {@code method}'s declaring class is annotated with {@link MBean} that includes {@code autoType} in
+     * its {@link MBean#automatic()} attribute
+     */
+    private static boolean isAutomatic(Class<?> clazz, AutomaticType autoType) {
+        MBean annotation = clazz.getAnnotation(MBean.class);
+        if (annotation == null) {
+            return false;
+        }
+        AutomaticType[] values = annotation.automatic();
+        // believe me, this is the fastest way of doing a contains() on this array
+        for (AutomaticType value : values) {
+            if (value == autoType) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * TODO should this be implemented?
+     * @return null
+     */
+    private static MBeanConstructorInfo[] createConstructorInfo() {
+        return null;
+    }
+
+    /**
+     * @return all properties where getter or setter is annotated with {@link ManagedAttribute}
+     * @throws ManagementException
+     */
+    private static Map<String, PropertyDescriptor> createPropertyDescriptors(BeanInfo beanInfo) throws ManagementException {
+        Map<String, PropertyDescriptor> properties = new HashMap<String, PropertyDescriptor>();
+        for (PropertyDescriptor property : beanInfo.getPropertyDescriptors()) {
+            ManagedAttribute getterAnnotation = getAnnotation(property.getReadMethod(), ManagedAttribute.class);
+            ManagedAttribute setterAnnotation = getAnnotation(property.getWriteMethod(), ManagedAttribute.class);
+            if (isAutomatic(property) || getterAnnotation != null || setterAnnotation != null) {
+                properties.put(property.getName(), property);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     *
+     * @param propertyDescriptors property descriptors that are known to have at least one {@link ManagedAttribute}
+     * annotation on its getter or setter method
+     * @param mappings the converters of the attributes whose values are converted to open types
+     * @return MBean attributeInfo instances with getter/setter methods and description according to annotations
+     * @throws ManagementException
+     * @throws IntrospectionException
+     */
+    private static MBeanAttributeInfo[] createAttributeInfo(Map<String, PropertyDescriptor> propertyDescriptors,
+            Map<String, OpenTypeMapping> mappings) throws ManagementException, IntrospectionException {
+        MBeanAttributeInfo[] infos = new MBeanAttributeInfo[propertyDescriptors.size()];
+        int i = 0;
+        // iterate over properties that are known to have ManagedAttribute annotations, sorted by name
+        for (String propertyName : sortedKeys(propertyDescriptors)) {
+            PropertyDescriptor property = propertyDescriptors.get(propertyName);
+            boolean isAutomatic = isAutomatic(property);
+            Method readMethod = property.getReadMethod();
+            Method writeMethod = property.getWriteMethod();
+            boolean readable = isAutomatic || (null != getAnnotation(readMethod, ManagedAttribute.class));
+            boolean writable = isAutomatic || (null != getAnnotation(writeMethod, ManagedAttribute.class));
+            Description descriptionAnnotation = getSingleAnnotation(property, Description.class, readMethod, writeMethod);
+            String description = (descriptionAnnotation != null) ? descriptionAnnotation.value() : null;
+            OpenTypeMapping mapping = mappings.get(propertyName);
+            MBeanAttributeInfo info;
+            if (mapping != null) {
+                boolean isIs = readable && readMethod != null && readMethod.getName().startsWith("is");
+                info = new OpenMBeanAttributeInfoSupport(
+                        property.getName(),
+                        // open MBean descriptions are mandatory
+                        (description != null) ? description : propertyName,
+                        mapping.openType,
+                        readable && readMethod != null,
+                        writable && writeMethod != null,
+                        isIs);
+            } else {
+                info = new MBeanAttributeInfo(
+                        property.getName(),
+                        description,
+                        readable ? readMethod : null,
+                        writable ? writeMethod : null);
+            }
+            infos[i++] = info;
+        }
+        return infos;
+    }
+
+    /**
+     *
+     * @param property
+     * @return true if the declaring class is marked {@link MBean#automatic()} with {@link AutomaticType#OPERATION}
+     */
+    private static boolean isAutomatic(PropertyDescriptor property) {
+        Method accessor = Objects.firstNotNull(property.getReadMethod(), property.getWriteMethod());
+        boolean isAutomatic = isAutomatic(accessor.getDeclaringClass(), AutomaticType.ATTRIBUTE);
+        return isAutomatic;
+    }
+
+    /**
+     *
+     * @param <T>
+     * @param property The property to which entities belong
+     * @param annotationClass Annotation type
+     * @param entities A number of {@code Method}'s or {@code null}'s
+     * @return The one (and only) annotation of type {@code annotationClass} that appears on {@code methods},
+     * or null if none of the entities are annotated with annotationClass
+     * @throws ManagementException if more than one of the entities are annotated with annotationClass
+     */
+    private static <T extends Annotation> T getSingleAnnotation(PropertyDescriptor property, Class<T> annotationClass,
+            AccessibleObject... entities) throws ManagementException {
+        T result = null;
+        for (AccessibleObject entity : entities) {
+            if (entity != null) {
+                T annotation = entity.getAnnotation(annotationClass);
+                if (annotation != null) {
+                    if (result != null) {
+                        throw new ManagementException(
+                                String.format("Multiple %s annotations found for property %s",
+                                        annotationClass.getName(), property.getName()));
+                    }
+                    result = annotation;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Null safe annotation checker
+     * @param <A>
+     * @param element element or null
+     * @param annotationClass
+     * @return the annotation, if element is not null and the annotation is present. Otherwise null
+     */
+    private static <A extends Annotation> A getAnnotation(AnnotatedElement element, Class<A> annotationClass) {
+        return (element != null) ? element.getAnnotation(annotationClass) : null;
+    }
+
+    private static String description(AnnotatedElement element) {
+        Description annotation = element.getAnnotation(Description.class);
+        String explicitValue = (annotation != null) ? annotation.value() : null;
+        if (explicitValue != null && !explicitValue.isEmpty()) {
+            return explicitValue;
+        } else {
+            return generatedDescription(element);
+        }
+    }
+
+    private static String generatedDescription(AnnotatedElement element) {
+        if (element instanceof Method) {
+            Method method = (Method) element;
+            return method.getName() + "() of " + method.getDeclaringClass().getSimpleName();
+        } else if (element instanceof Class) {
+            return "class " + ((Class<?>)element).getName();
+
+        }
+        return element.toString();
+    }
+
+    /**
+     * @param map
+     * @return a list of the keys in map, sorted
+     */
+    private static List<String> sortedKeys(Map<String, ?> map) {
+        List<String> keys = new ArrayList<String>(map.keySet());
+        Collections.sort(keys);
+        return keys;
+    }
+
+    /**
+     * The caching of a {@link Cached} attribute
+     */
+    static final class CachePolicy {
+        /** the index of the attribute among the cached attributes of the class */
+        final int index;
+        final long ttlNanos;
+        final boolean background;
+
+        CachePolicy(int index, long ttlNanos, boolean background) {
+            this.index = index;
+            this.ttlNanos = ttlNanos;
+            this.background = background;
+        }
+    }
+
+    /**
+     * The invokers of the operations of one name, and their signatures, in the same order
+     */
+    private static final class Overloads {
+        final Signatures signatures;
+        final Invoker[] invokers;
+
+        Overloads(List<Method> methods) {
+            String[][] signatures = new String[methods.size()][];
+            invokers = new Invoker[methods.size()];
+            for (int i = 0; i < invokers.length; i++) {
+                Method method = methods.get(i);
+                signatures[i] = signature(method);
+                invokers[i] = Invoker.forMethod(method);
+            }
+            this.signatures = new Signatures(signatures);
+        }
+    }
+}
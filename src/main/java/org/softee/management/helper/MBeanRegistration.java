@@ -1,8 +1,20 @@
 package org.softee.management.helper;
 
 import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
-import javax.management.DynamicMBean;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.InstanceNotFoundException;
 import javax.management.IntrospectionException;
@@ -10,6 +22,7 @@ import javax.management.MBeanRegistrationException;
 import javax.management.MBeanServer;
 import javax.management.MalformedObjectNameException;
 import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 
 import org.softee.management.exception.ManagementException;
@@ -25,9 +38,20 @@ import org.softee.management.exception.ManagementException;
  *
  */
 public class MBeanRegistration {
+    /**
+     * The MBeans registered by all instances of this class, by object name, by MBeanServer. Updated while holding the
+     * lock of the map, so an empty map of a server can be removed. An MBean is removed when it's unregistered, however
+     * that happens, see {@link #deregistered(MBeanServer, ObjectName, DynamicMBeanAdapter)}.
+     */
+    private static final Map<MBeanServer, Map<ObjectName, DynamicMBeanAdapter<?>>> REGISTERED =
+            new ConcurrentHashMap<MBeanServer, Map<ObjectName, DynamicMBeanAdapter<?>>>();
+    private static final AtomicLong REGISTRATION_VERSION = new AtomicLong();
+
     private final Object mBean;
     private final ObjectName mBeanObjectName;
     private final MBeanServer mBeanServer;
+    /** the name with which the MBean is registered, or null if it isn't */
+    private volatile ObjectName registeredObjectName;
 
     /**
      * @param mBean an MBean instance annotated with {@link @MBean} containing an objectName attribute
@@ -72,12 +96,39 @@ public class MBeanRegistration {
      * @throws InstanceAlreadyExistsException
      */
     public void register() throws ManagementException {
+        register(adapterFor(mBean));
+        REGISTRATION_VERSION.incrementAndGet();
+    }
+
+    private static DynamicMBeanAdapter<?> adapterFor(Object mBean) throws ManagementException {
+        try {
+            return DynamicMBeanAdapter.forObject(mBean);
+        } catch (RuntimeException e) {
+            throw new ManagementException(e);
+        }
+    }
+
+    private void register(DynamicMBeanAdapter<?> dynamicMBean) throws ManagementException {
+        ObjectInstance instance;
         try {
-            DynamicMBean dynamicMBean = new IntrospectedDynamicMBean(mBean);
-            mBeanServer.registerMBean(dynamicMBean, mBeanObjectName);
+            instance = mBeanServer.registerMBean(dynamicMBean, mBeanObjectName);
         } catch (Exception e) {
             throw new ManagementException(e);
         }
+        // the name may have been given by preRegister() if mBeanObjectName is null
+        registeredObjectName = instance.getObjectName();
+        synchronized (REGISTERED) {
+            Map<ObjectName, DynamicMBeanAdapter<?>> registered = REGISTERED.get(mBeanServer);
+            if (registered == null) {
+                registered = new ConcurrentHashMap<ObjectName, DynamicMBeanAdapter<?>>();
+                REGISTERED.put(mBeanServer, registered);
+            }
+            registered.put(registeredObjectName, dynamicMBean);
+        }
+        if (!mBeanServer.isRegistered(registeredObjectName)) {
+            // unregistered by someone else before it was put
+            deregistered(mBeanServer, registeredObjectName, dynamicMBean);
+        }
     }
 
     /**
@@ -87,10 +138,184 @@ public class MBeanRegistration {
      * @throws MBeanRegistrationException
      */
     public void unregister() throws ManagementException {
+        ObjectName objectName = getObjectName();
         try {
-            mBeanServer.unregisterMBean(mBeanObjectName);
+            mBeanServer.unregisterMBean(objectName);
         } catch (Exception e) {
            throw new ManagementException(e);
         }
+        // removed from REGISTERED by the adapter's postDeregister()
+        registeredObjectName = null;
+    }
+
+    /**
+     * Forget an MBean that has been unregistered, whether by {@link #unregister()}, by calling the MBeanServer
+     * directly, or by a JMX client. Called by {@link DynamicMBeanAdapter#postDeregister()}.
+     * @param mBeanServer the MBeanServer the MBean was registered in
+     * @param objectName the name the MBean was registered with
+     * @param dynamicMBean the MBean, which is only removed if it's the one registered with {@code objectName}
+     */
+    static void deregistered(MBeanServer mBeanServer, ObjectName objectName, DynamicMBeanAdapter<?> dynamicMBean) {
+        synchronized (REGISTERED) {
+            Map<ObjectName, DynamicMBeanAdapter<?>> registered = REGISTERED.get(mBeanServer);
+            if (registered != null && registered.remove(objectName, dynamicMBean)) {
+                if (registered.isEmpty()) {
+                    REGISTERED.remove(mBeanServer);
+                }
+                REGISTRATION_VERSION.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Register a batch of MBeans. The MBeans are introspected in parallel, in the common {@link ForkJoinPool}, and then
+     * registered with their MBeanServers by the calling thread.<p>
+     * A failure to introspect or register an MBean doesn't stop the others from being registered, but is recorded
+     * in the returned result.
+     * @param registrations the registrations to register
+     * @return the registrations that succeeded, and the cause of each that failed
+     */
+    public static RegistrationResult registerAll(Collection<? extends MBeanRegistration> registrations) {
+        final MBeanRegistration[] batch = registrations.toArray(new MBeanRegistration[registrations.size()]);
+        final DynamicMBeanAdapter<?>[] adapters = new DynamicMBeanAdapter<?>[batch.length];
+        final ManagementException[] failures = new ManagementException[batch.length];
+        ForkJoinPool.commonPool().invoke(new Introspection(batch, adapters, failures, 0, batch.length));
+        RegistrationResult result = new RegistrationResult();
+        try {
+            for (int i = 0; i < batch.length; i++) {
+                if (failures[i] == null) {
+                    try {
+                        batch[i].register(adapters[i]);
+                        result.registered(batch[i]);
+                        continue;
+                    } catch (ManagementException e) {
+                        failures[i] = e;
+                    }
+                }
+                result.failed(batch[i], failures[i]);
+            }
+        } finally {
+            REGISTRATION_VERSION.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Register a batch of MBeans, like {@link #registerAll(Collection)}, in the common {@link ForkJoinPool}
+     * @param registrations the registrations to register
+     * @return a future that completes with the result when all MBeans have been registered, or have failed
+     */
+    public static CompletableFuture<RegistrationResult> registerAllAsync(
+            Collection<? extends MBeanRegistration> registrations) {
+        return registerAllAsync(registrations, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Register a batch of MBeans, like {@link #registerAll(Collection)}, in {@code executor}
+     * @param registrations the registrations to register. Copied before returning.
+     * @param executor the executor that registers the MBeans
+     * @return a future that completes with the result when all MBeans have been registered, or have failed
+     */
+    public static CompletableFuture<RegistrationResult> registerAllAsync(
+            Collection<? extends MBeanRegistration> registrations, Executor executor) {
+        final List<MBeanRegistration> batch = new ArrayList<MBeanRegistration>(registrations);
+        return CompletableFuture.supplyAsync(new Supplier<RegistrationResult>() {
+            @Override
+            public RegistrationResult get() {
+                return registerAll(batch);
+            }
+        }, executor);
+    }
+
+    public Object getMBean() {
+        return mBean;
+    }
+
+    /**
+     * @return the name with which the MBean is registered, or else the name with which it will be registered, which
+     * is null if it's given by the MBean when registered
+     */
+    public ObjectName getObjectName() {
+        ObjectName registered = registeredObjectName;
+        return (registered != null) ? registered : mBeanObjectName;
+    }
+
+    public MBeanServer getMBeanServer() {
+        return mBeanServer;
+    }
+
+    @Override
+    public String toString() {
+        return "MBeanRegistration " + getObjectName();
+    }
+
+    /**
+     * @return a live, unmodifiable view of the MBeanServers in which MBeans are currently registered through this
+     * class
+     */
+    public static Set<MBeanServer> getRegisteredServers() {
+        return Collections.unmodifiableSet(REGISTERED.keySet());
+    }
+
+    /**
+     * @param mBeanServer an MBeanServer
+     * @return a live, unmodifiable view of the MBeans currently registered in {@code mBeanServer} through this class,
+     * by object name
+     */
+    public static Map<ObjectName, DynamicMBeanAdapter<?>> getRegisteredMBeans(MBeanServer mBeanServer) {
+        Map<ObjectName, DynamicMBeanAdapter<?>> registered = REGISTERED.get(mBeanServer);
+        if (registered == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.unmodifiableMap(registered);
+    }
+
+    /**
+     * @return a number that changes whenever an MBean is registered or unregistered through this class, so that
+     * information derived from {@link #getRegisteredMBeans(MBeanServer)} can be cached until it changes
+     */
+    public static long getRegistrationVersion() {
+        return REGISTRATION_VERSION.get();
+    }
+
+    /**
+     * Introspects a range of a batch of MBeans, splitting it among the workers of the pool
+     */
+    private static final class Introspection extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        /** the number of MBeans below which a range isn't split */
+        private static final int THRESHOLD = 256;
+
+        private final MBeanRegistration[] batch;
+        private final DynamicMBeanAdapter<?>[] adapters;
+        private final ManagementException[] failures;
+        private final int from;
+        private final int to;
+
+        Introspection(MBeanRegistration[] batch, DynamicMBeanAdapter<?>[] adapters, ManagementException[] failures,
+                int from, int to) {
+            this.batch = batch;
+            this.adapters = adapters;
+            this.failures = failures;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Introspection(batch, adapters, failures, from, middle),
+                        new Introspection(batch, adapters, failures, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    adapters[i] = adapterFor(batch[i].mBean);
+                } catch (ManagementException e) {
+                    failures[i] = e;
+                }
+            }
+        }
     }
 }
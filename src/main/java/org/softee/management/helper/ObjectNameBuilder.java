@@ -46,7 +46,7 @@ public class ObjectNameBuilder {
         String annotatedObjectName = annotation.objectName();
         Preconditions.notEmpty(annotatedObjectName,
                 String.format("@{} annotation does not specify objectName", MBean.class.getName()));
-        return withObjectName(ObjectName.getInstance(annotatedObjectName));
+        return withObjectName(ObjectNameCache.getInstance(annotatedObjectName));
     }
 
     /**
@@ -94,8 +94,41 @@ public class ObjectNameBuilder {
         return this;
     }
 
+    /**
+     * @return the ObjectName. Names built recently by any builder are cached, and the cached instance is returned.
+     * @throws MalformedObjectNameException
+     */
     public ObjectName build() throws MalformedObjectNameException {
-        return (objectName != null) ? objectName
+        if (objectName != null) {
+            return objectName;
+        }
+        String name = toName();
+        return (name != null) ? ObjectNameCache.getInstance(name)
                 : ObjectName.getInstance(domain, new Hashtable<String, String>(properties));
     }
+
+    /**
+     * @return the string form of the name, or null if it can't be formed without quoting, in which case
+     * {@link ObjectName} decides whether the name is valid
+     */
+    private String toName() {
+        if (domain == null || domain.indexOf(':') >= 0 || properties.isEmpty()) {
+            return null;
+        }
+        StringBuilder name = new StringBuilder(64).append(domain).append(':');
+        boolean first = true;
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            String key = property.getKey();
+            String value = property.getValue();
+            if (key == null || value == null || ObjectNameCache.isSpecial(key) || ObjectNameCache.isSpecial(value)) {
+                return null;
+            }
+            if (!first) {
+                name.append(',');
+            }
+            first = false;
+            name.append(key).append('=').append(value);
+        }
+        return name.toString();
+    }
 }
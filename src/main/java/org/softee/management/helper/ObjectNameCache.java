@@ -0,0 +1,89 @@
+package org.softee.management.helper;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * A bounded cache of parsed ObjectNames, by their string form, shared by {@link ObjectNameBuilder} and
+ * {@link ObjectNameTemplate}. Looking up a name that has been parsed recently returns the same ObjectName instance,
+ * without parsing or allocating.<p>
+ *
+ * The cache is direct mapped: a name replaces the name cached in its slot. Entries are immutable, so they may be
+ * replaced and read by concurrent threads without synchronization.
+ */
+final class ObjectNameCache {
+    private static final int BITS = 12;
+    static final int SIZE = 1 << BITS;
+    private static final Entry[] ENTRIES = new Entry[SIZE];
+
+    /** The characters that may not appear unquoted in a key or value */
+    private static final String SPECIAL = ",=:\"*?\n";
+
+    private ObjectNameCache() {
+    }
+
+    /**
+     * @param name the string form of an ObjectName
+     * @return the cached ObjectName of {@code name}, parsing it if it isn't cached
+     * @throws MalformedObjectNameException if {@code name} isn't a valid ObjectName
+     */
+    static ObjectName getInstance(String name) throws MalformedObjectNameException {
+        int hash = name.hashCode();
+        Entry entry = entry(hash);
+        if (entry != null && entry.hash == hash && entry.name.equals(name)) {
+            return entry.objectName;
+        }
+        return store(name, hash);
+    }
+
+    /**
+     * @param hash the {@link String#hashCode()} of the string form of an ObjectName
+     * @return the entry in the slot of {@code hash}, which may hold another name, or null
+     */
+    static Entry entry(int hash) {
+        return ENTRIES[index(hash)];
+    }
+
+    /**
+     * Parse a name, and cache it
+     * @param name the string form of an ObjectName
+     * @param hash {@code name.hashCode()}
+     * @throws MalformedObjectNameException if {@code name} isn't a valid ObjectName
+     */
+    static ObjectName store(String name, int hash) throws MalformedObjectNameException {
+        ObjectName objectName = ObjectName.getInstance(name);
+        ENTRIES[index(hash)] = new Entry(name, hash, objectName);
+        return objectName;
+    }
+
+    /**
+     * @return true if {@code s} contains a character that must be quoted in a key or value
+     */
+    static boolean isSpecial(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (SPECIAL.indexOf(s.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fibonacci hashing: names that differ in a few characters have hash codes with similar low bits
+     */
+    private static int index(int hash) {
+        return (hash * 0x9E3779B9) >>> (32 - BITS);
+    }
+
+    static final class Entry {
+        final String name;
+        final int hash;
+        final ObjectName objectName;
+
+        Entry(String name, int hash, ObjectName objectName) {
+            this.name = name;
+            this.hash = hash;
+            this.objectName = objectName;
+        }
+    }
+}
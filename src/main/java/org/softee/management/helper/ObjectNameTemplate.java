@@ -0,0 +1,142 @@
+package org.softee.management.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * A precompiled ObjectName with placeholders, that creates ObjectNames by replacing each placeholder with a value,
+ * e.g.
+ * <pre>
+ * ObjectNameTemplate template = ObjectNameTemplate.compile("org.example:type=Queue,tenant={},name={}");
+ * ObjectName objectName = template.getInstance("acme", "orders");
+ * </pre>
+ *
+ * The ObjectNames are cached, so getting the name of the same values again returns the same instance, without
+ * parsing, and without allocating (apart from the varargs array). A template may be used by concurrent threads.
+ */
+public final class ObjectNameTemplate {
+    /** The placeholder of a value in a template */
+    public static final String PLACEHOLDER = "{}";
+
+    private final String template;
+    /** the text between the placeholders; one more than the number of placeholders */
+    private final String[] segments;
+
+    private ObjectNameTemplate(String template, String[] segments) {
+        this.template = template;
+        this.segments = segments;
+    }
+
+    /**
+     * @param template an ObjectName in which each {@value #PLACEHOLDER} is replaced by a value, when an ObjectName is
+     * created
+     * @return a template
+     * @throws MalformedObjectNameException if {@code template} isn't a valid ObjectName, with its placeholders
+     * replaced by values, or if the template is a pattern
+     */
+    public static ObjectNameTemplate compile(String template) throws MalformedObjectNameException {
+        List<String> segments = new ArrayList<String>();
+        int start = 0;
+        int placeholder;
+        while ((placeholder = template.indexOf(PLACEHOLDER, start)) >= 0) {
+            segments.add(template.substring(start, placeholder));
+            start = placeholder + PLACEHOLDER.length();
+        }
+        segments.add(template.substring(start));
+        ObjectNameTemplate compiled = new ObjectNameTemplate(template, segments.toArray(new String[segments.size()]));
+        // validate the template with dummy values
+        String[] values = new String[compiled.getPlaceholderCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = "_";
+        }
+        if (ObjectName.getInstance(compiled.format(values)).isPattern()) {
+            throw new MalformedObjectNameException("Template is a pattern: " + template);
+        }
+        return compiled;
+    }
+
+    public int getPlaceholderCount() {
+        return segments.length - 1;
+    }
+
+    /**
+     * @param values the values of the placeholders of this template, in order
+     * @return the ObjectName of {@code values}
+     * @throws MalformedObjectNameException if a value isn't valid, e.g. if it contains a comma
+     * @throws IllegalArgumentException if the number of values differs from the number of placeholders
+     */
+    public ObjectName getInstance(String... values) throws MalformedObjectNameException {
+        if (values.length != segments.length - 1) {
+            throw new IllegalArgumentException(String.format("Template %s has %d placeholders, not %d", template,
+                    segments.length - 1, values.length));
+        }
+        int hash = 0;
+        int length = 0;
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i];
+            if (value == null || value.isEmpty() || ObjectNameCache.isSpecial(value)) {
+                throw new MalformedObjectNameException("Invalid value: '" + value + "' in template " + template);
+            }
+            hash = hash(hash, segments[i]);
+            hash = hash(hash, value);
+            length += segments[i].length() + value.length();
+        }
+        String last = segments[values.length];
+        hash = hash(hash, last);
+        length += last.length();
+
+        ObjectNameCache.Entry entry = ObjectNameCache.entry(hash);
+        if (entry != null && entry.hash == hash && matches(entry.name, length, values)) {
+            return entry.objectName;
+        }
+        return ObjectNameCache.store(format(values), hash);
+    }
+
+    private String format(String[] values) {
+        StringBuilder name = new StringBuilder(template.length() + 16 * values.length);
+        for (int i = 0; i < values.length; i++) {
+            name.append(segments[i]).append(values[i]);
+        }
+        return name.append(segments[values.length]).toString();
+    }
+
+    /**
+     * @return true if {@code name} is the concatenation of the segments and {@code values}
+     */
+    private boolean matches(String name, int length, String[] values) {
+        if (name.length() != length) {
+            return false;
+        }
+        int offset = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (!name.startsWith(segments[i], offset)) {
+                return false;
+            }
+            offset += segments[i].length();
+            if (!name.startsWith(values[i], offset)) {
+                return false;
+            }
+            offset += values[i].length();
+        }
+        return name.startsWith(segments[values.length], offset);
+    }
+
+    /**
+     * @return the {@link String#hashCode()} of a string that begins with the string hashed by {@code hash}, and ends
+     * with {@code s}
+     */
+    private static int hash(int hash, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            hash = 31 * hash + s.charAt(i);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
@@ -0,0 +1,604 @@
+package org.softee.management.helper;
+
+import java.beans.Introspector;
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.openmbean.ArrayType;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.softee.management.TimestampFormat;
+import org.softee.management.annotation.MBean;
+
+/**
+ * Converts the values of a Java type to and from the values of an {@link OpenType}, for the attributes of MBeans
+ * annotated with {@link MBean#openTypes()}, by rules similar to those of MXBeans:
+ * <ul>
+ * <li>the types of {@link SimpleType} are mapped to themselves</li>
+ * <li>an enum is mapped to {@link SimpleType#STRING}, its name</li>
+ * <li>{@link XMLGregorianCalendar} is mapped to {@link SimpleType#DATE}</li>
+ * <li>{@link Object} is mapped to {@link SimpleType#STRING}, its {@link String#valueOf(Object)}</li>
+ * <li>arrays, and {@link List}s, {@link Set}s and {@link Collection}s, of a mapped element type are mapped to an
+ * {@link ArrayType} of the mapped element type</li>
+ * <li>a {@link Map} of mapped key and value types is mapped to a {@link TabularType} with one row, of items
+ * {@code key} and {@code value}, per entry</li>
+ * <li>a class with public getters, whose types are all mapped, is mapped to a {@link CompositeType} with one item per
+ * getter. Such values can't be converted back.</li>
+ * </ul>
+ * {@link CompositeData} and {@link TabularData}, whose open types depend on the value, and the types not covered by
+ * these rules, aren't mapped, and are exposed as they are.<p>
+ *
+ * The mapping of each type is built once, and cached, so converting a value only walks the value.
+ */
+abstract class OpenTypeMapping {
+    private static final Map<Class<?>, SimpleType<?>> SIMPLE_TYPES = new HashMap<Class<?>, SimpleType<?>>();
+
+    static {
+        for (SimpleType<?> type : new SimpleType<?>[] {SimpleType.VOID, SimpleType.BOOLEAN, SimpleType.CHARACTER,
+                SimpleType.BYTE, SimpleType.SHORT, SimpleType.INTEGER, SimpleType.LONG, SimpleType.FLOAT,
+                SimpleType.DOUBLE, SimpleType.STRING, SimpleType.BIGDECIMAL, SimpleType.BIGINTEGER, SimpleType.DATE,
+                SimpleType.OBJECTNAME}) {
+            try {
+                SIMPLE_TYPES.put(Class.forName(type.getClassName()), type);
+            } catch (ClassNotFoundException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+        SIMPLE_TYPES.put(void.class, SimpleType.VOID);
+        SIMPLE_TYPES.put(boolean.class, SimpleType.BOOLEAN);
+        SIMPLE_TYPES.put(char.class, SimpleType.CHARACTER);
+        SIMPLE_TYPES.put(byte.class, SimpleType.BYTE);
+        SIMPLE_TYPES.put(short.class, SimpleType.SHORT);
+        SIMPLE_TYPES.put(int.class, SimpleType.INTEGER);
+        SIMPLE_TYPES.put(long.class, SimpleType.LONG);
+        SIMPLE_TYPES.put(float.class, SimpleType.FLOAT);
+        SIMPLE_TYPES.put(double.class, SimpleType.DOUBLE);
+    }
+
+    /** the mappings of classes; null values are stored as {@link #UNMAPPED} */
+    private static final ClassValue<OpenTypeMapping> CLASS_MAPPINGS = new ClassValue<OpenTypeMapping>() {
+        @Override
+        protected OpenTypeMapping computeValue(Class<?> type) {
+            OpenTypeMapping mapping = create(type);
+            return (mapping != null) ? mapping : UNMAPPED;
+        }
+    };
+
+    /** the mappings of parameterized and generic array types */
+    private static final ConcurrentMap<Type, OpenTypeMapping> GENERIC_MAPPINGS =
+            new ConcurrentHashMap<Type, OpenTypeMapping>();
+
+    /** the types whose mappings are being created by the current thread, to detect recursive types */
+    private static final ThreadLocal<Set<Type>> CREATING = new ThreadLocal<Set<Type>>() {
+        @Override
+        protected Set<Type> initialValue() {
+            return new HashSet<Type>();
+        }
+    };
+
+    private static final OpenTypeMapping UNMAPPED = new Identity(null, SimpleType.VOID);
+
+    final Type javaType;
+    final OpenType<?> openType;
+
+    OpenTypeMapping(Type javaType, OpenType<?> openType) {
+        this.javaType = javaType;
+        this.openType = openType;
+    }
+
+    /**
+     * @param type a Java type, as returned by {@link Method#getGenericReturnType()}
+     * @return the mapping of {@code type}, or null if it isn't mapped
+     */
+    static OpenTypeMapping forType(Type type) {
+        OpenTypeMapping mapping;
+        if (type instanceof Class<?>) {
+            mapping = CLASS_MAPPINGS.get((Class<?>) type);
+        } else {
+            mapping = GENERIC_MAPPINGS.get(type);
+            if (mapping == null) {
+                mapping = create(type);
+                if (mapping == null) {
+                    mapping = UNMAPPED;
+                }
+                OpenTypeMapping existing = GENERIC_MAPPINGS.putIfAbsent(type, mapping);
+                if (existing != null) {
+                    mapping = existing;
+                }
+            }
+        }
+        return (mapping != UNMAPPED) ? mapping : null;
+    }
+
+    private static OpenTypeMapping create(Type type) {
+        Set<Type> creating = CREATING.get();
+        if (!creating.add(type)) {
+            // a recursive type can't be described by an open type
+            return null;
+        }
+        try {
+            return createMapping(type);
+        } catch (OpenDataException e) {
+            return null;
+        } finally {
+            creating.remove(type);
+        }
+    }
+
+    private static OpenTypeMapping createMapping(Type type) throws OpenDataException {
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Class<?> raw = (Class<?>) parameterized.getRawType();
+            Type[] arguments = parameterized.getActualTypeArguments();
+            if (raw == List.class || raw == Set.class || raw == Collection.class) {
+                return CollectionMapping.create(type, raw, arguments[0]);
+            }
+            if (raw == Map.class || raw == SortedMap.class) {
+                return MapMapping.create(type, raw, arguments[0], arguments[1]);
+            }
+            return null;
+        }
+        if (type instanceof GenericArrayType) {
+            return ArrayMapping.create(type, ((GenericArrayType) type).getGenericComponentType());
+        }
+        if (!(type instanceof Class<?>)) {
+            // type variables and wildcards
+            return null;
+        }
+        Class<?> clazz = (Class<?>) type;
+        SimpleType<?> simpleType = SIMPLE_TYPES.get(clazz);
+        if (simpleType != null) {
+            return new Identity(clazz, simpleType);
+        }
+        if (clazz.isArray()) {
+            if (clazz.getComponentType().isPrimitive()) {
+                return new Identity(clazz, ArrayType.getPrimitiveArrayType(clazz));
+            }
+            return ArrayMapping.create(clazz, clazz.getComponentType());
+        }
+        if (clazz.isEnum()) {
+            return new EnumMapping(clazz);
+        }
+        if (clazz == Object.class) {
+            return new StringMapping();
+        }
+        if (XMLGregorianCalendar.class.isAssignableFrom(clazz)) {
+            return new CalendarMapping(clazz);
+        }
+        if (CompositeData.class.isAssignableFrom(clazz) || TabularData.class.isAssignableFrom(clazz)
+                || clazz.isInterface() && clazz.getName().startsWith("java.")
+                || Collection.class.isAssignableFrom(clazz) || Map.class.isAssignableFrom(clazz)) {
+            return null;
+        }
+        return CompositeMapping.create(clazz);
+    }
+
+    /**
+     * @return true if the values of the Java type are the values of the open type
+     */
+    boolean isIdentity() {
+        return false;
+    }
+
+    /**
+     * @param value a value of the Java type, or null
+     * @return the value of the open type, or null
+     * @throws OpenDataException if {@code value} can't be converted
+     */
+    abstract Object toOpenValue(Object value) throws OpenDataException;
+
+    /**
+     * @param value a value of the open type, or null
+     * @return the value of the Java type, or {@code value} itself if it isn't a value of the open type, so that values
+     * of the Java type are accepted too
+     */
+    abstract Object fromOpenValue(Object value);
+
+    /**
+     * @return the class of the values of {@code openType}
+     */
+    static Class<?> openClass(OpenType<?> openType) {
+        try {
+            return Class.forName(openType.getClassName());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The types of {@link SimpleType}, and arrays of primitives
+     */
+    private static final class Identity extends OpenTypeMapping {
+        Identity(Class<?> javaType, OpenType<?> openType) {
+            super(javaType, openType);
+        }
+
+        @Override
+        boolean isIdentity() {
+            return true;
+        }
+
+        @Override
+        Object toOpenValue(Object value) {
+            return value;
+        }
+
+        @Override
+        Object fromOpenValue(Object value) {
+            return value;
+        }
+    }
+
+    private static final class EnumMapping extends OpenTypeMapping {
+        EnumMapping(Class<?> javaType) {
+            super(javaType, SimpleType.STRING);
+        }
+
+        @Override
+        Object toOpenValue(Object value) {
+            return (value != null) ? ((Enum<?>) value).name() : null;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        @Override
+        Object fromOpenValue(Object value) {
+            if (value instanceof String) {
+                try {
+                    return Enum.valueOf((Class<Enum>) javaType, (String) value);
+                } catch (IllegalArgumentException e) {
+                    // not a constant of the enum: rejected as a value of the wrong type
+                }
+            }
+            return value;
+        }
+    }
+
+    private static final class StringMapping extends OpenTypeMapping {
+        StringMapping() {
+            super(Object.class, SimpleType.STRING);
+        }
+
+        @Override
+        Object toOpenValue(Object value) {
+            return (value != null) ? String.valueOf(value) : null;
+        }
+
+        @Override
+        Object fromOpenValue(Object value) {
+            return value;
+        }
+    }
+
+    private static final class CalendarMapping extends OpenTypeMapping {
+        CalendarMapping(Class<?> javaType) {
+            super(javaType, SimpleType.DATE);
+        }
+
+        @Override
+        Object toOpenValue(Object value) {
+            return (value != null) ? ((XMLGregorianCalendar) value).toGregorianCalendar().getTime() : null;
+        }
+
+        @Override
+        Object fromOpenValue(Object value) {
+            if (value instanceof Date) {
+                GregorianCalendar calendar = new GregorianCalendar();
+                calendar.setTime((Date) value);
+                return TimestampFormat.datatypeFactory().newXMLGregorianCalendar(calendar);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Arrays of reference types
+     */
+    private static final class ArrayMapping extends OpenTypeMapping {
+        private final OpenTypeMapping element;
+        private final Class<?> javaElementClass;
+        private final Class<?> openElementClass;
+
+        private ArrayMapping(Type javaType, Class<?> javaElementClass, OpenTypeMapping element)
+                throws OpenDataException {
+            super(javaType, ArrayType.getArrayType(element.openType));
+            this.element = element;
+            this.javaElementClass = javaElementClass;
+            this.openElementClass = openClass(element.openType);
+        }
+
+        static OpenTypeMapping create(Type javaType, Type elementType) throws OpenDataException {
+            OpenTypeMapping element = forType(elementType);
+            if (element == null || element.openType instanceof ArrayType
+                    && ((ArrayType<?>) element.openType).isPrimitiveArray()) {
+                return null;
+            }
+            Class<?> elementClass = erasure(elementType);
+            if (element.isIdentity() && elementClass == openClass(element.openType)) {
+                return new Identity(erasure(javaType), ArrayType.getArrayType(element.openType));
+            }
+            return new ArrayMapping(javaType, elementClass, element);
+        }
+
+        @Override
+        Object toOpenValue(Object value) throws OpenDataException {
+            if (value == null) {
+                return null;
+            }
+            int length = Array.getLength(value);
+            Object converted = Array.newInstance(openElementClass, length);
+            for (int i = 0; i < length; i++) {
+                Array.set(converted, i, element.toOpenValue(Array.get(value, i)));
+            }
+            return converted;
+        }
+
+        @Override
+        Object fromOpenValue(Object value) {
+            if (value == null || !value.getClass().isArray()
+                    || !openElementClass.isAssignableFrom(value.getClass().getComponentType())) {
+                return value;
+            }
+            int length = Array.getLength(value);
+            Object converted = Array.newInstance(javaElementClass, length);
+            for (int i = 0; i < length; i++) {
+                Object e = element.fromOpenValue(Array.get(value, i));
+                if (e != null && !javaElementClass.isInstance(e)) {
+                    return value;
+                }
+                Array.set(converted, i, e);
+            }
+            return converted;
+        }
+    }
+
+    /**
+     * Lists, sets and collections, mapped to arrays
+     */
+    private static final class CollectionMapping extends OpenTypeMapping {
+        private final Class<?> raw;
+        private final OpenTypeMapping element;
+        private final Class<?> openElementClass;
+
+        private CollectionMapping(Type javaType, Class<?> raw, OpenTypeMapping element) throws OpenDataException {
+            super(javaType, ArrayType.getArrayType(element.openType));
+            this.raw = raw;
+            this.element = element;
+            this.openElementClass = openClass(element.openType);
+        }
+
+        static OpenTypeMapping create(Type javaType, Class<?> raw, Type elementType) throws OpenDataException {
+            OpenTypeMapping element = forType(elementType);
+            if (element == null || element.openType instanceof ArrayType
+                    && ((ArrayType<?>) element.openType).isPrimitiveArray()) {
+                return null;
+            }
+            return new CollectionMapping(javaType, raw, element);
+        }
+
+        @Override
+        Object toOpenValue(Object value) throws OpenDataException {
+            if (value == null) {
+                return null;
+            }
+            Collection<?> collection = (Collection<?>) value;
+            Object converted = Array.newInstance(openElementClass, collection.size());
+            int i = 0;
+            for (Object e : collection) {
+                Array.set(converted, i++, element.toOpenValue(e));
+            }
+            return converted;
+        }
+
+        @Override
+        Object fromOpenValue(Object value) {
+            if (value == null || !value.getClass().isArray()
+                    || !openElementClass.isAssignableFrom(value.getClass().getComponentType())) {
+                return value;
+            }
+            int length = Array.getLength(value);
+            Collection<Object> converted = (raw == List.class) ? new ArrayList<Object>(length)
+                    : new LinkedHashSet<Object>();
+            for (int i = 0; i < length; i++) {
+                converted.add(element.fromOpenValue(Array.get(value, i)));
+            }
+            return converted;
+        }
+    }
+
+    /**
+     * Maps, mapped to tables with one row of key and value per entry
+     */
+    private static final class MapMapping extends OpenTypeMapping {
+        private static final String[] ITEMS = {"key", "value"};
+
+        private final Class<?> raw;
+        private final OpenTypeMapping key;
+        private final OpenTypeMapping value;
+        private final CompositeType rowType;
+
+        private MapMapping(Type javaType, Class<?> raw, OpenTypeMapping key, OpenTypeMapping value,
+                TabularType tabularType) {
+            super(javaType, tabularType);
+            this.raw = raw;
+            this.key = key;
+            this.value = value;
+            this.rowType = tabularType.getRowType();
+        }
+
+        static OpenTypeMapping create(Type javaType, Class<?> raw, Type keyType, Type valueType)
+                throws OpenDataException {
+            OpenTypeMapping key = forType(keyType);
+            OpenTypeMapping value = forType(valueType);
+            if (key == null || value == null) {
+                return null;
+            }
+            String name = typeName(javaType);
+            CompositeType rowType = new CompositeType(name, name, ITEMS, ITEMS,
+                    new OpenType<?>[] {key.openType, value.openType});
+            return new MapMapping(javaType, raw, key, value, new TabularType(name, name, rowType, new String[] {"key"}));
+        }
+
+        @Override
+        Object toOpenValue(Object map) throws OpenDataException {
+            if (map == null) {
+                return null;
+            }
+            TabularDataSupport table = new TabularDataSupport((TabularType) openType);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) map).entrySet()) {
+                table.put(new CompositeDataSupport(rowType, ITEMS,
+                        new Object[] {key.toOpenValue(entry.getKey()), value.toOpenValue(entry.getValue())}));
+            }
+            return table;
+        }
+
+        @Override
+        Object fromOpenValue(Object table) {
+            if (!(table instanceof TabularData) || !((TabularData) table).getTabularType().equals(openType)) {
+                return table;
+            }
+            Map<Object, Object> converted = (raw == SortedMap.class) ? new TreeMap<Object, Object>()
+                    : new LinkedHashMap<Object, Object>();
+            for (Object row : ((TabularData) table).values()) {
+                CompositeData data = (CompositeData) row;
+                converted.put(key.fromOpenValue(data.get("key")), value.fromOpenValue(data.get("value")));
+            }
+            return converted;
+        }
+    }
+
+    /**
+     * Classes with public getters, mapped to composite values with one item per getter
+     */
+    private static final class CompositeMapping extends OpenTypeMapping {
+        private final String[] items;
+        private final Method[] getters;
+        private final OpenTypeMapping[] mappings;
+
+        private CompositeMapping(Class<?> javaType, CompositeType compositeType, String[] items, Method[] getters,
+                OpenTypeMapping[] mappings) {
+            super(javaType, compositeType);
+            this.items = items;
+            this.getters = getters;
+            this.mappings = mappings;
+        }
+
+        static OpenTypeMapping create(Class<?> clazz) throws OpenDataException {
+            if (!Modifier.isPublic(clazz.getModifiers())) {
+                return null;
+            }
+            Map<String, Method> gettersByItem = new TreeMap<String, Method>();
+            for (Method method : clazz.getMethods()) {
+                String item = item(method);
+                if (item != null && method.getDeclaringClass() != Object.class) {
+                    gettersByItem.put(item, method);
+                }
+            }
+            if (gettersByItem.isEmpty()) {
+                return null;
+            }
+            String[] items = gettersByItem.keySet().toArray(new String[gettersByItem.size()]);
+            Method[] getters = gettersByItem.values().toArray(new Method[items.length]);
+            OpenTypeMapping[] mappings = new OpenTypeMapping[items.length];
+            OpenType<?>[] types = new OpenType<?>[items.length];
+            for (int i = 0; i < items.length; i++) {
+                mappings[i] = forType(getters[i].getGenericReturnType());
+                if (mappings[i] == null) {
+                    return null;
+                }
+                types[i] = mappings[i].openType;
+            }
+            CompositeType compositeType = new CompositeType(clazz.getName(), clazz.getName(), items, items, types);
+            return new CompositeMapping(clazz, compositeType, items, getters, mappings);
+        }
+
+        /**
+         * @return the item name of a getter, or null if {@code method} isn't a getter
+         */
+        private static String item(Method method) {
+            if (Modifier.isStatic(method.getModifiers()) || method.getParameterTypes().length != 0
+                    || method.getReturnType() == void.class) {
+                return null;
+            }
+            String name = method.getName();
+            int prefix;
+            if (name.startsWith("get") && name.length() > 3) {
+                prefix = 3;
+            } else if (name.startsWith("is") && name.length() > 2 && method.getReturnType() == boolean.class) {
+                prefix = 2;
+            } else {
+                return null;
+            }
+            return Introspector.decapitalize(name.substring(prefix));
+        }
+
+        @Override
+        Object toOpenValue(Object value) throws OpenDataException {
+            if (value == null) {
+                return null;
+            }
+            Object[] values = new Object[items.length];
+            for (int i = 0; i < items.length; i++) {
+                try {
+                    values[i] = mappings[i].toOpenValue(getters[i].invoke(value));
+                } catch (Exception e) {
+                    OpenDataException exception = new OpenDataException(
+                            "Unable to read " + items[i] + " of " + value.getClass().getName());
+                    exception.initCause(e);
+                    throw exception;
+                }
+            }
+            return new CompositeDataSupport((CompositeType) openType, items, values);
+        }
+
+        @Override
+        Object fromOpenValue(Object value) {
+            // not reconstructible: rejected as a value of the wrong type
+            return value;
+        }
+    }
+
+    private static Class<?> erasure(Type type) {
+        if (type instanceof Class<?>) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        if (type instanceof GenericArrayType) {
+            return Array.newInstance(erasure(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        }
+        return Object.class;
+    }
+
+    private static String typeName(Type type) {
+        return (type instanceof Class<?>) ? ((Class<?>) type).getName() : type.toString();
+    }
+}
@@ -0,0 +1,24 @@
+package org.softee.management.helper;
+
+/**
+ * May be implemented by a POJO MBean whose numeric state, e.g. lifetime counts and min/max values, should survive a
+ * restart of the JVM. The state is saved to, and restored from, a {@link PersistentStateFile}.<p>
+ *
+ * The state is an array of longs, whose layout is defined by the implementation. It should include a version of the
+ * layout, so that a state saved by an earlier version of the class can be recognized, and converted or ignored.
+ */
+public interface PersistentState {
+    /**
+     * @return a copy of the current state. Called by the thread saving the state, concurrently with the notifications
+     * of the MBean.
+     */
+    long[] saveState();
+
+    /**
+     * Replace the current state with a saved one. Called by {@link org.softee.management.AbstractMBean} after
+     * {@link org.softee.management.AbstractMBean#resetMBean()} when the MBean is constructed, so the same precautions
+     * apply: fields assigned by this method must not have initializers.
+     * @param state a state returned by {@link #saveState()}, possibly by an earlier version of the class. Not null.
+     */
+    void restoreState(long[] state);
+}
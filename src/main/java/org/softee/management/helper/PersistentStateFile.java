@@ -0,0 +1,482 @@
+package org.softee.management.helper;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Saves the state of the registered MBeans that implement {@link PersistentState} to a file, so that it's restored
+ * when an MBean of the same object name is constructed, e.g. after a restart of the JVM.<p>
+ *
+ * The file is a log of records, each holding the state of one MBean; the latest record of an object name is its
+ * state. All numbers are big-endian:
+ * <pre>
+ * size
+ *    4  magic, {@value #MAGIC} ("POJS")
+ *    4  format version, {@value #VERSION}
+ *       per record:
+ *    4    the length of the record body
+ *    4    the CRC-32 of the body
+ *         body: the object name (a string), the number of values (4), and the values (8 each)
+ * </pre>
+ * A string is its length in bytes (2) followed by its UTF-8 bytes.<p>
+ *
+ * {@link #save()} appends the records of the MBeans whose state has changed since it was last saved, in one
+ * {@link FileChannel} write, and forces them to the disk. A record that was torn by a crash fails its checksum, and is
+ * discarded, with anything after it, when the file is next opened, so the previous record of the MBean is restored.
+ * The records are only taken as saved once they have been forced; if the write fails, the file is truncated to its
+ * previous length, and the next save writes them again.
+ * When the log has grown to twice the size of the latest records, they are written to a new file, which is moved into
+ * place atomically.<p>
+ *
+ * An MBean restores its state from the {@link #install() installed} file when it's constructed, see
+ * {@link org.softee.management.AbstractMBean}, and saves its state when it's stopped. The installed file saves the
+ * state of all MBeans periodically, when {@link #start(long, TimeUnit) started}, and when it's closed.
+ */
+public class PersistentStateFile implements Closeable {
+    static final int MAGIC = 0x504f4a53;
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 8;
+    /** the length of the record length and checksum */
+    private static final int RECORD_HEADER_LENGTH = 8;
+    /** the log isn't compacted while it's shorter than this */
+    private static final long MIN_COMPACT_LENGTH = 64 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static volatile PersistentStateFile installed;
+
+    private final File file;
+    /** guards the channel and the states */
+    private final Object lock = new Object();
+    private FileChannel channel;
+    /** the latest state of each object name in the file, by canonical object name */
+    private final Map<String, Saved> states = new HashMap<String, Saved>();
+    /** the total length of the latest records */
+    private long liveLength;
+    private long length;
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+    /** the records in the buffer, which are put in {@link #states} once they have been written */
+    private final List<Pending> pending = new ArrayList<Pending>();
+    private final CRC32 crc = new CRC32();
+    private boolean closed;
+
+    private volatile boolean running;
+    private Thread saver;
+
+    /**
+     * Open a file, and read the states saved in it. The file is created if it doesn't exist.
+     * @throws IOException if the file can't be read or created, or isn't written by a {@link PersistentStateFile}
+     */
+    public PersistentStateFile(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file must not be null");
+        }
+        this.file = file.getAbsoluteFile();
+        File parent = this.file.getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            read();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the installed file, or null if none is installed
+     */
+    public static PersistentStateFile getInstalled() {
+        return installed;
+    }
+
+    /**
+     * Make this the file from which MBeans restore their state when they are constructed, and to which they save it
+     * when they are stopped, replacing any other installed file. The file is uninstalled when it's closed.
+     */
+    public void install() {
+        installed = this;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Read the records of the file, and truncate it after the last valid one
+     */
+    private void read() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            write(header, 0);
+            length = HEADER_LENGTH;
+            return;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Too large: " + file);
+        }
+        ByteBuffer in = ByteBuffer.allocate((int) size);
+        while (in.hasRemaining() && channel.read(in, in.position()) >= 0) {
+            // read fully
+        }
+        in.flip();
+        if (in.remaining() < HEADER_LENGTH || in.getInt() != MAGIC) {
+            throw new IOException("Not a state file: " + file);
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version + " of state file " + file);
+        }
+        // the end of the last valid record
+        int valid = in.position();
+        while (in.remaining() >= RECORD_HEADER_LENGTH) {
+            int bodyLength = in.getInt();
+            int checksum = in.getInt();
+            if (bodyLength < 6 || bodyLength > in.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(in.array(), in.position(), bodyLength);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            byte[] name = new byte[in.getShort() & 0xffff];
+            if (2 + name.length + 4 > bodyLength) {
+                break;
+            }
+            in.get(name);
+            int count = in.getInt();
+            if (count < 0 || 2 + name.length + 4 + 8L * count != bodyLength) {
+                break;
+            }
+            long[] state = new long[count];
+            for (int i = 0; i < count; i++) {
+                state[i] = in.getLong();
+            }
+            put(new String(name, UTF_8), state, RECORD_HEADER_LENGTH + bodyLength);
+            valid = in.position();
+        }
+        length = valid;
+        if (length < size) {
+            // a torn, or corrupt, record
+            channel.truncate(length);
+        }
+    }
+
+    /**
+     * Record {@code state} as the latest state of {@code name}
+     */
+    private void put(String name, long[] state, int recordLength) {
+        Saved previous = states.put(name, new Saved(state, recordLength));
+        liveLength += recordLength - ((previous != null) ? previous.recordLength : 0);
+    }
+
+    /**
+     * @param objectName the object name of an MBean
+     * @return a copy of the latest state saved for {@code objectName}, or null if none has been saved
+     */
+    public long[] getState(ObjectName objectName) {
+        synchronized (lock) {
+            Saved saved = states.get(objectName.getCanonicalName());
+            return (saved != null) ? saved.state.clone() : null;
+        }
+    }
+
+    /**
+     * Restore the latest state saved for {@code objectName}, if any, into {@code mbean}
+     * @return true if a state was restored
+     */
+    public boolean restore(ObjectName objectName, PersistentState mbean) {
+        long[] state = getState(objectName);
+        if (state == null) {
+            return false;
+        }
+        mbean.restoreState(state);
+        return true;
+    }
+
+    /**
+     * Save the state of the registered MBeans that implement {@link PersistentState}, and whose state has changed
+     * since it was last saved
+     * @throws IOException if the file can't be written
+     * @throws IllegalStateException if the file has been closed
+     */
+    public void save() throws IOException {
+        synchronized (lock) {
+            checkOpen();
+            clear();
+            for (MBeanServer server : MBeanRegistration.getRegisteredServers()) {
+                for (Map.Entry<ObjectName, DynamicMBeanAdapter<?>> entry
+                        : MBeanRegistration.getRegisteredMBeans(server).entrySet()) {
+                    Object mbean = entry.getValue().mbean;
+                    if (mbean instanceof PersistentState) {
+                        append(entry.getKey().getCanonicalName(), ((PersistentState) mbean).saveState());
+                    }
+                }
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Save the state of one MBean, if it has changed since it was last saved
+     * @throws IOException if the file can't be written
+     * @throws IllegalStateException if the file has been closed
+     */
+    public void save(ObjectName objectName, PersistentState mbean) throws IOException {
+        synchronized (lock) {
+            checkOpen();
+            clear();
+            append(objectName.getCanonicalName(), mbean.saveState());
+            flush();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Closed: " + file);
+        }
+    }
+
+    private void clear() {
+        buffer.clear();
+        pending.clear();
+    }
+
+    /**
+     * Append the record of a state to the buffer, unless it's the latest state saved
+     * @param name the canonical object name of the MBean
+     */
+    private void append(String name, long[] state) {
+        Saved saved = states.get(name);
+        if (saved == null || !Arrays.equals(saved.state, state)) {
+            record(name, state);
+        }
+    }
+
+    /**
+     * Append the record of a state to the buffer
+     * @param name the canonical object name of the MBean
+     */
+    private void record(String name, long[] state) {
+        byte[] utf8 = name.getBytes(UTF_8);
+        if (utf8.length > 0xffff) {
+            throw new IllegalArgumentException("Too long: " + name);
+        }
+        int bodyLength = 2 + utf8.length + 4 + 8 * state.length;
+        if (buffer.remaining() < RECORD_HEADER_LENGTH + bodyLength) {
+            int capacity = Math.max(buffer.capacity() * 2, buffer.position() + RECORD_HEADER_LENGTH + bodyLength);
+            buffer.flip();
+            buffer = ByteBuffer.allocate(capacity).put(buffer);
+        }
+        int start = buffer.position();
+        buffer.putInt(bodyLength).putInt(0);
+        buffer.putShort((short) utf8.length).put(utf8).putInt(state.length);
+        for (long value : state) {
+            buffer.putLong(value);
+        }
+        crc.reset();
+        crc.update(buffer.array(), start + RECORD_HEADER_LENGTH, bodyLength);
+        buffer.putInt(start + 4, (int) crc.getValue());
+        pending.add(new Pending(name, state.clone(), RECORD_HEADER_LENGTH + bodyLength));
+    }
+
+    /**
+     * Put the pending records in {@link #states}, once they have been written
+     */
+    private void commit() {
+        for (Pending record : pending) {
+            put(record.name, record.state, record.recordLength);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Append the buffered records to the file, and compact it if it has grown too long. If they can't be written,
+     * the file is truncated to its previous length, and the records aren't taken as saved.
+     */
+    private void flush() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        buffer.flip();
+        int written = buffer.remaining();
+        try {
+            write(buffer, length);
+            channel.force(false);
+        } catch (IOException e) {
+            pending.clear();
+            try {
+                channel.truncate(length);
+            } catch (IOException truncation) {
+                e.addSuppressed(truncation);
+            }
+            throw e;
+        }
+        length += written;
+        commit();
+        if (length > MIN_COMPACT_LENGTH && length > 2 * (HEADER_LENGTH + liveLength)) {
+            compact();
+        }
+    }
+
+    private void write(ByteBuffer records, long position) throws IOException {
+        while (records.hasRemaining()) {
+            position += channel.write(records, position);
+        }
+    }
+
+    /**
+     * Write the latest records to a new file, and move it into place
+     */
+    private void compact() throws IOException {
+        clear();
+        buffer.putInt(MAGIC).putInt(VERSION);
+        for (Map.Entry<String, Saved> entry : states.entrySet()) {
+            record(entry.getKey(), entry.getValue().state);
+        }
+        buffer.flip();
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        FileChannel compacted = FileChannel.open(temp.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            while (buffer.hasRemaining()) {
+                compacted.write(buffer);
+            }
+            compacted.force(false);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            pending.clear();
+            compacted.close();
+            temp.delete();
+            throw e;
+        }
+        channel.close();
+        channel = compacted;
+        length = compacted.size();
+        states.clear();
+        liveLength = 0;
+        commit();
+    }
+
+    /**
+     * Start a daemon thread that saves the states periodically. Failures to write the file are reported to the
+     * uncaught exception handler, and end the thread.
+     * @param period the time between saves. Positive.
+     * @param unit the unit of {@code period}
+     * @throws IllegalStateException if already started
+     */
+    public synchronized void start(long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        if (saver != null) {
+            throw new IllegalStateException("Already started: " + file);
+        }
+        final long periodNanos = unit.toNanos(period);
+        running = true;
+        saver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (running) {
+                        LockSupport.parkNanos(periodNanos);
+                        save();
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to save to " + file, e);
+                }
+            }
+        }, "pojo-mbean-persistent-state");
+        saver.setDaemon(true);
+        saver.start();
+    }
+
+    /**
+     * Stop the thread started by {@link #start(long, TimeUnit)}, if any, and wait for it to end
+     */
+    public synchronized void stop() {
+        if (saver != null) {
+            running = false;
+            LockSupport.unpark(saver);
+            try {
+                saver.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            saver = null;
+        }
+    }
+
+    /**
+     * Stop saving periodically, save the states a last time, uninstall the file if it's installed, and close it
+     */
+    @Override
+    public void close() throws IOException {
+        stop();
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            try {
+                save();
+            } finally {
+                closed = true;
+                if (installed == this) {
+                    installed = null;
+                }
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * A record in the buffer, not yet written
+     */
+    private static final class Pending {
+        final String name;
+        final long[] state;
+        final int recordLength;
+
+        Pending(String name, long[] state, int recordLength) {
+            this.name = name;
+            this.state = state;
+            this.recordLength = recordLength;
+        }
+    }
+
+    /**
+     * A saved state, and the length of its record
+     */
+    private static final class Saved {
+        final long[] state;
+        final int recordLength;
+
+        Saved(long[] state, int recordLength) {
+            this.state = state;
+            this.recordLength = recordLength;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.softee.management.helper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.softee.management.exception.ManagementException;
+
+/**
+ * The outcome of registering a batch of MBeans (see {@link MBeanRegistration#registerAll(java.util.Collection)}): the
+ * registrations that succeeded, and the cause of each that failed.
+ */
+public final class RegistrationResult {
+    private final List<MBeanRegistration> registered = new ArrayList<MBeanRegistration>();
+    private final Map<MBeanRegistration, ManagementException> failures =
+            new IdentityHashMap<MBeanRegistration, ManagementException>();
+
+    RegistrationResult() {
+    }
+
+    void registered(MBeanRegistration registration) {
+        registered.add(registration);
+    }
+
+    void failed(MBeanRegistration registration, ManagementException cause) {
+        failures.put(registration, cause);
+    }
+
+    /**
+     * @return the registrations whose MBeans were registered, in the order of the batch
+     */
+    public List<MBeanRegistration> getRegistered() {
+        return Collections.unmodifiableList(registered);
+    }
+
+    /**
+     * @return the cause of the failure of each registration whose MBean wasn't registered
+     */
+    public Map<MBeanRegistration, ManagementException> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * @return true if all MBeans of the batch were registered
+     */
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return registered.size() + " registered, " + failures.size() + " failed";
+    }
+}
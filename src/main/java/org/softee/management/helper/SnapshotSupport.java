@@ -0,0 +1,21 @@
+package org.softee.management.helper;
+
+/**
+ * May be implemented by a POJO MBean whose attributes should be mutually consistent when read together.<p>
+ *
+ * When several attributes are read in one request ({@link DynamicMBeanAdapter#getAttributes(String[])}),
+ * {@link #beginSnapshot()} is called before the first getter, and {@link #endSnapshot()} after the last one, all by
+ * the same thread. Between the two calls, the getters should report values from a single snapshot of the MBean's
+ * state, e.g. so that an average agrees with the count it was computed from.
+ */
+public interface SnapshotSupport {
+    /**
+     * Take a snapshot of the MBean's state, to be reported by getters called by the calling thread
+     */
+    void beginSnapshot();
+
+    /**
+     * Release the snapshot taken by the calling thread. Subsequent getter calls report the current state.
+     */
+    void endSnapshot();
+}
@@ -0,0 +1,254 @@
+package org.softee.management.helper;
+
+import static java.lang.String.format;
+
+import java.beans.Introspector;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanNotificationInfo;
+import javax.management.Notification;
+import javax.management.ObjectName;
+
+import org.softee.management.AbstractMBean;
+import org.softee.management.annotation.ManagedAttribute;
+import org.softee.management.annotation.Threshold;
+import org.softee.management.annotation.Threshold.Direction;
+import org.softee.time.Clock;
+
+/**
+ * Evaluates the {@link Threshold} annotated attributes of a registered MBean, and emits a notification through its
+ * {@link DynamicMBeanAdapter} when an attribute breaches or clears its threshold.<p>
+ *
+ * All monitors share one daemon thread, which is started when the first MBean with thresholds is registered. Each
+ * monitor reads its attributes once a second (see {@link #PERIOD_PROPERTY}), in one batch (see
+ * {@link DynamicMBeanAdapter#getAttributeValues(String[], Object[])}). Attributes that are null, or can't be read, are
+ * skipped. Listeners are called by the monitor thread, and should return promptly.<p>
+ *
+ * An attribute is breached while its value is above (or below, see {@link Threshold#direction()}) the threshold.
+ * A notification of type {@link #BREACHED} or {@link #CLEARED} is emitted when the state differs from the state
+ * previously notified, but no sooner than {@link Threshold#quietPeriodMillis()} after the previous notification about
+ * the attribute. The user data of the notification is the value of the attribute.
+ */
+public final class ThresholdMonitor {
+    /** The type of the notification emitted when an attribute breaches its threshold */
+    public static final String BREACHED = "org.softee.management.threshold.breached";
+    /** The type of the notification emitted when an attribute no longer breaches its threshold */
+    public static final String CLEARED = "org.softee.management.threshold.cleared";
+
+    /**
+     * System property that sets the period, in milliseconds, with which thresholds are evaluated
+     */
+    public static final String PERIOD_PROPERTY = "org.softee.management.thresholdPeriodMillis";
+
+    private static final long PERIOD_MILLIS = Long.getLong(PERIOD_PROPERTY, 1000);
+
+    /** The thresholds of each MBean class */
+    private static final ClassValue<Rule[]> RULES = new ClassValue<Rule[]>() {
+        @Override
+        protected Rule[] computeValue(Class<?> mbeanClass) {
+            return createRules(mbeanClass);
+        }
+    };
+
+    private static ScheduledThreadPoolExecutor scheduler;
+
+    private final DynamicMBeanAdapter<?> adapter;
+    private final ObjectName objectName;
+    private final Rule[] rules;
+    private final String[] attributes;
+    private final Object[] values;
+    /** the state of each rule; confined to the thread evaluating the thresholds */
+    private final State[] states;
+    private long sequenceNumber;
+    private ScheduledFuture<?> evaluation;
+
+    private ThresholdMonitor(DynamicMBeanAdapter<?> adapter, ObjectName objectName, Rule[] rules) {
+        this.adapter = adapter;
+        this.objectName = objectName;
+        this.rules = rules;
+        attributes = new String[rules.length];
+        values = new Object[rules.length];
+        states = new State[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            attributes[i] = rules[i].attribute;
+            states[i] = new State();
+        }
+    }
+
+    /**
+     * @param adapter the adapter of a registered MBean
+     * @param objectName the name with which the MBean is registered, which is the source of the notifications
+     * @return a monitor of the thresholds of the MBean, or null if it has none
+     */
+    static ThresholdMonitor forAdapter(DynamicMBeanAdapter<?> adapter, ObjectName objectName) {
+        Rule[] rules = RULES.get(adapter.mbean.getClass());
+        return (rules.length != 0) ? new ThresholdMonitor(adapter, objectName, rules) : null;
+    }
+
+    /**
+     * @param mbeanClass a class annotated with {@link org.softee.management.annotation.MBean}
+     * @return the notifications emitted by MBeans of {@code mbeanClass}, or null if it has no thresholds
+     * @throws IllegalArgumentException if a {@link Threshold} annotation isn't on a numeric {@link ManagedAttribute}
+     * getter
+     */
+    public static MBeanNotificationInfo[] notificationInfo(Class<?> mbeanClass) {
+        if (RULES.get(mbeanClass).length == 0) {
+            return null;
+        }
+        return new MBeanNotificationInfo[] {new MBeanNotificationInfo(new String[] {BREACHED, CLEARED},
+                Notification.class.getName(), "An attribute breached or cleared its threshold")};
+    }
+
+    /**
+     * Start evaluating the thresholds periodically
+     */
+    synchronized void start() {
+        if (evaluation == null) {
+            evaluation = scheduler().scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        evaluate(currentTimeMillis());
+                    } catch (RuntimeException ignore) {
+                        // a failing listener mustn't stop the evaluation
+                    }
+                }
+            }, PERIOD_MILLIS, PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the time of the clock of the MBean, if it's an {@link AbstractMBean}, or of the default clock
+     */
+    private long currentTimeMillis() {
+        Object mbean = adapter.mbean;
+        Clock clock = (mbean instanceof AbstractMBean) ? ((AbstractMBean) mbean).getClock() : Clock.getDefault();
+        return clock.currentTimeMillis();
+    }
+
+    synchronized void stop() {
+        if (evaluation != null) {
+            evaluation.cancel(false);
+            evaluation = null;
+        }
+    }
+
+    /**
+     * Read the attributes, and emit the notifications that are due
+     * @param now the current time, in milliseconds since the epoch
+     */
+    void evaluate(long now) {
+        adapter.getAttributeValues(attributes, values);
+        for (int i = 0; i < rules.length; i++) {
+            Object value = values[i];
+            values[i] = null;
+            if (value instanceof Number) {
+                evaluate(rules[i], states[i], (Number) value, now);
+            }
+        }
+    }
+
+    private void evaluate(Rule rule, State state, Number value, long now) {
+        boolean breached = rule.isBreached(value.doubleValue());
+        if (breached != state.breached) {
+            state.breached = breached;
+            state.changes++;
+        }
+        if (breached == state.notified || now < state.quietUntil) {
+            return;
+        }
+        String message = format("%s = %s is %s%s threshold %s", rule.attribute, value, breached ? "" : "no longer ",
+                rule.direction.name().toLowerCase(), rule.threshold);
+        if (state.changes > 1) {
+            message += format(" (%d changes coalesced)", state.changes);
+        }
+        Notification notification = new Notification(breached ? BREACHED : CLEARED, objectName, ++sequenceNumber,
+                now, message);
+        notification.setUserData(value);
+        state.notified = breached;
+        state.quietUntil = now + rule.quietPeriodMillis;
+        state.changes = 0;
+        adapter.sendNotification(notification);
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor scheduler() {
+        if (scheduler == null) {
+            scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "pojo-mbean-threshold-monitor");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+        }
+        return scheduler;
+    }
+
+    private static Rule[] createRules(Class<?> mbeanClass) {
+        List<Rule> rules = new ArrayList<Rule>();
+        for (Method method : mbeanClass.getMethods()) {
+            Threshold threshold = method.getAnnotation(Threshold.class);
+            if (threshold == null) {
+                continue;
+            }
+            String name = method.getName();
+            if (method.getAnnotation(ManagedAttribute.class) == null || Modifier.isStatic(method.getModifiers())
+                    || !name.startsWith("get") || name.length() == 3 || method.getParameterTypes().length != 0
+                    || !isNumeric(method.getReturnType())) {
+                throw new IllegalArgumentException(format("@%s is only allowed on a numeric @%s getter: %s",
+                        Threshold.class.getSimpleName(), ManagedAttribute.class.getSimpleName(), method));
+            }
+            rules.add(new Rule(Introspector.decapitalize(name.substring(3)), threshold));
+        }
+        return rules.toArray(new Rule[rules.size()]);
+    }
+
+    private static boolean isNumeric(Class<?> type) {
+        return Number.class.isAssignableFrom(type)
+                || (type.isPrimitive() && type != boolean.class && type != char.class && type != void.class);
+    }
+
+    /**
+     * The threshold of an attribute
+     */
+    private static final class Rule {
+        final String attribute;
+        final double threshold;
+        final Direction direction;
+        final long quietPeriodMillis;
+
+        Rule(String attribute, Threshold threshold) {
+            this.attribute = attribute;
+            this.threshold = threshold.value();
+            this.direction = threshold.direction();
+            this.quietPeriodMillis = threshold.quietPeriodMillis();
+        }
+
+        boolean isBreached(double value) {
+            return (direction == Direction.ABOVE) ? value > threshold : value < threshold;
+        }
+    }
+
+    /**
+     * The state of a rule of a monitor
+     */
+    private static final class State {
+        /** the state at the latest evaluation */
+        boolean breached;
+        /** the state reported by the latest notification */
+        boolean notified;
+        /** the number of state changes since the latest notification */
+        int changes;
+        /** the time before which no notification may be emitted */
+        long quietUntil = Long.MIN_VALUE;
+    }
+}
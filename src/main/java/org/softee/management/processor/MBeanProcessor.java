@@ -0,0 +1,767 @@
+package org.softee.management.processor;
+
+import static java.lang.String.format;
+
+import java.beans.Introspector;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+import org.softee.management.annotation.Cached;
+import org.softee.management.annotation.Description;
+import org.softee.management.annotation.MBean;
+import org.softee.management.annotation.MBean.AutomaticType;
+import org.softee.management.annotation.ManagedAttribute;
+import org.softee.management.annotation.ManagedOperation;
+import org.softee.management.annotation.Parameter;
+import org.softee.management.annotation.Threshold;
+import org.softee.management.helper.DynamicMBeanAdapter;
+import org.softee.management.helper.IntrospectedDynamicMBean;
+import org.softee.management.helper.ThresholdMonitor;
+
+/**
+ * Annotation processor that checks {@link MBean} annotated classes at compile time, and generates a
+ * {@link DynamicMBeanAdapter} for each concrete one, so that it is registered without runtime introspection.<p>
+ *
+ * The generated adapter dispatches attribute and operation names with a {@code switch}, calls the accessors and
+ * operations directly, and returns an {@link javax.management.MBeanInfo} built once, when the adapter class is
+ * initialized. Overloaded operations are selected by the signature passed to
+ * {@link javax.management.DynamicMBean#invoke(String, Object[], String[])}, with a nested {@code switch}. Attributes
+ * and operations are found by the same rules as {@link IntrospectedDynamicMBean} uses at runtime.<p>
+ *
+ * Annotations that runtime introspection would reject, e.g. {@link Description} on both the getter and the setter of
+ * an attribute, or {@link Threshold} on a method that isn't a numeric attribute
+ * getter, are reported as errors. Annotations that would be ignored, e.g.
+ * {@link ManagedAttribute} on a method that isn't a getter or setter, are reported as warnings.<p>
+ *
+ * The processor is registered as a service, so javac runs it whenever this library is on the class path. Classes
+ * that are not compiled by it, that the adapter can't access (private classes), that are annotated with
+ * {@link MBean#openTypes()}, or that have {@link Cached} attributes, are introspected at runtime.
+ */
+@SupportedAnnotationTypes({
+    "org.softee.management.annotation.Cached",
+    "org.softee.management.annotation.MBean",
+    "org.softee.management.annotation.ManagedAttribute",
+    "org.softee.management.annotation.ManagedOperation",
+    "org.softee.management.annotation.Threshold"})
+public class MBeanProcessor extends AbstractProcessor {
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (ExecutableElement method : ElementFilter.methodsIn(
+                roundEnv.getElementsAnnotatedWith(ManagedAttribute.class))) {
+            if (!isPublicInstance(method)) {
+                warning(method, "@ManagedAttribute is ignored on a method that isn't public and non-static");
+            } else if (getterName(method) == null && setterName(method) == null) {
+                warning(method, "@ManagedAttribute is ignored on a method that isn't a getter or setter");
+            }
+        }
+        for (ExecutableElement method : ElementFilter.methodsIn(
+                roundEnv.getElementsAnnotatedWith(ManagedOperation.class))) {
+            if (!isPublicInstance(method)) {
+                warning(method, "@ManagedOperation is ignored on a method that isn't public and non-static");
+            }
+        }
+        for (ExecutableElement method : ElementFilter.methodsIn(roundEnv.getElementsAnnotatedWith(Threshold.class))) {
+            if (method.getAnnotation(ManagedAttribute.class) == null || !isPublicInstance(method)
+                    || !method.getSimpleName().toString().startsWith("get") || getterName(method) == null
+                    || !isNumeric(method.getReturnType())) {
+                error(method, "@Threshold is only allowed on a numeric @ManagedAttribute getter");
+            }
+        }
+        for (ExecutableElement method : ElementFilter.methodsIn(roundEnv.getElementsAnnotatedWith(Cached.class))) {
+            if (method.getAnnotation(ManagedAttribute.class) == null || !isPublicInstance(method)
+                    || getterName(method) == null) {
+                error(method, "@Cached is only allowed on a @ManagedAttribute getter");
+            } else if (method.getAnnotation(Cached.class).ttlMillis() <= 0) {
+                error(method, "@Cached ttlMillis must be positive");
+            }
+        }
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(MBean.class))) {
+            if (type.getKind() == ElementKind.CLASS) {
+                MBeanModel model = new MBeanModel(type);
+                if (model.valid && model.isAdaptable()) {
+                    write(model);
+                }
+            }
+        }
+        // other processors may handle the same annotations
+        return false;
+    }
+
+    private void write(MBeanModel model) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(model.type).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(model.type).toString();
+        String adapterName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                + DynamicMBeanAdapter.ADAPTER_SUFFIX;
+        String qualifiedAdapterName = packageName.isEmpty() ? adapterName : packageName + "." + adapterName;
+        try {
+            PrintWriter out = new PrintWriter(
+                    processingEnv.getFiler().createSourceFile(qualifiedAdapterName, model.type).openWriter());
+            try {
+                new AdapterWriter(out, model, packageName, adapterName).write();
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Kind.ERROR,
+                    format("Unable to write %s: %s", qualifiedAdapterName, e), model.type);
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Kind.ERROR, message, element);
+    }
+
+    private void warning(Element element, String message) {
+        processingEnv.getMessager().printMessage(Kind.WARNING, message, element);
+    }
+
+    private static boolean isPublicInstance(ExecutableElement method) {
+        Set<Modifier> modifiers = method.getModifiers();
+        return modifiers.contains(Modifier.PUBLIC) && !modifiers.contains(Modifier.STATIC);
+    }
+
+    /**
+     * @return true if {@code type} is a primitive number, or a subclass of {@link Number}
+     */
+    private boolean isNumeric(TypeMirror type) {
+        switch (type.getKind()) {
+        case BYTE:
+        case SHORT:
+        case INT:
+        case LONG:
+        case FLOAT:
+        case DOUBLE:
+            return true;
+        case DECLARED:
+            return processingEnv.getTypeUtils().isAssignable(type,
+                    processingEnv.getElementUtils().getTypeElement(Number.class.getName()).asType());
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * @return the name of the property read by {@code method}, or null if it isn't a JavaBeans getter
+     */
+    private static String getterName(ExecutableElement method) {
+        if (!method.getParameters().isEmpty()) {
+            return null;
+        }
+        String name = method.getSimpleName().toString();
+        TypeKind returnKind = method.getReturnType().getKind();
+        if (name.startsWith("get") && name.length() > 3 && returnKind != TypeKind.VOID) {
+            return Introspector.decapitalize(name.substring(3));
+        }
+        if (name.startsWith("is") && name.length() > 2 && returnKind == TypeKind.BOOLEAN) {
+            return Introspector.decapitalize(name.substring(2));
+        }
+        return null;
+    }
+
+    /**
+     * @return the name of the property written by {@code method}, or null if it isn't a JavaBeans setter
+     */
+    private static String setterName(ExecutableElement method) {
+        String name = method.getSimpleName().toString();
+        if (method.getParameters().size() == 1 && name.startsWith("set") && name.length() > 3
+                && method.getReturnType().getKind() == TypeKind.VOID) {
+            return Introspector.decapitalize(name.substring(3));
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the {@link MBean} annotation of the class declaring {@code method}, if any, includes
+     * {@code autoType}
+     */
+    private static boolean isAutomatic(ExecutableElement method, AutomaticType autoType) {
+        MBean annotation = method.getEnclosingElement().getAnnotation(MBean.class);
+        if (annotation != null) {
+            for (AutomaticType value : annotation.automatic()) {
+                if (value == autoType) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String description(Element element) {
+        Description annotation = (element != null) ? element.getAnnotation(Description.class) : null;
+        return (annotation != null) ? annotation.value() : null;
+    }
+
+    /**
+     * Orders overloaded operations as the runtime introspection does: by number of parameters, then by the
+     * {@link Class#getName()} of the parameter types
+     */
+    private final Comparator<ExecutableElement> signatureOrder = new Comparator<ExecutableElement>() {
+        @Override
+        public int compare(ExecutableElement m1, ExecutableElement m2) {
+            List<? extends VariableElement> p1 = m1.getParameters();
+            List<? extends VariableElement> p2 = m2.getParameters();
+            if (p1.size() != p2.size()) {
+                return p1.size() - p2.size();
+            }
+            for (int i = 0; i < p1.size(); i++) {
+                int c = className(p1.get(i).asType()).compareTo(className(p2.get(i).asType()));
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return 0;
+        }
+    };
+
+    /**
+     * @return the {@link Class#getName()} of the erasure of {@code type}
+     */
+    private String className(TypeMirror type) {
+        TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+        switch (erasure.getKind()) {
+        case ARRAY:
+            return "[" + descriptor(((ArrayType) erasure).getComponentType());
+        case DECLARED:
+            return processingEnv.getElementUtils().getBinaryName(
+                    (TypeElement) ((DeclaredType) erasure).asElement()).toString();
+        default:
+            return erasure.getKind().name().toLowerCase();
+        }
+    }
+
+    /**
+     * @return the descriptor of an array component type, as in the {@link Class#getName()} of the array
+     */
+    private String descriptor(TypeMirror type) {
+        TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+        switch (erasure.getKind()) {
+        case ARRAY:
+            return "[" + descriptor(((ArrayType) erasure).getComponentType());
+        case DECLARED:
+            return "L" + className(erasure) + ";";
+        case BOOLEAN:
+            return "Z";
+        case LONG:
+            return "J";
+        default:
+            return erasure.getKind().name().substring(0, 1);
+        }
+    }
+
+    /**
+     * A managed attribute: a JavaBeans property with at least one annotated (or automatic) accessor
+     */
+    private static final class AttributeModel {
+        final String name;
+        final ExecutableElement getter;
+        final ExecutableElement setter;
+        final String description;
+
+        AttributeModel(String name, ExecutableElement getter, ExecutableElement setter, String description) {
+            this.name = name;
+            this.getter = getter;
+            this.setter = setter;
+            this.description = description;
+        }
+
+        TypeMirror getType() {
+            return (getter != null) ? getter.getReturnType() : setter.getParameters().get(0).asType();
+        }
+    }
+
+    /**
+     * The attributes and operations of an {@link MBean} annotated class
+     */
+    private final class MBeanModel {
+        final TypeElement type;
+        /** attributes and operations, by name, sorted as by the runtime introspection */
+        final Map<String, AttributeModel> attributes = new TreeMap<String, AttributeModel>();
+        /** the overloads of each operation, sorted by signature */
+        final Map<String, List<ExecutableElement>> operations = new TreeMap<String, List<ExecutableElement>>();
+        boolean valid = true;
+
+        MBeanModel(TypeElement type) {
+            this.type = type;
+            List<ExecutableElement> methods = new ArrayList<ExecutableElement>();
+            for (ExecutableElement method : ElementFilter.methodsIn(
+                    processingEnv.getElementUtils().getAllMembers(type))) {
+                Element declaringType = method.getEnclosingElement();
+                if (isPublicInstance(method)
+                        && !((TypeElement) declaringType).getQualifiedName().contentEquals("java.lang.Object")) {
+                    methods.add(method);
+                }
+            }
+            Set<ExecutableElement> accessors = createAttributes(methods);
+            createOperations(methods, accessors);
+        }
+
+        /**
+         * @return the getters and setters of all properties, managed or not
+         */
+        private Set<ExecutableElement> createAttributes(List<ExecutableElement> methods) {
+            Set<ExecutableElement> accessors = new HashSet<ExecutableElement>();
+            Map<String, ExecutableElement> getters = new HashMap<String, ExecutableElement>();
+            Map<String, List<ExecutableElement>> setters = new TreeMap<String, List<ExecutableElement>>();
+            for (ExecutableElement method : methods) {
+                String getterName = getterName(method);
+                String setterName = setterName(method);
+                if (getterName != null) {
+                    accessors.add(method);
+                    ExecutableElement existing = getters.get(getterName);
+                    // isXxx() takes precedence over getXxx(), as with java.beans.Introspector
+                    if (existing == null || method.getSimpleName().toString().startsWith("is")) {
+                        getters.put(getterName, method);
+                    }
+                } else if (setterName != null) {
+                    accessors.add(method);
+                    List<ExecutableElement> overloads = setters.get(setterName);
+                    if (overloads == null) {
+                        overloads = new ArrayList<ExecutableElement>();
+                        setters.put(setterName, overloads);
+                    }
+                    overloads.add(method);
+                }
+            }
+            Set<String> names = new HashSet<String>(getters.keySet());
+            names.addAll(setters.keySet());
+            for (String name : names) {
+                ExecutableElement getter = getters.get(name);
+                ExecutableElement setter = setter(getter, setters.get(name));
+                ExecutableElement accessor = (getter != null) ? getter : setter;
+                boolean automatic = isAutomatic(accessor, AutomaticType.ATTRIBUTE);
+                boolean readable = getter != null && (automatic || getter.getAnnotation(ManagedAttribute.class) != null);
+                boolean writable = setter != null && (automatic || setter.getAnnotation(ManagedAttribute.class) != null);
+                if (!readable && !writable) {
+                    continue;
+                }
+                String getterDescription = description(getter);
+                String setterDescription = description(setter);
+                if (getterDescription != null && setterDescription != null) {
+                    fail(setter, format("Multiple @Description annotations for attribute %s of %s", name,
+                            type.getQualifiedName()));
+                }
+                attributes.put(name, new AttributeModel(name, readable ? getter : null, writable ? setter : null,
+                        (getterDescription != null) ? getterDescription : setterDescription));
+            }
+            return accessors;
+        }
+
+        /**
+         * @return the setter of the property read by {@code getter}: the overload taking the type returned by
+         * {@code getter}, or the only overload if there's no getter
+         */
+        private ExecutableElement setter(ExecutableElement getter, List<ExecutableElement> overloads) {
+            if (overloads == null) {
+                return null;
+            }
+            for (ExecutableElement setter : overloads) {
+                if (getter == null ? overloads.size() == 1 : processingEnv.getTypeUtils().isSameType(
+                        getter.getReturnType(), setter.getParameters().get(0).asType())) {
+                    return setter;
+                }
+            }
+            if (getter == null) {
+                for (ExecutableElement setter : overloads) {
+                    if (setter.getAnnotation(ManagedAttribute.class) != null) {
+                        fail(setter, format("Overloaded setters for attribute %s of %s",
+                                setterName(setter), type.getQualifiedName()));
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void createOperations(List<ExecutableElement> methods, Set<ExecutableElement> accessors) {
+            for (ExecutableElement method : methods) {
+                boolean annotated = method.getAnnotation(ManagedOperation.class) != null;
+                boolean accessor = accessors.contains(method);
+                if (annotated && accessor) {
+                    fail(method, format("Accessor method %s is annotated as an @%s", method,
+                            ManagedOperation.class.getSimpleName()));
+                } else if (annotated || (!accessor && isAutomatic(method, AutomaticType.OPERATION))) {
+                    String name = method.getSimpleName().toString();
+                    List<ExecutableElement> overloads = operations.get(name);
+                    if (overloads == null) {
+                        overloads = new ArrayList<ExecutableElement>(1);
+                        operations.put(name, overloads);
+                    }
+                    overloads.add(method);
+                }
+            }
+            for (List<ExecutableElement> overloads : operations.values()) {
+                Collections.sort(overloads, signatureOrder);
+            }
+        }
+
+        /**
+         * @return true if a readable attribute has a {@link Threshold}
+         */
+        boolean hasThresholds() {
+            for (AttributeModel attribute : attributes.values()) {
+                if (attribute.getter != null && attribute.getter.getAnnotation(Threshold.class) != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return true if a readable attribute is {@link Cached}
+         */
+        boolean hasCachedAttributes() {
+            for (AttributeModel attribute : attributes.values()) {
+                if (attribute.getter != null && attribute.getter.getAnnotation(Cached.class) != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void fail(Element element, String message) {
+            error(element, message);
+            valid = false;
+        }
+
+        /**
+         * @return true if an adapter can be generated: the class is concrete, accessible from its package, and none of
+         * its managed methods throw a Throwable that isn't an Exception or Error
+         */
+        boolean isAdaptable() {
+            if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+                return false;
+            }
+            MBean annotation = type.getAnnotation(MBean.class);
+            if (annotation != null && annotation.openTypes() || hasCachedAttributes()) {
+                // the open types of attributes are mapped, and cached attributes are cached, at runtime
+                return false;
+            }
+            for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+                TypeElement enclosing = (TypeElement) element;
+                if (enclosing.getModifiers().contains(Modifier.PRIVATE)
+                        || (enclosing.getNestingKind() != NestingKind.TOP_LEVEL
+                            && enclosing.getNestingKind() != NestingKind.MEMBER)) {
+                    return false;
+                }
+            }
+            List<ExecutableElement> methods = new ArrayList<ExecutableElement>();
+            for (List<ExecutableElement> overloads : operations.values()) {
+                methods.addAll(overloads);
+            }
+            for (AttributeModel attribute : attributes.values()) {
+                addNotNull(methods, attribute.getter);
+                addNotNull(methods, attribute.setter);
+            }
+            TypeMirror exception = processingEnv.getElementUtils().getTypeElement("java.lang.Exception").asType();
+            TypeMirror error = processingEnv.getElementUtils().getTypeElement("java.lang.Error").asType();
+            for (ExecutableElement method : methods) {
+                for (TypeMirror thrown : method.getThrownTypes()) {
+                    if (!processingEnv.getTypeUtils().isAssignable(thrown, exception)
+                            && !processingEnv.getTypeUtils().isAssignable(thrown, error)) {
+                        warning(method, format("%s throws %s, %s will be introspected at runtime", method, thrown,
+                                type.getQualifiedName()));
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private void addNotNull(List<ExecutableElement> methods, ExecutableElement method) {
+            if (method != null) {
+                methods.add(method);
+            }
+        }
+    }
+
+    /**
+     * Writes the source of the adapter of one MBean class
+     */
+    private final class AdapterWriter {
+        private final PrintWriter out;
+        private final MBeanModel model;
+        private final String packageName;
+        private final String adapterName;
+        private final String mbeanType;
+
+        AdapterWriter(PrintWriter out, MBeanModel model, String packageName, String adapterName) {
+            this.out = out;
+            this.model = model;
+            this.packageName = packageName;
+            this.adapterName = adapterName;
+            this.mbeanType = model.type.getQualifiedName().toString();
+        }
+
+        void write() {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * DynamicMBean adapter of {@link " + mbeanType + "}, generated by "
+                    + MBeanProcessor.class.getName());
+            out.println(" */");
+            out.println("@SuppressWarnings({\"rawtypes\", \"unchecked\", \"deprecation\"})");
+            out.println("public final class " + adapterName + " extends "
+                    + DynamicMBeanAdapter.class.getName() + "<" + mbeanType + "> {");
+            writeMBeanInfo();
+            out.println();
+            out.println("    public " + adapterName + "(" + mbeanType + " mbean) {");
+            out.println("        super(mbean);");
+            out.println("    }");
+            out.println();
+            out.println("    public javax.management.MBeanInfo getMBeanInfo() {");
+            out.println("        return MBEAN_INFO;");
+            out.println("    }");
+            out.println();
+            writeGetValue();
+            out.println();
+            writeSetValue();
+            out.println();
+            writeInvokeOperation();
+            out.println("}");
+        }
+
+        private void writeMBeanInfo() {
+            String binaryName = processingEnv.getElementUtils().getBinaryName(model.type).toString();
+            String description = description(model.type);
+            if (description == null || description.isEmpty()) {
+                description = "class " + binaryName;
+            }
+            out.println("    private static final javax.management.MBeanInfo MBEAN_INFO = new javax.management.MBeanInfo(");
+            out.println("            " + literal(binaryName) + ",");
+            out.println("            " + literal(description) + ",");
+            out.println("            new javax.management.MBeanAttributeInfo[] {");
+            for (AttributeModel attribute : model.attributes.values()) {
+                boolean isIs = attribute.getter != null && attribute.getter.getSimpleName().toString().startsWith("is");
+                out.println("                new javax.management.MBeanAttributeInfo(" + literal(attribute.name) + ", "
+                        + typeName(attribute.getType()) + ", " + literal(attribute.description) + ", "
+                        + (attribute.getter != null) + ", " + (attribute.setter != null) + ", " + isIs + "),");
+            }
+            out.println("            },");
+            out.println("            null,");
+            out.println("            new javax.management.MBeanOperationInfo[] {");
+            for (ExecutableElement operation : operations()) {
+                String operationDescription = description(operation);
+                if (operationDescription == null || operationDescription.isEmpty()) {
+                    operationDescription = operation.getSimpleName() + "() of " + operation.getEnclosingElement().getSimpleName();
+                }
+                ManagedOperation annotation = operation.getAnnotation(ManagedOperation.class);
+                int impact = (annotation != null ? annotation.value() : ManagedOperation.Impact.UNKNOWN).impactValue;
+                out.println("                new javax.management.MBeanOperationInfo(" + literal(operation.getSimpleName())
+                        + ", " + literal(operationDescription) + ", new javax.management.MBeanParameterInfo[] {");
+                List<? extends VariableElement> parameters = operation.getParameters();
+                for (int i = 0; i < parameters.size(); i++) {
+                    VariableElement parameter = parameters.get(i);
+                    Parameter name = parameter.getAnnotation(Parameter.class);
+                    out.println("                    new javax.management.MBeanParameterInfo("
+                            + literal((name != null) ? name.value() : "p" + (i + 1)) + ", "
+                            + typeName(parameter.asType()) + ", " + literal(description(parameter)) + "),");
+                }
+                out.println("                }, " + typeName(operation.getReturnType()) + ", " + impact + "),");
+            }
+            out.println("            },");
+            out.println("            " + (model.hasThresholds() ? ThresholdMonitor.class.getName()
+                    + ".notificationInfo(" + sourceName(model.type.asType()) + ".class)" : "null") + ");");
+        }
+
+        private void writeGetValue() {
+            out.println("    @Override");
+            out.println("    protected java.lang.Object getValue(java.lang.String attribute) throws java.lang.Exception {");
+            out.println("        switch (attribute) {");
+            for (AttributeModel attribute : model.attributes.values()) {
+                if (attribute.getter != null) {
+                    out.println("        case " + literal(attribute.name) + ":");
+                    out.println("            return mbean." + attribute.getter.getSimpleName() + "();");
+                }
+            }
+            out.println("        default:");
+            out.println("            return NO_VALUE;");
+            out.println("        }");
+            out.println("    }");
+        }
+
+        private void writeSetValue() {
+            out.println("    @Override");
+            out.println("    protected boolean setValue(java.lang.String attribute, java.lang.Object value) throws java.lang.Exception {");
+            out.println("        switch (attribute) {");
+            for (AttributeModel attribute : model.attributes.values()) {
+                if (attribute.setter != null) {
+                    out.println("        case " + literal(attribute.name) + ":");
+                    out.println("            mbean." + attribute.setter.getSimpleName() + "("
+                            + argument("value", attribute.setter.getParameters().get(0).asType()) + ");");
+                    out.println("            return true;");
+                }
+            }
+            out.println("        default:");
+            out.println("            return false;");
+            out.println("        }");
+            out.println("    }");
+        }
+
+        /**
+         * @return the operations, sorted by name, and overloads by signature
+         */
+        private List<ExecutableElement> operations() {
+            List<ExecutableElement> operations = new ArrayList<ExecutableElement>();
+            for (List<ExecutableElement> overloads : model.operations.values()) {
+                operations.addAll(overloads);
+            }
+            return operations;
+        }
+
+        private void writeInvokeOperation() {
+            // the signatures of the overloads of each operation, by index of the operation name
+            int index = 0;
+            for (List<ExecutableElement> overloads : model.operations.values()) {
+                out.println("    private static final Signatures SIGNATURES_" + index++ + " = new Signatures(new java.lang.String[][] {");
+                for (ExecutableElement operation : overloads) {
+                    StringBuilder signature = new StringBuilder();
+                    for (VariableElement parameter : operation.getParameters()) {
+                        signature.append((signature.length() == 0) ? "" : ", ").append(typeName(parameter.asType()));
+                    }
+                    out.println("        {" + signature + "},");
+                }
+                out.println("    });");
+            }
+            out.println();
+            out.println("    @Override");
+            out.println("    protected java.lang.Object invokeOperation(java.lang.String operation, java.lang.Object[] params, java.lang.String[] signature) throws java.lang.Exception {");
+            out.println("        switch (operation) {");
+            index = 0;
+            for (Map.Entry<String, List<ExecutableElement>> entry : model.operations.entrySet()) {
+                out.println("        case " + literal(entry.getKey()) + ":");
+                out.println("            switch (overload(signature, params, SIGNATURES_" + index++ + ")) {");
+                int overload = 0;
+                for (ExecutableElement operation : entry.getValue()) {
+                    writeOperationCall(overload++, operation);
+                }
+                out.println("            default:");
+                out.println("                return NO_VALUE;");
+                out.println("            }");
+            }
+            out.println("        default:");
+            out.println("            return NO_VALUE;");
+            out.println("        }");
+            out.println("    }");
+        }
+
+        private void writeOperationCall(int overload, ExecutableElement operation) {
+            List<? extends VariableElement> parameters = operation.getParameters();
+            out.println("            case " + overload + ": {");
+            out.println("                java.lang.Object[] args = arguments(params, " + parameters.size() + ");");
+            StringBuilder call = new StringBuilder("mbean.").append(operation.getSimpleName()).append('(');
+            for (int i = 0; i < parameters.size(); i++) {
+                call.append((i == 0) ? "" : ", ").append(argument("args[" + i + "]", parameters.get(i).asType()));
+            }
+            call.append(')');
+            if (operation.getReturnType().getKind() == TypeKind.VOID) {
+                out.println("                " + call + ";");
+                out.println("                return null;");
+            } else {
+                out.println("                return " + call + ";");
+            }
+            out.println("            }");
+        }
+
+        /**
+         * @return an expression converting {@code value} to {@code type}
+         */
+        private String argument(String value, TypeMirror type) {
+            String castType = type.getKind().isPrimitive()
+                    ? processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString()
+                    : sourceName(type);
+            return "(" + castType + ") argument(" + value + ", " + sourceName(type) + ".class)";
+        }
+
+        /**
+         * @return an expression evaluating to the {@link Class#getName()} of {@code type}
+         */
+        private String typeName(TypeMirror type) {
+            return sourceName(type) + ".class.getName()";
+        }
+
+        /**
+         * @return the erasure of {@code type}, as it is written in source code
+         */
+        private String sourceName(TypeMirror type) {
+            TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+            switch (erasure.getKind()) {
+            case ARRAY:
+                return sourceName(((ArrayType) erasure).getComponentType()) + "[]";
+            case DECLARED:
+                return ((TypeElement) ((DeclaredType) erasure).asElement()).getQualifiedName().toString();
+            default:
+                // primitive or void
+                return erasure.getKind().name().toLowerCase();
+            }
+        }
+
+        private String literal(CharSequence value) {
+            if (value == null) {
+                return "null";
+            }
+            StringBuilder literal = new StringBuilder("\"");
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                case '\r':
+                    literal.append("\\r");
+                    break;
+                case '\t':
+                    literal.append("\\t");
+                    break;
+                default:
+                    if (c < ' ' || c > '~') {
+                        literal.append(format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+                }
+            }
+            return literal.append('"').toString();
+        }
+    }
+}
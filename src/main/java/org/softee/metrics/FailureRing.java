@@ -0,0 +1,320 @@
+package org.softee.metrics;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latest failures in a fixed-size ring, and counts failures by fingerprint: a hash of the exception
+ * classes and stack frames of the cause chain, but not of the messages, so failures of one code path are grouped even
+ * if their messages differ.<p>
+ *
+ * The ring holds {@link Failure} records rather than the Throwables, so the objects referenced by a failure aren't
+ * retained. The stack frames of a fingerprint are rendered once, when it first occurs, and shared by all failures
+ * with that fingerprint; the stack trace of a failure is its reason followed by those frames. Up to
+ * {@code maxFingerprints} fingerprints are tracked; the failures of further fingerprints are counted, but their stack
+ * traces aren't kept.<p>
+ *
+ * {@link #record(long, Throwable)} is lock-free: it claims a slot of the ring by incrementing a sequence, and
+ * replaces the oldest record in that slot. The memory used is bounded, regardless of the failure rate.
+ */
+public class FailureRing {
+    /** stops the walk of a cause chain that is cyclic or absurdly deep */
+    private static final int MAX_CAUSES = 32;
+
+    private final AtomicReferenceArray<Failure> ring;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+    private final int maxFingerprints;
+    private final ConcurrentMap<Long, Fingerprint> fingerprints = new ConcurrentHashMap<Long, Fingerprint>();
+    private final LongAdder untracked = new LongAdder();
+
+    /**
+     * @param capacity the number of failures kept, rounded up to a power of two
+     * @param maxFingerprints the maximum number of fingerprints tracked
+     */
+    public FailureRing(int capacity, int maxFingerprints) {
+        if (capacity < 1 || capacity > 1 << 20) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^20: " + capacity);
+        }
+        if (maxFingerprints < 0) {
+            throw new IllegalArgumentException("maxFingerprints must not be negative: " + maxFingerprints);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.ring = new AtomicReferenceArray<Failure>(size);
+        this.mask = size - 1;
+        this.maxFingerprints = maxFingerprints;
+    }
+
+    /**
+     * Record a failure
+     * @param timeMillis the current time, in milliseconds
+     * @param cause the cause of the failure, or null if none is available
+     * @return the record of the failure
+     */
+    public Failure record(long timeMillis, Throwable cause) {
+        Fingerprint fingerprint = null;
+        String reason = null;
+        if (cause != null) {
+            reason = cause.toString();
+            fingerprint = fingerprint(cause, reason);
+            if (fingerprint != null) {
+                fingerprint.record(timeMillis);
+            } else {
+                untracked.increment();
+            }
+        }
+        long seq = sequence.getAndIncrement();
+        Failure failure = new Failure(seq, timeMillis, fingerprint, reason);
+        ring.set((int) seq & mask, failure);
+        return failure;
+    }
+
+    /**
+     * @return the fingerprint of {@code cause}, which is created if it doesn't exist, or null if it isn't tracked
+     */
+    private Fingerprint fingerprint(Throwable cause, String reason) {
+        long id = hash(cause);
+        Fingerprint fingerprint = fingerprints.get(id);
+        if (fingerprint == null) {
+            if (fingerprints.size() >= maxFingerprints) {
+                return null;
+            }
+            Fingerprint created = new Fingerprint(id, reason, frames(cause, reason));
+            fingerprint = fingerprints.putIfAbsent(id, created);
+            if (fingerprint == null) {
+                fingerprint = created;
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @return a 64 bit FNV-1a hash of the class names and stack frames of the causes of {@code cause}
+     */
+    static long hash(Throwable cause) {
+        long hash = 0xcbf29ce484222325L;
+        Throwable t = cause;
+        for (int depth = 0; t != null && depth < MAX_CAUSES; depth++) {
+            hash = (hash ^ t.getClass().getName().hashCode()) * 0x100000001b3L;
+            for (StackTraceElement element : t.getStackTrace()) {
+                hash = (hash ^ element.hashCode()) * 0x100000001b3L;
+            }
+            t = (t.getCause() != t) ? t.getCause() : null;
+        }
+        return hash;
+    }
+
+    /**
+     * @return the lines of the stack trace of {@code cause}, as printed by {@link Throwable#printStackTrace()}, that
+     * follow the lines of its {@code reason}: the frames, and the nested causes
+     */
+    private static String[] frames(Throwable cause, String reason) {
+        StringWriter sw = new StringWriter();
+        cause.printStackTrace(new PrintWriter(sw));
+        String[] lines = sw.toString().split("\r?\n");
+        int header = Math.min(lines(reason).length, lines.length);
+        String[] frames = new String[lines.length - header];
+        System.arraycopy(lines, header, frames, 0, frames.length);
+        return frames;
+    }
+
+    private static String[] lines(String text) {
+        return text.split("\r?\n", -1);
+    }
+
+    /**
+     * @return the lines of {@code reason}, followed by {@code frames}
+     */
+    private static String[] stacktrace(String reason, String[] frames) {
+        String[] header = lines(reason);
+        String[] lines = new String[header.length + frames.length];
+        System.arraycopy(header, 0, lines, 0, header.length);
+        System.arraycopy(frames, 0, lines, header.length, frames.length);
+        return lines;
+    }
+
+    /**
+     * @return the latest failure, or null if none has been recorded
+     */
+    public Failure latest() {
+        long seq = sequence.get();
+        for (long i = seq - 1; i >= 0 && i >= seq - ring.length(); i--) {
+            Failure failure = ring.get((int) i & mask);
+            // skip a slot claimed, but not yet written
+            if (failure != null && failure.sequence == i) {
+                return failure;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the failures in the ring, latest first
+     */
+    public List<Failure> failures() {
+        long seq = sequence.get();
+        List<Failure> failures = new ArrayList<Failure>(ring.length());
+        for (long i = seq - 1; i >= 0 && i >= seq - ring.length(); i--) {
+            Failure failure = ring.get((int) i & mask);
+            if (failure != null && failure.sequence == i) {
+                failures.add(failure);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return the tracked fingerprints, in no particular order
+     */
+    public Collection<Fingerprint> fingerprints() {
+        return Collections.unmodifiableCollection(fingerprints.values());
+    }
+
+    /**
+     * @param id the id of a fingerprint, as returned by {@link Fingerprint#getId()}
+     * @return the fingerprint, or null if it isn't tracked
+     */
+    public Fingerprint fingerprint(String id) {
+        try {
+            return fingerprints.get(Long.parseUnsignedLong(id, 16));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of failures recorded
+     */
+    public long getCount() {
+        return sequence.get();
+    }
+
+    /**
+     * @return the number of failures whose fingerprints weren't tracked, since {@code maxFingerprints} were tracked
+     */
+    public long getUntrackedCount() {
+        return untracked.sum();
+    }
+
+    /**
+     * A recorded failure
+     */
+    public static final class Failure {
+        private final long sequence;
+        private final long timeMillis;
+        private final Fingerprint fingerprint;
+        private final String reason;
+
+        Failure(long sequence, long timeMillis, Fingerprint fingerprint, String reason) {
+            this.sequence = sequence;
+            this.timeMillis = timeMillis;
+            this.fingerprint = fingerprint;
+            this.reason = reason;
+        }
+
+        /**
+         * @return the number of failures recorded before this one
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        /**
+         * @return the fingerprint of the cause, or null if there is no cause, or its fingerprint isn't tracked
+         */
+        public Fingerprint getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * @return the {@link Throwable#toString()} of the cause, or null if there is no cause
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        /**
+         * @return the lines of the reason of this failure, followed by the stack frames of the fingerprint, or null if
+         * the fingerprint isn't available. The messages of the nested causes are those of the first failure of the
+         * fingerprint.
+         */
+        public String[] getStacktrace() {
+            return (fingerprint != null) ? stacktrace(reason, fingerprint.frames) : null;
+        }
+    }
+
+    /**
+     * The failures of one code path
+     */
+    public static final class Fingerprint {
+        private final String id;
+        private final String reason;
+        /** the lines of the stack trace that follow the reason */
+        private final String[] frames;
+        private final LongAdder count = new LongAdder();
+        /** only increased */
+        private final AtomicLong latest = new AtomicLong();
+
+        Fingerprint(long id, String reason, String[] frames) {
+            this.id = String.format("%016x", id);
+            this.reason = reason;
+            this.frames = frames;
+        }
+
+        void record(long timeMillis) {
+            count.increment();
+            long previous;
+            while (timeMillis > (previous = latest.get()) && !latest.compareAndSet(previous, timeMillis)) {
+                // retry
+            }
+        }
+
+        /**
+         * @return the hash of the fingerprint, as 16 hexadecimal digits
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the reason of the first failure with this fingerprint
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        /**
+         * @return the lines of the stack trace of the first failure with this fingerprint
+         */
+        public String[] getStacktrace() {
+            return stacktrace(reason, frames);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return the time of the latest failure with this fingerprint, in milliseconds
+         */
+        public long getLatestMillis() {
+            return latest.get();
+        }
+    }
+}
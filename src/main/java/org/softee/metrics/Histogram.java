@@ -0,0 +1,214 @@
+package org.softee.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-memory, log-linear histogram of non-negative {@code long} values, such as latencies in nanoseconds.<p>
+ *
+ * Values below {@code 2^subBucketBits} are counted exactly. Above that, every power of two is split into
+ * {@code 2^subBucketBits} equally wide buckets, each at most {@code 2^-subBucketBits} of its lowest value wide. A
+ * bucket is reported as its middle, so the relative error of a reported value is at most {@code 2^-(subBucketBits+1)}
+ * (3.125% with 4 bits). Values above the highest trackable value are counted in the last bucket.<p>
+ *
+ * {@link #record(long)} is lock-free and doesn't allocate, so it may be called from any number of threads.
+ * Snapshots are taken without blocking recording threads; a value recorded while a snapshot is taken is included in
+ * either that snapshot or a later one. A snapshot only copies the range of buckets that have been recorded into, so
+ * its size depends on the spread of the recorded values rather than on the highest trackable value. Polling a
+ * histogram that hasn't recorded anything since the previous snapshot returns that snapshot again, without copying.
+ */
+public class Histogram {
+    private final int subBucketBits;
+    private final int subBucketCount;
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    /** the lowest and highest bucket that has ever been recorded into; only widened */
+    private final AtomicInteger lowestRecordedIndex;
+    private final AtomicInteger highestRecordedIndex = new AtomicInteger(-1);
+    /** the most recent cumulative snapshot, returned again while the counts are unchanged */
+    private volatile Snapshot latest;
+    /** the interval snapshot returned while nothing has been recorded */
+    private final Snapshot emptyInterval = new Snapshot(new long[0], 0);
+
+    /**
+     * @param highestTrackableValue the highest value that is counted in its own bucket. Must be positive.
+     * @param subBucketBits the number of buckets per power of two, as a power of two (1 .. 10)
+     */
+    public Histogram(long highestTrackableValue, int subBucketBits) {
+        if (highestTrackableValue < 1) {
+            throw new IllegalArgumentException("highestTrackableValue must be positive: " + highestTrackableValue);
+        }
+        if (subBucketBits < 1 || subBucketBits > 10) {
+            throw new IllegalArgumentException("subBucketBits must be 1 .. 10: " + subBucketBits);
+        }
+        this.subBucketBits = subBucketBits;
+        this.subBucketCount = 1 << subBucketBits;
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new AtomicLongArray(index(highestTrackableValue) + 1);
+        this.lowestRecordedIndex = new AtomicInteger(counts.length());
+    }
+
+    /**
+     * Count one occurrence of {@code value}. Negative values are ignored.
+     */
+    public void record(long value) {
+        if (value >= 0) {
+            int index = index(Math.min(value, highestTrackableValue));
+            // widen the range before counting, so that a snapshot which sees the count also copies its bucket
+            int lowest;
+            while (index < (lowest = lowestRecordedIndex.get())
+                    && !lowestRecordedIndex.compareAndSet(lowest, index)) {
+                // retry
+            }
+            int highest;
+            while (index > (highest = highestRecordedIndex.get())
+                    && !highestRecordedIndex.compareAndSet(highest, index)) {
+                // retry
+            }
+            counts.incrementAndGet(index);
+        }
+    }
+
+    /**
+     * @return the counts recorded since this histogram was created
+     */
+    public Snapshot snapshot() {
+        int offset = lowestRecordedIndex.get();
+        int length = Math.max(0, highestRecordedIndex.get() - offset + 1);
+        Snapshot snapshot = latest;
+        if (snapshot != null && snapshot.offset == offset && snapshot.counts.length == length) {
+            int i = 0;
+            while (i < length && snapshot.counts[i] == counts.get(offset + i)) {
+                i++;
+            }
+            if (i == length) {
+                return snapshot;
+            }
+        }
+        long[] copy = new long[length];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(offset + i);
+        }
+        snapshot = new Snapshot(copy, offset);
+        latest = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * @return the counts recorded since the previous call to this method (or since this histogram was created), and
+     * reset all counts. Cumulative snapshots taken after this call only include values recorded after it.
+     */
+    public Snapshot intervalSnapshot() {
+        int offset = lowestRecordedIndex.get();
+        int length = Math.max(0, highestRecordedIndex.get() - offset + 1);
+        int first = 0;
+        while (first < length && counts.get(offset + first) == 0) {
+            first++;
+        }
+        if (first == length) {
+            // nothing recorded in this interval; a value recorded from here on falls in the next one
+            return emptyInterval;
+        }
+        long[] copy = new long[length];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.getAndSet(offset + i, 0);
+        }
+        return new Snapshot(copy, offset);
+    }
+
+    /**
+     * @return the number of buckets, which determines the memory used by this histogram
+     */
+    public int getBucketCount() {
+        return counts.length();
+    }
+
+    int index(long value) {
+        if (value < subBucketCount) {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - subBucketBits;
+        // the leading one plus the next subBucketBits bits, in subBucketCount .. 2 * subBucketCount - 1
+        int mantissa = (int) (value >>> shift);
+        return (shift + 1) * subBucketCount + (mantissa - subBucketCount);
+    }
+
+    /**
+     * @return the lowest value counted in bucket {@code index}
+     */
+    long lowestValue(int index) {
+        if (index < subBucketCount) {
+            return index;
+        }
+        int shift = index / subBucketCount - 1;
+        long mantissa = subBucketCount + index % subBucketCount;
+        return mantissa << shift;
+    }
+
+    /**
+     * @return the value reported for bucket {@code index}: the middle of the bucket's range
+     */
+    long reportedValue(int index) {
+        if (index < subBucketCount) {
+            return index;
+        }
+        int shift = index / subBucketCount - 1;
+        return lowestValue(index) + ((1L << shift) >>> 1);
+    }
+
+    /**
+     * An immutable copy of the counts of a {@link Histogram}
+     */
+    public class Snapshot {
+        /** the counts of buckets {@code offset ..} */
+        private final long[] counts;
+        private final int offset;
+        private final long totalCount;
+        /** the range of non-empty buckets, relative to offset, to which quantile lookups are limited */
+        private final int lowestIndex;
+        private final int highestIndex;
+
+        Snapshot(long[] counts, int offset) {
+            this.counts = counts;
+            this.offset = offset;
+            long total = 0;
+            int lowest = counts.length;
+            int highest = -1;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    total += counts[i];
+                    lowest = Math.min(lowest, i);
+                    highest = i;
+                }
+            }
+            this.totalCount = total;
+            this.lowestIndex = lowest;
+            this.highestIndex = highest;
+        }
+
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * @param quantile the requested quantile, 0.0 .. 1.0, e.g. 0.99 for the 99th percentile
+         * @return the value below or at which {@code quantile} of the recorded values fall, or 0 if the snapshot is
+         * empty
+         */
+        public long getValueAtQuantile(double quantile) {
+            if (quantile < 0.0 || quantile > 1.0) {
+                throw new IllegalArgumentException("quantile must be 0.0 .. 1.0: " + quantile);
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * totalCount));
+            long cumulative = 0;
+            for (int i = lowestIndex; i <= highestIndex; i++) {
+                cumulative += counts[i];
+                if (cumulative >= rank) {
+                    return reportedValue(offset + i);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.softee.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events, and measures their rate as 1, 5 and 15 minute exponentially weighted moving averages (as the load
+ * average of Unix), and as the exact number of events within a sliding window of whole seconds.<p>
+ *
+ * All methods take the current time as a parameter, so callers that already know the time don't read the clock
+ * twice. {@link #mark(long)} is lock-free and O(1): it increments a striped counter, and at most once per second
+ * (window sample) or once per {@value #TICK_MILLIS} ms (moving average tick) records the counter total. A tick after
+ * an idle period decays the moving averages in closed form, however long the period. The memory used is constant,
+ * regardless of the event rate.
+ */
+public class Meter {
+    static final long TICK_MILLIS = 5000;
+    private static final double TICK_SECONDS = TICK_MILLIS / 1000.0;
+
+    private final LongAdder count = new LongAdder();
+    private final Ewma rate1m = new Ewma(1);
+    private final Ewma rate5m = new Ewma(5);
+    private final Ewma rate15m = new Ewma(15);
+    private final AtomicReference<Sample> lastTick;
+    private final int windowSeconds;
+    /** the count total when the first event of a second was marked, indexed by second modulo windowSeconds */
+    private final AtomicReferenceArray<Sample> window;
+    /** the second of the most recent window sample; only increased */
+    private final AtomicLong latestSecond = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param windowSeconds the length of the sliding window reported by {@link #getWindowCount(long)}
+     * @param timeMillis the current time, in milliseconds
+     */
+    public Meter(int windowSeconds, long timeMillis) {
+        this(windowSeconds, timeMillis, 0);
+    }
+
+    /**
+     * @param windowSeconds the length of the sliding window reported by {@link #getWindowCount(long)}
+     * @param timeMillis the current time, in milliseconds
+     * @param count the number of events counted before this meter was created, e.g. by a meter whose count was saved.
+     * They don't count towards the rates, nor the window.
+     */
+    public Meter(int windowSeconds, long timeMillis, long count) {
+        if (windowSeconds < 1) {
+            throw new IllegalArgumentException("windowSeconds must be positive: " + windowSeconds);
+        }
+        this.windowSeconds = windowSeconds;
+        this.window = new AtomicReferenceArray<Sample>(windowSeconds);
+        this.count.add(count);
+        this.lastTick = new AtomicReference<Sample>(new Sample(timeMillis, count));
+    }
+
+    /**
+     * Count one event
+     * @param timeMillis the current time, in milliseconds
+     */
+    public void mark(long timeMillis) {
+        sampleIfNecessary(timeMillis / 1000);
+        count.increment();
+        tickIfNecessary(timeMillis);
+    }
+
+    /**
+     * @return the number of events marked since this meter was created, plus the count it was created with
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the number of events marked within the current second and the preceding {@code windowSeconds - 1}
+     * seconds. Scans the window from its start up to the earliest sample within it, so a busy meter is read in
+     * O(1), and a meter that has been idle for the whole window isn't scanned at all.
+     */
+    public long getWindowCount(long timeMillis) {
+        long second = timeMillis / 1000;
+        long start = Math.max(0, second - windowSeconds + 1);
+        if (latestSecond.get() >= start) {
+            for (long time = start; time <= second; time++) {
+                Sample sample = window.get((int) (time % windowSeconds));
+                if (sample != null && sample.time == time) {
+                    return count.sum() - sample.count;
+                }
+            }
+        }
+        // no sample within the window means no events within the window
+        return 0;
+    }
+
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    /**
+     * @return the one minute moving average rate, in events per second
+     */
+    public double getRate1m(long timeMillis) {
+        tickIfNecessary(timeMillis);
+        return rate1m.rate;
+    }
+
+    /**
+     * @return the five minute moving average rate, in events per second
+     */
+    public double getRate5m(long timeMillis) {
+        tickIfNecessary(timeMillis);
+        return rate5m.rate;
+    }
+
+    /**
+     * @return the fifteen minute moving average rate, in events per second
+     */
+    public double getRate15m(long timeMillis) {
+        tickIfNecessary(timeMillis);
+        return rate15m.rate;
+    }
+
+    private void sampleIfNecessary(long second) {
+        int index = (int) (second % windowSeconds);
+        Sample sample = window.get(index);
+        if (sample == null || sample.time != second) {
+            // the first event of this second records the total before it is counted
+            if (window.compareAndSet(index, sample, new Sample(second, count.sum()))) {
+                long latest;
+                while (second > (latest = latestSecond.get()) && !latestSecond.compareAndSet(latest, second)) {
+                    // retry
+                }
+            }
+        }
+    }
+
+    private void tickIfNecessary(long timeMillis) {
+        Sample tick = lastTick.get();
+        long age = timeMillis - tick.time;
+        if (age >= TICK_MILLIS) {
+            long total = count.sum();
+            // align to the tick interval, so ticks don't drift
+            Sample next = new Sample(timeMillis - age % TICK_MILLIS, total);
+            if (lastTick.compareAndSet(tick, next)) {
+                long idleTicks = age / TICK_MILLIS - 1;
+                long events = total - tick.count;
+                // all events are attributed to the latest tick, the rest were idle
+                rate1m.decay(idleTicks);
+                rate5m.decay(idleTicks);
+                rate15m.decay(idleTicks);
+                rate1m.tick(events);
+                rate5m.tick(events);
+                rate15m.tick(events);
+            }
+        }
+    }
+
+    /**
+     * An immutable (time, count total) pair
+     */
+    private static final class Sample {
+        final long time;
+        final long count;
+
+        Sample(long time, long count) {
+            this.time = time;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Exponentially weighted moving average, updated only by the thread that wins the tick
+     */
+    private static final class Ewma {
+        private final double alpha;
+        volatile double rate;
+        private volatile boolean initialized;
+
+        Ewma(int minutes) {
+            alpha = 1 - Math.exp(-TICK_SECONDS / 60 / minutes);
+        }
+
+        /**
+         * Apply {@code ticks} ticks without events at once, in O(1)
+         */
+        void decay(long ticks) {
+            if (ticks > 0) {
+                if (initialized) {
+                    rate *= Math.pow(1 - alpha, ticks);
+                } else {
+                    rate = 0;
+                    initialized = true;
+                }
+            }
+        }
+
+        void tick(long events) {
+            double instantRate = events / TICK_SECONDS;
+            if (initialized) {
+                rate += alpha * (instantRate - rate);
+            } else {
+                rate = instantRate;
+                initialized = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.softee.time;
+
+/**
+ * A source of the current time, used by the MBeans (see {@link org.softee.management.AbstractMBean#setClock(Clock)})
+ * and by {@link StopWatch}.<p>
+ *
+ * {@link #PRECISE} reads the system clocks on every call. {@link CoarseClock} returns values cached by a background
+ * ticker, which is cheaper, at the expense of resolution. {@link ManualClock} only moves when told to, for
+ * deterministic tests.
+ */
+public abstract class Clock {
+    /**
+     * System property that makes {@link #getDefault()} a {@link CoarseClock} with the given resolution, in
+     * milliseconds. If unset, the default is {@link #PRECISE}.
+     */
+    public static final String COARSE_RESOLUTION_PROPERTY = "org.softee.time.coarseClockResolutionMillis";
+
+    /**
+     * A clock that reads {@link System#currentTimeMillis()} and {@link System#nanoTime()} on every call
+     */
+    public static final Clock PRECISE = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public String toString() {
+            return "PreciseClock";
+        }
+    };
+
+    /**
+     * @return the current time, in milliseconds since the epoch
+     */
+    public abstract long currentTimeMillis();
+
+    /**
+     * @return the value of a monotonic time source, in nanoseconds, with an arbitrary origin. Only meaningful when
+     * compared with another value of the same clock.
+     */
+    public abstract long nanoTime();
+
+    /**
+     * @return the clock used by new MBeans and StopWatches (see {@link #COARSE_RESOLUTION_PROPERTY})
+     */
+    public static Clock getDefault() {
+        return DefaultHolder.DEFAULT;
+    }
+
+    /**
+     * The default clock, created on first use, so the ticker of a coarse clock is only started when it is needed
+     */
+    private static final class DefaultHolder {
+        static final Clock DEFAULT;
+
+        static {
+            Long resolution = Long.getLong(COARSE_RESOLUTION_PROPERTY);
+            DEFAULT = (resolution != null) ? new CoarseClock(resolution) : PRECISE;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.softee.time;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A clock that returns the time cached by a background ticker, so reading it is no more expensive than reading a
+ * volatile field.<p>
+ *
+ * The ticker is a daemon thread, that reads the system clocks once per resolution. Both the time and the nanoTime lag
+ * the system clocks by up to the resolution (plus scheduling delays), and durations measured with this clock are
+ * multiples of the resolution. Call {@link #stop()} to end the ticker, when the clock is no longer used.
+ */
+public final class CoarseClock extends Clock {
+    private final long resolutionNanos;
+    private volatile long currentTimeMillis;
+    private volatile long nanoTime;
+    private volatile boolean running = true;
+    private final Thread ticker;
+
+    /**
+     * Create a clock, and start its ticker
+     * @param resolutionMillis the period, in milliseconds, with which the time is updated. Positive.
+     */
+    public CoarseClock(long resolutionMillis) {
+        this(resolutionMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a clock, and start its ticker
+     * @param resolution the period with which the time is updated. Positive.
+     * @param unit the unit of {@code resolution}
+     */
+    public CoarseClock(long resolution, TimeUnit unit) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("resolution must be positive: " + resolution);
+        }
+        resolutionNanos = unit.toNanos(resolution);
+        tick();
+        ticker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running) {
+                    LockSupport.parkNanos(resolutionNanos);
+                    tick();
+                }
+            }
+        }, "pojo-mbean-coarse-clock");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    private void tick() {
+        nanoTime = System.nanoTime();
+        currentTimeMillis = System.currentTimeMillis();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTimeMillis;
+    }
+
+    @Override
+    public long nanoTime() {
+        return nanoTime;
+    }
+
+    /**
+     * @param unit the unit of the returned resolution
+     * @return the period with which the time is updated
+     */
+    public long getResolution(TimeUnit unit) {
+        return unit.convert(resolutionNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stop the ticker. The clock keeps returning the time of the latest tick.
+     */
+    public void stop() {
+        running = false;
+        LockSupport.unpark(ticker);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public String toString() {
+        return "CoarseClock " + resolutionNanos + "ns";
+    }
+}
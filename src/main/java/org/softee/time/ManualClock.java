@@ -0,0 +1,52 @@
+package org.softee.time;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A clock that only moves when it is advanced, for deterministic tests. It may be advanced and read by concurrent
+ * threads.
+ */
+public final class ManualClock extends Clock {
+    /** nanoseconds since the epoch; fits in a long until year 2262 */
+    private final AtomicLong nanos;
+
+    /**
+     * @param currentTimeMillis the initial time, in milliseconds since the epoch
+     */
+    public ManualClock(long currentTimeMillis) {
+        nanos = new AtomicLong(TimeUnit.MILLISECONDS.toNanos(currentTimeMillis));
+    }
+
+    /**
+     * Move the clock forward
+     * @param duration the amount of time to advance the clock by. Not negative.
+     * @param unit the unit of {@code duration}
+     * @return this clock
+     */
+    public ManualClock advance(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("A clock can't go back: " + duration);
+        }
+        nanos.addAndGet(unit.toNanos(duration));
+        return this;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanos.get());
+    }
+
+    /**
+     * @return the time, in nanoseconds since the epoch
+     */
+    @Override
+    public long nanoTime() {
+        return nanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ManualClock @ " + currentTimeMillis() + "ms";
+    }
+}
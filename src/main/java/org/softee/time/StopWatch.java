@@ -2,84 +2,174 @@ package org.softee.time;
 
 import java.util.concurrent.TimeUnit;
 /**
+ * Measures elapsed time with the {@link Clock#nanoTime()} of a {@link Clock}.<p>
+ *
+ * A StopWatch isn't synchronized, and should be used by one thread at a time. Its methods only deal in primitives, so
+ * timing doesn't allocate. Rather than creating a StopWatch per timing, a thread may restart the instance returned by
+ * {@link #forThread()}, e.g.
+ * <pre>
+ * StopWatch stopWatch = StopWatch.forThread();
+ * stopWatch.start();
+ * process(message);
+ * mbean.notifyOutput(stopWatch);
+ * </pre>
+ *
  * @author morten.hattesen@gmail.com
  *
  */
 public class StopWatch {
     private static enum State {NEW, STOPPED, RUNNING};
+
+    private static final ThreadLocal<StopWatch> THREAD_STOPWATCH = new ThreadLocal<StopWatch>() {
+        @Override
+        protected StopWatch initialValue() {
+            return new StopWatch();
+        }
+    };
+
+    private final Clock clock;
     private State state = State.NEW;
     long nanoTimeStart;
     long nanoTimeStop;
-    
+    long nanoTimeLap;
+
     /**
      * Create a new Stopwatch, and start it.
      * You may restart the watch by calling {@code start()}
      */
     public StopWatch() {
+        this(Clock.getDefault());
+    }
+
+    /**
+     * Create a new Stopwatch that reads the given clock, and start it.
+     * @param clock the source of the elapsed time, see {@link Clock#nanoTime()}
+     */
+    public StopWatch(Clock clock) {
+        if (clock == null) {
+            throw new NullPointerException("clock");
+        }
+        this.clock = clock;
         start();
     }
 
+    /**
+     * @return the StopWatch of the calling thread, using the {@link Clock#getDefault() default clock}. It is in the
+     * state in which the thread left it, so call {@link #start()} before timing.
+     */
+    public static StopWatch forThread() {
+        return THREAD_STOPWATCH.get();
+    }
+
     /**
      * Start or restart stopwatch
      */
-    public synchronized void start() {
+    public void start() {
+        nanoTimeStart = clock.nanoTime();
+        nanoTimeLap = nanoTimeStart;
         state = State.RUNNING;
-        nanoTimeStart = System.nanoTime();
     }
-    
+
     /**
      * Stop (or re-stop) stopwatch
-     * @return
      */
-    public synchronized void stop() {
+    public void stop() {
         if (state != State.STOPPED) {
-            nanoTimeStop = System.nanoTime();
+            nanoTimeStop = clock.nanoTime();
             state = State.STOPPED;
         }
     }
 
     /**
      * @return the time, in milliseconds that has elapsed so far.<p>
-     * Calling this method is identical to calling: 
+     * Calling this method is identical to calling:
      * {@code elapsedMillis(TimeUnit.MILLISECONDS);}
      */
-    public synchronized long elapsedMillis() {
+    public long elapsedMillis() {
         return elapsed(TimeUnit.MILLISECONDS);
     }
-    
+
     /**
      * @param unit The TimeUnit that should be reported
      * @return the time, in milliseconds that has elapsed so far.<p>
-     * Calling this method is identical to calling: 
+     * Calling this method is identical to calling:
      * {@code elapsedMillis(TimeUnit.MILLISECONDS);}
      */
-    public synchronized long elapsed(TimeUnit unit) {
-        final long elapsed;
+    public long elapsed(TimeUnit unit) {
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        return unit.convert(elapsedNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the time, in nanoseconds, that has elapsed since the watch was started, until it was stopped, or until
+     * now if it is running
+     * @throws IllegalStateException if the watch has never been started
+     */
+    public long elapsedNanos() {
         switch (state) {
         case RUNNING:
-            elapsed = System.nanoTime() - nanoTimeStart;
-            break;
+            return clock.nanoTime() - nanoTimeStart;
 
         case STOPPED:
-            elapsed = nanoTimeStop - nanoTimeStart;
-            break;
+            return nanoTimeStop - nanoTimeStart;
 
         default:
             throw new IllegalStateException("State: " + state.toString());
         }
-        if (unit == null) {
-            throw new NullPointerException("unit");
-        }
+    }
 
-        return unit.convert(elapsed, TimeUnit.NANOSECONDS);            
+    /**
+     * End the current lap, and begin the next one. The first lap began when the watch was started.
+     * @return the duration of the lap that ended, in nanoseconds
+     * @throws IllegalStateException if the watch isn't running
+     */
+    public long lap() {
+        long now = runningNanoTime();
+        long lap = now - nanoTimeLap;
+        nanoTimeLap = now;
+        return lap;
     }
-    
+
+    /**
+     * End the current lap, record its duration, in nanoseconds, and begin the next one
+     * @param laps the durations of the laps
+     * @param index the index in {@code laps} at which to record the duration
+     * @return {@code index + 1}, the index of the next lap
+     * @throws IllegalStateException if the watch isn't running
+     */
+    public int lap(long[] laps, int index) {
+        laps[index] = lap();
+        return index + 1;
+    }
+
+    /**
+     * Record the time, in nanoseconds, that has elapsed since the watch was started, without ending the current lap
+     * @param splits the split times
+     * @param index the index in {@code splits} at which to record the split time
+     * @return {@code index + 1}, the index of the next split
+     * @throws IllegalStateException if the watch isn't running
+     */
+    public int split(long[] splits, int index) {
+        splits[index] = runningNanoTime() - nanoTimeStart;
+        return index + 1;
+    }
+
+    private long runningNanoTime() {
+        if (state != State.RUNNING) {
+            throw new IllegalStateException("State: " + state.toString());
+        }
+        return clock.nanoTime();
+    }
+
     public boolean isRunning() {
         return state == State.RUNNING;
     }
 
     @Override
     public String toString() {
-        return "StopWatch " + state + " @ " + elapsed(TimeUnit.MILLISECONDS) + "ms";
+        return (state == State.NEW) ? "StopWatch NEW"
+                : "StopWatch " + state + " @ " + elapsed(TimeUnit.MILLISECONDS) + "ms";
     }
 }
@@ -0,0 +1,157 @@
+package org.softee.management;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+
+import javax.management.Attribute;
+import javax.management.DynamicMBean;
+import javax.management.MBeanException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.softee.management.helper.DynamicMBeanAdapter;
+import org.softee.management.helper.DynamicProxyFactory;
+import org.softee.management.helper.IntrospectedDynamicMBean;
+import org.softee.time.ManualClock;
+
+/**
+ * Tests the caching of {@link org.softee.management.annotation.Cached} attributes by {@link IntrospectedDynamicMBean}
+ */
+public class CachedAttributeTest {
+    private DummyCachedMbean mbean;
+    private ManualClock clock;
+    private DynamicMBean dynamicMBean;
+
+    /**
+     * The interface of the proxy of {@link DummyCachedMbean}
+     */
+    public interface DummyCachedMbeanInterface {
+        int getDepth();
+
+        int getPlain();
+
+        int getLimit();
+
+        void setLimit(int limit);
+    }
+
+    @Before
+    public void before() throws Exception {
+        mbean = new DummyCachedMbean();
+        clock = new ManualClock(0);
+        mbean.setClock(clock);
+        dynamicMBean = DynamicMBeanAdapter.forObject(mbean);
+    }
+
+    @Test
+    public void testIntrospectedAtRuntime() throws Exception {
+        assertTrue(dynamicMBean instanceof IntrospectedDynamicMBean);
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        assertEquals(1, dynamicMBean.getAttribute("depth"));
+        clock.advance(999, MILLISECONDS);
+        assertEquals(1, dynamicMBean.getAttribute("depth"));
+        assertEquals(1, dynamicMBean.getAttributes(new String[] {"depth"}).asList().get(0).getValue());
+        clock.advance(1, MILLISECONDS);
+        assertEquals(2, dynamicMBean.getAttribute("depth"));
+        assertEquals(2, mbean.depthCalls.get());
+        // not cached
+        dynamicMBean.getAttribute("plain");
+        dynamicMBean.getAttribute("plain");
+        assertEquals(2, mbean.plainCalls.get());
+    }
+
+    @Test
+    public void testProxy() throws Exception {
+        DummyCachedMbeanInterface proxy = DynamicProxyFactory.createDynamicProxy(dynamicMBean,
+                DummyCachedMbeanInterface.class);
+        assertEquals(1, proxy.getDepth());
+        assertEquals(1, proxy.getDepth());
+        clock.advance(1, SECONDS);
+        assertEquals(2, proxy.getDepth());
+        assertEquals(2, mbean.depthCalls.get());
+        // not cached, and bound to the getter
+        proxy.getPlain();
+        proxy.getPlain();
+        assertEquals(2, mbean.plainCalls.get());
+    }
+
+    @Test
+    public void testSetInvalidates() throws Exception {
+        assertEquals(10, dynamicMBean.getAttribute("limit"));
+        dynamicMBean.setAttribute(new Attribute("limit", 20));
+        assertEquals(20, dynamicMBean.getAttribute("limit"));
+        DummyCachedMbeanInterface proxy = DynamicProxyFactory.createDynamicProxy(dynamicMBean,
+                DummyCachedMbeanInterface.class);
+        proxy.setLimit(30);
+        assertEquals(30, proxy.getLimit());
+        assertEquals(30, dynamicMBean.getAttribute("limit"));
+    }
+
+    @Test
+    public void testExceptionNotCached() throws Exception {
+        mbean.failing = true;
+        try {
+            dynamicMBean.getAttribute("depth");
+            fail("getter failed");
+        } catch (MBeanException expected) {
+            // expected
+        }
+        mbean.failing = false;
+        assertEquals(1, dynamicMBean.getAttribute("depth"));
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        assertEquals(1, dynamicMBean.getAttribute("depth"));
+        clock.advance(1, SECONDS);
+        mbean.depthGate = new CountDownLatch(1);
+        final Object[] refreshed = new Object[1];
+        Thread refresher = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    refreshed[0] = dynamicMBean.getAttribute("depth");
+                } catch (Exception e) {
+                    refreshed[0] = e;
+                }
+            }
+        };
+        refresher.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (refresher.getState() != Thread.State.WAITING) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        // served the expired value while the getter is being called by another reader
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1, dynamicMBean.getAttribute("depth"));
+        }
+        mbean.depthGate.countDown();
+        refresher.join(10000);
+        assertEquals(2, refreshed[0]);
+        assertEquals(2, dynamicMBean.getAttribute("depth"));
+        assertEquals(2, mbean.depthCalls.get());
+    }
+
+    @Test
+    public void testBackgroundRefresh() throws Exception {
+        assertEquals(1, dynamicMBean.getAttribute("size"));
+        clock.advance(1, SECONDS);
+        // served the expired value, while the background thread calls the getter
+        assertEquals(1, dynamicMBean.getAttribute("size"));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!Integer.valueOf(2).equals(dynamicMBean.getAttribute("size"))) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        assertEquals(2, mbean.sizeCalls.get());
+    }
+}
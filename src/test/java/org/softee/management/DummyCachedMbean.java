@@ -0,0 +1,63 @@
+package org.softee.management;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MalformedObjectNameException;
+
+import org.softee.management.annotation.Cached;
+import org.softee.management.annotation.MBean;
+import org.softee.management.annotation.ManagedAttribute;
+
+/**
+ * An MBean with cached attributes, which count the calls of their getters
+ */
+@MBean(objectName = "org.softee:type=Dummy,name=cached")
+public class DummyCachedMbean extends AbstractMBean {
+    final AtomicInteger depthCalls = new AtomicInteger();
+    final AtomicInteger sizeCalls = new AtomicInteger();
+    final AtomicInteger plainCalls = new AtomicInteger();
+    /** if not null, the getter of depth waits for it */
+    volatile CountDownLatch depthGate;
+    volatile boolean failing;
+    private volatile int limit = 10;
+
+    public DummyCachedMbean() throws MalformedObjectNameException {
+        super();
+    }
+
+    @ManagedAttribute
+    @Cached(ttlMillis = 1000)
+    public int getDepth() throws InterruptedException {
+        CountDownLatch gate = depthGate;
+        if (gate != null) {
+            gate.await();
+        }
+        if (failing) {
+            throw new IllegalStateException("failing");
+        }
+        return depthCalls.incrementAndGet();
+    }
+
+    @ManagedAttribute
+    @Cached(ttlMillis = 1000, background = true)
+    public int getSize() {
+        return sizeCalls.incrementAndGet();
+    }
+
+    @ManagedAttribute
+    @Cached(ttlMillis = 1000)
+    public int getLimit() {
+        return limit;
+    }
+
+    @ManagedAttribute
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    @ManagedAttribute
+    public int getPlain() {
+        return plainCalls.incrementAndGet();
+    }
+}
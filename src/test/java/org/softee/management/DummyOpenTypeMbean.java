@@ -0,0 +1,87 @@
+package org.softee.management;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.softee.management.annotation.MBean;
+import org.softee.management.annotation.ManagedAttribute;
+
+/**
+ * An MBean with attributes of types that are mapped to open types
+ */
+@MBean(objectName = "org.softee:type=Dummy,name=openTypes", openTypes = true)
+public class DummyOpenTypeMbean {
+    private TimeUnit unit = TimeUnit.SECONDS;
+    private XMLGregorianCalendar started;
+    private List<String> queues = Arrays.asList("in", "out");
+    private Map<String, Long> depths = new LinkedHashMap<String, Long>();
+    private Endpoint endpoint = new Endpoint("localhost", 8080);
+    private long count = 42;
+
+    @ManagedAttribute
+    public TimeUnit getUnit() {
+        return unit;
+    }
+
+    @ManagedAttribute
+    public void setUnit(TimeUnit unit) {
+        this.unit = unit;
+    }
+
+    @ManagedAttribute
+    public XMLGregorianCalendar getStarted() {
+        return started;
+    }
+
+    public void setStarted(XMLGregorianCalendar started) {
+        this.started = started;
+    }
+
+    @ManagedAttribute
+    public List<String> getQueues() {
+        return queues;
+    }
+
+    @ManagedAttribute
+    public void setQueues(List<String> queues) {
+        this.queues = queues;
+    }
+
+    @ManagedAttribute
+    public Map<String, Long> getDepths() {
+        return depths;
+    }
+
+    @ManagedAttribute
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    @ManagedAttribute
+    public long getCount() {
+        return count;
+    }
+
+    public static class Endpoint {
+        private final String host;
+        private final int port;
+
+        public Endpoint(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+    }
+}
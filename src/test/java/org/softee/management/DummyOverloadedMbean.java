@@ -0,0 +1,30 @@
+package org.softee.management;
+
+import org.softee.management.annotation.Description;
+import org.softee.management.annotation.MBean;
+import org.softee.management.annotation.ManagedOperation;
+
+@MBean @Description("DummyOverloadedMbean")
+public class DummyOverloadedMbean {
+    String called;
+
+    @ManagedOperation
+    public String reset() {
+        return called = "reset()";
+    }
+
+    @ManagedOperation
+    public String reset(int value) {
+        return called = "reset(int " + value + ")";
+    }
+
+    @ManagedOperation
+    public String reset(String value) {
+        return called = "reset(String " + value + ")";
+    }
+
+    @ManagedOperation
+    public String reset(long[] values, int count) {
+        return called = "reset(long[], int " + count + ")";
+    }
+}
@@ -0,0 +1,89 @@
+package org.softee.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import javax.management.Attribute;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InvalidAttributeValueException;
+import javax.management.MBeanException;
+import javax.management.ReflectionException;
+import javax.management.RuntimeOperationsException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.softee.management.helper.DynamicMBeanAdapter;
+import org.softee.management.helper.IntrospectedDynamicMBean;
+
+/**
+ * Tests the adapter generated for {@link DummyAnnotatedMbean} by the annotation processor, when the tests are compiled
+ */
+public class DynamicMBeanAdapterTest {
+    private DummyAnnotatedMbean annotatedMBean;
+    private DynamicMBean adapter;
+
+    @Before
+    public void before() throws Exception {
+        annotatedMBean = new DummyAnnotatedMbean();
+        adapter = DynamicMBeanAdapter.forObject(annotatedMBean);
+    }
+
+    @Test
+    public void testGeneratedAdapterIsUsed() {
+        assertEquals(DummyAnnotatedMbean_DynamicMBean.class, adapter.getClass());
+    }
+
+    @Test
+    public void testMBeanInfoEqualsIntrospected() throws Exception {
+        assertEquals(new IntrospectedDynamicMBean(annotatedMBean).getMBeanInfo(), adapter.getMBeanInfo());
+    }
+
+    @Test
+    public void testGetAttribute() throws Exception {
+        assertEquals(annotatedMBean.string, adapter.getAttribute("string"));
+    }
+
+    @Test(expected = AttributeNotFoundException.class)
+    public void testGetWriteOnlyAttribute() throws Exception {
+        adapter.getAttribute("integer");
+    }
+
+    @Test
+    public void testGetAttributeThrowException() throws Exception {
+        try {
+            adapter.getAttribute("loremThrowException");
+            fail("getAttribute should throw MBeanException");
+        } catch (MBeanException e) {
+            assertTrue(e.getCause() instanceof DummyException);
+        }
+    }
+
+    @Test
+    public void testSetAttributeWidening() throws Exception {
+        adapter.setAttribute(new Attribute("integer", Short.valueOf((short) 42)));
+        assertEquals(42, annotatedMBean.integer);
+    }
+
+    @Test(expected = InvalidAttributeValueException.class)
+    public void testSetAttributeIllegalType() throws Exception {
+        adapter.setAttribute(new Attribute("integer", "42"));
+    }
+
+    @Test
+    public void testInvoke() throws Exception {
+        adapter.invoke("voidOneArgOperation", new Object[] {"Lorem Ipsum"}, new String[] {"java.lang.String"});
+        assertEquals("Lorem Ipsum", annotatedMBean.operationArgument);
+    }
+
+    @Test(expected = ReflectionException.class)
+    public void testInvokeWrongSignature() throws Exception {
+        adapter.invoke("voidOneArgOperation", new Object[0], new String[0]);
+    }
+
+    @Test(expected = RuntimeOperationsException.class)
+    public void testInvokeWrongArgumentCount() throws Exception {
+        adapter.invoke("voidOneArgOperation", new Object[0], null);
+    }
+}
@@ -1,10 +1,13 @@
 package org.softee.management;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.lang.reflect.UndeclaredThrowableException;
 
 import javax.management.DynamicMBean;
+import javax.management.MBeanException;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -12,6 +15,12 @@ import org.softee.management.helper.IntrospectedDynamicMBean;
 import org.softee.management.helper.DynamicProxyFactory;
 
 public class DynamicProxyfactoryTest {
+    public interface ThrowingInterface {
+        String getLoremThrowException() throws DummyException;
+
+        void voidOneArgOperationException(String argument) throws DummyException;
+    }
+
     private DummyAnnotatedMbean annotatedMBean;
     private DynamicMBean introspectedMBean;
     private DummyMbeanInterface interfaceProxy;
@@ -47,4 +56,21 @@ public class DynamicProxyfactoryTest {
         interfaceProxy.getNotAttribute();
     }
 
+    @Test
+    public void testInterfaceProxyException() throws Exception {
+        ThrowingInterface proxy = DynamicProxyFactory.createDynamicProxy(introspectedMBean, ThrowingInterface.class);
+        try {
+            proxy.getLoremThrowException();
+            fail();
+        } catch (UndeclaredThrowableException e) {
+            assertTrue(e.getCause() instanceof MBeanException);
+            assertTrue(e.getCause().getCause() instanceof DummyException);
+        }
+        try {
+            proxy.voidOneArgOperationException("Hello");
+            fail();
+        } catch (UndeclaredThrowableException e) {
+            assertTrue(e.getCause().getCause() instanceof DummyException);
+        }
+    }
 }
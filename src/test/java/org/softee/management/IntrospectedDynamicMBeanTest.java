@@ -1,6 +1,7 @@
 package org.softee.management;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -56,6 +57,15 @@ public class IntrospectedDynamicMBeanTest {
         assertEquals(annotatedMBean.string, attribute.getValue());
     }
 
+    @Test
+    public void testGetAttributesOmitsUnreadable() throws Exception {
+        AttributeList attributes = introspectedMBean.getAttributes(
+                new String[] {"noSuchAttribute", "string", "integer", "loremThrowException", "lorem"});
+        assertEquals(2, attributes.size());
+        assertEquals("string", ((Attribute) attributes.get(0)).getName());
+        assertEquals("lorem", ((Attribute) attributes.get(1)).getName());
+    }
+
     @Test(expected = InvalidAttributeValueException.class)
     public void testSetAttributeIllegalType() throws Exception {
         Attribute attribute = new Attribute("integer", "42");
@@ -102,6 +112,12 @@ public class IntrospectedDynamicMBeanTest {
         assertEquals("Number of operations", 2, operations.length);
     }
 
+    @Test
+    public void testMBeanInfoSharedByInstances() throws Exception {
+        DynamicMBean other = new IntrospectedDynamicMBean(new DummyAnnotatedMbean());
+        assertSame(introspectedMBean.getMBeanInfo(), other.getMBeanInfo());
+    }
+
     @Test
     public void testInvoke() throws Exception {
         String arg0 = "Lorem Ipsum";
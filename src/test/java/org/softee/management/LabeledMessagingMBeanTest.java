@@ -0,0 +1,127 @@
+package org.softee.management;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import javax.management.DynamicMBean;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.softee.management.helper.IntrospectedDynamicMBean;
+import org.softee.time.ManualClock;
+
+public class LabeledMessagingMBeanTest {
+    private LabeledMessagingMBean mbean;
+
+    @Before
+    public void before() throws Exception {
+        mbean = new LabeledMessagingMBean(ObjectName.getInstance("org.softee:type=Test,name=Labeled"), 10,
+                "tenant", "queue");
+    }
+
+    @Test
+    public void testSeries() throws Exception {
+        LabeledMessagingMBean.Series orders = mbean.labels("acme", "orders");
+        assertSame(orders, mbean.labels("acme", "orders"));
+        orders.notifyInput();
+        orders.notifyOutput(5, MILLISECONDS);
+        orders.notifyOutput(3, MILLISECONDS);
+        mbean.labels("acme", "invoices").notifyFailed();
+
+        DynamicMBean dynamicMBean = new IntrospectedDynamicMBean(mbean);
+        TabularData table = (TabularData) dynamicMBean.getAttribute("series");
+        assertEquals(2, table.size());
+        CompositeData row = table.get(new Object[] {"acme", "orders"});
+        assertEquals(1L, row.get("inputCount"));
+        assertEquals(2L, row.get("outputCount"));
+        assertEquals(8L, row.get("durationTotal"));
+        assertEquals(3L, row.get("durationMin"));
+        assertEquals(5L, row.get("durationMax"));
+        assertEquals(3L, row.get("durationLatest"));
+        assertEquals(4L, row.get("durationAverage"));
+        row = table.get(new Object[] {"acme", "invoices"});
+        assertEquals(1L, row.get("failedCount"));
+        assertNull(row.get("durationMin"));
+        assertNull(row.get("durationAverage"));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        ManualClock clock = new ManualClock(0);
+        mbean.setClock(clock);
+        LabeledMessagingMBean.Series first = mbean.labels("t0", "q");
+        for (int i = 1; i < 10; i++) {
+            clock.advance(1, MILLISECONDS);
+            mbean.labels("t" + i, "q");
+        }
+        clock.advance(1, MILLISECONDS);
+        first.notifyInput();
+        assertEquals(10, mbean.getLabelSetCount());
+        assertEquals(0, mbean.getEvictedCount());
+        // exceeding the cap evicts down to 90% of it: the least recently used t1 and t2
+        clock.advance(1, MILLISECONDS);
+        mbean.labels("t10", "q");
+        assertEquals(9, mbean.getLabelSetCount());
+        assertEquals(2, mbean.getEvictedCount());
+        TabularData table = mbean.getSeries();
+        assertNotNull(table.get(new Object[] {"t0", "q"}));
+        assertNull(table.get(new Object[] {"t1", "q"}));
+        assertNull(table.get(new Object[] {"t2", "q"}));
+        assertNotNull(table.get(new Object[] {"t3", "q"}));
+        assertNotNull(table.get(new Object[] {"t10", "q"}));
+    }
+
+    @Test
+    public void testEvictedSeriesIsReplaced() throws Exception {
+        LabeledMessagingMBean.Series series = mbean.labels("acme", "orders");
+        series.notifyInput();
+        mbean.resetMBean();
+        assertEquals(0, mbean.getLabelSetCount());
+        series.notifyInput();
+        assertEquals(1, mbean.getLabelSetCount());
+        assertEquals(1L, mbean.getSeries().get(new Object[] {"acme", "orders"}).get("inputCount"));
+        // the held series forwards to its replacement
+        series.notifyInput();
+        assertEquals(2, mbean.labels("acme", "orders").getInputCount());
+        assertEquals(2, series.getInputCount());
+        // and to the replacement of its replacement
+        mbean.resetMBean();
+        series.notifyInput();
+        assertEquals(1, mbean.labels("acme", "orders").getInputCount());
+    }
+
+    @Test
+    public void testReadDoesNotRecreateEvictedSeries() throws Exception {
+        LabeledMessagingMBean.Series series = mbean.labels("acme", "orders");
+        series.notifyInput();
+        mbean.resetMBean();
+        assertEquals(0, series.getInputCount());
+        assertTrue(series.toString(), series.toString().endsWith("evicted"));
+        assertEquals(0, mbean.getLabelSetCount());
+
+        // reading the least recently used series doesn't keep it from being evicted
+        ManualClock clock = new ManualClock(0);
+        mbean.setClock(clock);
+        LabeledMessagingMBean.Series first = mbean.labels("t0", "q");
+        for (int i = 1; i < 10; i++) {
+            clock.advance(1, MILLISECONDS);
+            mbean.labels("t" + i, "q");
+        }
+        clock.advance(1, MILLISECONDS);
+        first.getInputCount();
+        mbean.labels("t10", "q");
+        assertNull(mbean.getSeries().get(new Object[] {"t0", "q"}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongLabelCount() {
+        mbean.labels("acme");
+    }
+}
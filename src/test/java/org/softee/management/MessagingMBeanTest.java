@@ -0,0 +1,258 @@
+package org.softee.management;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.softee.time.ManualClock;
+
+public class MessagingMBeanTest {
+    private static final int THREADS = 8;
+    private static final int MESSAGES = 10000;
+
+    private MessagingMBean mbean;
+
+    @Before
+    public void before() throws Exception {
+        mbean = new MessagingMBean(ObjectName.getInstance("org.softee:type=Test,name=MessagingMBeanTest"));
+    }
+
+    @Test
+    public void testInitialValues() {
+        assertEquals(0, mbean.getInputCount());
+        assertEquals(0, mbean.getOutputCount());
+        assertNull(mbean.getDurationMin());
+        assertNull(mbean.getDurationMax());
+        assertNull(mbean.getDurationAverage());
+        assertNull(mbean.getInputLatest());
+        assertNull(mbean.getStarted());
+    }
+
+    @Test
+    public void testTimestampFormats() throws Exception {
+        assertNull(mbean.getInputLatestIso());
+        assertNull(mbean.getInputLatestMillis());
+        mbean.notifyInput();
+        XMLGregorianCalendar calendar = mbean.getInputLatest();
+        long millis = mbean.getInputLatestMillis();
+        assertEquals(millis, calendar.toGregorianCalendar().getTimeInMillis());
+        String iso = mbean.getInputLatestIso();
+        XMLGregorianCalendar parsed = DatatypeFactory.newInstance().newXMLGregorianCalendar(iso);
+        assertEquals(millis / 1000 * 1000, parsed.toGregorianCalendar().getTimeInMillis());
+        assertTrue(iso, iso.endsWith("Z"));
+        // cached
+        assertSame(iso, mbean.getInputLatestIso());
+    }
+
+    @Test
+    public void testConcurrentNotify() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 1; i <= MESSAGES; i++) {
+                        mbean.notifyInput();
+                        if (i % 10 == 0) {
+                            mbean.notifyFailed();
+                        } else {
+                            mbean.notifyOutput(i, MILLISECONDS);
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long outputs = THREADS * (MESSAGES - MESSAGES / 10);
+        assertEquals(THREADS * MESSAGES, mbean.getInputCount());
+        assertEquals(outputs, mbean.getOutputCount());
+        assertEquals(THREADS * MESSAGES / 10, mbean.getFailedCount());
+        assertEquals(Long.valueOf(1), mbean.getDurationMin());
+        assertEquals(Long.valueOf(MESSAGES - 1), mbean.getDurationMax());
+    }
+
+    @Test
+    public void testPercentiles() {
+        assertNull(mbean.getDurationP50());
+        for (int i = 1; i <= 1000; i++) {
+            mbean.notifyOutput(i, MILLISECONDS);
+        }
+        assertEquals(500, mbean.getDurationP50(), 500 / 16);
+        assertEquals(990, mbean.getDurationP99(), 990 / 16);
+        assertEquals(999, mbean.getDurationP999(), 999 / 16);
+    }
+
+    @Test
+    public void testPercentilesResetOnRead() {
+        mbean.setPercentilesResetOnRead(true);
+        mbean.notifyOutput(100, MILLISECONDS);
+        assertEquals(100, mbean.getDurationP50(), 100 / 16);
+        assertEquals(100, mbean.getDurationP99(), 100 / 16);
+        // reading a percentile again starts a new interval
+        mbean.notifyOutput(1000, MILLISECONDS);
+        assertEquals(1000, mbean.getDurationP50(), 1000 / 16);
+        assertNull(mbean.getDurationP50());
+    }
+
+    @Test
+    public void testStartToken() throws Exception {
+        long first = mbean.notifyInputStart();
+        Thread.sleep(50);
+        long second = mbean.notifyInputStart();
+        mbean.notifyOutputSince(second);
+        assertTrue(mbean.getDurationLatest() < 50);
+        mbean.notifyOutputSince(first);
+        assertTrue(mbean.getDurationLatest() >= 50);
+    }
+
+    @Test
+    public void testManualClock() {
+        ManualClock clock = new ManualClock(1000000000000L);
+        mbean.setClock(clock);
+        mbean.resetMBean();
+        mbean.notifyInput();
+        clock.advance(1500, TimeUnit.MICROSECONDS);
+        mbean.notifyOutput();
+        assertEquals(Long.valueOf(1), mbean.getDurationLatest());
+        assertEquals(Long.valueOf(1000000000000L), mbean.getInputLatestMillis());
+        assertEquals(Long.valueOf(1000000000001L), mbean.getOutputLatestMillis());
+        clock.advance(90, TimeUnit.SECONDS);
+        assertEquals(Long.valueOf(90), mbean.getInputLatestAgeSeconds());
+        assertEquals(0, mbean.getInputCountLastMinute());
+    }
+
+    @Test
+    public void testDurationPerThread() throws Exception {
+        mbean.notifyInput();
+        Thread.sleep(50);
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                mbean.notifyInput();
+                mbean.notifyOutput();
+            }
+        };
+        other.start();
+        other.join();
+        assertTrue(mbean.getDurationLatest() < 50);
+        // measured from this thread's notifyInput(), not the other thread's
+        mbean.notifyOutput();
+        assertTrue(mbean.getDurationLatest() >= 50);
+    }
+
+    @Test
+    public void testReset() {
+        mbean.notifyInput();
+        mbean.notifyOutput(5, MILLISECONDS);
+        mbean.resetMBean();
+        assertEquals(0, mbean.getInputCount());
+        assertEquals(0, mbean.getOutputCount());
+        assertNull(mbean.getDurationMax());
+    }
+
+    @Test
+    public void testSnapshot() {
+        mbean.notifyInput();
+        mbean.notifyOutput(10, MILLISECONDS);
+        mbean.beginSnapshot();
+        try {
+            mbean.notifyInput();
+            mbean.notifyOutput(40, MILLISECONDS);
+            assertEquals(1, mbean.getInputCount());
+            assertEquals(1, mbean.getOutputCount());
+            assertEquals(Long.valueOf(10), mbean.getDurationAverage());
+            assertEquals(Long.valueOf(10), mbean.getDurationMax());
+        } finally {
+            mbean.endSnapshot();
+        }
+        assertEquals(2, mbean.getOutputCount());
+        assertEquals(Long.valueOf(25), mbean.getDurationAverage());
+    }
+
+    @Test
+    public void testNestedSnapshots() throws Exception {
+        MessagingMBean other = new MessagingMBean(ObjectName.getInstance("org.softee:type=Test,name=Other"));
+        mbean.notifyInput();
+        other.notifyInput();
+        mbean.beginSnapshot();
+        other.beginSnapshot();
+        mbean.notifyInput();
+        other.notifyInput();
+        assertEquals(1, mbean.getInputCount());
+        assertEquals(1, other.getInputCount());
+        // ended out of order
+        mbean.endSnapshot();
+        assertEquals(2, mbean.getInputCount());
+        assertEquals(1, other.getInputCount());
+        other.endSnapshot();
+        assertEquals(2, other.getInputCount());
+    }
+
+    @Test
+    public void testDurationPerMBean() throws Exception {
+        ManualClock clock = new ManualClock(0);
+        MessagingMBean[] mbeans = new MessagingMBean[3];
+        for (int i = 0; i < mbeans.length; i++) {
+            mbeans[i] = new MessagingMBean(ObjectName.getInstance("org.softee:type=Test,name=PerMBean" + i));
+            mbeans[i].setClock(clock);
+            mbeans[i].notifyInput();
+            clock.advance(10, MILLISECONDS);
+        }
+        for (int i = 0; i < mbeans.length; i++) {
+            mbeans[i].notifyOutput();
+            assertEquals(Long.valueOf(10 * (mbeans.length - i)), mbeans[i].getDurationLatest());
+        }
+    }
+
+    @Test
+    public void testFailures() {
+        for (int i = 0; i < 3; i++) {
+            mbean.notifyFailed(new IllegalStateException("message " + i));
+        }
+        mbean.notifyFailed(new IllegalArgumentException("other"));
+        assertEquals("java.lang.IllegalArgumentException: other", mbean.getFailedLatestReason());
+        assertEquals("java.lang.IllegalArgumentException: other", mbean.getFailedLatestStacktrace()[0]);
+        assertEquals(4, mbean.getFailedRecent().size());
+        TabularData fingerprints = mbean.getFailedFingerprints();
+        assertEquals(2, fingerprints.size());
+        long maxCount = 0;
+        for (Object row : fingerprints.values()) {
+            CompositeData fingerprint = (CompositeData) row;
+            long count = (Long) fingerprint.get("count");
+            if (count == 3) {
+                assertEquals("java.lang.IllegalStateException: message 0", fingerprint.get("reason"));
+                String[] stacktrace = mbean.getFailedStacktrace((String) fingerprint.get("fingerprint"));
+                assertEquals("java.lang.IllegalStateException: message 0", stacktrace[0]);
+            }
+            maxCount = Math.max(maxCount, count);
+        }
+        assertEquals(3, maxCount);
+        mbean.notifyFailed();
+        assertNull(mbean.getFailedLatestReason());
+        assertNull(mbean.getFailedLatestStacktrace());
+    }
+}
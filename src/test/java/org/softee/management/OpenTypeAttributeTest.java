@@ -0,0 +1,119 @@
+package org.softee.management;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.DynamicMBean;
+import javax.management.InvalidAttributeValueException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.openmbean.ArrayType;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenMBeanAttributeInfo;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularType;
+import javax.xml.datatype.DatatypeFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.softee.management.helper.DynamicMBeanAdapter;
+import org.softee.management.helper.IntrospectedDynamicMBean;
+
+/**
+ * Tests the conversion of attribute values to and from open types, by {@link IntrospectedDynamicMBean}
+ */
+public class OpenTypeAttributeTest {
+    private DummyOpenTypeMbean mbean;
+    private DynamicMBean dynamicMBean;
+
+    @Before
+    public void before() throws Exception {
+        mbean = new DummyOpenTypeMbean();
+        dynamicMBean = DynamicMBeanAdapter.forObject(mbean);
+    }
+
+    @Test
+    public void testIntrospectedAtRuntime() throws Exception {
+        assertSame(IntrospectedDynamicMBean.class, dynamicMBean.getClass());
+    }
+
+    @Test
+    public void testMBeanInfo() throws Exception {
+        Map<String, MBeanAttributeInfo> infos = new HashMap<String, MBeanAttributeInfo>();
+        for (MBeanAttributeInfo info : dynamicMBean.getMBeanInfo().getAttributes()) {
+            infos.put(info.getName(), info);
+        }
+        assertEquals(SimpleType.STRING, ((OpenMBeanAttributeInfo) infos.get("unit")).getOpenType());
+        assertTrue(infos.get("unit").isWritable());
+        assertEquals(SimpleType.DATE, ((OpenMBeanAttributeInfo) infos.get("started")).getOpenType());
+        assertEquals(ArrayType.getArrayType(SimpleType.STRING),
+                ((OpenMBeanAttributeInfo) infos.get("queues")).getOpenType());
+        TabularType depths = (TabularType) ((OpenMBeanAttributeInfo) infos.get("depths")).getOpenType();
+        assertEquals(Arrays.asList("key"), depths.getIndexNames());
+        CompositeType endpoint = (CompositeType) ((OpenMBeanAttributeInfo) infos.get("endpoint")).getOpenType();
+        assertEquals(SimpleType.STRING, endpoint.getType("host"));
+        assertEquals(SimpleType.INTEGER, endpoint.getType("port"));
+        // simple types are described as they are without the mapping
+        assertFalse(infos.get("count") instanceof OpenMBeanAttributeInfo);
+        assertEquals("long", infos.get("count").getType());
+    }
+
+    @Test
+    public void testGetAttribute() throws Exception {
+        assertEquals("SECONDS", dynamicMBean.getAttribute("unit"));
+        assertNull(dynamicMBean.getAttribute("started"));
+        GregorianCalendar calendar = new GregorianCalendar();
+        mbean.setStarted(DatatypeFactory.newInstance().newXMLGregorianCalendar(calendar));
+        assertEquals(calendar.getTime(), dynamicMBean.getAttribute("started"));
+        assertArrayEquals(new String[] {"in", "out"}, (String[]) dynamicMBean.getAttribute("queues"));
+        mbean.getDepths().put("in", 3L);
+        TabularData depths = (TabularData) dynamicMBean.getAttribute("depths");
+        assertEquals(1, depths.size());
+        assertEquals(3L, depths.get(new Object[] {"in"}).get("value"));
+        CompositeData endpoint = (CompositeData) dynamicMBean.getAttribute("endpoint");
+        assertEquals("localhost", endpoint.get("host"));
+        assertEquals(8080, endpoint.get("port"));
+        assertEquals(42L, dynamicMBean.getAttribute("count"));
+    }
+
+    @Test
+    public void testSetAttribute() throws Exception {
+        dynamicMBean.setAttribute(new Attribute("unit", "MINUTES"));
+        assertEquals(TimeUnit.MINUTES, mbean.getUnit());
+        // values of the Java type are accepted too
+        dynamicMBean.setAttribute(new Attribute("unit", TimeUnit.HOURS));
+        assertEquals(TimeUnit.HOURS, mbean.getUnit());
+        dynamicMBean.setAttribute(new Attribute("queues", new String[] {"a", "b", "c"}));
+        assertEquals(Arrays.asList("a", "b", "c"), mbean.getQueues());
+        try {
+            dynamicMBean.setAttribute(new Attribute("unit", "FORTNIGHTS"));
+            fail("setAttribute should throw InvalidAttributeValueException");
+        } catch (InvalidAttributeValueException e) {
+            // expected
+        }
+        assertEquals(TimeUnit.HOURS, mbean.getUnit());
+    }
+
+    @Test
+    public void testGetAttributes() throws Exception {
+        mbean.setStarted(DatatypeFactory.newInstance().newXMLGregorianCalendar(new GregorianCalendar()));
+        for (Object attribute : dynamicMBean.getAttributes(new String[] {"unit", "started"}).asList()) {
+            Object value = ((Attribute) attribute).getValue();
+            assertTrue(value instanceof String || value instanceof Date);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.softee.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import javax.management.DynamicMBean;
+import javax.management.ReflectionException;
+import javax.management.RuntimeOperationsException;
+
+import org.junit.Test;
+import org.softee.management.helper.DynamicMBeanAdapter;
+import org.softee.management.helper.IntrospectedDynamicMBean;
+
+/**
+ * Tests the invocation of overloaded operations, through the generated adapter and through runtime introspection
+ */
+public class OverloadedOperationTest {
+
+    @Test
+    public void testMBeanInfoEqualsIntrospected() throws Exception {
+        DummyOverloadedMbean mbean = new DummyOverloadedMbean();
+        DynamicMBean adapter = DynamicMBeanAdapter.forObject(mbean);
+        assertEquals(DummyOverloadedMbean_DynamicMBean.class, adapter.getClass());
+        assertEquals(4, adapter.getMBeanInfo().getOperations().length);
+        assertEquals(new IntrospectedDynamicMBean(mbean).getMBeanInfo(), adapter.getMBeanInfo());
+    }
+
+    @Test
+    public void testInvokeBySignature() throws Exception {
+        testInvokeBySignature(new DummyOverloadedMbean(), true);
+        testInvokeBySignature(new DummyOverloadedMbean(), false);
+    }
+
+    private void testInvokeBySignature(DummyOverloadedMbean mbean, boolean generated) throws Exception {
+        DynamicMBean dynamicMBean = generated ? DynamicMBeanAdapter.forObject(mbean)
+                : new IntrospectedDynamicMBean(mbean);
+        assertEquals("reset()", dynamicMBean.invoke("reset", null, new String[0]));
+        assertEquals("reset(int 42)", dynamicMBean.invoke("reset", new Object[] {42}, new String[] {"int"}));
+        assertEquals("reset(String 42)",
+                dynamicMBean.invoke("reset", new Object[] {"42"}, new String[] {"java.lang.String"}));
+        assertEquals("reset(long[], int 1)", dynamicMBean.invoke("reset", new Object[] {new long[1], 1},
+                new String[] {long[].class.getName(), "int"}));
+        // without a signature, an overload is selected by the number of arguments, if that's unambiguous
+        assertEquals("reset(long[], int 2)", dynamicMBean.invoke("reset", new Object[] {new long[2], 2}, null));
+    }
+
+    @Test
+    public void testInvokeUnknownSignature() throws Exception {
+        testInvokeUnknownSignature(DynamicMBeanAdapter.forObject(new DummyOverloadedMbean()));
+        testInvokeUnknownSignature(new IntrospectedDynamicMBean(new DummyOverloadedMbean()));
+    }
+
+    private void testInvokeUnknownSignature(DynamicMBean dynamicMBean) throws Exception {
+        try {
+            dynamicMBean.invoke("reset", new Object[] {42L}, new String[] {"long"});
+            fail("invoke should throw ReflectionException");
+        } catch (ReflectionException e) {
+            assertTrue(e.getCause() instanceof NoSuchMethodException);
+        }
+        try {
+            // ambiguous
+            dynamicMBean.invoke("reset", new Object[] {42}, null);
+            fail("invoke should throw ReflectionException");
+        } catch (ReflectionException e) {
+            assertTrue(e.getCause() instanceof NoSuchMethodException);
+        }
+    }
+
+    @Test
+    public void testInvokeWrongArgumentType() throws Exception {
+        DummyOverloadedMbean mbean = new DummyOverloadedMbean();
+        testInvokeWrongArgumentType(DynamicMBeanAdapter.forObject(mbean), mbean);
+        testInvokeWrongArgumentType(new IntrospectedDynamicMBean(mbean), mbean);
+    }
+
+    private void testInvokeWrongArgumentType(DynamicMBean dynamicMBean, DummyOverloadedMbean mbean)
+            throws Exception {
+        try {
+            dynamicMBean.invoke("reset", new Object[] {"42"}, new String[] {"int"});
+            fail("invoke should throw RuntimeOperationsException");
+        } catch (RuntimeOperationsException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        assertNull(mbean.called);
+    }
+}
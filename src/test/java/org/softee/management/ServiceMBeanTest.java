@@ -0,0 +1,141 @@
+package org.softee.management;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.softee.management.ServiceMBean.State;
+import org.softee.time.ManualClock;
+
+public class ServiceMBeanTest {
+    private ManualClock clock;
+    private ServiceMBean service;
+    private List<String> changes;
+
+    @Before
+    public void before() {
+        clock = new ManualClock(0);
+        service = new ServiceMBean(clock);
+        changes = Collections.synchronizedList(new ArrayList<String>());
+        service.addListener(new ServiceMBean.Listener() {
+            @Override
+            public void stateChanged(ServiceMBean service, State from, State to) {
+                changes.add(from + "->" + to);
+            }
+        });
+    }
+
+    @Test
+    public void testLifecycle() {
+        service.start();
+        clock.advance(2, SECONDS);
+        service.pause();
+        clock.advance(3, SECONDS);
+        service.resume();
+        clock.advance(4, SECONDS);
+        service.stop();
+        clock.advance(1, SECONDS);
+        assertEquals("STOPPED", service.getState());
+        assertEquals(6000, service.getRunningMillis());
+        assertEquals(3000, service.getPausedMillis());
+        assertEquals(1000, service.getStoppedMillis());
+        assertEquals(1000, service.getStateMillis());
+        assertEquals(0, service.getStartingMillis());
+        assertEquals(asList("NEW->STARTING", "STARTING->RUNNING", "RUNNING->PAUSED", "PAUSED->RUNNING",
+                "RUNNING->STOPPING", "STOPPING->STOPPED"), changes);
+    }
+
+    @Test
+    public void testIllegalTransition() {
+        service.start();
+        try {
+            service.start();
+            fail();
+        } catch (IllegalStateException expected) {
+            assertEquals(State.RUNNING, service.getServiceState());
+        }
+        service.terminate();
+        try {
+            service.run();
+            fail();
+        } catch (IllegalStateException expected) {
+            assertEquals(State.TERMINATED, service.getServiceState());
+        }
+        assertTrue(State.TERMINATED.getAllowed().isEmpty());
+        assertSame(State.NEW.getAllowed(), State.NEW.getAllowed());
+    }
+
+    @Test
+    public void testAsyncStart() {
+        final RuntimeException cause = new IllegalStateException("broken");
+        ServiceMBean async = new ServiceMBean(clock) {
+            @Override
+            protected void doStart() {
+                // completed later
+            }
+
+            @Override
+            protected void doStop() {
+                notifyFailed(cause);
+            }
+        };
+        async.start();
+        assertEquals(State.STARTING, async.getServiceState());
+        clock.advance(5, SECONDS);
+        assertEquals(5000, async.getStartingMillis());
+        assertTrue(async.notifyStarted());
+        assertFalse(async.notifyStarted());
+        assertEquals(State.RUNNING, async.getServiceState());
+        async.stop();
+        assertEquals(State.FAILED, async.getServiceState());
+        assertSame(cause, async.getFailureCause());
+    }
+
+    @Test
+    public void testConcurrentTransitions() throws Exception {
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger stopped = new AtomicInteger();
+        service.start();
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        service.stop();
+                        stopped.incrementAndGet();
+                    } catch (IllegalStateException ignore) {
+                        // another thread stopped the service
+                    } catch (InterruptedException ignore) {
+                    }
+                }
+            };
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(1, stopped.get());
+        assertEquals(State.STOPPED, service.getServiceState());
+    }
+
+    private static List<String> asList(String... values) {
+        return Arrays.asList(values);
+    }
+}
@@ -0,0 +1,118 @@
+package org.softee.management.exporter;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.softee.management.MessagingMBean;
+import org.softee.management.helper.MBeanRegistration;
+
+public class MappedMetricsFileTest {
+    private MBeanServer mBeanServer;
+    private ObjectName objectName;
+    private MBeanRegistration registration;
+    private MessagingMBean mbean;
+    private File file;
+    private MappedMetricsFile metricsFile;
+
+    @Before
+    public void before() throws Exception {
+        mBeanServer = MBeanServerFactory.newMBeanServer();
+        objectName = ObjectName.getInstance("org.softee:type=Test,name=Mapped");
+        mbean = new MessagingMBean(objectName);
+        registration = new MBeanRegistration(mbean, objectName, mBeanServer);
+        registration.register();
+        file = File.createTempFile("metrics", ".dat");
+        metricsFile = new MappedMetricsFile(file);
+    }
+
+    @After
+    public void after() throws Exception {
+        metricsFile.close();
+        registration.unregister();
+    }
+
+    @Test
+    public void testPublish() throws Exception {
+        mbean.notifyInput();
+        mbean.notifyOutput(5, MILLISECONDS);
+        metricsFile.publish();
+        MappedMetricsReader reader = new MappedMetricsReader(file);
+        String name = objectName.getCanonicalName();
+        assertEquals(2, reader.getSequence());
+        assertTrue(reader.getPublishedMillis() > 0);
+        assertEquals(1, reader.getLong(reader.offset(name, "outputCount")));
+        assertEquals(5, reader.getLong(reader.offset(name, "durationMax")));
+        // null
+        assertNull(reader.getValue(reader.offset(name, "failedLatestAgeSeconds")));
+        assertEquals(Long.MIN_VALUE, reader.getLong(reader.offset(name, "failedLatestAgeSeconds")));
+        // double
+        assertTrue(reader.getValue(reader.offset(name, "outputRate1m")) instanceof Double);
+        // not numeric
+        assertEquals(-1, reader.offset(name, "duration"));
+
+        // the reader sees the next publication without reopening the file
+        mbean.notifyOutput(7, MILLISECONDS);
+        metricsFile.publish();
+        assertEquals(4, reader.getSequence());
+        assertEquals(2, reader.getLong(reader.offset(name, "outputCount")));
+        assertEquals(7, reader.getLong(reader.offset(name, "durationMax")));
+        long[] values = new long[2];
+        assertEquals(4, reader.read(new int[] {reader.offset(name, "outputCount"), reader.offset(name, "durationMax")},
+                values));
+        assertEquals(2, values[0]);
+        assertEquals(7, values[1]);
+    }
+
+    @Test
+    public void testLayoutChange() throws Exception {
+        metricsFile.publish();
+        MappedMetricsReader reader = new MappedMetricsReader(file);
+        assertFalse(reader.isStale());
+        ObjectName otherName = ObjectName.getInstance("org.softee:type=Test,name=Other");
+        MBeanRegistration other = new MBeanRegistration(new MessagingMBean(otherName), otherName, mBeanServer);
+        other.register();
+        try {
+            metricsFile.publish();
+            assertTrue(reader.isStale());
+            reader = new MappedMetricsReader(file);
+            assertTrue(reader.getOffsets().containsKey(otherName.getCanonicalName()));
+            assertTrue(reader.getOffsets().containsKey(objectName.getCanonicalName()));
+        } finally {
+            other.unregister();
+        }
+        metricsFile.close();
+        assertTrue(reader.isStale());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testStart() throws Exception {
+        mbean.notifyInput();
+        metricsFile.start(1, MILLISECONDS);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!file.exists() || file.length() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        MappedMetricsReader reader = new MappedMetricsReader(file);
+        int offset = reader.offset(objectName.getCanonicalName(), "inputCount");
+        mbean.notifyInput();
+        while (reader.getLong(offset) != 2) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        metricsFile.stop();
+    }
+}
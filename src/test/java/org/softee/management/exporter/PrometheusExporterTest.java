@@ -0,0 +1,91 @@
+package org.softee.management.exporter;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.softee.management.MessagingMBean;
+import org.softee.management.helper.MBeanRegistration;
+
+public class PrometheusExporterTest {
+    private MBeanRegistration registration;
+    private MessagingMBean mbean;
+    private PrometheusExporter exporter;
+
+    @Before
+    public void before() throws Exception {
+        ObjectName objectName = ObjectName.getInstance("org.softee:type=Test,name=\"Exporter \\\"1\\\"\"");
+        mbean = new MessagingMBean(objectName);
+        registration = new MBeanRegistration(mbean, objectName, MBeanServerFactory.newMBeanServer());
+        registration.register();
+        exporter = new PrometheusExporter();
+    }
+
+    @After
+    public void after() throws Exception {
+        exporter.stop();
+        registration.unregister();
+    }
+
+    @Test
+    public void testRender() {
+        mbean.notifyInput();
+        mbean.notifyOutput(5, MILLISECONDS);
+        String text = exporter.render();
+        assertTrue(text, text.contains("# TYPE org_softee_Test_outputCount untyped\n"));
+        assertTrue(text, text.contains("org_softee_Test_outputCount{name=\"Exporter \\\"1\\\"\"} 1\n"));
+        assertTrue(text, text.contains("org_softee_Test_durationMax{name=\"Exporter \\\"1\\\"\"} 5\n"));
+        // not numeric
+        assertFalse(text, text.contains("org_softee_Test_duration{"));
+        // null
+        assertFalse(text, text.contains("org_softee_Test_failedLatestAgeSeconds{"));
+    }
+
+    @Test
+    public void testUnregister() throws Exception {
+        assertTrue(exporter.render().contains("org_softee_Test_inputCount"));
+        registration.unregister();
+        assertFalse(exporter.render().contains("org_softee_Test_inputCount"));
+        registration.register();
+    }
+
+    @Test
+    public void testUnregisterThroughServer() throws Exception {
+        assertTrue(exporter.render().contains("org_softee_Test_inputCount"));
+        registration.getMBeanServer().unregisterMBean(registration.getObjectName());
+        assertFalse(exporter.render().contains("org_softee_Test_inputCount"));
+        assertTrue(MBeanRegistration.getRegisteredMBeans(registration.getMBeanServer()).isEmpty());
+        registration.register();
+    }
+
+    @Test
+    public void testHttp() throws Exception {
+        mbean.notifyInput();
+        exporter.start(0);
+        URL url = new URL("http", "127.0.0.1", exporter.getAddress().getPort(), PrometheusExporter.PATH);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(PrometheusExporter.CONTENT_TYPE, connection.getContentType());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        InputStream in = connection.getInputStream();
+        byte[] buffer = new byte[4096];
+        for (int n; (n = in.read(buffer)) > 0;) {
+            body.write(buffer, 0, n);
+        }
+        in.close();
+        String text = body.toString("UTF-8");
+        assertTrue(text, text.contains("org_softee_Test_inputCount{name=\"Exporter \\\"1\\\"\"} 1\n"));
+    }
+}
@@ -0,0 +1,97 @@
+package org.softee.management.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+import org.softee.management.DummyException;
+import org.softee.management.helper.Invoker.GeneratedInvoker;
+import org.softee.management.helper.Invoker.ReflectiveInvoker;
+
+public class InvokerTest {
+    private long value;
+
+    public long getValue() {
+        return value;
+    }
+
+    public void setValue(long value) {
+        this.value = value;
+    }
+
+    public String concat(String a, int b) {
+        return a + b;
+    }
+
+    public void throwException() throws DummyException {
+        throw new DummyException("throwException");
+    }
+
+    public static String staticOperation() {
+        return "static";
+    }
+
+    @Test
+    public void testGeneratedBinding() throws Exception {
+        assertTrue(invoker("getValue") instanceof GeneratedInvoker);
+        assertTrue(invoker("setValue", long.class) instanceof GeneratedInvoker);
+        assertTrue(invoker("concat", String.class, int.class) instanceof ReflectiveInvoker);
+    }
+
+    @Test
+    public void testGetterAndSetter() throws Exception {
+        invoker("setValue", long.class).invoke(this, Long.valueOf(42));
+        assertEquals(Long.valueOf(42), invoker("getValue").invoke(this));
+    }
+
+    @Test
+    public void testWideningArgument() throws Exception {
+        assertNull(invoker("setValue", long.class).invoke(this, Integer.valueOf(7)));
+        assertEquals(7, value);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalArgumentType() throws Exception {
+        invoker("setValue", long.class).invoke(this, "7");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullPrimitiveArgument() throws Exception {
+        invoker("setValue", long.class).invoke(this, (Object) null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongNumberOfArguments() throws Exception {
+        invoker("concat", String.class, int.class).invoke(this, new Object[] {"a"});
+    }
+
+    @Test
+    public void testMultipleArguments() throws Exception {
+        assertEquals("a1", invoker("concat", String.class, int.class).invoke(this, new Object[] {"a", 1}));
+    }
+
+    @Test
+    public void testStaticMethod() throws Exception {
+        assertEquals("static", invoker("staticOperation").invoke(null));
+    }
+
+    @Test
+    public void testTargetException() throws Exception {
+        try {
+            invoker("throwException").invoke(this);
+            fail("invoke should throw InvocationTargetException");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof DummyException);
+        }
+    }
+
+    private static Invoker invoker(String name, Class<?>... parameterTypes) throws NoSuchMethodException {
+        Method method = InvokerTest.class.getMethod(name, parameterTypes);
+        return Invoker.forMethod(method);
+    }
+}
@@ -0,0 +1,95 @@
+package org.softee.management.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.softee.management.MessagingMBean;
+import org.softee.management.exception.ManagementException;
+
+public class MBeanRegistrationTest {
+    private static final int BEANS = 1000;
+
+    private MBeanServer mBeanServer;
+    private List<MBeanRegistration> registrations;
+
+    @Before
+    public void before() throws Exception {
+        mBeanServer = MBeanServerFactory.newMBeanServer();
+        registrations = new ArrayList<MBeanRegistration>();
+        for (int i = 0; i < BEANS; i++) {
+            ObjectName objectName = ObjectName.getInstance("org.softee:type=Test,name=Bulk" + i);
+            registrations.add(new MBeanRegistration(new MessagingMBean(objectName), objectName, mBeanServer));
+        }
+    }
+
+    @After
+    public void after() throws Exception {
+        for (ObjectName objectName : mBeanServer.queryNames(ObjectName.getInstance("org.softee:*"), null)) {
+            new MBeanRegistration(null, objectName, mBeanServer).unregister();
+        }
+    }
+
+    @Test
+    public void testRegisterAll() throws Exception {
+        ObjectName duplicateName = registrations.get(0).getObjectName();
+        MBeanRegistration duplicate = new MBeanRegistration(new MessagingMBean(duplicateName), duplicateName,
+                mBeanServer);
+        MBeanRegistration notAnnotated = new MBeanRegistration(new Object(),
+                ObjectName.getInstance("org.softee:type=Test,name=NotAnnotated"), mBeanServer);
+        registrations.add(duplicate);
+        registrations.add(notAnnotated);
+        long version = MBeanRegistration.getRegistrationVersion();
+
+        RegistrationResult result = MBeanRegistration.registerAll(registrations);
+
+        assertFalse(result.isSuccessful());
+        assertEquals(BEANS, result.getRegistered().size());
+        assertEquals(registrations.subList(0, BEANS), result.getRegistered());
+        assertEquals(2, result.getFailures().size());
+        ManagementException duplicateFailure = result.getFailures().get(duplicate);
+        assertTrue(duplicateFailure.getCause() instanceof InstanceAlreadyExistsException);
+        assertTrue(result.getFailures().get(notAnnotated).getCause() instanceof IllegalArgumentException);
+        assertEquals(BEANS, mBeanServer.getMBeanCount() - 1); // excluding the MBeanServerDelegate
+        assertTrue(MBeanRegistration.getRegistrationVersion() > version);
+        assertEquals("1000 registered, 2 failed", result.toString());
+    }
+
+    @Test
+    public void testRegisterAllAsync() throws Exception {
+        RegistrationResult result = MBeanRegistration.registerAllAsync(registrations).get(10, TimeUnit.SECONDS);
+        assertTrue(result.isSuccessful());
+        assertEquals(BEANS, result.getRegistered().size());
+        assertTrue(mBeanServer.isRegistered(registrations.get(BEANS - 1).getObjectName()));
+    }
+
+    @Test
+    public void testSameNameInTwoServers() throws Exception {
+        MBeanServer otherServer = MBeanServerFactory.newMBeanServer();
+        MBeanRegistration registration = registrations.get(0);
+        ObjectName objectName = registration.getObjectName();
+        MBeanRegistration other = new MBeanRegistration(new MessagingMBean(objectName), objectName, otherServer);
+        registration.register();
+        other.register();
+        assertTrue(MBeanRegistration.getRegisteredServers().contains(otherServer));
+        assertTrue(MBeanRegistration.getRegisteredMBeans(mBeanServer).containsKey(objectName));
+        assertTrue(MBeanRegistration.getRegisteredMBeans(otherServer).containsKey(objectName));
+
+        other.unregister();
+        assertTrue(MBeanRegistration.getRegisteredMBeans(mBeanServer).containsKey(objectName));
+        assertFalse(MBeanRegistration.getRegisteredMBeans(otherServer).containsKey(objectName));
+        assertFalse(MBeanRegistration.getRegisteredServers().contains(otherServer));
+    }
+}
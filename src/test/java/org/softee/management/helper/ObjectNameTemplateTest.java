@@ -0,0 +1,54 @@
+package org.softee.management.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class ObjectNameTemplateTest {
+    private static final String TEMPLATE = "org.softee:type=Queue,tenant={},name={}";
+
+    @Test
+    public void testGetInstance() throws Exception {
+        ObjectNameTemplate template = ObjectNameTemplate.compile(TEMPLATE);
+        assertEquals(2, template.getPlaceholderCount());
+        ObjectName objectName = template.getInstance("acme", "orders");
+        assertEquals(ObjectName.getInstance("org.softee:type=Queue,tenant=acme,name=orders"), objectName);
+        assertSame(objectName, template.getInstance("acme", "orders"));
+        assertNotSame(objectName, template.getInstance("acme", "order"));
+        assertEquals("orders", template.getInstance("acme", "orders").getKeyProperty("name"));
+    }
+
+    @Test
+    public void testSharedWithBuilder() throws Exception {
+        ObjectName built = new ObjectNameBuilder().withDomain("org.softee").withType("Queue")
+                .withProperty("tenant", "shared").withName("orders").build();
+        assertSame(built, ObjectNameTemplate.compile(TEMPLATE).getInstance("shared", "orders"));
+        assertEquals(built, new ObjectNameBuilder().withObjectName(built).withName("orders").build());
+    }
+
+    @Test(expected = MalformedObjectNameException.class)
+    public void testInvalidValue() throws Exception {
+        ObjectNameTemplate.compile(TEMPLATE).getInstance("acme", "a,b=c");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongNumberOfValues() throws Exception {
+        ObjectNameTemplate.compile(TEMPLATE).getInstance("acme");
+    }
+
+    @Test(expected = MalformedObjectNameException.class)
+    public void testPattern() throws Exception {
+        ObjectNameTemplate.compile("org.softee:type={},*");
+    }
+
+    @Test(expected = MalformedObjectNameException.class)
+    public void testBuilderInvalidValue() throws Exception {
+        // a value that would change the meaning of the name is rejected, as before
+        new ObjectNameBuilder().withDomain("org.softee").withName("a,b=c").build();
+    }
+}
@@ -0,0 +1,122 @@
+package org.softee.management.helper;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.softee.management.MessagingMBean;
+
+public class PersistentStateFileTest {
+    private MBeanServer mBeanServer;
+    private ObjectName objectName;
+    private MBeanRegistration registration;
+    private MessagingMBean mbean;
+    private File file;
+    private PersistentStateFile stateFile;
+
+    @Before
+    public void before() throws Exception {
+        mBeanServer = MBeanServerFactory.newMBeanServer();
+        objectName = ObjectName.getInstance("org.softee:type=Test,name=Persistent");
+        mbean = new MessagingMBean(objectName);
+        registration = new MBeanRegistration(mbean, objectName, mBeanServer);
+        registration.register();
+        file = File.createTempFile("state", ".dat");
+        stateFile = new PersistentStateFile(file);
+    }
+
+    @After
+    public void after() throws Exception {
+        stateFile.close();
+        registration.unregister();
+        file.delete();
+    }
+
+    @Test
+    public void testRestoreAfterReopen() throws Exception {
+        mbean.notifyInput();
+        mbean.notifyOutput(5, MILLISECONDS);
+        mbean.notifyInput();
+        mbean.notifyOutput(7, MILLISECONDS);
+        mbean.notifyFailed();
+        stateFile.close();
+
+        stateFile = new PersistentStateFile(file);
+        stateFile.install();
+        assertSame(stateFile, PersistentStateFile.getInstalled());
+        MessagingMBean restored = new MessagingMBean(objectName);
+        assertEquals(2, restored.getInputCount());
+        assertEquals(2, restored.getOutputCount());
+        assertEquals(1, restored.getFailedCount());
+        assertEquals(12, restored.getDurationTotal());
+        assertEquals(Long.valueOf(5), restored.getDurationMin());
+        assertEquals(Long.valueOf(7), restored.getDurationMax());
+        assertEquals(mbean.getInputLatest(), restored.getInputLatest());
+        // counted on top of the restored state
+        restored.notifyInput();
+        assertEquals(3, restored.getInputCount());
+        assertEquals(0.0, restored.getInputRate1m(), 0.0);
+
+        stateFile.close();
+        assertNull(PersistentStateFile.getInstalled());
+        assertEquals(0, new MessagingMBean(objectName).getInputCount());
+    }
+
+    @Test
+    public void testSavesOnlyChangedState() throws Exception {
+        mbean.notifyInput();
+        stateFile.save();
+        long length = file.length();
+        stateFile.save();
+        assertEquals(length, file.length());
+        mbean.notifyInput();
+        stateFile.save();
+        assertTrue(file.length() > length);
+        assertEquals(2, stateFile.getState(objectName)[2]);
+    }
+
+    @Test
+    public void testTornRecordIsDiscarded() throws Exception {
+        mbean.notifyInput();
+        stateFile.save();
+        long length = file.length();
+        mbean.notifyInput();
+        stateFile.save();
+        stateFile.close();
+        // a crash in the middle of the second record
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(file.length() - 3);
+        } finally {
+            raf.close();
+        }
+        stateFile = new PersistentStateFile(file);
+        assertEquals(1, stateFile.getState(objectName)[2]);
+        assertEquals(length, file.length());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            mbean.notifyInput();
+            stateFile.save();
+        }
+        // compacted to a single record, at least once
+        assertTrue(file.length() < 128 * 1024);
+        stateFile.close();
+        stateFile = new PersistentStateFile(file);
+        assertEquals(2000, stateFile.getState(objectName)[2]);
+    }
+}
@@ -0,0 +1,141 @@
+package org.softee.management.helper;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.softee.management.DummyAnnotatedMbean;
+import org.softee.management.annotation.MBean;
+import org.softee.management.annotation.ManagedAttribute;
+import org.softee.management.annotation.Threshold;
+import org.softee.management.annotation.Threshold.Direction;
+
+public class ThresholdMonitorTest {
+    private static final long QUIET_PERIOD = 10000;
+
+    @MBean(objectName = "org.softee:type=Test,name=Queue")
+    public static class QueueMBean {
+        private long size;
+        private Double free = 1.0;
+
+        @ManagedAttribute @Threshold(value = 100, quietPeriodMillis = QUIET_PERIOD)
+        public long getSize() {
+            return size;
+        }
+
+        @ManagedAttribute @Threshold(value = 0.1, direction = Direction.BELOW, quietPeriodMillis = 0)
+        public Double getFree() {
+            return free;
+        }
+    }
+
+    private final List<Notification> notifications = new ArrayList<Notification>();
+    private QueueMBean queue;
+    private DynamicMBeanAdapter<?> adapter;
+    private ObjectName objectName;
+    private ThresholdMonitor monitor;
+
+    @Before
+    public void before() throws Exception {
+        queue = new QueueMBean();
+        adapter = DynamicMBeanAdapter.forObject(queue);
+        adapter.addNotificationListener(new NotificationListener() {
+            public void handleNotification(Notification notification, Object handback) {
+                notifications.add(notification);
+            }
+        }, null, null);
+        objectName = new ObjectName("org.softee:type=Test,name=Queue");
+        monitor = ThresholdMonitor.forAdapter(adapter, objectName);
+    }
+
+    @Test
+    public void testNotificationInfo() throws Exception {
+        MBeanNotificationInfo[] generated = adapter.getNotificationInfo();
+        assertEquals(1, generated.length);
+        assertArrayEquals(new String[] {ThresholdMonitor.BREACHED, ThresholdMonitor.CLEARED}, generated[0].getNotifTypes());
+        assertArrayEquals(generated, new IntrospectedDynamicMBean(queue).getMBeanInfo().getNotifications());
+        assertEquals(0, DynamicMBeanAdapter.forObject(new DummyAnnotatedMbean()).getNotificationInfo().length);
+    }
+
+    @Test
+    public void testNoThresholds() throws Exception {
+        assertNull(ThresholdMonitor.forAdapter(DynamicMBeanAdapter.forObject(new DummyAnnotatedMbean()), objectName));
+    }
+
+    @Test
+    public void testBreachAndClear() {
+        monitor.evaluate(0);
+        assertEquals(0, notifications.size());
+        queue.size = 150;
+        monitor.evaluate(1000);
+        queue.free = 0.05;
+        monitor.evaluate(2000);
+        monitor.evaluate(3000);
+        assertEquals(2, notifications.size());
+        assertNotification(notifications.get(0), ThresholdMonitor.BREACHED, 1000, Long.valueOf(150));
+        assertNotification(notifications.get(1), ThresholdMonitor.BREACHED, 2000, Double.valueOf(0.05));
+        assertEquals("size = 150 is above threshold 100.0", notifications.get(0).getMessage());
+        assertEquals(2, notifications.get(1).getSequenceNumber());
+        queue.free = null;
+        queue.size = 50;
+        monitor.evaluate(1000 + QUIET_PERIOD);
+        assertEquals(3, notifications.size());
+        assertNotification(notifications.get(2), ThresholdMonitor.CLEARED, 1000 + QUIET_PERIOD, Long.valueOf(50));
+        assertEquals("size = 50 is no longer above threshold 100.0", notifications.get(2).getMessage());
+    }
+
+    @Test
+    public void testCoalesced() {
+        queue.size = 150;
+        monitor.evaluate(0);
+        // flapping within the quiet period
+        for (int i = 1; i <= 9; i++) {
+            queue.size = (i % 2 == 0) ? 150 : 50;
+            monitor.evaluate(i * 1000);
+        }
+        assertEquals(1, notifications.size());
+        monitor.evaluate(QUIET_PERIOD);
+        assertEquals(2, notifications.size());
+        assertNotification(notifications.get(1), ThresholdMonitor.CLEARED, QUIET_PERIOD, Long.valueOf(50));
+        assertTrue(notifications.get(1).getMessage(), notifications.get(1).getMessage().endsWith("(9 changes coalesced)"));
+        // back to the notified state within the quiet period
+        queue.size = 150;
+        monitor.evaluate(QUIET_PERIOD + 1000);
+        queue.size = 50;
+        monitor.evaluate(2 * QUIET_PERIOD);
+        assertEquals(2, notifications.size());
+    }
+
+    @Test
+    public void testRegistration() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        MBeanRegistration registration = new MBeanRegistration(queue, objectName, mBeanServer);
+        registration.register();
+        try {
+            assertEquals(1, mBeanServer.getMBeanInfo(objectName).getNotifications().length);
+            assertTrue(mBeanServer.isInstanceOf(objectName, "javax.management.NotificationBroadcaster"));
+        } finally {
+            registration.unregister();
+        }
+    }
+
+    private void assertNotification(Notification notification, String type, long timeStamp, Object value) {
+        assertEquals(type, notification.getType());
+        assertEquals(objectName, notification.getSource());
+        assertEquals(timeStamp, notification.getTimeStamp());
+        assertEquals(value, notification.getUserData());
+    }
+}
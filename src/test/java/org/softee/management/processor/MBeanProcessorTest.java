@@ -0,0 +1,134 @@
+package org.softee.management.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+public class MBeanProcessorTest {
+
+    @Test
+    public void testValidMBean() throws Exception {
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = compile("test.Valid",
+                "package test;"
+                + "import org.softee.management.annotation.*;"
+                + "@MBean public class Valid {"
+                + "  @ManagedAttribute @Description(\"count\") public long getCount() { return 0; }"
+                + "  @ManagedAttribute public void setCount(long count) { }"
+                + "  @ManagedOperation public void reset() { }"
+                + "}");
+        assertTrue(diagnostics.toString(), diagnostics.isEmpty());
+    }
+
+    @Test
+    public void testDuplicateDescription() throws Exception {
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = compile("test.DuplicateDescription",
+                "package test;"
+                + "import org.softee.management.annotation.*;"
+                + "@MBean public class DuplicateDescription {"
+                + "  @ManagedAttribute @Description(\"getter\") public long getCount() { return 0; }"
+                + "  @ManagedAttribute @Description(\"setter\") public void setCount(long count) { }"
+                + "}");
+        assertError(diagnostics, "Multiple @Description annotations for attribute count");
+    }
+
+    @Test
+    public void testOverloadedOperation() throws Exception {
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = compile("test.Overloaded",
+                "package test;"
+                + "import org.softee.management.annotation.*;"
+                + "@MBean public class Overloaded {"
+                + "  @ManagedOperation public void reset() { }"
+                + "  @ManagedOperation public void reset(int value) { }"
+                + "}");
+        assertTrue(diagnostics.toString(), diagnostics.isEmpty());
+    }
+
+    @Test
+    public void testThresholdOnNonNumericGetter() throws Exception {
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = compile("test.NonNumericThreshold",
+                "package test;"
+                + "import org.softee.management.annotation.*;"
+                + "@MBean public class NonNumericThreshold {"
+                + "  @ManagedAttribute @Threshold(1) public String getName() { return null; }"
+                + "}");
+        assertError(diagnostics, "@Threshold is only allowed on a numeric @ManagedAttribute getter");
+    }
+
+    @Test
+    public void testCachedOperation() throws Exception {
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = compile("test.CachedOperation",
+                "package test;"
+                + "import org.softee.management.annotation.*;"
+                + "@MBean public class CachedOperation {"
+                + "  @ManagedOperation @Cached(ttlMillis = 1000) public long count() { return 0; }"
+                + "}");
+        assertError(diagnostics, "@Cached is only allowed on a @ManagedAttribute getter");
+    }
+
+    @Test
+    public void testAnnotatedAccessorOperation() throws Exception {
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = compile("test.AccessorOperation",
+                "package test;"
+                + "import org.softee.management.annotation.*;"
+                + "@MBean public class AccessorOperation {"
+                + "  @ManagedOperation public long getCount() { return 0; }"
+                + "}");
+        assertError(diagnostics, "is annotated as an @ManagedOperation");
+    }
+
+    @Test
+    public void testIgnoredAnnotationWarning() throws Exception {
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = compile("test.Ignored",
+                "package test;"
+                + "import org.softee.management.annotation.*;"
+                + "@MBean public class Ignored {"
+                + "  @ManagedAttribute public void count() { }"
+                + "}");
+        assertEquals(diagnostics.toString(), 1, diagnostics.size());
+        assertEquals(Diagnostic.Kind.WARNING, diagnostics.get(0).getKind());
+    }
+
+    private static void assertError(List<Diagnostic<? extends JavaFileObject>> diagnostics, String message) {
+        assertFalse("no diagnostics", diagnostics.isEmpty());
+        Diagnostic<? extends JavaFileObject> diagnostic = diagnostics.get(0);
+        assertEquals(Diagnostic.Kind.ERROR, diagnostic.getKind());
+        assertTrue(diagnostic.getMessage(null), diagnostic.getMessage(null).contains(message));
+    }
+
+    private static List<Diagnostic<? extends JavaFileObject>> compile(String className, final String source)
+            throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        File output = File.createTempFile("mbean-processor", "");
+        output.delete();
+        output.mkdirs();
+        JavaFileObject file = new SimpleJavaFileObject(
+                URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        List<String> options = Arrays.asList("-d", output.getPath(),
+                "-classpath", System.getProperty("java.class.path"));
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null,
+                Arrays.asList(file));
+        task.setProcessors(Arrays.asList(new MBeanProcessor()));
+        task.call();
+        return diagnostics.getDiagnostics();
+    }
+}
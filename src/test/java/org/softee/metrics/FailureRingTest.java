@@ -0,0 +1,99 @@
+package org.softee.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.softee.metrics.FailureRing.Failure;
+import org.softee.metrics.FailureRing.Fingerprint;
+
+public class FailureRingTest {
+    private static final long T0 = 1000000000000L;
+
+    @Test
+    public void testRingKeepsLatest() {
+        FailureRing ring = new FailureRing(3, 10);
+        assertNull(ring.latest());
+        for (int i = 0; i < 10; i++) {
+            ring.record(T0 + i, null);
+        }
+        List<Failure> failures = ring.failures();
+        // capacity rounded up to 4
+        assertEquals(4, failures.size());
+        assertEquals(9, failures.get(0).getSequence());
+        assertEquals(6, failures.get(3).getSequence());
+        assertSame(failures.get(0), ring.latest());
+        assertEquals(10, ring.getCount());
+    }
+
+    @Test
+    public void testFingerprintIgnoresMessage() {
+        FailureRing ring = new FailureRing(16, 10);
+        Failure first = null;
+        Failure second = null;
+        for (int i = 0; i < 2; i++) {
+            Failure failure = ring.record(T0 + i, fail("order " + i));
+            if (i == 0) {
+                first = failure;
+            } else {
+                second = failure;
+            }
+        }
+        Failure other = ring.record(T0 + 2, new IllegalStateException("order 2", fail("order 2")));
+        assertSame(first.getFingerprint(), second.getFingerprint());
+        assertNotSame(first.getFingerprint(), other.getFingerprint());
+        assertEquals(2, first.getFingerprint().getCount());
+        assertEquals(T0 + 1, first.getFingerprint().getLatestMillis());
+        assertEquals(2, ring.fingerprints().size());
+        assertSame(first.getFingerprint(), ring.fingerprint(first.getFingerprint().getId()));
+
+        // rendered once, with the reason of each failure
+        String[] stacktrace = second.getStacktrace();
+        assertEquals("java.lang.IllegalArgumentException: order 1", stacktrace[0]);
+        assertTrue(stacktrace[1], stacktrace[1].contains("FailureRingTest.fail"));
+        assertEquals("java.lang.IllegalArgumentException: order 0", first.getFingerprint().getReason());
+    }
+
+    @Test
+    public void testMaxFingerprints() {
+        FailureRing ring = new FailureRing(16, 1);
+        assertNotNull(ring.record(T0, fail("tracked")).getFingerprint());
+        Failure untracked = ring.record(T0, new IllegalStateException("untracked"));
+        assertNull(untracked.getFingerprint());
+        assertNull(untracked.getStacktrace());
+        assertEquals("java.lang.IllegalStateException: untracked", untracked.getReason());
+        assertEquals(1, ring.getUntrackedCount());
+        assertNull(ring.fingerprint("not hex"));
+    }
+
+    @Test
+    public void testMultiLineReason() {
+        FailureRing ring = new FailureRing(16, 10);
+        Failure failure = null;
+        String[] messages = {"first", "line 1\nline 2\nline 3"};
+        for (int i = 0; i < messages.length; i++) {
+            failure = ring.record(T0 + 1 - i, fail(messages[i]));
+        }
+        // an earlier time, recorded later, doesn't move the latest time back
+        assertEquals(T0 + 1, failure.getFingerprint().getLatestMillis());
+        String[] stacktrace = failure.getStacktrace();
+        assertEquals("java.lang.IllegalArgumentException: line 1", stacktrace[0]);
+        assertEquals("line 2", stacktrace[1]);
+        assertEquals("line 3", stacktrace[2]);
+        assertTrue(stacktrace[3], stacktrace[3].contains("FailureRingTest.fail"));
+        String[] first = failure.getFingerprint().getStacktrace();
+        assertEquals("java.lang.IllegalArgumentException: first", first[0]);
+        assertEquals(stacktrace[3], first[1]);
+        assertEquals(stacktrace.length - 2, first.length);
+    }
+
+    private static Throwable fail(String message) {
+        return new IllegalArgumentException(message);
+    }
+}
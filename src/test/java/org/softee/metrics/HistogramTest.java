@@ -0,0 +1,103 @@
+package org.softee.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void testBucketBoundaries() {
+        Histogram histogram = new Histogram(1L << 40, 4);
+        for (long value = 0; value < 100000; value++) {
+            int index = histogram.index(value);
+            assertTrue(histogram.lowestValue(index) <= value);
+            assertTrue(value < histogram.lowestValue(index + 1));
+        }
+    }
+
+    @Test
+    public void testExactBelowSubBucketCount() {
+        Histogram histogram = new Histogram(1000, 4);
+        for (long value = 0; value < 16; value++) {
+            histogram.record(value);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(16, snapshot.getTotalCount());
+        assertEquals(0, snapshot.getValueAtQuantile(0.0));
+        assertEquals(7, snapshot.getValueAtQuantile(0.5));
+        assertEquals(15, snapshot.getValueAtQuantile(1.0));
+    }
+
+    @Test
+    public void testPercentilesWithinRelativeError() {
+        Histogram histogram = new Histogram(1L << 40, 4);
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value * 1000);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertWithin(50000000, snapshot.getValueAtQuantile(0.5), 1.0 / 32);
+        assertWithin(99000000, snapshot.getValueAtQuantile(0.99), 1.0 / 32);
+        assertWithin(99900000, snapshot.getValueAtQuantile(0.999), 1.0 / 32);
+    }
+
+    @Test
+    public void testHighestTrackableValue() {
+        Histogram histogram = new Histogram(1000, 4);
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-1);
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.getTotalCount());
+        assertWithin(1000, snapshot.getValueAtQuantile(1.0), 1.0 / 16);
+    }
+
+    @Test
+    public void testIntervalSnapshot() {
+        Histogram histogram = new Histogram(1000, 4);
+        histogram.record(10);
+        assertEquals(1, histogram.intervalSnapshot().getTotalCount());
+        histogram.record(20);
+        histogram.record(30);
+        assertEquals(2, histogram.intervalSnapshot().getTotalCount());
+        assertEquals(0, histogram.snapshot().getTotalCount());
+    }
+
+    @Test
+    public void testSnapshotOfRecordedRange() {
+        Histogram histogram = new Histogram(1L << 40, 4);
+        Histogram.Snapshot empty = histogram.snapshot();
+        assertEquals(0, empty.getTotalCount());
+        assertEquals(0, empty.getValueAtQuantile(0.5));
+        histogram.record(1000000);
+        histogram.record(1000);
+        histogram.record(1000000000);
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(3, snapshot.getTotalCount());
+        assertWithin(1000, snapshot.getValueAtQuantile(0.0), 1.0 / 16);
+        assertWithin(1000000, snapshot.getValueAtQuantile(0.5), 1.0 / 16);
+        assertWithin(1000000000, snapshot.getValueAtQuantile(1.0), 1.0 / 16);
+    }
+
+    @Test
+    public void testUnchangedSnapshotIsReused() {
+        Histogram histogram = new Histogram(1000, 4);
+        histogram.record(10);
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertSame(snapshot, histogram.snapshot());
+        histogram.record(10);
+        Histogram.Snapshot recorded = histogram.snapshot();
+        assertNotSame(snapshot, recorded);
+        assertEquals(2, recorded.getTotalCount());
+        assertEquals(2, histogram.intervalSnapshot().getTotalCount());
+        assertSame(histogram.intervalSnapshot(), histogram.intervalSnapshot());
+        assertEquals(0, histogram.intervalSnapshot().getTotalCount());
+    }
+
+    private static void assertWithin(long expected, long actual, double relativeError) {
+        assertTrue("expected " + expected + ", was " + actual,
+                Math.abs(actual - expected) <= expected * relativeError);
+    }
+}
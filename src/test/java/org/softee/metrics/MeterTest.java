@@ -0,0 +1,77 @@
+package org.softee.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MeterTest {
+    private static final long T0 = 1000000000000L;
+
+    @Test
+    public void testWindowCount() {
+        Meter meter = new Meter(60, T0);
+        for (int second = 0; second < 120; second++) {
+            for (int i = 0; i < 10; i++) {
+                meter.mark(T0 + second * 1000L + i);
+            }
+        }
+        assertEquals(1200, meter.getCount());
+        // seconds 60 .. 119
+        assertEquals(600, meter.getWindowCount(T0 + 119500));
+        // seconds 70 .. 129, of which 70 .. 119 had events
+        assertEquals(500, meter.getWindowCount(T0 + 129500));
+        assertEquals(0, meter.getWindowCount(T0 + 300000));
+    }
+
+    @Test
+    public void testWindowCountWithIdleSeconds() {
+        Meter meter = new Meter(10, T0);
+        meter.mark(T0);
+        meter.mark(T0 + 5000);
+        meter.mark(T0 + 5001);
+        assertEquals(3, meter.getWindowCount(T0 + 9000));
+        assertEquals(2, meter.getWindowCount(T0 + 10000));
+        assertEquals(0, meter.getWindowCount(T0 + 15000));
+    }
+
+    @Test
+    public void testRates() {
+        Meter meter = new Meter(60, T0);
+        // 100 events per second for 15 minutes
+        for (long millis = 0; millis < 15 * 60 * 1000; millis += 10) {
+            meter.mark(T0 + millis);
+        }
+        long now = T0 + 15 * 60 * 1000;
+        assertEquals(100.0, meter.getRate1m(now), 1.0);
+        assertEquals(100.0, meter.getRate5m(now), 1.0);
+        assertEquals(100.0, meter.getRate15m(now), 1.0);
+        // an idle minute decays the one minute rate the most
+        now += 60 * 1000;
+        assertTrue(meter.getRate1m(now) < 40.0);
+        assertTrue(meter.getRate5m(now) > meter.getRate1m(now));
+        assertTrue(meter.getRate15m(now) > meter.getRate5m(now));
+    }
+
+    @Test
+    public void testIdleDecayMatchesTicks() {
+        Meter ticked = new Meter(60, T0);
+        Meter idle = new Meter(60, T0);
+        for (long millis = 0; millis < 60 * 1000; millis += 10) {
+            ticked.mark(T0 + millis);
+            idle.mark(T0 + millis);
+        }
+        long now = T0 + 60 * 1000;
+        ticked.getRate1m(now);
+        idle.getRate1m(now);
+        // read on every tick, or once after ten idle minutes
+        for (int tick = 1; tick <= 120; tick++) {
+            ticked.getRate1m(now + tick * Meter.TICK_MILLIS);
+        }
+        now += 120 * Meter.TICK_MILLIS;
+        assertEquals(ticked.getRate1m(now), idle.getRate1m(now), 1e-9);
+        assertEquals(ticked.getRate15m(now), idle.getRate15m(now), 1e-9);
+        // a day idle
+        assertEquals(0.0, idle.getRate1m(now + 24 * 60 * 60 * 1000L), 1e-9);
+    }
+}
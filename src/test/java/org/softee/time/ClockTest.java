@@ -0,0 +1,50 @@
+package org.softee.time;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ClockTest {
+    @Test
+    public void testManualClock() {
+        ManualClock clock = new ManualClock(1000L);
+        long nanoTime = clock.nanoTime();
+        clock.advance(1500, TimeUnit.MICROSECONDS);
+        assertEquals(1001L, clock.currentTimeMillis());
+        assertEquals(1500000L, clock.nanoTime() - nanoTime);
+        StopWatch stopWatch = new StopWatch(clock);
+        clock.advance(2, TimeUnit.SECONDS);
+        stopWatch.stop();
+        clock.advance(1, TimeUnit.SECONDS);
+        assertEquals(2000L, stopWatch.elapsedMillis());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testManualClockBackwards() {
+        new ManualClock(0L).advance(-1, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testCoarseClock() throws Exception {
+        CoarseClock clock = new CoarseClock(5);
+        try {
+            long millis = clock.currentTimeMillis();
+            long nanoTime = clock.nanoTime();
+            assertTrue(Math.abs(System.currentTimeMillis() - millis) < 1000);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (clock.nanoTime() == nanoTime && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertTrue(clock.nanoTime() > nanoTime);
+            assertTrue(clock.currentTimeMillis() >= millis);
+        } finally {
+            clock.stop();
+        }
+        assertFalse(clock.isRunning());
+        assertEquals(5, clock.getResolution(TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,72 @@
+package org.softee.time;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.softee.management.MessagingMBean;
+
+public class StopWatchTest {
+    private final ManualClock clock = new ManualClock(0);
+
+    @Test
+    public void testLapsAndSplits() {
+        StopWatch stopWatch = new StopWatch(clock);
+        long[] laps = new long[3];
+        long[] splits = new long[3];
+        int lap = 0;
+        int split = 0;
+        for (int i = 1; i <= 3; i++) {
+            clock.advance(i, MILLISECONDS);
+            lap = stopWatch.lap(laps, lap);
+            split = stopWatch.split(splits, split);
+        }
+        assertEquals(3, lap);
+        assertArrayEquals(new long[] {1000000, 2000000, 3000000}, laps);
+        assertArrayEquals(new long[] {1000000, 3000000, 6000000}, splits);
+        clock.advance(4, MILLISECONDS);
+        assertEquals(4000000, stopWatch.lap());
+        stopWatch.stop();
+        assertFalse(stopWatch.isRunning());
+        clock.advance(5, MILLISECONDS);
+        assertEquals(10, stopWatch.elapsedMillis());
+        assertEquals("StopWatch STOPPED @ 10ms", stopWatch.toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLapWhenStopped() {
+        StopWatch stopWatch = new StopWatch(clock);
+        stopWatch.stop();
+        stopWatch.lap();
+    }
+
+    @Test
+    public void testForThread() throws Exception {
+        final StopWatch[] other = new StopWatch[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                other[0] = StopWatch.forThread();
+            }
+        };
+        thread.start();
+        thread.join();
+        assertSame(StopWatch.forThread(), StopWatch.forThread());
+        assertFalse(other[0] == StopWatch.forThread());
+    }
+
+    @Test
+    public void testNotifyOutput() throws Exception {
+        MessagingMBean mbean = new MessagingMBean(ObjectName.getInstance("org.softee:type=Test,name=StopWatchTest"));
+        StopWatch stopWatch = new StopWatch(clock);
+        clock.advance(7, MILLISECONDS);
+        mbean.notifyOutput(stopWatch);
+        assertFalse(stopWatch.isRunning());
+        assertEquals(Long.valueOf(7), mbean.getDurationLatest());
+    }
+}